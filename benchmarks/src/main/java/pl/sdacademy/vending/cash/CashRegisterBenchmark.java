@@ -0,0 +1,81 @@
+package pl.sdacademy.vending.cash;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import pl.sdacademy.vending.model.BenchmarkMachines;
+import pl.sdacademy.vending.model.VendingMachine;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark zakupu za gotówkę w automacie 26x9 - cena, rezerwacja reszty, wydanie produktu i wpłata do kasy -
+ * w jednym wątku oraz w wielu wątkach jednocześnie. Ceny tacek to od 1,00 do 1,88 zł, a każdy zakup jest płacony
+ * monetą 5 zł, więc każdy wymaga wydania reszty. Kasa i automat są tworzone od nowa przed każdą iteracją pomiaru,
+ * z zapasem monet i produktów wystarczającym na całą iterację.
+ * <br>
+ * Parametr memoizedAmounts określa ilość pamiętanych kwot reszty - przy 0 każda reszta jest liczona od nowa.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CashRegisterBenchmark {
+    private static final int[] DENOMINATIONS = {1, 2, 5, 10, 20, 50, 100, 200, 500};
+    private static final int COINS_PER_DENOMINATION = 100_000_000;
+
+    @Param({"0", "2000"})
+    public int memoizedAmounts;
+
+    private CashRegister register;
+    private String[] symbols;
+    private Coins payment;
+
+    @Setup(Level.Iteration)
+    public void createRegister() {
+        VendingMachine machine = BenchmarkMachines.create("26x9", 1_000_000_000);
+        symbols = BenchmarkMachines.symbols(machine);
+        CoinInventory inventory = new CoinInventory(DENOMINATIONS, COINS_PER_DENOMINATION);
+        register = new CashRegister(machine, inventory, new ChangeMaker(inventory, 500, memoizedAmounts));
+        payment = inventory.coins().coin(500).build();
+    }
+
+    /**
+     * Stan każdego wątku benchmarku - kursor wskazujący kolejną tackę, z której wątek kupuje.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next;
+
+        String nextSymbol(String[] symbols) {
+            int index = next++;
+            if (next == symbols.length) {
+                next = 0;
+            }
+            return symbols[index];
+        }
+    }
+
+    @Benchmark
+    public Sale buySingleThreaded(Cursor cursor) {
+        return register.buy(cursor.nextSymbol(symbols), payment);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Sale buyMultiThreaded(Cursor cursor) {
+        return register.buy(cursor.nextSymbol(symbols), payment);
+    }
+}
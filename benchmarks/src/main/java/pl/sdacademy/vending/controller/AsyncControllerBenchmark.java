@@ -0,0 +1,127 @@
+package pl.sdacademy.vending.controller;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import pl.sdacademy.vending.model.BenchmarkMachines;
+import pl.sdacademy.vending.model.Product;
+import pl.sdacademy.vending.model.VendingMachine;
+import pl.sdacademy.vending.util.Configuration;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Porównanie kontrolera blokującego ({@link CustomerOperationController}) z asynchronicznym
+ * ({@link AsyncCustomerOperationController}) przy wielu jednoczesnych sesjach klientów. Jedno wywołanie benchmarku to
+ * runda, w której każda z sesji kupuje jeden produkt - tryb SampleTime raportuje percentyle (w tym p99) czasu rundy.
+ * <br>
+ * Każdy zakup wywołuje słuchacza, który blokuje wątek na listenerDelayMicros - tak zachowuje się dziennik zakupów
+ * czekający na trwały zapis. Kontroler blokujący potrzebuje osobnego wątku systemowego dla każdej sesji, kontroler
+ * asynchroniczny obsługuje wszystkie sesje swoim executorem ("bounded" - pula wątków, "virtual" - wątki wirtualne,
+ * dostępne od Javy 21; na starszej Javie "virtual" również używa puli).
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AsyncControllerBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int sessions;
+
+    @Param({"blocking", "bounded", "virtual"})
+    public String controllerType;
+
+    @Param({"100"})
+    public long listenerDelayMicros;
+
+    private String[] symbols;
+    private CustomerOperationController blockingController;
+    private ExecutorService sessionThreads;
+    private AsyncCustomerOperationController asyncController;
+
+    @Setup
+    public void createControllers() {
+        VendingMachine machine = BenchmarkMachines.create("26x9", 1_000_000_000);
+        symbols = BenchmarkMachines.symbols(machine);
+        long listenerDelayNanos = TimeUnit.MICROSECONDS.toNanos(listenerDelayMicros);
+        machine.addPurchaseListener((tray, product) -> LockSupport.parkNanos(listenerDelayNanos));
+        if ("blocking".equals(controllerType)) {
+            blockingController = new CustomerOperationController(machine);
+            // sesja kontrolera blokującego zajmuje wątek systemowy na cały czas zakupu
+            sessionThreads = Executors.newFixedThreadPool(sessions);
+        } else {
+            asyncController = new AsyncCustomerOperationController(machine, configuration());
+        }
+    }
+
+    @TearDown
+    public void closeControllers() {
+        if (sessionThreads != null) {
+            sessionThreads.shutdownNow();
+        }
+        if (asyncController != null) {
+            asyncController.close();
+        }
+    }
+
+    @Benchmark
+    public int purchaseRound() {
+        CompletableFuture<Optional<Product>>[] purchases = newPurchases(sessions);
+        for (int session = 0; session < sessions; session++) {
+            String symbol = symbols[session % symbols.length];
+            if (blockingController != null) {
+                purchases[session] = CompletableFuture.supplyAsync(() -> blockingController.buyProduct(symbol),
+                        sessionThreads);
+            } else {
+                purchases[session] = asyncController.buyProduct(symbol);
+            }
+        }
+        int bought = 0;
+        for (CompletableFuture<Optional<Product>> purchase : purchases) {
+            if (purchase.join().isPresent()) {
+                bought++;
+            }
+        }
+        return bought;
+    }
+
+    /**
+     * Tworzy tablicę wyników zakupów - Java nie pozwala utworzyć tablicy typu generycznego wprost.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static CompletableFuture<Optional<Product>>[] newPurchases(int length) {
+        return new CompletableFuture[length];
+    }
+
+    private Configuration configuration() {
+        return new Configuration() {
+            @Override
+            public String getProperty(String propertyName, String defaultValue) {
+                return "controller.async.executor".equals(propertyName) ? controllerType : defaultValue;
+            }
+
+            @Override
+            public Long getProperty(String propertyName, Long defaultValue) {
+                // kolejka puli musi pomieścić zakupy wszystkich sesji z jednej rundy
+                return "controller.async.queue.size".equals(propertyName) ? (long) sessions : defaultValue;
+            }
+        };
+    }
+}
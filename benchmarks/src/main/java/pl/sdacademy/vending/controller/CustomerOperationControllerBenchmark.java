@@ -0,0 +1,64 @@
+package pl.sdacademy.vending.controller;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import pl.sdacademy.vending.model.BenchmarkMachines;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark wyświetlania automatu przez {@link CustomerOperationController#printMachine()}. Standardowe wyjście jest na
+ * czas pomiaru zastępowane strumieniem, który odrzuca dane - mierzymy koszt budowania i wypisywania tekstu, a nie
+ * szybkość terminala.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CustomerOperationControllerBenchmark {
+
+    @Param({"6x4", "26x9"})
+    public String gridSize;
+
+    private CustomerOperationController controller;
+    private PrintStream originalOut;
+
+    @Setup
+    public void createController() {
+        controller = new CustomerOperationController(BenchmarkMachines.create(gridSize, 10));
+        originalOut = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        }));
+    }
+
+    @TearDown
+    public void restoreOut() {
+        System.setOut(originalOut);
+    }
+
+    @Benchmark
+    public void printMachine() {
+        controller.printMachine();
+    }
+}
@@ -0,0 +1,82 @@
+package pl.sdacademy.vending.events;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import pl.sdacademy.vending.model.Product;
+import pl.sdacademy.vending.model.Tray;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark kosztu publikacji zdarzenia zakupu na {@link PurchaseEventBus} - czyli tego, o ile szyna wydłuża ścieżkę
+ * kupującego - dla różnych strategii czekania, zasad przepełnienia i ilości odbiorców, z jednym i czterema
+ * publikującymi. Odbiorcy tylko odczytują pola zdarzenia. Brak alokacji przy publikacji można sprawdzić profilerem
+ * "-prof gc" (gc.alloc.rate.norm bliskie 0 B/op).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PurchaseEventBusBenchmark {
+    private static final Tray TRAY = Tray.builder("A1").build();
+    private static final Product PRODUCT = new Product("Cola");
+
+    @Param({"SLEEPING", "BLOCKING"})
+    public WaitStrategy waitStrategy;
+
+    @Param({"DROP", "BLOCK", "SAMPLE"})
+    public OverflowPolicy overflowPolicy;
+
+    @Param({"1", "3"})
+    public int consumers;
+
+    private PurchaseEventBus bus;
+
+    @Setup(Level.Iteration)
+    public void createBus() {
+        PurchaseEventBus.Builder builder = PurchaseEventBus.builder()
+                .capacity(16 * 1024)
+                .waitStrategy(waitStrategy)
+                .overflowPolicy(overflowPolicy);
+        for (int consumer = 0; consumer < consumers; consumer++) {
+            Blackhole blackhole = new Blackhole(
+                    "Today's password is swordfish. I understand instantiating Blackholes directly is dangerous.");
+            builder.handler("consumer-" + consumer, (event, endOfBatch) -> {
+                blackhole.consume(event.product());
+                blackhole.consume(event.sequence());
+            });
+        }
+        bus = builder.build();
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeBus() {
+        bus.close();
+    }
+
+    @Benchmark
+    public boolean publish() {
+        return bus.publish("machine-0", TRAY, PRODUCT);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean publishMultiThreaded() {
+        return bus.publish("machine-0", TRAY, PRODUCT);
+    }
+}
@@ -0,0 +1,100 @@
+package pl.sdacademy.vending.metrics;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import pl.sdacademy.vending.controller.CustomerOperationController;
+import pl.sdacademy.vending.model.BenchmarkMachines;
+import pl.sdacademy.vending.model.Product;
+import pl.sdacademy.vending.model.VendingMachine;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark narzutu metryk: zakup w automacie (liczniki tacek) oraz zakup przez kontroler (liczniki i pomiar czasu)
+ * z włączonymi i wyłączonymi metrykami, w jednym i w wielu wątkach. Osobno mierzony jest koszt utworzenia migawki
+ * i zapisania jej w formacie Prometheusa - wykonywany przy każdym odczycie metryk.
+ * <br>
+ * Tacki mają praktycznie nieskończony zapas, więc każdy zakup wydaje produkt.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MetricsOverheadBenchmark {
+
+    @Param({"true", "false"})
+    public boolean metricsEnabled;
+
+    private VendingMachine machine;
+    private CustomerOperationController controller;
+    private String[] symbols;
+    private StringBuilder prometheusText;
+
+    @Setup(Level.Iteration)
+    public void createMachine() {
+        machine = BenchmarkMachines.create("6x4", 1_000_000_000);
+        machine.metrics().setEnabled(metricsEnabled);
+        controller = new CustomerOperationController(machine);
+        symbols = BenchmarkMachines.symbols(machine);
+        prometheusText = new StringBuilder(16 * 1024);
+    }
+
+    /**
+     * Stan każdego wątku benchmarku - kursor wskazujący kolejną tackę, z której wątek kupuje.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next;
+
+        String nextSymbol(String[] symbols) {
+            int index = next++;
+            if (next == symbols.length) {
+                next = 0;
+            }
+            return symbols[index];
+        }
+    }
+
+    @Benchmark
+    public Optional<Product> buyProduct(Cursor cursor) {
+        return machine.buyProductWithSymbol(cursor.nextSymbol(symbols));
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Optional<Product> buyProductMultiThreaded(Cursor cursor) {
+        return machine.buyProductWithSymbol(cursor.nextSymbol(symbols));
+    }
+
+    @Benchmark
+    public Optional<Product> buyProductThroughController(Cursor cursor) {
+        return controller.buyProduct(cursor.nextSymbol(symbols));
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Optional<Product> buyProductThroughControllerMultiThreaded(Cursor cursor) {
+        return controller.buyProduct(cursor.nextSymbol(symbols));
+    }
+
+    @Benchmark
+    public int writePrometheusSnapshot() {
+        prometheusText.setLength(0);
+        machine.metrics().snapshot().writePrometheus("machine-0", prometheusText);
+        return prometheusText.length();
+    }
+}
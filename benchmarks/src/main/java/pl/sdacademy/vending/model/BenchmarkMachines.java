@@ -0,0 +1,67 @@
+package pl.sdacademy.vending.model;
+
+import pl.sdacademy.vending.util.Configuration;
+
+/**
+ * Pomocnicza klasa benchmarków tworząca automaty o zadanej wielkości, w których każda pozycja posiada tackę z zadaną
+ * ilością identycznych produktów. W przeciwieństwie do {@link RandomTrayFactory} wynik nie zależy od losowania, więc
+ * kolejne uruchomienia benchmarków mierzą dokładnie ten sam automat.
+ */
+public class BenchmarkMachines {
+
+    private BenchmarkMachines() {
+    }
+
+    /**
+     * @param gridSize wielkość automatu w postaci "WIERSZExKOLUMNY", np. "6x4"
+     * @param stockDepth ilość produktów na każdej tacce
+     * @return automat wypełniony tackami
+     */
+    public static VendingMachine create(String gridSize, int stockDepth) {
+        String[] dimensions = gridSize.split("x");
+        long rows = Long.parseLong(dimensions[0]);
+        long cols = Long.parseLong(dimensions[1]);
+        Configuration configuration = new Configuration() {
+            @Override
+            public String getProperty(String propertyName, String defaultValue) {
+                return defaultValue;
+            }
+
+            @Override
+            public Long getProperty(String propertyName, Long defaultValue) {
+                if ("machine.size.rows".equals(propertyName)) {
+                    return rows;
+                } else if ("machine.size.cols".equals(propertyName)) {
+                    return cols;
+                }
+                return defaultValue;
+            }
+        };
+        return new VendingMachine(configuration, (row, col) -> {
+            String symbol = symbolFor(row, col);
+            return Tray.builder(symbol)
+                    .price(100L + row * 10 + col)
+                    .products(new Product("Product " + symbol), stockDepth)
+                    .build();
+        });
+    }
+
+    /**
+     * @return symbole wszystkich tacek automatu, wiersz po wierszu
+     */
+    public static String[] symbols(VendingMachine machine) {
+        int rows = machine.rowsSize().intValue();
+        int cols = machine.colsSize().intValue();
+        String[] symbols = new String[rows * cols];
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                symbols[row * cols + col] = symbolFor(row, col);
+            }
+        }
+        return symbols;
+    }
+
+    private static String symbolFor(int row, int col) {
+        return "" + (char) ('A' + row) + (col + 1);
+    }
+}
@@ -0,0 +1,114 @@
+package pl.sdacademy.vending.model;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarki gorących ścieżek {@link VendingMachine}: wyszukiwania tacki po symbolu oraz zakupu produktu - w jednym
+ * wątku oraz w wielu wątkach jednocześnie. Automat jest tworzony od nowa przed każdą iteracją pomiaru.
+ * <br>
+ * Parametr stockDepth określa ilość produktów na każdej tacce. Przy małej ilości tacki szybko pustoszeją i większość
+ * zakupów przechodzi ścieżką "brak produktu"; przy dużej każdy zakup wydaje produkt.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class VendingMachineBenchmark {
+    private static final int BASKET_ITEMS = 4;
+    private static final int BASKET_QUANTITY = 3;
+
+    @Param({"6x4", "26x9"})
+    public String gridSize;
+
+    @Param({"1", "1000", "1000000000"})
+    public int stockDepth;
+
+    private VendingMachine machine;
+    private String[] symbols;
+    private Order basket;
+
+    @Setup(Level.Iteration)
+    public void createMachine() {
+        machine = BenchmarkMachines.create(gridSize, stockDepth);
+        symbols = BenchmarkMachines.symbols(machine);
+        // koszyk 12 sztuk z 4 tacek - zamówienie firmowe w rodzaju "3x A1, 3x A2, ..."
+        Order.Builder basketBuilder = Order.builder();
+        for (int item = 0; item < BASKET_ITEMS; item++) {
+            basketBuilder.item(symbols[item % symbols.length], BASKET_QUANTITY);
+        }
+        basket = basketBuilder.build();
+    }
+
+    /**
+     * Stan każdego wątku benchmarku - kursor wskazujący kolejną tackę, z której wątek kupuje.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next;
+
+        String nextSymbol(String[] symbols) {
+            int index = next++;
+            if (next == symbols.length) {
+                next = 0;
+            }
+            return symbols[index];
+        }
+    }
+
+    @Benchmark
+    public Optional<Tray> getTrayForSymbol(Cursor cursor) {
+        return machine.getTrayForSymbol(cursor.nextSymbol(symbols));
+    }
+
+    @Benchmark
+    public Optional<Product> buyProductSingleThreaded(Cursor cursor) {
+        return machine.buyProductWithSymbol(cursor.nextSymbol(symbols));
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Optional<Product> buyProductMultiThreaded(Cursor cursor) {
+        return machine.buyProductWithSymbol(cursor.nextSymbol(symbols));
+    }
+
+    /**
+     * Zakup koszyka jednym zamówieniem - wszystko albo nic.
+     */
+    @Benchmark
+    public Optional<List<Product>> buyBasketAsOrder() {
+        return machine.buyProducts(basket);
+    }
+
+    /**
+     * Zakup tego samego koszyka pętlą pojedynczych zakupów - dotychczasowy sposób, bez gwarancji "wszystko albo nic".
+     */
+    @Benchmark
+    public List<Product> buyBasketInLoop() {
+        List<Product> bought = new ArrayList<>(basket.totalQuantity());
+        for (int item = 0; item < basket.itemsCount(); item++) {
+            for (int unit = 0; unit < basket.quantity(item); unit++) {
+                machine.buyProductWithSymbol(basket.symbol(item)).ifPresent(bought::add);
+            }
+        }
+        return bought;
+    }
+}
@@ -0,0 +1,104 @@
+package pl.sdacademy.vending.persistence;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import pl.sdacademy.vending.model.BenchmarkMachines;
+import pl.sdacademy.vending.model.Product;
+import pl.sdacademy.vending.model.VendingMachine;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark przepustowości zakupów z dziennikiem {@link PurchaseJournal}: bez dziennika, z dziennikiem, na którego
+ * zapis kupujący nie czeka, oraz z dziennikiem, w którym kupujący czeka na zapis zakupu na dysk (group commit).
+ * Zakupy są wykonywane w jednym i w szesnastu wątkach - przy wielu kupujących jeden zapis na dysk obejmuje zakupy
+ * wszystkich czekających.
+ * <br>
+ * Tacki mają praktycznie nieskończony zapas, więc każdy zakup wydaje produkt i trafia do dziennika.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PurchaseJournalBenchmark {
+
+    /**
+     * Sposób zapisywania zakupów.
+     */
+    public enum Durability {
+        NO_JOURNAL, NO_WAIT, WAIT
+    }
+
+    @Param({"NO_JOURNAL", "NO_WAIT", "WAIT"})
+    public Durability durability;
+
+    private VendingMachine machine;
+    private String[] symbols;
+    private Path journalFile;
+    private PurchaseJournal journal;
+
+    @Setup(Level.Iteration)
+    public void createMachine() throws IOException {
+        machine = BenchmarkMachines.create("6x4", 1_000_000_000);
+        symbols = BenchmarkMachines.symbols(machine);
+        if (durability != Durability.NO_JOURNAL) {
+            journalFile = Files.createTempFile("purchase-journal", ".log");
+            Files.delete(journalFile);
+            journal = PurchaseJournal.open(journalFile, machine, 2, 512, durability == Durability.WAIT, 0);
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeJournal() throws IOException {
+        if (journal != null) {
+            journal.close();
+            journal = null;
+            Files.delete(journalFile);
+        }
+    }
+
+    /**
+     * Stan każdego wątku benchmarku - kursor wskazujący kolejną tackę, z której wątek kupuje.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next;
+
+        String nextSymbol(String[] symbols) {
+            int index = next++;
+            if (next == symbols.length) {
+                next = 0;
+            }
+            return symbols[index];
+        }
+    }
+
+    @Benchmark
+    public Optional<Product> buyProduct(Cursor cursor) {
+        return machine.buyProductWithSymbol(cursor.nextSymbol(symbols));
+    }
+
+    @Benchmark
+    @Threads(16)
+    public Optional<Product> buyProductMultiThreaded(Cursor cursor) {
+        return machine.buyProductWithSymbol(cursor.nextSymbol(symbols));
+    }
+}
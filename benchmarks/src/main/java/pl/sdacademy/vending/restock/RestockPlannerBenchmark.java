@@ -0,0 +1,69 @@
+package pl.sdacademy.vending.restock;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import pl.sdacademy.vending.model.BenchmarkMachines;
+import pl.sdacademy.vending.model.VendingMachine;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark planowania uzupełnień floty z ok. 50 tysiącami tacek (214 automatów 26x9) - w jednym wątku i w puli
+ * fork-join. Co druga tacka ma historię sprzedaży o losowym tempie, więc część z nich trafia do planu.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RestockPlannerBenchmark {
+    private static final int MACHINES_COUNT = 214;
+
+    @Param({"1", "0"})
+    public int parallelism;
+
+    private final List<String> machineIds = new ArrayList<>();
+    private final List<VendingMachine> machines = new ArrayList<>();
+    private RestockPlanner planner;
+
+    @Setup
+    public void createFleet() {
+        long now = 1_000_000_000L;
+        DepletionTracker tracker = new DepletionTracker(Duration.ofHours(6), () -> now);
+        SplittableRandom random = new SplittableRandom(42);
+        for (int machine = 0; machine < MACHINES_COUNT; machine++) {
+            String machineId = "machine-" + machine;
+            machineIds.add(machineId);
+            machines.add(BenchmarkMachines.create("26x9", 1 + random.nextInt(9)));
+            for (String symbol : BenchmarkMachines.symbols(machines.get(machine))) {
+                if (random.nextBoolean()) {
+                    for (int purchase = random.nextInt(4); purchase >= 0; purchase--) {
+                        tracker.record(machineId, symbol, "Product " + symbol);
+                    }
+                }
+            }
+        }
+        ForkJoinPool pool = parallelism == 0 ? ForkJoinPool.commonPool() : new ForkJoinPool(parallelism);
+        planner = RestockPlanner.builder(tracker).pool(pool).build();
+    }
+
+    @Benchmark
+    public RestockPlan planFleet() {
+        return planner.plan(machineIds, machines);
+    }
+}
@@ -0,0 +1,67 @@
+package pl.sdacademy.vending.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarki metod formatujących z {@link StringUtils}, wywoływanych dla każdej komórki przy wyświetlaniu automatu -
+ * zarówno wersji zwracających String, jak i wersji zapisujących do bufora.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StringUtilsBenchmark {
+
+    @Param({"A1", "Product A1", "Very long product name"})
+    public String text;
+
+    @Param({"123", "1234567890123"})
+    public long money;
+
+    private final char[] buffer = new char[64];
+
+    @Benchmark
+    public String adjustText() {
+        return StringUtils.adjustText(text, 12);
+    }
+
+    @Benchmark
+    public String multiplyText() {
+        return StringUtils.multiplyText("-", 12);
+    }
+
+    @Benchmark
+    public String formatMoney() {
+        return StringUtils.formatMoney(money);
+    }
+
+    @Benchmark
+    public char[] adjustTextIntoBuffer() {
+        StringUtils.adjustText(text, 12, buffer, 0);
+        return buffer;
+    }
+
+    @Benchmark
+    public char[] multiplyTextIntoBuffer() {
+        StringUtils.multiplyText("-", 12, buffer, 0);
+        return buffer;
+    }
+
+    @Benchmark
+    public int formatMoneyIntoBuffer() {
+        return StringUtils.formatMoney(money, buffer, 0);
+    }
+}
@@ -1,11 +1,40 @@
 package pl.sdacademy.vending;
 
+import pl.sdacademy.vending.cash.CashRegister;
+import pl.sdacademy.vending.cash.Coins;
+import pl.sdacademy.vending.cash.Sale;
+import pl.sdacademy.vending.controller.BatchCommandRunner;
+import pl.sdacademy.vending.controller.CommandProcessor;
 import pl.sdacademy.vending.controller.CustomerOperationController;
+import pl.sdacademy.vending.fleet.Fleet;
+import pl.sdacademy.vending.load.LoadGenerator;
+import pl.sdacademy.vending.load.LoadReport;
 import pl.sdacademy.vending.model.Product;
+import pl.sdacademy.vending.model.RandomTrayFactory;
+import pl.sdacademy.vending.model.TrayFactory;
 import pl.sdacademy.vending.model.VendingMachine;
+import pl.sdacademy.vending.network.VendingServer;
+import pl.sdacademy.vending.persistence.MappedInventoryStore;
 import pl.sdacademy.vending.util.Configuration;
+import pl.sdacademy.vending.util.ConfigurationSnapshot;
 import pl.sdacademy.vending.util.PropertiesFileConfiguration;
+import pl.sdacademy.vending.util.ReloadableConfiguration;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
 import java.util.Optional;
 import java.util.Scanner;
 
@@ -13,28 +42,119 @@ import java.util.Scanner;
  * Klasa, która zarządza zleżnościami w naszym projekcie, oraz udostępnia główną metodę startującą aplikację.
  */
 public class Application {
-    // pole do przechowywania głównego kontrolera
-    private final CustomerOperationController customerOperationController;
-    private final VendingMachine vendingMachine;
+    // pole do przechowywania głównego kontrolera - automat i kontroler są podmieniane po zmianie wielkości automatu
+    // w przeładowanej konfiguracji
+    private volatile CustomerOperationController customerOperationController;
+    private volatile VendingMachine vendingMachine;
+    /**
+     * Sprzedaż za gotówkę - po zmianie wielkości automatu jest przenoszona do nowego automatu razem z kasą.
+     */
+    private volatile CashRegister cashRegister;
+    private final Configuration configuration;
+    /**
+     * Jeden Scanner dla całej sesji - tworzenie nowego przy każdym pytaniu gubiłoby dane, które poprzedni Scanner
+     * zdążył już wczytać do swojego bufora (np. przy poleceniach przekazanych przez potok).
+     */
+    private final Scanner input = new Scanner(System.in);
 
     /**
      * Kostruktor dba o ustawienie wszystkich wymaganych zależności w klasach projektu.
      */
     public Application() {
         // najpierw tworzymy klasy, które nie posiadają żadnych zależności - w tym przypadku konfigurację.
-        Configuration configuration = PropertiesFileConfiguration.getInstance();
+        configuration = createConfiguration();
         // Mając konfigurację aplikacji, możemy utworzyć VendingMachine, który jej wymagał. Wcześniej nie było to możliwe,
         // ponieważ najepierw trzeba było stworzyć wymagany obiekt
-        vendingMachine = new VendingMachine(configuration);
+        vendingMachine = new VendingMachine(configuration, createTrayFactory(configuration));
+        // kasa automatu (nominały i początkowe monety) jest odczytywana z kluczy "cash.*" konfiguracji
+        cashRegister = CashRegister.fromConfiguration(vendingMachine, configuration);
         // po utworzeniu VendingMachine, możemy przekazać go do konstruktora CustomerOperationController, tworząc tym samym
         // instancję głównego kontrolera. Zapisujemy tę instancję do pola w klasie.
-        customerOperationController = new CustomerOperationController(vendingMachine);
+        customerOperationController = new CustomerOperationController(vendingMachine, cashRegister);
+        if (configuration instanceof ReloadableConfiguration) {
+            ((ReloadableConfiguration) configuration).addListener(this::configurationChanged);
+        }
+    }
+
+    /**
+     * Jeżeli w application.properties wskazano zewnętrzny plik konfiguracji ("configuration.file"), to wartości z tego
+     * pliku nadpisują wartości z application.properties, a konfiguracja jest przeładowywana po każdej zmianie pliku.
+     */
+    private Configuration createConfiguration() {
+        PropertiesFileConfiguration defaults = PropertiesFileConfiguration.getInstance();
+        String configurationFile = defaults.getProperty("configuration.file", "");
+        if (configurationFile.isEmpty()) {
+            return defaults;
+        }
+        try {
+            return ReloadableConfiguration.watch(Paths.get(configurationFile), defaults.snapshot());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read configuration file " + configurationFile, e);
+        }
+    }
+
+    /**
+     * Po zmianie wielkości automatu w przeładowanej konfiguracji tworzy automat o nowej wielkości, który przejmuje
+     * tacki dotychczasowego automatu (nowe pozycje są losowane), i podmienia go razem z kontrolerem. Automatu
+     * z magazynem w pliku nie da się przeskalować - magazyn ma stałą wielkość.
+     */
+    private void configurationChanged(ConfigurationSnapshot previous, ConfigurationSnapshot current) {
+        if (!current.differs(previous, "machine.size.rows") && !current.differs(previous, "machine.size.cols")) {
+            return;
+        }
+        if (!current.getProperty("machine.inventory.file", "").isEmpty()) {
+            System.err.println("Machine size changed, but inventory store has a fixed size - restart to resize");
+            return;
+        }
+        VendingMachine resizedMachine = vendingMachine.resized(current, RandomTrayFactory.fromConfiguration(current));
+        CashRegister resizedCashRegister = cashRegister.forMachine(resizedMachine);
+        vendingMachine = resizedMachine;
+        cashRegister = resizedCashRegister;
+        customerOperationController = new CustomerOperationController(resizedMachine, resizedCashRegister);
+    }
+
+    /**
+     * Jeżeli w konfiguracji wskazano plik magazynu ("machine.inventory.file"), to tacki automatu są odczytywane z tego
+     * pliku (a przy pierwszym uruchomieniu losowane i do niego zapisywane). W przeciwnym wypadku tacki są losowane -
+     * odtwarzalnie, jeżeli podano ziarno losowania ("machine.seed").
+     */
+    private TrayFactory createTrayFactory(Configuration configuration) {
+        String inventoryFile = configuration.getProperty("machine.inventory.file", "");
+        if (inventoryFile.isEmpty()) {
+            return RandomTrayFactory.fromConfiguration(configuration);
+        }
+        try {
+            return MappedInventoryStore.open(Paths.get(inventoryFile),
+                    configuration.getProperty("machine.size.rows", 6L).intValue(),
+                    configuration.getProperty("machine.size.cols", 4L).intValue(),
+                    RandomTrayFactory.fromConfiguration(configuration));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open inventory store " + inventoryFile, e);
+        }
+    }
+
+    /**
+     * Jeżeli w konfiguracji podano port ("network.port"), to automat jest dodatkowo udostępniany przez sieć.
+     */
+    private Optional<VendingServer> startServer() {
+        if (configuration.getProperty("network.port", -1L) < 0) {
+            return Optional.empty();
+        }
+        try {
+            VendingServer server = VendingServer.start(new CommandProcessor(() -> customerOperationController),
+                    configuration);
+            System.out.println("Listening on port " + server.port());
+            return Optional.of(server);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot start vending server", e);
+        }
     }
 
     /**
      * Metoda uruchamiająca Automat Sprzedający.
      */
     public void start() {
+        Optional<VendingServer> server = startServer();
         int userSelection = -1;
         do {
             customerOperationController.printMachine();
@@ -43,13 +163,16 @@ public class Application {
             switch (userSelection) {
                 case 1:
                     System.out.print("Select product: ");
-                    String selectedSymbol = new Scanner(System.in).nextLine();
+                    String selectedSymbol = input.nextLine();
                     Optional<Product> boughtProduct = customerOperationController.buyProduct(selectedSymbol);
                     String productName = boughtProduct
                             .map(Product::getName)
                             .orElse("Sold out");
                     System.out.println(productName);
                     break;
+                case 2:
+                    buyWithCoins();
+                    break;
                 case 9:
                     System.out.println("Bye");
                     break;
@@ -63,16 +186,105 @@ public class Application {
             // jeżeli użytkownik wybrał dowolną inną opcję (nieistniejącą)
             //      to wyświetl komunikat błednego wyboru
         } while (userSelection != 9);
+        if (server.isPresent()) {
+            try {
+                server.get().close();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot stop vending server", e);
+            }
+        }
+    }
+
+    /**
+     * Uruchamia automat w trybie wsadowym: polecenia protokołu {@link CommandProcessor} są wczytywane z pliku (lub ze
+     * standardowego wejścia, jeżeli zamiast nazwy pliku podano "-"), a wyniki - po jednej linii na polecenie - są
+     * wypisywane na standardowe wyjście. Automat nie jest wyświetlany. Na koniec na standardowe wyjście błędów
+     * wypisywana jest ilość wykonanych poleceń oraz ilość poleceń na sekundę.
+     * @param commandsFile ścieżka do pliku z poleceniami lub "-"
+     */
+    public void startBatch(String commandsFile) {
+        BatchCommandRunner runner = new BatchCommandRunner(new CommandProcessor(customerOperationController));
+        // standardowe wyjście jest używane bezpośrednio, bez System.out, który opróżnia bufor po każdej linii
+        Writer results = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(FileDescriptor.out),
+                StandardCharsets.UTF_8), 1 << 16);
+        try (BufferedReader commands = "-".equals(commandsFile)
+                ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8), 1 << 16)
+                : Files.newBufferedReader(Paths.get(commandsFile), StandardCharsets.UTF_8)) {
+            long startTime = System.nanoTime();
+            long executedCommands = runner.run(commands, results);
+            long elapsedNanos = Math.max(System.nanoTime() - startTime, 1);
+            System.err.printf(Locale.ROOT, "%d commands in %.3f s (%.0f commands/s)%n", executedCommands,
+                    elapsedNanos / 1e9, executedCommands * 1e9 / elapsedNanos);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot replay commands from " + commandsFile, e);
+        }
+    }
+
+    /**
+     * Uruchamia generator obciążenia ({@link LoadGenerator}) skonfigurowany kluczami "load.*" i wypisuje raport.
+     * Jeżeli "load.target" ma wartość "fleet", to klienci kupują we flocie utworzonej z konfiguracji - w przeciwnym
+     * wypadku w automacie aplikacji. Jeżeli podano "load.report.csv", to wynik jest dopisywany do tego pliku jako
+     * kolejny wiersz CSV.
+     */
+    public void startLoad() {
+        LoadGenerator.Builder generator = LoadGenerator.builder(configuration);
+        LoadReport report;
+        if ("fleet".equals(configuration.getProperty("load.target", "machine"))) {
+            try (Fleet fleet = Fleet.fromConfiguration(configuration)) {
+                report = generator.fleet(fleet).build().run();
+            }
+        } else {
+            report = generator.machine(vendingMachine).build().run();
+        }
+        System.out.println(report);
+        String csvFile = configuration.getProperty("load.report.csv", "");
+        if (!csvFile.isEmpty()) {
+            Path csvPath = Paths.get(csvFile);
+            try {
+                if (!Files.exists(csvPath)) {
+                    Files.write(csvPath, (LoadReport.csvHeader() + System.lineSeparator())
+                            .getBytes(StandardCharsets.UTF_8));
+                }
+                Files.write(csvPath, (report.toCsvRow() + System.lineSeparator()).getBytes(StandardCharsets.UTF_8),
+                        StandardOpenOption.APPEND);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot write load report to " + csvFile, e);
+            }
+        }
+    }
+
+    /**
+     * Kupno produktu za gotówkę - kupujący podaje symbol tacki i wrzucane monety, a otrzymuje produkt i resztę albo
+     * zwrot całej zapłaty.
+     */
+    private void buyWithCoins() {
+        System.out.print("Select product: ");
+        String selectedSymbol = input.nextLine().trim();
+        System.out.print("Insert coins (e.g. 200,50): ");
+        Coins payment;
+        try {
+            payment = customerOperationController.payment(input.nextLine());
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            return;
+        }
+        Sale sale = customerOperationController.buyProduct(selectedSymbol, payment);
+        if (sale.isSold()) {
+            System.out.println(sale.product().get().getName() + ", change: " + sale.returnedCoins());
+        } else {
+            System.out.println(sale.status() + ", returned: " + sale.returnedCoins());
+        }
     }
 
     private void printMenu() {
         System.out.println("1. Buy product");
+        System.out.println("2. Buy product with coins");
         System.out.println("9. Exit");
     }
 
     private int getUserInput() {
         System.out.print("Your selection: ");
-        String userText = new Scanner(System.in).nextLine();
+        String userText = input.nextLine();
         try {
             int userNumber = Integer.parseInt(userText);
             return userNumber;
@@ -4,6 +4,14 @@ public class Main {
 
     public static void main(String[] args) {
         // wytworzenie obiektów, ustawienie zależności oraz uruchomienie automatu.
-        new Application().start();
+        // "--batch PLIK" (lub "--batch -" dla standardowego wejścia) uruchamia automat w trybie wsadowym
+        // "--load" uruchamia generator obciążenia skonfigurowany w pliku properties
+        if (args.length > 0 && "--batch".equals(args[0])) {
+            new Application().startBatch(args.length > 1 ? args[1] : "-");
+        } else if (args.length > 0 && "--load".equals(args[0])) {
+            new Application().startLoad();
+        } else {
+            new Application().start();
+        }
     }
 }
@@ -0,0 +1,88 @@
+package pl.sdacademy.vending.analytics;
+
+import java.util.Arrays;
+
+/**
+ * Szkic Count-Min - przybliżony licznik wystąpień kluczy o stałym rozmiarze, niezależnym od ilości różnych kluczy.
+ * Każdy klucz jest liczony w jednej komórce każdego z wierszy (wybieranej inną funkcją skrótu), a oszacowaniem jest
+ * najmniejsza z tych komórek. Oszacowanie nigdy nie jest mniejsze od prawdziwej wartości, a przekracza ją najwyżej
+ * o około e / szerokość sumy wszystkich zliczeń (z prawdopodobieństwem 1 - e^-głębokość).
+ * <br>
+ * Od szkicu można odjąć inny szkic o tych samych wymiarach - okno przesuwne utrzymuje w ten sposób sumę swoich
+ * przedziałów bez przeliczania jej przy każdym zapytaniu. Klasa nie jest bezpieczna wielowątkowo.
+ */
+class CountMinSketch {
+    private final int[] counters;
+    private final int depth;
+    private final int widthMask;
+    private final int widthShift;
+
+    /**
+     * @param width ilość komórek w wierszu - potęga dwójki
+     * @param depth ilość wierszy (funkcji skrótu)
+     */
+    CountMinSketch(int width, int depth) {
+        if (width < 1 || Integer.bitCount(width) != 1) {
+            throw new IllegalArgumentException("Sketch width must be a power of two, was " + width);
+        }
+        this.counters = new int[width * depth];
+        this.depth = depth;
+        this.widthMask = width - 1;
+        this.widthShift = Integer.numberOfTrailingZeros(width);
+    }
+
+    /**
+     * @param key klucz
+     * @param count ilość wystąpień do dodania
+     */
+    void add(String key, int count) {
+        int hash = mix(key.hashCode());
+        int step = mix(hash) | 1;
+        for (int row = 0; row < depth; row++) {
+            counters[(row << widthShift) + (hash & widthMask)] += count;
+            hash += step;
+        }
+    }
+
+    /**
+     * @param key klucz
+     * @return oszacowanie ilości wystąpień klucza - nie mniejsze niż prawdziwa ilość
+     */
+    int estimate(String key) {
+        int hash = mix(key.hashCode());
+        int step = mix(hash) | 1;
+        int estimate = Integer.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters[(row << widthShift) + (hash & widthMask)]);
+            hash += step;
+        }
+        return estimate;
+    }
+
+    /**
+     * Odejmuje od tego szkicu wszystkie zliczenia innego szkicu o tych samych wymiarach.
+     * @param other odejmowany szkic
+     */
+    void subtract(CountMinSketch other) {
+        for (int index = 0; index < counters.length; index++) {
+            counters[index] -= other.counters[index];
+        }
+    }
+
+    void clear() {
+        Arrays.fill(counters, 0);
+    }
+
+    /**
+     * Funkcja mieszająca z MurmurHash3 - rozprasza bity słabych skrótów (np. krótkich napisów), aby kolejne wiersze
+     * szkicu wybierały niezależne komórki.
+     */
+    private static int mix(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+}
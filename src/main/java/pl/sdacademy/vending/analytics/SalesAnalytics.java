@@ -0,0 +1,257 @@
+package pl.sdacademy.vending.analytics;
+
+import pl.sdacademy.vending.events.PurchaseEvent;
+import pl.sdacademy.vending.events.PurchaseEventHandler;
+import pl.sdacademy.vending.model.PurchaseListener;
+import pl.sdacademy.vending.util.Configuration;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Bieżąca analityka sprzedaży: najlepiej sprzedające się produkty i tacki w oknie przesuwnym (domyślnie ostatnie
+ * 15 minut) - osobno dla każdego automatu oraz dla całej floty.
+ * <br>
+ * Zliczenia są przybliżone - każdy automat ma stałej wielkości szkice ({@link CountMinSketch} i {@link SpaceSaving})
+ * dla symboli tacek i nazw produktów, niezależnie od ilości sprzedaży i różnych produktów. Pamięć rośnie więc tylko
+ * z ilością automatów, a koszt zliczenia i zapytań nie zależy od ilości danych. Ilości sprzedaży mogą być nieco
+ * zawyżone, nigdy zaniżone.
+ * <br>
+ * Analityka jest odbiorcą szyny zdarzeń ({@link pl.sdacademy.vending.events.PurchaseEventBus}) - dzięki temu nie
+ * wydłuża ścieżki kupującego. Można ją też podłączyć bezpośrednio do automatu słuchaczem {@link #listener(String)}.
+ * <br>
+ * Instancja analityki jest tworzona TYLKO za pomocą Buildera.
+ */
+public class SalesAnalytics implements PurchaseEventHandler {
+    private final ConcurrentMap<String, MachineSales> machines = new ConcurrentHashMap<>();
+    private final SlidingWindowCounter fleetProducts;
+    private final long bucketMillis;
+    private final int bucketsCount;
+    private final int sketchWidth;
+    private final int sketchDepth;
+    private final int heavyHittersCapacity;
+    private final LongSupplier clock;
+
+    private SalesAnalytics(Builder builder) {
+        this.bucketsCount = builder.bucketsCount;
+        this.bucketMillis = Math.max(builder.window.toMillis() / bucketsCount, 1);
+        this.sketchWidth = builder.sketchWidth;
+        this.sketchDepth = builder.sketchDepth;
+        this.heavyHittersCapacity = builder.heavyHittersCapacity;
+        this.clock = builder.clock;
+        this.fleetProducts = newCounter();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Tworzy Builder wypełniony parametrami z konfiguracji: "analytics.window.minutes" (domyślnie 15),
+     * "analytics.buckets" (domyślnie 15), "analytics.sketch.width" (domyślnie 64) oraz "analytics.top.capacity"
+     * (domyślnie 16).
+     * @param configuration konfiguracja analityki
+     * @return Builder analityki
+     */
+    public static Builder builder(Configuration configuration) {
+        return builder()
+                .window(Duration.ofMinutes(configuration.getProperty("analytics.window.minutes", 15L)))
+                .buckets(configuration.getProperty("analytics.buckets", 15L).intValue())
+                .sketchWidth(configuration.getProperty("analytics.sketch.width", 64L).intValue())
+                .heavyHittersCapacity(configuration.getProperty("analytics.top.capacity", 16L).intValue());
+    }
+
+    @Override
+    public void onEvent(PurchaseEvent event, boolean endOfBatch) {
+        if (event.isRestock()) {
+            return;
+        }
+        record(event.machineId(), event.tray().getSymbol(), event.product().getName());
+    }
+
+    /**
+     * Tworzy słuchacza zakupów zliczającego sprzedaż automatu bezpośrednio w wątku kupującego.
+     * @param machineId identyfikator automatu
+     * @return słuchacz zakupów
+     */
+    public PurchaseListener listener(String machineId) {
+        return (tray, product) -> record(machineId, tray.getSymbol(), product.getName());
+    }
+
+    /**
+     * Zlicza sprzedaż jednej sztuki produktu.
+     * @param machineId identyfikator automatu
+     * @param traySymbol symbol tacki, z której sprzedano produkt
+     * @param productName nazwa produktu
+     */
+    public void record(String machineId, String traySymbol, String productName) {
+        long now = clock.getAsLong();
+        MachineSales sales = machines.get(machineId);
+        if (sales == null) {
+            sales = machines.computeIfAbsent(machineId, id -> new MachineSales(newCounter(), newCounter()));
+        }
+        sales.trays.add(traySymbol, 1, now);
+        sales.products.add(productName, 1, now);
+        fleetProducts.add(productName, 1, now);
+    }
+
+    /**
+     * @param machineId identyfikator automatu
+     * @param limit maksymalna ilość produktów
+     * @return najlepiej sprzedające się produkty automatu w oknie, malejąco według sprzedaży
+     */
+    public List<SalesCount> topProducts(String machineId, int limit) {
+        MachineSales sales = machines.get(machineId);
+        return sales == null ? Collections.emptyList() : sales.products.top(limit, clock.getAsLong());
+    }
+
+    /**
+     * @param machineId identyfikator automatu
+     * @param limit maksymalna ilość tacek
+     * @return najlepiej sprzedające się tacki automatu w oknie, malejąco według sprzedaży
+     */
+    public List<SalesCount> topTrays(String machineId, int limit) {
+        MachineSales sales = machines.get(machineId);
+        return sales == null ? Collections.emptyList() : sales.trays.top(limit, clock.getAsLong());
+    }
+
+    /**
+     * @param limit maksymalna ilość produktów
+     * @return najlepiej sprzedające się produkty całej floty w oknie, malejąco według sprzedaży
+     */
+    public List<SalesCount> fleetTopProducts(int limit) {
+        return fleetProducts.top(limit, clock.getAsLong());
+    }
+
+    /**
+     * @param machineId identyfikator automatu
+     * @param traySymbol symbol tacki
+     * @return ilość sztuk sprzedanych z tacki w oknie
+     */
+    public long traySales(String machineId, String traySymbol) {
+        MachineSales sales = machines.get(machineId);
+        return sales == null ? 0 : sales.trays.estimate(traySymbol, clock.getAsLong());
+    }
+
+    /**
+     * @param machineId identyfikator automatu
+     * @param traySymbol symbol tacki
+     * @return średnia ilość sztuk sprzedawanych z tacki na minutę w oknie
+     */
+    public double trayRatePerMinute(String machineId, String traySymbol) {
+        return traySales(machineId, traySymbol) * 60_000.0 / (bucketMillis * bucketsCount);
+    }
+
+    /**
+     * @param machineId identyfikator automatu
+     * @param productName nazwa produktu
+     * @return ilość sztuk produktu sprzedanych przez automat w oknie
+     */
+    public long productSales(String machineId, String productName) {
+        MachineSales sales = machines.get(machineId);
+        return sales == null ? 0 : sales.products.estimate(productName, clock.getAsLong());
+    }
+
+    /**
+     * @param productName nazwa produktu
+     * @return ilość sztuk produktu sprzedanych przez całą flotę w oknie
+     */
+    public long fleetProductSales(String productName) {
+        return fleetProducts.estimate(productName, clock.getAsLong());
+    }
+
+    private SlidingWindowCounter newCounter() {
+        return new SlidingWindowCounter(bucketMillis, bucketsCount, sketchWidth, sketchDepth, heavyHittersCapacity);
+    }
+
+    /**
+     * Szkice sprzedaży jednego automatu.
+     */
+    private static class MachineSales {
+        private final SlidingWindowCounter trays;
+        private final SlidingWindowCounter products;
+
+        private MachineSales(SlidingWindowCounter trays, SlidingWindowCounter products) {
+            this.trays = trays;
+            this.products = products;
+        }
+    }
+
+    public static class Builder {
+        private Duration window = Duration.ofMinutes(15);
+        private int bucketsCount = 15;
+        private int sketchWidth = 64;
+        private int sketchDepth = 4;
+        private int heavyHittersCapacity = 16;
+        private LongSupplier clock = System::currentTimeMillis;
+
+        private Builder() {
+        }
+
+        /**
+         * @param window długość okna, z którego liczona jest sprzedaż
+         * @return ten sam Builder
+         */
+        public Builder window(Duration window) {
+            this.window = window;
+            return this;
+        }
+
+        /**
+         * @param bucketsCount ilość przedziałów okna - okno przesuwa się skokowo o długość jednego przedziału
+         * @return ten sam Builder
+         */
+        public Builder buckets(int bucketsCount) {
+            this.bucketsCount = bucketsCount;
+            return this;
+        }
+
+        /**
+         * @param sketchWidth szerokość szkiców Count-Min - potęga dwójki; większa szerokość to mniejszy błąd
+         *                    oszacowań i więcej pamięci na automat
+         * @return ten sam Builder
+         */
+        public Builder sketchWidth(int sketchWidth) {
+            this.sketchWidth = sketchWidth;
+            return this;
+        }
+
+        public Builder sketchDepth(int sketchDepth) {
+            this.sketchDepth = sketchDepth;
+            return this;
+        }
+
+        /**
+         * @param heavyHittersCapacity ilość najczęstszych kluczy śledzonych w każdym przedziale - ogranicza długość
+         *                             rankingów
+         * @return ten sam Builder
+         */
+        public Builder heavyHittersCapacity(int heavyHittersCapacity) {
+            this.heavyHittersCapacity = heavyHittersCapacity;
+            return this;
+        }
+
+        /**
+         * @param clock źródło bieżącego czasu w milisekundach
+         * @return ten sam Builder
+         */
+        public Builder clock(LongSupplier clock) {
+            this.clock = clock;
+            return this;
+        }
+
+        public SalesAnalytics build() {
+            if (bucketsCount < 1) {
+                throw new IllegalStateException("Analytics window needs at least one bucket, was " + bucketsCount);
+            }
+            if (sketchWidth < 1 || Integer.bitCount(sketchWidth) != 1) {
+                throw new IllegalStateException("Sketch width must be a power of two, was " + sketchWidth);
+            }
+            return new SalesAnalytics(this);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package pl.sdacademy.vending.analytics;
+
+/**
+ * Ilość sprzedanych sztuk produktu lub tacki (według nazwy lub symbolu) w oknie czasu - element rankingu
+ * zwracanego przez {@link SalesAnalytics}. Ilość jest oszacowaniem - może być nieco zawyżona, nigdy zaniżona.
+ */
+public class SalesCount {
+    private final String key;
+    private final long count;
+
+    public SalesCount(String key, long count) {
+        this.key = key;
+        this.count = count;
+    }
+
+    /**
+     * @return nazwa produktu lub symbol tacki
+     */
+    public String key() {
+        return key;
+    }
+
+    /**
+     * @return ilość sprzedanych sztuk
+     */
+    public long count() {
+        return count;
+    }
+
+    @Override
+    public String toString() {
+        return key + "=" + count;
+    }
+}
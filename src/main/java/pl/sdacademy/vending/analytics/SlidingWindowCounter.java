@@ -0,0 +1,127 @@
+package pl.sdacademy.vending.analytics;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Przybliżone zliczenia kluczy w oknie przesuwnym (np. ostatnie 15 minut). Okno składa się z przedziałów czasu
+ * o równej długości - każdy przedział ma własny szkic {@link CountMinSketch} i własną listę najczęstszych kluczy
+ * {@link SpaceSaving}. Dodatkowo utrzymywany jest szkic całego okna: każde zliczenie trafia też do niego, a przedział,
+ * który wypada z okna, jest od niego odejmowany. Dzięki temu zapytanie o ilość wystąpień klucza w oknie sprawdza tylko
+ * jeden szkic, a pamięć zależy wyłącznie od wymiarów szkicu i ilości przedziałów - nie od ilości kluczy.
+ * <br>
+ * Okno przesuwa się skokowo, o cały przedział, przy pierwszym zliczeniu lub zapytaniu w nowym przedziale.
+ * Metody są synchronizowane - zliczenia zwykle przychodzą z jednego wątku (odbiorcy szyny zdarzeń), a zapytania
+ * z innych.
+ */
+class SlidingWindowCounter {
+    private static final long UNUSED = Long.MIN_VALUE;
+
+    private final long bucketMillis;
+    private final CountMinSketch[] buckets;
+    private final SpaceSaving[] heavyHitters;
+    private final long[] bucketEpochs;
+    private final CountMinSketch window;
+    private long lastEpoch = UNUSED;
+
+    /**
+     * @param bucketMillis długość przedziału w milisekundach
+     * @param bucketsCount ilość przedziałów w oknie
+     * @param sketchWidth szerokość szkiców - potęga dwójki
+     * @param sketchDepth głębokość szkiców
+     * @param heavyHittersCapacity ilość najczęstszych kluczy śledzonych w każdym przedziale
+     */
+    SlidingWindowCounter(long bucketMillis, int bucketsCount, int sketchWidth, int sketchDepth,
+                         int heavyHittersCapacity) {
+        this.bucketMillis = bucketMillis;
+        this.buckets = new CountMinSketch[bucketsCount];
+        this.heavyHitters = new SpaceSaving[bucketsCount];
+        this.bucketEpochs = new long[bucketsCount];
+        for (int bucket = 0; bucket < bucketsCount; bucket++) {
+            buckets[bucket] = new CountMinSketch(sketchWidth, sketchDepth);
+            heavyHitters[bucket] = new SpaceSaving(heavyHittersCapacity);
+            bucketEpochs[bucket] = UNUSED;
+        }
+        this.window = new CountMinSketch(sketchWidth, sketchDepth);
+    }
+
+    /**
+     * @param key klucz
+     * @param count ilość wystąpień
+     * @param timeMillis czas wystąpienia
+     */
+    synchronized void add(String key, int count, long timeMillis) {
+        int bucket = advance(timeMillis);
+        buckets[bucket].add(key, count);
+        heavyHitters[bucket].add(key, count);
+        window.add(key, count);
+    }
+
+    /**
+     * @param key klucz
+     * @param timeMillis bieżący czas
+     * @return oszacowanie ilości wystąpień klucza w oknie kończącym się w podanym czasie
+     */
+    synchronized long estimate(String key, long timeMillis) {
+        advance(timeMillis);
+        return window.estimate(key);
+    }
+
+    /**
+     * Wyznacza najczęstsze klucze okna. Kandydatami są klucze śledzone przez {@link SpaceSaving} któregokolwiek
+     * z przedziałów, a ich ilości są szacowane szkicem całego okna - koszt zależy więc tylko od ilości przedziałów
+     * i pojemności list najczęstszych kluczy.
+     * @param limit maksymalna ilość zwróconych kluczy
+     * @param timeMillis bieżący czas
+     * @return klucze posortowane malejąco według ilości wystąpień
+     */
+    synchronized List<SalesCount> top(int limit, long timeMillis) {
+        advance(timeMillis);
+        Set<String> candidates = new LinkedHashSet<>();
+        for (SpaceSaving bucketHeavyHitters : heavyHitters) {
+            for (int index = 0; index < bucketHeavyHitters.size(); index++) {
+                candidates.add(bucketHeavyHitters.key(index));
+            }
+        }
+        List<SalesCount> counts = new ArrayList<>(candidates.size());
+        for (String candidate : candidates) {
+            counts.add(new SalesCount(candidate, window.estimate(candidate)));
+        }
+        counts.sort(Comparator.comparingLong(SalesCount::count).reversed().thenComparing(SalesCount::key));
+        return counts.size() > limit ? new ArrayList<>(counts.subList(0, limit)) : counts;
+    }
+
+    /**
+     * @return długość okna w milisekundach
+     */
+    long windowMillis() {
+        return bucketMillis * buckets.length;
+    }
+
+    /**
+     * Przesuwa okno do przedziału zawierającego podany czas - przedziały starsze niż długość okna są odejmowane od
+     * szkicu okna i czyszczone. Czas cofający się (np. po korekcie zegara) jest traktowany jak ostatni znany czas.
+     * @return numer komórki bieżącego przedziału
+     */
+    private int advance(long timeMillis) {
+        long epoch = Math.max(Math.floorDiv(timeMillis, bucketMillis), lastEpoch);
+        int bucket = (int) Math.floorMod(epoch, (long) buckets.length);
+        if (epoch == lastEpoch) {
+            return bucket;
+        }
+        for (int expired = 0; expired < buckets.length; expired++) {
+            if (bucketEpochs[expired] != UNUSED && bucketEpochs[expired] <= epoch - buckets.length) {
+                window.subtract(buckets[expired]);
+                buckets[expired].clear();
+                heavyHitters[expired].clear();
+                bucketEpochs[expired] = UNUSED;
+            }
+        }
+        bucketEpochs[bucket] = epoch;
+        lastEpoch = epoch;
+        return bucket;
+    }
+}
@@ -0,0 +1,73 @@
+package pl.sdacademy.vending.analytics;
+
+import java.util.Arrays;
+
+/**
+ * Algorytm Space-Saving - śledzi najczęstsze klucze strumienia w stałej ilości miejsca. Przechowywanych jest co
+ * najwyżej capacity kluczy; nowy klucz przy pełnej tablicy zastępuje klucz o najmniejszym liczniku i przejmuje jego
+ * licznik. Każdy klucz występujący częściej niż (suma zliczeń / capacity) razy jest zawsze wśród przechowywanych.
+ * <br>
+ * Przy niewielkiej pojemności (kilkanaście - kilkadziesiąt kluczy) przeszukanie tablic jest szybsze od mapy i nie
+ * tworzy żadnych obiektów. Klasa nie jest bezpieczna wielowątkowo.
+ */
+class SpaceSaving {
+    private final String[] keys;
+    private final long[] counts;
+    private int size;
+
+    /**
+     * @param capacity ilość śledzonych kluczy
+     */
+    SpaceSaving(int capacity) {
+        this.keys = new String[capacity];
+        this.counts = new long[capacity];
+    }
+
+    /**
+     * @param key klucz
+     * @param count ilość wystąpień do dodania
+     */
+    void add(String key, int count) {
+        for (int index = 0; index < size; index++) {
+            if (keys[index].equals(key)) {
+                counts[index] += count;
+                return;
+            }
+        }
+        if (size < keys.length) {
+            keys[size] = key;
+            counts[size] = count;
+            size++;
+            return;
+        }
+        int minimum = 0;
+        for (int index = 1; index < size; index++) {
+            if (counts[index] < counts[minimum]) {
+                minimum = index;
+            }
+        }
+        keys[minimum] = key;
+        counts[minimum] += count;
+    }
+
+    /**
+     * @return ilość przechowywanych kluczy
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @param index numer przechowywanego klucza, od 0 do {@link #size()} - 1
+     * @return przechowywany klucz
+     */
+    String key(int index) {
+        return keys[index];
+    }
+
+    void clear() {
+        Arrays.fill(keys, null);
+        Arrays.fill(counts, 0);
+        size = 0;
+    }
+}
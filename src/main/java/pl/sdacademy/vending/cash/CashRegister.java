@@ -0,0 +1,107 @@
+package pl.sdacademy.vending.cash;
+
+import pl.sdacademy.vending.model.PriceTable;
+import pl.sdacademy.vending.model.Product;
+import pl.sdacademy.vending.model.VendingMachine;
+import pl.sdacademy.vending.util.Configuration;
+
+import java.util.Optional;
+
+/**
+ * Sprzedaż za gotówkę - łączy automat z jego kasą ({@link CoinInventory}). Zakup przebiega w kolejności, w której
+ * każdy krok da się wycofać:
+ * <ol>
+ *     <li>sprawdzenie nominałów zapłaty - zapłata spoza nominałów kasy jest odrzucana, zanim cokolwiek się zmieni,</li>
+ *     <li>odczytanie ceny tacki z bieżącej wersji tabeli cen ({@link VendingMachine#priceOf(String, PriceTable)}) -
+ *     bez zamków,</li>
+ *     <li>sprawdzenie, czy zapłata pokrywa cenę,</li>
+ *     <li>rezerwacja monet reszty ({@link ChangeMaker#reserveChange(long)}) - atomowo, więc jednoczesne zakupy nie
+ *     obiecują tych samych monet,</li>
+ *     <li>wydanie produktu z tą samą wersją tabeli cen, więc słuchacze zakupów zapisują pobraną cenę - jeżeli tacka
+ *     jest pusta (albo wydanie się nie powiedzie), to zarezerwowane monety wracają do kasy,</li>
+ *     <li>włożenie zapłaty do kasy.</li>
+ * </ol>
+ * Produkt jest wydawany tylko wtedy, gdy zapłata wystarcza, a reszta może zostać wydana - w przeciwnym wypadku
+ * kupujący otrzymuje z powrotem całą zapłatę. Monety zapłaty trafiają do kasy dopiero po udanym zakupie, więc nie
+ * mogą być użyte do wydania reszty z tego samego zakupu.
+ */
+public class CashRegister {
+    private final VendingMachine machine;
+    private final CoinInventory inventory;
+    private final ChangeMaker changeMaker;
+
+    public CashRegister(VendingMachine machine, CoinInventory inventory, ChangeMaker changeMaker) {
+        this.machine = machine;
+        this.inventory = inventory;
+        this.changeMaker = changeMaker;
+    }
+
+    /**
+     * Tworzy sprzedaż za gotówkę z kasą i wydawaniem reszty odczytanymi z konfiguracji
+     * ({@link CoinInventory#fromConfiguration(Configuration)},
+     * {@link ChangeMaker#fromConfiguration(CoinInventory, Configuration)}).
+     * @param machine automat
+     * @param configuration konfiguracja kasy
+     * @return sprzedaż za gotówkę
+     */
+    public static CashRegister fromConfiguration(VendingMachine machine, Configuration configuration) {
+        CoinInventory inventory = CoinInventory.fromConfiguration(configuration);
+        return new CashRegister(machine, inventory, ChangeMaker.fromConfiguration(inventory, configuration));
+    }
+
+    /**
+     * Tworzy sprzedaż za gotówkę dla innego automatu, używającą tej samej kasy - np. dla automatu podmienionego po
+     * zmianie jego wielkości ({@link VendingMachine#resized}).
+     * @param machine automat
+     * @return sprzedaż za gotówkę ze wspólną kasą
+     */
+    public CashRegister forMachine(VendingMachine machine) {
+        return new CashRegister(machine, inventory, changeMaker);
+    }
+
+    /**
+     * @return kasa automatu
+     */
+    public CoinInventory inventory() {
+        return inventory;
+    }
+
+    /**
+     * Kupuje produkt z tacki o wskazanym symbolu za wrzucone monety. Metoda może być wywoływana jednocześnie przez wielu
+     * kupujących.
+     * @param symbol symbol tacki
+     * @param payment wrzucone monety - o nominałach kasy automatu
+     * @return wynik zakupu - wydany produkt i reszta albo powód odrzucenia i zwracana zapłata
+     * @throws IllegalArgumentException jeżeli zapłata ma inne nominały niż kasa automatu
+     */
+    public Sale buy(String symbol, Coins payment) {
+        inventory.checkCoins(payment);
+        PriceTable priceTable = machine.priceTable();
+        long price = machine.priceOf(symbol, priceTable);
+        if (price < 0) {
+            return Sale.rejected(Sale.Status.INVALID_SYMBOL, price, payment);
+        }
+        long changeAmount = payment.value() - price;
+        if (changeAmount < 0) {
+            return Sale.rejected(Sale.Status.INSUFFICIENT_FUNDS, price, payment);
+        }
+        Coins change = changeMaker.reserveChange(changeAmount);
+        if (change == null) {
+            return Sale.rejected(Sale.Status.NO_CHANGE, price, payment);
+        }
+        boolean sold = false;
+        try {
+            Optional<Product> product = machine.buyProductWithSymbol(symbol, priceTable);
+            if (!product.isPresent()) {
+                return Sale.rejected(Sale.Status.SOLD_OUT, price, payment);
+            }
+            inventory.deposit(payment);
+            sold = true;
+            return Sale.sold(product.get(), price, change);
+        } finally {
+            if (!sold) {
+                changeMaker.release(change);
+            }
+        }
+    }
+}
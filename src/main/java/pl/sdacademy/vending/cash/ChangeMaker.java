@@ -0,0 +1,184 @@
+package pl.sdacademy.vending.cash;
+
+import pl.sdacademy.vending.util.Configuration;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Wydaje resztę z kasy ({@link CoinInventory}) najmniejszą ilością dostępnych monet.
+ * <br>
+ * Algorytm zachłanny (zawsze największa moneta, jaka się mieści) zawodzi, gdy kasie brakuje niektórych nominałów -
+ * np. 60 groszy przy monetach 50 i 20 groszy to trzy dwudziestki, a nie pięćdziesiątka i brak reszty. Reszta jest
+ * więc wyliczana programowaniem dynamicznym z ograniczoną ilością monet każdego nominału: dla kolejnych nominałów
+ * najmniejsza ilość monet dla każdej kwoty od 0 do reszty jest wyznaczana w czasie O(reszta) - minimum z okna ostatnich
+ * "ilość monet" kwot o tej samej reszcie z dzielenia przez nominał (kolejka monotoniczna).
+ * <br>
+ * Ostatnio wyliczony zestaw monet dla każdej częstej kwoty (nie większej niż limit pamiętanych kwot) jest zapamiętywany.
+ * Kolejna reszta o tej samej kwocie najpierw próbuje zarezerwować ten sam zestaw - zwykle z powodzeniem, bez ponownego
+ * liczenia. Zestaw wyliczony dla stanu kasy odczytanego bez blokowania może już nie być dostępny, gdy inny kupujący
+ * zdąży zdjąć jego monety - wtedy reszta jest liczona ponownie, dla nowego stanu kasy.
+ */
+public class ChangeMaker {
+    private static final int INFINITY = Integer.MAX_VALUE;
+    private static final int RESERVATION_ATTEMPTS = 8;
+
+    private final CoinInventory inventory;
+    private final int maxChange;
+    private final AtomicReferenceArray<int[]> memo;
+    private final LongAdder computations = new LongAdder();
+
+    /**
+     * @param inventory kasa, z której wydawana jest reszta
+     * @param maxChange największa reszta w groszach, jaką automat wydaje
+     * @param memoizedAmounts ilość pamiętanych kwot - zestawy monet są pamiętane dla reszt od 1 do tej wartości
+     */
+    public ChangeMaker(CoinInventory inventory, int maxChange, int memoizedAmounts) {
+        if (maxChange < 0 || memoizedAmounts < 0) {
+            throw new IllegalArgumentException("Change limits can not be negative");
+        }
+        this.inventory = inventory;
+        this.maxChange = maxChange;
+        this.memo = new AtomicReferenceArray<>(Math.min(memoizedAmounts, maxChange) + 1);
+    }
+
+    /**
+     * Tworzy wydawanie reszty z limitami odczytanymi z kluczy "cash.change.max" (kwota, domyślnie 50.00)
+     * i "cash.change.memoized" (domyślnie 2000 kwot).
+     * @param inventory kasa, z której wydawana jest reszta
+     * @param configuration konfiguracja wydawania reszty
+     * @return wydawanie reszty
+     */
+    public static ChangeMaker fromConfiguration(CoinInventory inventory, Configuration configuration) {
+        long maxChange = configuration.getMoney("cash.change.max", 50_00L);
+        if (maxChange > Integer.MAX_VALUE / 2) {
+            throw new IllegalArgumentException("Property cash.change.max is too large: " + maxChange);
+        }
+        return new ChangeMaker(inventory, (int) maxChange, configuration.getInt("cash.change.memoized", 2000));
+    }
+
+    /**
+     * Rezerwuje monety reszty - zdejmuje je z kasy. Monety zarezerwowanej reszty, która ostatecznie nie zostanie
+     * wydana, trzeba odłożyć ({@link #release(Coins)}).
+     * @param amount reszta w groszach
+     * @return zarezerwowane monety (pusty zestaw dla reszty 0) lub null, jeżeli kasa nie może wydać takiej reszty
+     */
+    public Coins reserveChange(long amount) {
+        if (amount < 0 || amount > maxChange) {
+            return null;
+        }
+        int changeAmount = (int) amount;
+        int[] denominations = inventory.denominations();
+        if (changeAmount == 0) {
+            return new Coins(denominations, new int[denominations.length]);
+        }
+        boolean memoized = changeAmount < memo.length();
+        if (memoized) {
+            int[] remembered = memo.get(changeAmount);
+            if (remembered != null && inventory.reserve(remembered)) {
+                return new Coins(denominations, remembered);
+            }
+        }
+        for (int attempt = 0; attempt < RESERVATION_ATTEMPTS; attempt++) {
+            computations.increment();
+            int[] change = solve(changeAmount, denominations, inventory.availableCounts());
+            if (change == null) {
+                return null;
+            }
+            if (inventory.reserve(change)) {
+                if (memoized) {
+                    memo.set(changeAmount, change);
+                }
+                return new Coins(denominations, change);
+            }
+        }
+        // kasa zmieniała się szybciej, niż udawało się ją przeliczyć - kupujący może spróbować ponownie
+        return null;
+    }
+
+    /**
+     * Odkłada do kasy monety reszty, która nie została wydana.
+     * @param change monety zarezerwowane przez {@link #reserveChange(long)}
+     */
+    public void release(Coins change) {
+        inventory.deposit(change);
+    }
+
+    /**
+     * @return ilość wyliczeń reszty od początku działania - zestawy odczytane z pamięci nie są liczone
+     */
+    public long computations() {
+        return computations.sum();
+    }
+
+    /**
+     * Wyznacza najmniejszą ilość monet o łącznej wartości amount, w której każdego nominału jest nie więcej, niż jest
+     * dostępne.
+     * @param amount kwota w groszach, większa od 0
+     * @param denominations nominały w groszach, uporządkowane rosnąco
+     * @param available dostępne ilości monet według nominałów
+     * @return ilości monet według nominałów lub null, jeżeli kwoty nie da się wydać
+     */
+    static int[] solve(int amount, int[] denominations, int[] available) {
+        int[] best = new int[amount + 1];
+        int[] next = new int[amount + 1];
+        Arrays.fill(best, INFINITY);
+        best[0] = 0;
+        // used[nominał][kwota] - ilość monet nominału użytych w najlepszym rozwiązaniu dla kwoty
+        int[][] used = new int[denominations.length][];
+        int[] window = new int[amount + 2];
+        for (int index = 0; index < denominations.length; index++) {
+            int coin = denominations[index];
+            int coins = Math.min(available[index], amount / coin);
+            if (coins == 0) {
+                continue;
+            }
+            int[] usedCoins = new int[amount + 1];
+            for (int remainder = 0; remainder < coin && remainder <= amount; remainder++) {
+                // kwoty remainder + step * coin; najlepsza kwota z okna ostatnich coins + 1 kroków to najmniejsza
+                // wartość best[kwota] - step, więc window zawiera kroki o rosnących wartościach
+                int head = 0;
+                int tail = 0;
+                for (int step = 0, total = remainder; total <= amount; step++, total += coin) {
+                    long key = key(best[total], step);
+                    while (tail > head && key(best[remainder + window[tail - 1] * coin], window[tail - 1]) >= key) {
+                        tail--;
+                    }
+                    window[tail++] = step;
+                    while (window[head] < step - coins) {
+                        head++;
+                    }
+                    int bestStep = window[head];
+                    int bestCount = best[remainder + bestStep * coin];
+                    if (bestCount == INFINITY) {
+                        next[total] = INFINITY;
+                    } else {
+                        next[total] = bestCount + step - bestStep;
+                        usedCoins[total] = step - bestStep;
+                    }
+                }
+            }
+            used[index] = usedCoins;
+            int[] swap = best;
+            best = next;
+            next = swap;
+        }
+        if (best[amount] == INFINITY) {
+            return null;
+        }
+        int[] change = new int[denominations.length];
+        int remaining = amount;
+        for (int index = denominations.length - 1; index >= 0; index--) {
+            if (used[index] != null) {
+                change[index] = used[index][remaining];
+                remaining -= change[index] * denominations[index];
+            }
+        }
+        return change;
+    }
+
+    private static long key(int count, int step) {
+        return count == INFINITY ? Long.MAX_VALUE : (long) count - step;
+    }
+}
@@ -0,0 +1,172 @@
+package pl.sdacademy.vending.cash;
+
+import pl.sdacademy.vending.util.Configuration;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Kasa automatu - ilości monet każdego nominału. Ilości są przechowywane w tablicy liczników atomowych, więc wpłaty
+ * i rezerwacje wielu kupujących nie blokują się nawzajem.
+ * <br>
+ * Monety reszty są rezerwowane (zdejmowane z kasy) atomowo dla całego zestawu - wszystkie albo żadna. Jeżeli któregoś
+ * nominału zabraknie, to monety zdjęte z poprzednich nominałów są odkładane, a rezerwacja jest odrzucana. Dzięki temu
+ * jednoczesne zakupy nigdy nie obiecują tych samych monet dwa razy.
+ */
+public class CoinInventory {
+    /**
+     * Polskie monety - od 1 grosza do 5 złotych.
+     */
+    private static final String DEFAULT_DENOMINATIONS = "1,2,5,10,20,50,100,200,500";
+
+    private final int[] denominations;
+    private final AtomicIntegerArray counts;
+
+    /**
+     * @param denominations nominały w groszach, uporządkowane rosnąco
+     * @param initialCount początkowa ilość monet każdego nominału
+     */
+    public CoinInventory(int[] denominations, int initialCount) {
+        this.denominations = Coins.checkDenominations(denominations.clone());
+        this.counts = new AtomicIntegerArray(denominations.length);
+        for (int index = 0; index < denominations.length; index++) {
+            counts.set(index, initialCount);
+        }
+    }
+
+    /**
+     * Tworzy kasę o nominałach z klucza "cash.denominations" (lista wartości w groszach oddzielonych przecinkami,
+     * domyślnie polskie monety) z "cash.coins.initial" monetami każdego nominału (domyślnie 0).
+     * @param configuration konfiguracja kasy
+     * @return pusta lub wstępnie wypełniona kasa
+     */
+    public static CoinInventory fromConfiguration(Configuration configuration) {
+        String[] values = configuration.getProperty("cash.denominations", DEFAULT_DENOMINATIONS).split(",");
+        int[] denominations = new int[values.length];
+        for (int index = 0; index < values.length; index++) {
+            try {
+                denominations[index] = Integer.parseInt(values[index].trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Property cash.denominations is not a list of coins: "
+                        + Arrays.toString(values));
+            }
+        }
+        return new CoinInventory(denominations, configuration.getInt("cash.coins.initial", 0));
+    }
+
+    /**
+     * @return Builder zestawu monet o nominałach tej kasy - np. dla zapłaty
+     */
+    public Coins.Builder coins() {
+        return new Coins.Builder(denominations);
+    }
+
+    /**
+     * Tworzy zestaw monet o nominałach tej kasy z tekstu - np. z zapłaty wpisanej przez kupującego.
+     * @param coinValues nominały kolejnych monet w groszach, oddzielone przecinkami, np. "200,50,50"
+     * @return zestaw monet
+     * @throws IllegalArgumentException jeżeli tekst nie jest listą monet o nominałach tej kasy
+     */
+    public Coins coins(String coinValues) {
+        Coins.Builder coins = coins();
+        for (String coinValue : coinValues.split(",")) {
+            try {
+                coins.coin(Integer.parseInt(coinValue.trim()));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Not a list of coins: " + coinValues);
+            }
+        }
+        return coins.build();
+    }
+
+    /**
+     * @param coinValue nominał w groszach
+     * @return dostępna ilość monet o wskazanym nominale; 0 dla nominału spoza kasy
+     */
+    public int count(int coinValue) {
+        int index = Arrays.binarySearch(denominations, coinValue);
+        return index < 0 ? 0 : counts.get(index);
+    }
+
+    /**
+     * @return bieżąca zawartość kasy - przy trwających zakupach wartość przybliżona
+     */
+    public Coins snapshot() {
+        return new Coins(denominations, availableCounts());
+    }
+
+    /**
+     * Dokłada monety do kasy - np. zapłatę za udany zakup albo monety przywiezione przez serwis.
+     * @param coins dokładane monety - o nominałach tej kasy
+     */
+    public void deposit(Coins coins) {
+        release(checkCoins(coins).counts());
+    }
+
+    /**
+     * @param coins sprawdzane monety
+     * @return te same monety
+     * @throws IllegalArgumentException jeżeli monety mają inne nominały niż ta kasa
+     */
+    Coins checkCoins(Coins coins) {
+        if (!Arrays.equals(denominations, coins.denominations())) {
+            throw new IllegalArgumentException("Coins " + coins + " do not match denominations "
+                    + Arrays.toString(denominations));
+        }
+        return coins;
+    }
+
+    int[] denominations() {
+        return denominations;
+    }
+
+    int[] availableCounts() {
+        int[] available = new int[denominations.length];
+        for (int index = 0; index < available.length; index++) {
+            available[index] = counts.get(index);
+        }
+        return available;
+    }
+
+    /**
+     * Zdejmuje z kasy wszystkie wskazane monety albo żadnej.
+     * @param reserved ilości monet według nominałów
+     * @return true, jeżeli monety zostały zdjęte
+     */
+    boolean reserve(int[] reserved) {
+        for (int index = 0; index < reserved.length; index++) {
+            if (reserved[index] == 0) {
+                continue;
+            }
+            int available;
+            do {
+                available = counts.get(index);
+                if (available < reserved[index]) {
+                    // wycofujemy nominały, które zostały już zdjęte
+                    for (int takenIndex = index - 1; takenIndex >= 0; takenIndex--) {
+                        counts.addAndGet(takenIndex, reserved[takenIndex]);
+                    }
+                    return false;
+                }
+            } while (!counts.compareAndSet(index, available, available - reserved[index]));
+        }
+        return true;
+    }
+
+    /**
+     * Odkłada do kasy monety zdjęte przez {@link #reserve(int[])}.
+     * @param released ilości monet według nominałów
+     */
+    void release(int[] released) {
+        for (int index = 0; index < released.length; index++) {
+            if (released[index] != 0) {
+                counts.addAndGet(index, released[index]);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "CoinInventory{" + snapshot() + '}';
+    }
+}
@@ -0,0 +1,156 @@
+package pl.sdacademy.vending.cash;
+
+import java.util.Arrays;
+
+/**
+ * Niezmienny zestaw monet - ilości sztuk każdego nominału z zestawu nominałów automatu (np. wrzucona zapłata albo
+ * wydana reszta). Nominały są wyrażone w groszach i uporządkowane rosnąco.
+ * <br>
+ * Instancja jest tworzona TYLKO za pomocą Buildera (np. {@link CoinInventory#coins()}).
+ */
+public final class Coins {
+    private final int[] denominations;
+    private final int[] counts;
+
+    /**
+     * @param denominations nominały - tablica wspólna dla wszystkich zestawów jednego automatu
+     * @param counts ilości sztuk według nominałów - tablica jest przejmowana przez zestaw i nie może być już zmieniana
+     */
+    Coins(int[] denominations, int[] counts) {
+        this.denominations = denominations;
+        this.counts = counts;
+    }
+
+    /**
+     * @param denominations nominały w groszach, uporządkowane rosnąco
+     * @return Builder zestawu monet o wskazanych nominałach
+     */
+    public static Builder builder(int... denominations) {
+        return new Builder(checkDenominations(denominations.clone()));
+    }
+
+    /**
+     * @throws IllegalArgumentException jeżeli nominały nie są dodatnie i uporządkowane rosnąco
+     */
+    static int[] checkDenominations(int[] denominations) {
+        for (int index = 0; index < denominations.length; index++) {
+            if (denominations[index] < 1 || index > 0 && denominations[index] <= denominations[index - 1]) {
+                throw new IllegalArgumentException("Denominations must be positive and ascending: "
+                        + Arrays.toString(denominations));
+            }
+        }
+        return denominations;
+    }
+
+    /**
+     * @return wartość wszystkich monet zestawu w groszach
+     */
+    public long value() {
+        long value = 0;
+        for (int index = 0; index < counts.length; index++) {
+            value += (long) denominations[index] * counts[index];
+        }
+        return value;
+    }
+
+    /**
+     * @param coinValue nominał w groszach
+     * @return ilość monet o wskazanym nominale; 0 dla nominału spoza zestawu
+     */
+    public int count(int coinValue) {
+        int index = Arrays.binarySearch(denominations, coinValue);
+        return index < 0 ? 0 : counts[index];
+    }
+
+    /**
+     * @return łączna ilość monet zestawu
+     */
+    public int coinsCount() {
+        int coinsCount = 0;
+        for (int count : counts) {
+            coinsCount += count;
+        }
+        return coinsCount;
+    }
+
+    public boolean isEmpty() {
+        return coinsCount() == 0;
+    }
+
+    int[] denominations() {
+        return denominations;
+    }
+
+    int[] counts() {
+        return counts;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        Coins coins = (Coins) o;
+        return Arrays.equals(denominations, coins.denominations) && Arrays.equals(counts, coins.counts);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(denominations) + Arrays.hashCode(counts);
+    }
+
+    /**
+     * @return monety od największego nominału, np. "2x200 1x50", lub "-" dla pustego zestawu
+     */
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        for (int index = counts.length - 1; index >= 0; index--) {
+            if (counts[index] > 0) {
+                if (text.length() > 0) {
+                    text.append(' ');
+                }
+                text.append(counts[index]).append('x').append(denominations[index]);
+            }
+        }
+        return text.length() == 0 ? "-" : text.toString();
+    }
+
+    public static class Builder {
+        private final int[] denominations;
+        private final int[] counts;
+
+        Builder(int[] denominations) {
+            this.denominations = denominations;
+            this.counts = new int[denominations.length];
+        }
+
+        /**
+         * @param coinValue nominał w groszach - jeden z nominałów zestawu
+         * @param count ilość dokładanych monet
+         * @return ten sam Builder
+         */
+        public Builder coin(int coinValue, int count) {
+            int index = Arrays.binarySearch(denominations, coinValue);
+            if (index < 0) {
+                throw new IllegalArgumentException("Unknown coin " + coinValue);
+            }
+            if (count < 0) {
+                throw new IllegalArgumentException("Coins count can not be negative, was " + count);
+            }
+            counts[index] += count;
+            return this;
+        }
+
+        public Builder coin(int coinValue) {
+            return coin(coinValue, 1);
+        }
+
+        public Coins build() {
+            return new Coins(denominations, counts.clone());
+        }
+    }
+}
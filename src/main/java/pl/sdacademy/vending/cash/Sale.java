@@ -0,0 +1,91 @@
+package pl.sdacademy.vending.cash;
+
+import pl.sdacademy.vending.model.Product;
+
+import java.util.Optional;
+
+/**
+ * Wynik zakupu za gotówkę ({@link CashRegister#buy(String, Coins)}) - wydany produkt oraz monety oddane kupującemu:
+ * reszta po udanym zakupie albo cała zapłata po zakupie odrzuconym.
+ */
+public final class Sale {
+    /**
+     * Przebieg zakupu.
+     */
+    public enum Status {
+        /**
+         * Produkt i reszta zostały wydane.
+         */
+        SOLD,
+        /**
+         * Nie ma tacki o takim symbolu.
+         */
+        INVALID_SYMBOL,
+        /**
+         * Zapłata jest mniejsza od ceny produktu.
+         */
+        INSUFFICIENT_FUNDS,
+        /**
+         * Kasa nie może wydać reszty.
+         */
+        NO_CHANGE,
+        /**
+         * Tacka jest pusta.
+         */
+        SOLD_OUT
+    }
+
+    private final Status status;
+    private final Product product;
+    private final long price;
+    private final Coins returnedCoins;
+
+    private Sale(Status status, Product product, long price, Coins returnedCoins) {
+        this.status = status;
+        this.product = product;
+        this.price = price;
+        this.returnedCoins = returnedCoins;
+    }
+
+    static Sale sold(Product product, long price, Coins change) {
+        return new Sale(Status.SOLD, product, price, change);
+    }
+
+    static Sale rejected(Status status, long price, Coins payment) {
+        return new Sale(status, null, price, payment);
+    }
+
+    public Status status() {
+        return status;
+    }
+
+    public boolean isSold() {
+        return status == Status.SOLD;
+    }
+
+    /**
+     * @return wydany produkt lub pusty optional dla zakupu odrzuconego
+     */
+    public Optional<Product> product() {
+        return Optional.ofNullable(product);
+    }
+
+    /**
+     * @return cena produktu w groszach z chwili zakupu; -1, jeżeli nie ma tacki o takim symbolu
+     */
+    public long price() {
+        return price;
+    }
+
+    /**
+     * @return monety oddane kupującemu - reszta albo zwrócona zapłata
+     */
+    public Coins returnedCoins() {
+        return returnedCoins;
+    }
+
+    @Override
+    public String toString() {
+        return status + (product == null ? "" : " " + product.getName()) + " returned " + returnedCoins;
+    }
+}
@@ -0,0 +1,139 @@
+package pl.sdacademy.vending.controller;
+
+import pl.sdacademy.vending.model.Order;
+import pl.sdacademy.vending.model.Product;
+import pl.sdacademy.vending.model.VendingMachine;
+import pl.sdacademy.vending.util.Configuration;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Asynchroniczna wersja {@link CustomerOperationController}, przeznaczona do obsługi wielu tysięcy jednoczesnych sesji
+ * klientów (zamówienia z aplikacji, kioski). Metody nie czekają na wykonanie zakupu, tylko zwracają
+ * {@link CompletableFuture}, który zostanie uzupełniony wynikiem zakupu. Sesja klienta nie musi więc posiadać własnego
+ * wątku - zakup jest wykonywany przez executor kontrolera.
+ * <br>
+ * Sam zakup nie blokuje (operacje CAS na tacce), ale słuchacze zakupów - np. dziennik czekający na trwały zapis - już
+ * tak. Dlatego executor jest konfigurowalny kluczem "controller.async.executor":
+ * <ul>
+ *     <li>"bounded" (domyślnie) - pula "controller.async.threads" wątków (domyślnie dwa razy więcej niż procesorów)
+ *     z kolejką o pojemności "controller.async.queue.size" (domyślnie 10000). Zakup, który nie mieści się w kolejce,
+ *     jest od razu odrzucany - zwrócony future kończy się wyjątkiem {@link RejectedExecutionException}.</li>
+ *     <li>"virtual" - każdy zakup w osobnym wątku wirtualnym. Blokujący słuchacz zatrzymuje jedynie wątek wirtualny,
+ *     a nie wątek systemowy. Wątki wirtualne są dostępne od Javy 21 - na starszej maszynie wirtualnej kontroler używa
+ *     puli ograniczonej.</li>
+ * </ul>
+ */
+public class AsyncCustomerOperationController implements AutoCloseable {
+    private static final String VIRTUAL_EXECUTOR = "virtual";
+    private static final String BOUNDED_EXECUTOR = "bounded";
+
+    private final VendingMachine machine;
+    private final ExecutorService executor;
+
+    /**
+     * Tworzy kontroler z executorem opisanym w konfiguracji.
+     * @param machine automat obsługiwany przez kontroler
+     * @param configuration konfiguracja executora
+     */
+    public AsyncCustomerOperationController(VendingMachine machine, Configuration configuration) {
+        this(machine, createExecutor(configuration));
+    }
+
+    /**
+     * Tworzy kontroler wykonujący zakupy na przekazanym executorze. Executor jest zamykany razem z kontrolerem.
+     * @param machine automat obsługiwany przez kontroler
+     * @param executor executor wykonujący zakupy
+     */
+    public AsyncCustomerOperationController(VendingMachine machine, ExecutorService executor) {
+        this.machine = machine;
+        this.executor = executor;
+    }
+
+    /**
+     * Zleca kupno produktu o danym symbolu.
+     * @param symbol symbol tacki
+     * @return przyszły wynik zakupu - produkt lub pusty optional, jeżeli produkt nie był dostępny
+     */
+    public CompletableFuture<Optional<Product>> buyProduct(String symbol) {
+        return submit(() -> machine.buyProductWithSymbol(symbol));
+    }
+
+    /**
+     * Zleca kupno wszystkich produktów z zamówienia - zamówienie jest realizowane w całości albo wcale.
+     * @param order zamówienie
+     * @return przyszły wynik zakupu - kupione produkty lub pusty optional
+     */
+    public CompletableFuture<Optional<List<Product>>> buyProducts(Order order) {
+        return submit(() -> machine.buyProducts(order));
+    }
+
+    /**
+     * Zamyka executor kontrolera, czekając na zakończenie już zleconych zakupów.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> purchase) {
+        try {
+            return CompletableFuture.supplyAsync(purchase, executor);
+        } catch (RejectedExecutionException e) {
+            CompletableFuture<T> rejected = new CompletableFuture<>();
+            rejected.completeExceptionally(e);
+            return rejected;
+        }
+    }
+
+    static ExecutorService createExecutor(Configuration configuration) {
+        String executorType = configuration.getProperty("controller.async.executor", BOUNDED_EXECUTOR);
+        if (VIRTUAL_EXECUTOR.equals(executorType)) {
+            Optional<ExecutorService> virtualThreadExecutor = virtualThreadExecutor();
+            if (virtualThreadExecutor.isPresent()) {
+                return virtualThreadExecutor.get();
+            }
+        } else if (!BOUNDED_EXECUTOR.equals(executorType)) {
+            throw new IllegalArgumentException("Unknown async controller executor " + executorType);
+        }
+        int threads = configuration.getProperty("controller.async.threads",
+                2L * Runtime.getRuntime().availableProcessors()).intValue();
+        int queueSize = configuration.getProperty("controller.async.queue.size", 10_000L).intValue();
+        AtomicInteger threadNumber = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueSize),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "async-controller-" + threadNumber.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Aplikacja jest budowana dla Javy 8, więc executor wątków wirtualnych jest pobierany przez refleksję - jeżeli
+     * aplikacja działa na Javie 21 lub nowszej.
+     */
+    private static Optional<ExecutorService> virtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return Optional.of((ExecutorService) factory.invoke(null));
+        } catch (ReflectiveOperationException e) {
+            return Optional.empty();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package pl.sdacademy.vending.controller;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Wykonuje polecenia protokołu {@link CommandProcessor} wczytywane kolejno z jednego strumienia - np. nagrane sesje
+ * klientów odtwarzane z pliku - bez wyświetlania automatu. Każde polecenie daje dokładnie jedną linię wyniku, więc wynik
+ * można porównać z oryginalnym przebiegiem lub przetworzyć skryptem.
+ * <br>
+ * Puste linie oraz linie zaczynające się od znaku '#' (komentarze) są pomijane. Bufor odpowiedzi jest jeden na cały
+ * przebieg, a odpowiedź jest przepisywana do strumienia wyjściowego bez tworzenia pośredniego tekstu. Strumień wyjściowy
+ * powinien być buforowany - jest opróżniany dopiero po wykonaniu wszystkich poleceń.
+ */
+public class BatchCommandRunner {
+    private final CommandProcessor processor;
+    private final StringBuilder response = new StringBuilder();
+    private char[] responseChars = new char[256];
+
+    public BatchCommandRunner(CommandProcessor processor) {
+        this.processor = processor;
+    }
+
+    /**
+     * Wykonuje wszystkie polecenia ze strumienia wejściowego i zapisuje ich wyniki.
+     * @param commands strumień poleceń, jedno polecenie w linii
+     * @param results strumień, do którego zapisywane są wyniki, jeden wynik w linii
+     * @return ilość wykonanych poleceń
+     * @throws IOException jeżeli nie udało się odczytać poleceń lub zapisać wyników
+     */
+    public long run(BufferedReader commands, Writer results) throws IOException {
+        long executedCommands = 0;
+        String commandLine;
+        while ((commandLine = commands.readLine()) != null) {
+            if (isSkipped(commandLine)) {
+                continue;
+            }
+            response.setLength(0);
+            processor.execute(commandLine, response);
+            write(results);
+            executedCommands++;
+        }
+        results.flush();
+        return executedCommands;
+    }
+
+    private void write(Writer results) throws IOException {
+        int length = response.length();
+        if (responseChars.length < length) {
+            responseChars = new char[Math.max(length, 2 * responseChars.length)];
+        }
+        response.getChars(0, length, responseChars, 0);
+        results.write(responseChars, 0, length);
+    }
+
+    private static boolean isSkipped(String commandLine) {
+        for (int index = 0; index < commandLine.length(); index++) {
+            char character = commandLine.charAt(index);
+            if (!Character.isWhitespace(character)) {
+                return character == '#';
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,157 @@
+package pl.sdacademy.vending.controller;
+
+import pl.sdacademy.vending.cash.Coins;
+import pl.sdacademy.vending.cash.Sale;
+import pl.sdacademy.vending.model.Order;
+import pl.sdacademy.vending.model.Product;
+import pl.sdacademy.vending.model.Tray;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Interpreter prostego protokołu tekstowego, w którym każde polecenie to jedna linia tekstu, a każda odpowiedź to
+ * również dokładnie jedna linia. Dzięki temu klient może wysłać wiele poleceń naraz i dopasować odpowiedzi po kolejności.
+ * Polecenia są przekazywane do {@link CustomerOperationController}. Wielkość liter nazwy polecenia nie ma znaczenia.
+ * <pre>
+ * LIST            -&gt; OK A1;2;990;Product A1|A2;0;990;|...  (symbol;ilość;cena w groszach;nazwa pierwszego produktu)
+ * STATUS          -&gt; OK rows=6 cols=4 products=48 emptyTrays=0
+ * BUY A1          -&gt; OK Product A1        albo  SOLD_OUT A1
+ * PAY A1 200,50   -&gt; OK 100 Product A1    albo  NO_CHANGE A1 250  (reszta albo zwracana zapłata w groszach)
+ * ORDER 3x A1, B2 -&gt; OK 4                 albo  REJECTED 3x A1, 1x B2
+ * (inne)          -&gt; ERR opis błędu
+ * </pre>
+ * Obiekt nie przechowuje stanu, więc może być używany jednocześnie przez wiele wątków. Kontroler może być pobierany
+ * przy każdym poleceniu od dostawcy - dzięki temu polecenia trafiają do automatu podmienionego np. po zmianie jego
+ * wielkości w konfiguracji.
+ */
+public class CommandProcessor {
+    private final Supplier<CustomerOperationController> controllers;
+
+    public CommandProcessor(CustomerOperationController controller) {
+        this(() -> controller);
+    }
+
+    /**
+     * @param controllers dostawca bieżącego kontrolera, wywoływany przy każdym poleceniu
+     */
+    public CommandProcessor(Supplier<CustomerOperationController> controllers) {
+        this.controllers = controllers;
+    }
+
+    /**
+     * Wykonuje jedno polecenie i dopisuje odpowiedź - jedną linię zakończoną znakiem nowej linii.
+     * @param commandLine linia z poleceniem (bez znaku nowej linii)
+     * @param response bufor, do którego zostanie dopisana odpowiedź
+     */
+    public void execute(String commandLine, StringBuilder response) {
+        String command = commandLine.trim();
+        int separator = command.indexOf(' ');
+        String name = separator < 0 ? command : command.substring(0, separator);
+        String argument = separator < 0 ? "" : command.substring(separator + 1).trim();
+        // jedno polecenie w całości obsługuje ten sam kontroler
+        CustomerOperationController controller = controllers.get();
+        if ("BUY".equalsIgnoreCase(name)) {
+            buy(controller, argument, response);
+        } else if ("LIST".equalsIgnoreCase(name)) {
+            list(controller, response);
+        } else if ("STATUS".equalsIgnoreCase(name)) {
+            status(controller, response);
+        } else if ("PAY".equalsIgnoreCase(name)) {
+            pay(controller, argument, response);
+        } else if ("ORDER".equalsIgnoreCase(name)) {
+            order(controller, argument, response);
+        } else if (name.isEmpty()) {
+            response.append("ERR empty command");
+        } else {
+            response.append("ERR unknown command ").append(name);
+        }
+        response.append('\n');
+    }
+
+    private void buy(CustomerOperationController controller, String symbol, StringBuilder response) {
+        if (symbol.isEmpty()) {
+            response.append("ERR missing symbol");
+            return;
+        }
+        Optional<Product> product = controller.buyProduct(symbol);
+        if (product.isPresent()) {
+            response.append("OK ").append(product.get().getName());
+        } else {
+            response.append("SOLD_OUT ").append(symbol);
+        }
+    }
+
+    private void pay(CustomerOperationController controller, String argument, StringBuilder response) {
+        if (!controller.acceptsCash()) {
+            response.append("ERR cash payments are not supported");
+            return;
+        }
+        int separator = argument.indexOf(' ');
+        if (separator < 0) {
+            response.append("ERR missing symbol or coins");
+            return;
+        }
+        String symbol = argument.substring(0, separator);
+        Coins payment;
+        try {
+            payment = controller.payment(argument.substring(separator + 1));
+        } catch (IllegalArgumentException e) {
+            response.append("ERR ").append(e.getMessage());
+            return;
+        }
+        Sale sale = controller.buyProduct(symbol, payment);
+        if (sale.isSold()) {
+            response.append("OK ").append(sale.returnedCoins().value()).append(' ')
+                    .append(sale.product().get().getName());
+        } else {
+            response.append(sale.status()).append(' ').append(symbol).append(' ')
+                    .append(sale.returnedCoins().value());
+        }
+    }
+
+    private void order(CustomerOperationController controller, String orderText, StringBuilder response) {
+        Order order;
+        try {
+            order = Order.parse(orderText);
+        } catch (IllegalArgumentException e) {
+            response.append("ERR ").append(e.getMessage());
+            return;
+        }
+        Optional<List<Product>> products = controller.buyProducts(order);
+        if (products.isPresent()) {
+            response.append("OK ").append(products.get().size());
+        } else {
+            response.append("REJECTED ").append(order);
+        }
+    }
+
+    private void list(CustomerOperationController controller, StringBuilder response) {
+        response.append("OK ");
+        boolean first = true;
+        for (int row = 0; row < controller.rowsCount(); row++) {
+            for (int col = 0; col < controller.colsCount(); col++) {
+                Optional<Tray> tray = controller.trayAt(row, col);
+                if (!tray.isPresent()) {
+                    continue;
+                }
+                if (!first) {
+                    response.append('|');
+                }
+                first = false;
+                response.append(tray.get().getSymbol()).append(';')
+                        .append(tray.get().productsCount()).append(';')
+                        .append(controller.priceAt(row, col)).append(';')
+                        .append(tray.get().firstProductName().orElse(""));
+            }
+        }
+    }
+
+    private void status(CustomerOperationController controller, StringBuilder response) {
+        response.append("OK rows=").append(controller.rowsCount())
+                .append(" cols=").append(controller.colsCount())
+                .append(" products=").append(controller.productsCount())
+                .append(" emptyTrays=").append(controller.emptyTraysCount());
+    }
+}
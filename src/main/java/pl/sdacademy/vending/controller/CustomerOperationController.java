@@ -1,10 +1,16 @@
 package pl.sdacademy.vending.controller;
 
+import pl.sdacademy.vending.cash.CashRegister;
+import pl.sdacademy.vending.cash.Coins;
+import pl.sdacademy.vending.cash.Sale;
+import pl.sdacademy.vending.metrics.MachineMetrics;
+import pl.sdacademy.vending.metrics.MetricsSnapshot;
+import pl.sdacademy.vending.model.Order;
 import pl.sdacademy.vending.model.Product;
 import pl.sdacademy.vending.model.Tray;
 import pl.sdacademy.vending.model.VendingMachine;
-import pl.sdacademy.vending.util.StringUtils;
 
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -27,6 +33,18 @@ public class CustomerOperationController {
      * VendingMachine do tej klasy zostanie przekazana przez klasę {@link pl.sdacademy.vending.Application}
      */
     private final VendingMachine machine;
+    /**
+     * Silnik wyświetlający automat - przechowuje obraz automatu pomiędzy kolejnymi wyświetleniami.
+     */
+    private final MachineRenderer renderer;
+    /**
+     * Metryki obsługiwanego automatu - kontroler zapisuje w nich czasy zakupów i wyświetlania.
+     */
+    private final MachineMetrics metrics;
+    /**
+     * Sprzedaż za gotówkę w obsługiwanym automacie - null, jeżeli automat nie przyjmuje zapłaty.
+     */
+    private final CashRegister cashRegister;
 
     /**
      * Konstruktor, który jest używany przez {@link pl.sdacademy.vending.Application} do zdefiniowania, jaki {@link VendingMachine}
@@ -38,133 +56,87 @@ public class CustomerOperationController {
      * @param machine obiekt reprezentujący konkretny automat sprzedający, na którym będzie operował ten kontroler.
      */
     public CustomerOperationController(VendingMachine machine) {
+        this(machine, null);
+    }
+
+    /**
+     * Konstruktor kontrolera automatu, który sprzedaje produkty za gotówkę.
+     * @param machine obiekt reprezentujący konkretny automat sprzedający, na którym będzie operował ten kontroler.
+     * @param cashRegister sprzedaż za gotówkę w tym automacie lub null, jeżeli automat nie przyjmuje zapłaty
+     */
+    public CustomerOperationController(VendingMachine machine, CashRegister cashRegister) {
         this.machine = machine;
+        this.renderer = new MachineRenderer(machine);
+        this.metrics = machine.metrics();
+        this.cashRegister = cashRegister;
     }
 
     /**
-     * Metoda, której zadaniem jest wyświetlenie automatu na ekran. Odczytuje bezpośrednio z instancji {@link VendingMachine}
-     * zapisaną w polu {@link #machine} wielkość automatu - ilość wierszy, oraz ilość kolumn, w które można włożyć produkty.
+     * Metoda, której zadaniem jest wyświetlenie automatu na ekran. Obraz automatu jest budowany przez
+     * {@link MachineRenderer}, który pamięta poprzednio wyświetlony obraz i uaktualnia w nim tylko zmienione komórki,
+     * a następnie wypisuje cały obraz jednym wywołaniem.
      */
     public void printMachine() {
-        // na początku przetwarzania iterujemy (przechodzimy) po wszystkich wierszach automatu. Jego wyświetlanie musi
-        // zacząć się od góry, a każdy kolejny rząd podajników będzie skłądał się na kilka wydrukowanych linijek na ekranie
-        for (int row = 0; row < machine.rowsSize(); row++) {
-            // na sam początek musimy wydrukować górną krawędź każdej kolumny w tym wieszu. Dlatego też przechodzimy przez
-            // wszystkie kolumny, jakie może posiadać automat sprzedający
-            for (int col = 0; col < machine.colsSize(); col++) {
-                // dla każdej z komórek/podajników/tacek wywołaj metodę {@link #printUpperBoundaryForCell(int, int)}. Wyświetli ona
-                // górną krawędź komórki.
-                printUpperBoundaryForCell(row, col);
-            }
-            // po wyświetleniu górnej krawędzi każdej z komórek przenosimy kursor tekstowy do nowej linijki za pomocą println
-            System.out.println();
-
-            // kolejna pętla, także przechodząca po wszystkich kolumnach W TYM SAMYM WIERSZU co poprzednia pętla - nadal
-            // operujemy na tym samym wierszu automatu
-            for (int col = 0; col < machine.colsSize(); col++) {
-                // dla każdej z komórek wypisujemy na ekran jej symbol w odpowiednim formacie
-                printSymbolForCell(row, col);
-            }
-            // po wypisaniu symboli każdej z komórek przenosimy kursor tekstowy do nowej linii
-            System.out.println();
-
-            for (int col = 0; col < machine.colsSize(); col++) {
-                printProductNameForCell(row, col);
-            }
-            System.out.println();
-
-            for (int col = 0; col < machine.colsSize(); col++) {
-                printTrayPriceForCell(row, col);
-            }
-            System.out.println();
-
-            // ostatnią pętlą operującą nadal na TYM SAMYM wierszu jest pętla wypisująca dolną krawędź komórki
-            for (int col = 0; col < machine.colsSize(); col++) {
-                // ponownie dla każdej komórki wypisujemy na ekran jej dolną krawędź
-                printLowerBoundaryForCell(row, col);
-            }
-            // po wypisaniu dolnej krawędzi każdej z komórek przenosimy kursor do nowej linii
-            System.out.println();
-            // dopiero teraz pętla operujaca na wierszach może zacząć pracować na kolejnym wierszu.
+        long startTime = metrics.isEnabled() ? System.nanoTime() | 1 : 0;
+        renderer.printTo(System.out);
+        if (startTime != 0) {
+            metrics.recordRenderLatency(System.nanoTime() - startTime);
         }
     }
 
     /**
-     * Metoda mająca na celu wyświetlić górną krawędź zadanej komórki. Tak na prawdę, to zawsze wyświetlna ona stały tekst.
-     * Parametry w tej metodzie są przekazywane tylko po to, aby zachować spójność parametrów w metodach pomocniczych.
-     * Umożliwia to łatwe wprowadzenie w tym miejscu np. wzorca strategia/polityka, którego konkretne klasy odpowiadałby
-     * za wyświetlanie kolejnych fragmentów komórki
-     * @param row numer wiersza, z którego komórka powinna zostać wyświetlona. Aktualnie ignorowany.
-     * @param col numer kolumny, z którego komórka powinna zostać wyświetlona. Aktualnie ignorowany.
+     * @return aktualne metryki automatu - np. do wystawienia w formacie Prometheusa
      */
-    private void printUpperBoundaryForCell(int row, int col) {
-        String score = StringUtils.multiplyText("-", 12);
-        System.out.print("+" + score + "+");
+    public MetricsSnapshot metricsSnapshot() {
+        return metrics.snapshot();
     }
 
     /**
-     * Metoda mająca na celu wypisanie symbolu komórki. Zmienia ona numer wiersza na literę (korzystając ze znajomości
-     * tablicy ASCII. Kolumna natomiast służy do wyliczenia wyświetlanego numeru - zmieniamy indeksowanie od zera na
-     * indeksowanie kolumn od jedynki
-     * @param row numer wiersza, z którego komórka powinna zostać wyświetlona
-     * @param col numer kolumny, z którego komórka powinna zostać wyświetlona
+     * @return ilość wierszy automatu
      */
-    private void printSymbolForCell(int row, int col) {
-        Optional<Tray> tray = machine.trayDetailsAtPosition(row, col);
-        String symbol =
-                tray
-                        .map(Tray::getSymbol)
-                        .orElse("--");
-        String centeredSymbol = StringUtils.adjustText(symbol, 12);
-        System.out.print("|" + centeredSymbol + "|");
+    public int rowsCount() {
+        return machine.rowsSize().intValue();
     }
 
     /**
-     * Metoda wyświetlająca nazwę produktu przechowywanego na tacce. Używa metody z {@link VendingMachine} do pobrania nazwy
-     * produktu. Jest ona zwracana jako {@link Optional}, z którego jest odczytywana ostateczna wartość: w przypadku, gdy
-     * nazwa produktu była dostępna, to jest ona zwracana, natomiast jeżeli nazwa produktu nie istniała, to jest zwracana
-     * domyślna wartość "--".
-     * @param row numer wiersza, z którego komórka powinna zostać wyświetlona
-     * @param col numer kolumny, z którego komórka powinna zostać wyświetlona
+     * @return ilość kolumn automatu
      */
-    private void printProductNameForCell(int row, int col) {
-        Optional<String> productName = machine.productNameAtPosition(row, col);
-        String obtainedProductName = productName.orElse("--");
-        String productNameToDisplay = StringUtils.adjustText(obtainedProductName, 12);
-        System.out.print("|" + productNameToDisplay + "|");
+    public int colsCount() {
+        return machine.colsSize().intValue();
     }
 
     /**
-     * Metoda wyświetlająca cenę produktu. Tacka, na której jest nadrukowana cena, jest pobierana z automatu, jednak
-     * ze względu na to, że nie wszystkie tacki muszą być zainstalowane, metoda ta zwraca obiekt {@link Optional}.
-     * Tacka znajdująca się wewnątrz Optionala, musi zostać "przekonwertowana" na cenę - inaczej mówiąc, z obiektu, który
-     * jest w środku Optionala, należy odczytać cenę. Do wykonania tej operacji służy metoda .map, która "mapuje" wartość
-     * w śroku optionala za pomocą przekazanej metody, a jeżeli w środku nie było żadnej wartości, to nie jest wykonywana
-     * żadna operacja.
-     * Ostateczniem zwracana jest odczytana cena produktu lub wartość domyślna 0. Wartości te są konwertowane na tekst
-     * oraz centrowane za pomocą metod z klasy {@link StringUtils}
-     * @param row numer wiersza, z którego komórka powinna zostać wyświetlona
-     * @param col numer kolumny, z którego komórka powinna zostać wyświetlona
+     * Pobiera tackę ze wskazanej pozycji automatu - np. aby przedstawić jej stan w innej formie niż wyświetlenie
+     * całego automatu.
+     * @param row numer wiersza
+     * @param col numer kolumny
+     * @return tacka lub pusty optional, jeżeli na pozycji nie ma tacki
      */
-    private void printTrayPriceForCell(int row, int col) {
-        Optional<Tray> tray = machine.trayDetailsAtPosition(row, col);
-        Long priceForTray = tray
-                .map((trayInOptional) -> trayInOptional.getPrice())
-                .orElse(0L);
-        String formattedMoney = StringUtils.formatMoney(priceForTray);
-        String priceToDisplay = StringUtils.adjustText(formattedMoney, 12);
-        System.out.print("|" + priceToDisplay + "|");
+    public Optional<Tray> trayAt(int row, int col) {
+        return machine.trayDetailsAtPosition(row, col);
     }
 
     /**
-     * Metoda wyświetlająca dolną krawędź komórki. Analogiczna do {@link #printUpperBoundaryForCell(int, int)}
-     * @param row numer wiersza, z którego komórka powinna zostać wyświetlona. Aktualnie ignorowany.
-     * @param col numer kolumny, z którego komórka powinna zostać wyświetlona. Aktualnie ignorowany.
+     * @param row numer wiersza
+     * @param col numer kolumny
+     * @return aktualna cena tacki w groszach lub -1, jeżeli na pozycji nie ma tacki
      */
-    private void printLowerBoundaryForCell(int row, int col) {
-        System.out.print(
-                "+" + StringUtils.multiplyText("-", 12) + "+"
-        );
+    public long priceAt(int row, int col) {
+        return machine.priceAt(row, col);
+    }
+
+    /**
+     * @return łączna ilość produktów w automacie
+     */
+    public long productsCount() {
+        return machine.productsCount();
+    }
+
+    /**
+     * @return ilość pustych tacek w automacie
+     */
+    public int emptyTraysCount() {
+        return machine.emptyTraysCount();
     }
 
     /**
@@ -174,6 +146,78 @@ public class CustomerOperationController {
      * @return
      */
     public Optional<Product> buyProduct(String symbol) {
-        return machine.buyProductWithSymbol(symbol);
+        long startTime = purchaseStartTime();
+        Optional<Product> product = machine.buyProductWithSymbol(symbol);
+        if (startTime != 0) {
+            metrics.recordPurchaseLatency(System.nanoTime() - startTime);
+        }
+        return product;
+    }
+
+    /**
+     * @return true, jeżeli automat sprzedaje produkty za gotówkę ({@link #buyProduct(String, Coins)})
+     */
+    public boolean acceptsCash() {
+        return cashRegister != null;
+    }
+
+    /**
+     * Tworzy zapłatę z monet wpisanych przez kupującego.
+     * @param coinValues nominały kolejnych monet w groszach, oddzielone przecinkami, np. "200,50,50"
+     * @return monety o nominałach kasy automatu
+     * @throws IllegalArgumentException jeżeli tekst nie jest listą monet o nominałach kasy automatu
+     * @throws IllegalStateException jeżeli automat nie przyjmuje zapłaty
+     */
+    public Coins payment(String coinValues) {
+        return cashRegister().inventory().coins(coinValues);
+    }
+
+    /**
+     * Metoda umożliwiająca kupno produktu za gotówkę - produkt jest wydawany tylko wtedy, gdy zapłata pokrywa jego
+     * aktualną cenę, a kasa może wydać resztę ({@link CashRegister#buy(String, Coins)}).
+     * @param symbol symbol tacki
+     * @param payment wrzucone monety ({@link #payment(String)})
+     * @return wynik zakupu - wydany produkt i reszta albo powód odrzucenia i zwracana zapłata
+     * @throws IllegalStateException jeżeli automat nie przyjmuje zapłaty
+     */
+    public Sale buyProduct(String symbol, Coins payment) {
+        CashRegister register = cashRegister();
+        long startTime = purchaseStartTime();
+        Sale sale = register.buy(symbol, payment);
+        if (startTime != 0) {
+            metrics.recordPurchaseLatency(System.nanoTime() - startTime);
+        }
+        return sale;
+    }
+
+    /**
+     * Metoda umożliwiająca kupno wielu produktów naraz. Zamówienie jest przekazywane do automatu, który realizuje je
+     * w całości albo wcale.
+     * @param order zamówienie, np. utworzone z tekstu "3x A1, 2x C4"
+     * @return kupione produkty lub pusty optional, jeżeli zamówienia nie udało się zrealizować
+     */
+    public Optional<List<Product>> buyProducts(Order order) {
+        long startTime = purchaseStartTime();
+        Optional<List<Product>> products = machine.buyProducts(order);
+        if (startTime != 0) {
+            metrics.recordPurchaseLatency(System.nanoTime() - startTime);
+        }
+        return products;
+    }
+
+    private CashRegister cashRegister() {
+        if (cashRegister == null) {
+            throw new IllegalStateException("Machine does not accept cash payments");
+        }
+        return cashRegister;
+    }
+
+    /**
+     * Zegar jest odczytywany tylko dla zakupów wybranych do pomiaru ({@link MachineMetrics#shouldSamplePurchaseLatency()}).
+     * Najmłodszy bit czasu jest ustawiany na 1, więc zmierzony zakup nigdy nie ma czasu początkowego 0.
+     * @return aktualny czas w nanosekundach lub 0, jeżeli czas zakupu nie jest mierzony
+     */
+    private long purchaseStartTime() {
+        return metrics.shouldSamplePurchaseLatency() ? System.nanoTime() | 1 : 0;
     }
 }
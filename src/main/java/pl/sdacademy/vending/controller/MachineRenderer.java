@@ -0,0 +1,213 @@
+package pl.sdacademy.vending.controller;
+
+import pl.sdacademy.vending.model.Tray;
+import pl.sdacademy.vending.model.VendingMachine;
+import pl.sdacademy.vending.util.StringUtils;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * Silnik wyświetlający automat. Cały obraz automatu (ramka) jest budowany w jednym buforze znaków, który jest tworzony
+ * raz, przy tworzeniu obiektu, i używany ponownie przy każdym wyświetleniu. Obraz ma stały układ - każdy wiersz automatu
+ * zajmuje pięć linii tekstu, a każda komórka 14 znaków w linii - więc każdy fragment komórki ma w buforze swoje stałe
+ * miejsce.
+ * <br>
+ * Obraz zawiera tylko te wiersze i kolumny automatu, w których są pozycje automatu
+ * ({@link VendingMachine#positionsCount()}) - w automacie z siatką gęstą wszystkie, a z siatką rzadką tylko wiersze
+ * i kolumny z tackami - i nie więcej niż {@link #MAX_VISIBLE_ROWS} wierszy oraz {@link #MAX_VISIBLE_COLS} kolumn.
+ * Wiersze i kolumny są wyszukiwane przez przejrzenie pozycji, więc pamięć i czas wyświetlania zależą od ilości tacek,
+ * a nie od ilości wierszy i kolumn automatu. O tackach, które nie zmieściły się w obrazie, informuje ostatnia linia.
+ * <br>
+ * Krawędzie komórek oraz znaki końca linii są wpisywane do bufora tylko raz. Przy kolejnych wyświetleniach ponownie
+ * wypełniane są tylko te komórki, których tacka zmieniła się od poprzedniego wyświetlenia - zmiana jest rozpoznawana po
+ * wersji zawartości tacki ({@link Tray#contentVersion()}) i po aktualnej cenie tacki
+ * ({@link VendingMachine#priceAt(int, int)}), odczytywanej bez zamków z tabeli cen automatu. Gotowy obraz jest
+ * wypisywany jednym wywołaniem, co eliminuje migotanie ekranu i setki wywołań systemowych na jedno wyświetlenie. Tekst
+ * komórek jest formatowany metodami {@link StringUtils}, które zapisują wynik wprost do bufora, bez tworzenia
+ * pośrednich obiektów.
+ */
+public class MachineRenderer {
+    /**
+     * Szerokość wnętrza komórki, do której dopasowywane są symbol, nazwa produktu i cena.
+     */
+    static final int CELL_CONTENT_WIDTH = 12;
+    /**
+     * Największa ilość wierszy i kolumn automatu w obrazie - pozostałe tacki nie są wyświetlane.
+     */
+    static final int MAX_VISIBLE_ROWS = 50;
+    static final int MAX_VISIBLE_COLS = 10;
+    private static final int CELL_WIDTH = CELL_CONTENT_WIDTH + 2;
+    private static final int LINES_PER_ROW = 5;
+    private static final int SYMBOL_LINE = 1;
+    private static final int PRODUCT_NAME_LINE = 2;
+    private static final int PRICE_LINE = 3;
+    private static final String NO_VALUE = "--";
+
+    private final VendingMachine machine;
+    /**
+     * Numery wierszy i kolumn automatu wyświetlanych w obrazie, rosnąco.
+     */
+    private final int[] visibleRows;
+    private final int[] visibleCols;
+    private final int lineLength;
+    private final char[] frame;
+    /**
+     * Tacki, wersje ich zawartości oraz ceny, które zostały wpisane do bufora przy poprzednim wyświetleniu - według
+     * komórek obrazu (wiersz obrazu * ilość kolumn obrazu + kolumna obrazu).
+     */
+    private final Tray[] renderedTrays;
+    private final long[] renderedVersions;
+    private final long[] renderedPrices;
+    private boolean rendered;
+    /**
+     * Bufor, do którego formatowana jest cena wypełnianej komórki - używany ponownie dla każdej komórki.
+     */
+    private final StringBuilder priceText = new StringBuilder(StringUtils.MAX_MONEY_LENGTH);
+
+    public MachineRenderer(VendingMachine machine) {
+        this.machine = machine;
+        int positionsCount = machine.positionsCount();
+        // pozycje są nadawane wiersz po wierszu, więc wiersze obrazu to numery wierszy pierwszych pozycji
+        int[] rows = new int[Math.min(positionsCount, MAX_VISIBLE_ROWS)];
+        int rowsCount = 0;
+        int[] cols = new int[Math.min(positionsCount, MAX_VISIBLE_ROWS * MAX_VISIBLE_COLS)];
+        int colsCount = 0;
+        int position = 0;
+        for (; position < positionsCount; position++) {
+            int row = machine.rowAtPosition(position);
+            if (rowsCount == 0 || rows[rowsCount - 1] != row) {
+                if (rowsCount == rows.length) {
+                    break;
+                }
+                rows[rowsCount++] = row;
+            }
+            if (colsCount == cols.length) {
+                cols = Arrays.copyOf(cols, colsCount * 2);
+            }
+            cols[colsCount++] = machine.colAtPosition(position);
+        }
+        int positionsInVisibleRows = position;
+        Arrays.sort(cols, 0, colsCount);
+        int distinctCols = 0;
+        int hiddenTrays = positionsCount - positionsInVisibleRows;
+        for (int index = 0; index < colsCount; index++) {
+            if (distinctCols > 0 && cols[distinctCols - 1] == cols[index]) {
+                continue;
+            }
+            if (distinctCols == MAX_VISIBLE_COLS) {
+                // kolumny są posortowane - wszystkie pozostałe pozycje leżą w kolumnach spoza obrazu
+                hiddenTrays += colsCount - index;
+                break;
+            }
+            cols[distinctCols++] = cols[index];
+        }
+        this.visibleRows = Arrays.copyOf(rows, rowsCount);
+        this.visibleCols = Arrays.copyOf(cols, distinctCols);
+
+        String lineSeparator = System.lineSeparator();
+        String footer = hiddenTrays == 0 ? "" : "... and " + hiddenTrays + " more trays" + lineSeparator;
+        this.lineLength = visibleCols.length * CELL_WIDTH + lineSeparator.length();
+        int cellsCount = visibleRows.length * visibleCols.length;
+        this.frame = new char[visibleRows.length * LINES_PER_ROW * lineLength + footer.length()];
+        footer.getChars(0, footer.length(), frame, frame.length - footer.length());
+        this.renderedTrays = new Tray[cellsCount];
+        this.renderedVersions = new long[cellsCount];
+        this.renderedPrices = new long[cellsCount];
+        drawStaticParts(lineSeparator);
+    }
+
+    /**
+     * Uaktualnia obraz automatu i wypisuje go jednym wywołaniem na wskazany strumień.
+     * @param out strumień, na który zostanie wypisany obraz automatu
+     * @return ilość komórek, które musiały zostać ponownie wypełnione
+     */
+    public synchronized int printTo(PrintStream out) {
+        int renderedCells = refresh();
+        out.print(frame);
+        out.flush();
+        return renderedCells;
+    }
+
+    /**
+     * Zwraca aktualny obraz automatu jako tekst.
+     * @return obraz automatu, identyczny z wypisywanym przez {@link #printTo(PrintStream)}
+     */
+    public synchronized String render() {
+        refresh();
+        return new String(frame);
+    }
+
+    private int refresh() {
+        int renderedCells = 0;
+        for (int row = 0; row < visibleRows.length; row++) {
+            for (int col = 0; col < visibleCols.length; col++) {
+                int cell = row * visibleCols.length + col;
+                int machineRow = visibleRows[row];
+                int machineCol = visibleCols[col];
+                Tray tray = machine.trayDetailsAtPosition(machineRow, machineCol).orElse(null);
+                // wersja jest odczytywana przed zawartością tacki, więc zakup wykonany w trakcie wypełniania komórki
+                // zostanie uwzględniony najpóźniej przy kolejnym wyświetleniu
+                long version = tray == null ? 0 : tray.contentVersion();
+                long price = tray == null ? 0 : machine.priceAt(machineRow, machineCol);
+                if (rendered && tray == renderedTrays[cell] && version == renderedVersions[cell]
+                        && price == renderedPrices[cell]) {
+                    continue;
+                }
+                if (!rendered || tray != renderedTrays[cell]) {
+                    drawSymbol(row, col, tray);
+                }
+                drawContent(row, col, tray, price);
+                renderedTrays[cell] = tray;
+                renderedVersions[cell] = version;
+                renderedPrices[cell] = price;
+                renderedCells++;
+            }
+        }
+        rendered = true;
+        return renderedCells;
+    }
+
+    private void drawStaticParts(String lineSeparator) {
+        for (int row = 0; row < visibleRows.length; row++) {
+            for (int line = 0; line < LINES_PER_ROW; line++) {
+                boolean boundary = line == 0 || line == LINES_PER_ROW - 1;
+                for (int col = 0; col < visibleCols.length; col++) {
+                    int offset = cellOffset(row, line, col);
+                    frame[offset] = boundary ? '+' : '|';
+                    frame[offset + CELL_WIDTH - 1] = boundary ? '+' : '|';
+                    if (boundary) {
+                        Arrays.fill(frame, offset + 1, offset + CELL_WIDTH - 1, '-');
+                    }
+                }
+                lineSeparator.getChars(0, lineSeparator.length(), frame, lineOffset(row, line + 1)
+                        - lineSeparator.length());
+            }
+        }
+    }
+
+    private void drawSymbol(int row, int col, Tray tray) {
+        drawText(cellOffset(row, SYMBOL_LINE, col), tray == null ? NO_VALUE : tray.getSymbol());
+    }
+
+    private void drawContent(int row, int col, Tray tray, long price) {
+        Optional<String> productName = tray == null ? Optional.empty() : tray.firstProductName();
+        drawText(cellOffset(row, PRODUCT_NAME_LINE, col), productName.orElse(NO_VALUE));
+        priceText.setLength(0);
+        StringUtils.formatMoney(price, priceText);
+        drawText(cellOffset(row, PRICE_LINE, col), priceText);
+    }
+
+    private void drawText(int cellOffset, CharSequence text) {
+        StringUtils.adjustText(text, CELL_CONTENT_WIDTH, frame, cellOffset + 1);
+    }
+
+    private int cellOffset(int row, int line, int col) {
+        return lineOffset(row, line) + col * CELL_WIDTH;
+    }
+
+    private int lineOffset(int row, int line) {
+        return (row * LINES_PER_ROW + line) * lineLength;
+    }
+}
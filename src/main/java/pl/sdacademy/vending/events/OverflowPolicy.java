@@ -0,0 +1,20 @@
+package pl.sdacademy.vending.events;
+
+/**
+ * Zachowanie {@link PurchaseEventBus}, gdy najwolniejszy odbiorca nie nadąża i bufor szyny się zapełnia.
+ */
+public enum OverflowPolicy {
+    /**
+     * Zdarzenie, dla którego brakuje miejsca, jest odrzucane. Kupujący nigdy nie czeka, a odbiorcy tracą zdarzenia.
+     */
+    DROP,
+    /**
+     * Kupujący czeka na zwolnienie miejsca. Żadne zdarzenie nie ginie, ale wolny odbiorca spowalnia zakupy.
+     */
+    BLOCK,
+    /**
+     * Po zapełnieniu trzech czwartych bufora publikowane jest już tylko co n-te zdarzenie (wybierane losowo), a przy
+     * pełnym buforze zdarzenia są odrzucane. Odbiorcy zamiast długiej luki otrzymują równomierną próbkę zakupów.
+     */
+    SAMPLE
+}
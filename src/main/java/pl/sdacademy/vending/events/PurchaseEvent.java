@@ -0,0 +1,75 @@
+package pl.sdacademy.vending.events;
+
+import pl.sdacademy.vending.model.Product;
+import pl.sdacademy.vending.model.Tray;
+
+/**
+ * Zdarzenie zakupu (albo uzupełnienia tacki - {@link #isRestock()}) przekazywane przez {@link PurchaseEventBus}. Obiekty zdarzeń są tworzone raz, razem z buforem
+ * szyny, i używane ponownie dla kolejnych zakupów - dlatego odbiorca może korzystać ze zdarzenia tylko w trakcie
+ * wywołania {@link PurchaseEventHandler#onEvent(PurchaseEvent, boolean)}. Jeżeli potrzebuje danych później, musi je
+ * skopiować.
+ */
+public class PurchaseEvent {
+    private String machineId;
+    private Tray tray;
+    private Product product;
+    private long price;
+    private int restockedCount;
+    private long sequence;
+
+    PurchaseEvent() {
+    }
+
+    void set(String machineId, Tray tray, Product product, long price, int restockedCount, long sequence) {
+        this.machineId = machineId;
+        this.tray = tray;
+        this.product = product;
+        this.price = price;
+        this.restockedCount = restockedCount;
+        this.sequence = sequence;
+    }
+
+    /**
+     * @return identyfikator automatu, w którym dokonano zakupu
+     */
+    public String machineId() {
+        return machineId;
+    }
+
+    public Tray tray() {
+        return tray;
+    }
+
+    public Product product() {
+        return product;
+    }
+
+    /**
+     * @return cena wydanego produktu w groszach; 0 dla uzupełnienia tacki
+     */
+    public long price() {
+        return price;
+    }
+
+    /**
+     * @return true, jeżeli zdarzenie opisuje uzupełnienie tacki, a nie zakup
+     */
+    public boolean isRestock() {
+        return restockedCount != 0;
+    }
+
+    /**
+     * @return ilość sztuk przekazana do {@link pl.sdacademy.vending.model.PurchaseListener#productsRestocked}
+     * (zapowiedziana albo ujemna ilość niedołożonych sztuk); 0 dla zakupu
+     */
+    public int restockedCount() {
+        return restockedCount;
+    }
+
+    /**
+     * @return numer kolejny zdarzenia na szynie - rośnie o 1 z każdym opublikowanym zdarzeniem
+     */
+    public long sequence() {
+        return sequence;
+    }
+}
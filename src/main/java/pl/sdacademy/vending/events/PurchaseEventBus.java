@@ -0,0 +1,448 @@
+package pl.sdacademy.vending.events;
+
+import pl.sdacademy.vending.model.Product;
+import pl.sdacademy.vending.model.PurchaseListener;
+import pl.sdacademy.vending.model.Tray;
+import pl.sdacademy.vending.util.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Szyna zdarzeń zakupów oparta o bufor cykliczny (w stylu LMAX Disruptor). Pozwala przekazać każdy zakup wielu
+ * odbiorcom (analityka, alerty uzupełnień, dziennik) bez wydłużania ścieżki kupującego o czas ich pracy.
+ * <br>
+ * Bufor ma stałą wielkość, a obiekty zdarzeń są tworzone raz - publikacja zdarzenia nie tworzy żadnych obiektów:
+ * kupujący rezerwuje kolejny numer operacją CAS, wypełnia pola zdarzenia leżącego pod tym numerem i oznacza je jako
+ * opublikowane. Wielu kupujących może publikować jednocześnie.
+ * <br>
+ * Każdy odbiorca posiada własny wątek i własny licznik przetworzonych zdarzeń, więc odbiorcy pracują niezależnie,
+ * każdy we własnym tempie. Zdarzenie może zostać nadpisane dopiero wtedy, gdy przetworzą je wszyscy odbiorcy - jeżeli
+ * najwolniejszy odbiorca nie nadąża, o dalszym postępowaniu decyduje {@link OverflowPolicy}. Sposób czekania odbiorców
+ * na nowe zdarzenia określa {@link WaitStrategy}.
+ * <br>
+ * Instancja szyny jest tworzona TYLKO za pomocą Buildera. Wątki odbiorców startują przy tworzeniu szyny.
+ */
+public class PurchaseEventBus implements AutoCloseable {
+    private static final long NOT_STARTED = -1;
+
+    private final PurchaseEvent[] events;
+    /**
+     * Numer "okrążenia" bufora, w którym opublikowano zdarzenie leżące w danej komórce. Odbiorca porównuje go
+     * z okrążeniem oczekiwanego numeru - dzięki temu wie, czy zdarzenie jest już opublikowane, nawet jeżeli kupujący
+     * z wyższymi numerami skończyli publikację wcześniej.
+     */
+    private final AtomicIntegerArray publishedRounds;
+    private final int mask;
+    private final int indexShift;
+    private final AtomicLong claimedSequence = new AtomicLong(NOT_STARTED);
+    private final Consumer[] consumers;
+    private final WaitStrategy waitStrategy;
+    private final OverflowPolicy overflowPolicy;
+    private final int samplingMask;
+    private final long highWaterMark;
+    private final LongAdder publishedCount = new LongAdder();
+    private final LongAdder droppedCount = new LongAdder();
+    /**
+     * Najmniejszy numer przetworzony przez wszystkich odbiorców, zapamiętany przy poprzednim sprawdzeniu. Pozwala nie
+     * czytać liczników wszystkich odbiorców przy każdej publikacji.
+     */
+    private volatile long cachedGatingSequence = NOT_STARTED;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition eventsPublished = lock.newCondition();
+    private volatile boolean consumersWaiting;
+    private volatile boolean running = true;
+
+    private PurchaseEventBus(Builder builder) {
+        int capacity = builder.capacity;
+        events = new PurchaseEvent[capacity];
+        publishedRounds = new AtomicIntegerArray(capacity);
+        for (int index = 0; index < capacity; index++) {
+            events[index] = new PurchaseEvent();
+            publishedRounds.set(index, -1);
+        }
+        mask = capacity - 1;
+        indexShift = Integer.numberOfTrailingZeros(capacity);
+        waitStrategy = builder.waitStrategy;
+        overflowPolicy = builder.overflowPolicy;
+        samplingMask = builder.samplingInterval - 1;
+        highWaterMark = capacity * 3L / 4;
+        consumers = new Consumer[builder.handlerNames.size()];
+        for (int consumer = 0; consumer < consumers.length; consumer++) {
+            consumers[consumer] = new Consumer(builder.handlerNames.get(consumer), builder.handlers.get(consumer));
+        }
+        for (Consumer consumer : consumers) {
+            consumer.thread.start();
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Tworzy Builder wypełniony parametrami z konfiguracji: "events.capacity" (domyślnie 4096),
+     * "events.wait.strategy" (domyślnie SLEEPING), "events.overflow.policy" (domyślnie DROP) oraz
+     * "events.sampling.interval" (domyślnie 8). Odbiorców należy dodać do zwróconego Buildera.
+     * @param configuration konfiguracja szyny
+     * @return Builder szyny
+     */
+    public static Builder builder(Configuration configuration) {
+        return builder()
+                .capacity(configuration.getProperty("events.capacity", 4096L).intValue())
+                .waitStrategy(WaitStrategy.valueOf(configuration.getProperty("events.wait.strategy", "SLEEPING")))
+                .overflowPolicy(OverflowPolicy.valueOf(configuration.getProperty("events.overflow.policy", "DROP")))
+                .samplingInterval(configuration.getProperty("events.sampling.interval", 8L).intValue());
+    }
+
+    /**
+     * Tworzy słuchacza zakupów publikującego na tej szynie zakupy (razem z ceną) oraz uzupełnienia tacek. Słuchacza
+     * należy zarejestrować w automacie za pomocą
+     * {@link pl.sdacademy.vending.model.VendingMachine#addPurchaseListener(PurchaseListener)}.
+     * @param machineId identyfikator automatu, przekazywany w zdarzeniach
+     * @return słuchacz zakupów
+     */
+    public PurchaseListener listener(String machineId) {
+        return new PurchaseListener() {
+            @Override
+            public void productPurchased(Tray tray, Product product) {
+                publish(machineId, tray, product);
+            }
+
+            @Override
+            public void productPurchased(Tray tray, Product product, long price) {
+                publish(machineId, tray, product, price);
+            }
+
+            @Override
+            public void productsRestocked(Tray tray, Product product, int count) {
+                publishRestock(machineId, tray, product, count);
+            }
+        };
+    }
+
+    /**
+     * Publikuje zdarzenie zakupu po cenie tacki. Metoda nie tworzy żadnych obiektów.
+     * @see #publish(String, Tray, Product, long)
+     */
+    public boolean publish(String machineId, Tray tray, Product product) {
+        return publish(machineId, tray, product, tray.getPrice());
+    }
+
+    /**
+     * Publikuje zdarzenie zakupu. Metoda nie tworzy żadnych obiektów.
+     * @param machineId identyfikator automatu
+     * @param tray tacka, z której wydano produkt
+     * @param product wydany produkt
+     * @param price cena produktu w groszach
+     * @return true, jeżeli zdarzenie zostało opublikowane; false, jeżeli zostało odrzucone (przepełnienie lub
+     * zamknięta szyna)
+     */
+    public boolean publish(String machineId, Tray tray, Product product, long price) {
+        return publish(machineId, tray, product, price, 0);
+    }
+
+    /**
+     * Publikuje zdarzenie uzupełnienia tacki. Metoda nie tworzy żadnych obiektów.
+     * @param machineId identyfikator automatu
+     * @param tray uzupełniana tacka
+     * @param product dokładany produkt
+     * @param count ilość zapowiedzianych sztuk lub ujemna ilość sztuk, których nie dołożono
+     *              ({@link PurchaseListener#productsRestocked(Tray, Product, int)})
+     * @return true, jeżeli zdarzenie zostało opublikowane; false, jeżeli zostało odrzucone
+     */
+    public boolean publishRestock(String machineId, Tray tray, Product product, int count) {
+        return count == 0 || publish(machineId, tray, product, 0, count);
+    }
+
+    private boolean publish(String machineId, Tray tray, Product product, long price, int restockedCount) {
+        long sequence = claim();
+        if (sequence == NOT_STARTED) {
+            droppedCount.increment();
+            return false;
+        }
+        int index = (int) sequence & mask;
+        events[index].set(machineId, tray, product, price, restockedCount, sequence);
+        // zapis z semantyką release - odbiorca, który zobaczy numer okrążenia, zobaczy też pola zdarzenia
+        publishedRounds.lazySet(index, (int) (sequence >>> indexShift));
+        publishedCount.increment();
+        if (consumersWaiting) {
+            wakeUpConsumers();
+        }
+        return true;
+    }
+
+    /**
+     * @return ilość opublikowanych zdarzeń
+     */
+    public long publishedCount() {
+        return publishedCount.sum();
+    }
+
+    /**
+     * @return ilość zdarzeń odrzuconych z powodu przepełnienia (lub zamknięcia szyny)
+     */
+    public long droppedCount() {
+        return droppedCount.sum();
+    }
+
+    /**
+     * @return ilość opublikowanych zdarzeń, których nie przetworzył jeszcze najwolniejszy odbiorca
+     */
+    public long lag() {
+        long claimed = claimedSequence.get();
+        return claimed - minimumConsumerSequence(claimed);
+    }
+
+    /**
+     * Zamyka szynę: nowe zdarzenia są odrzucane, a odbiorcy przetwarzają zdarzenia opublikowane do tej pory i kończą
+     * pracę. Metoda czeka na zakończenie wątków odbiorców.
+     */
+    @Override
+    public void close() {
+        running = false;
+        wakeUpConsumers();
+        for (Consumer consumer : consumers) {
+            try {
+                consumer.thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Rezerwuje kolejny numer zdarzenia zgodnie z zasadą przepełnienia.
+     * @return zarezerwowany numer albo {@link #NOT_STARTED}, jeżeli zdarzenie ma zostać odrzucone
+     */
+    private long claim() {
+        while (running) {
+            long current = claimedSequence.get();
+            long next = current + 1;
+            long gatingSequence = cachedGatingSequence;
+            if (overflowPolicy == OverflowPolicy.SAMPLE && next - gatingSequence > highWaterMark) {
+                gatingSequence = refreshGatingSequence(current);
+                if (next - gatingSequence > highWaterMark
+                        && (ThreadLocalRandom.current().nextInt() & samplingMask) != 0) {
+                    return NOT_STARTED;
+                }
+            }
+            if (next - events.length > gatingSequence) {
+                gatingSequence = refreshGatingSequence(current);
+                if (next - events.length > gatingSequence) {
+                    if (overflowPolicy != OverflowPolicy.BLOCK) {
+                        return NOT_STARTED;
+                    }
+                    LockSupport.parkNanos(1);
+                    continue;
+                }
+            }
+            if (claimedSequence.compareAndSet(current, next)) {
+                return next;
+            }
+        }
+        return NOT_STARTED;
+    }
+
+    private long refreshGatingSequence(long claimed) {
+        long gatingSequence = minimumConsumerSequence(claimed);
+        cachedGatingSequence = gatingSequence;
+        return gatingSequence;
+    }
+
+    /**
+     * Szyna bez odbiorców nie musi na nikogo czekać - wszystkie zdarzenia uznajemy za przetworzone.
+     */
+    private long minimumConsumerSequence(long claimed) {
+        long minimum = claimed;
+        for (Consumer consumer : consumers) {
+            minimum = Math.min(minimum, consumer.sequence.get());
+        }
+        return minimum;
+    }
+
+    /**
+     * Zwraca najwyższy numer, do którego (włącznie) wszystkie zdarzenia od lowerBound są już opublikowane.
+     */
+    private long highestPublishedSequence(long lowerBound) {
+        long claimed = claimedSequence.get();
+        for (long sequence = lowerBound; sequence <= claimed; sequence++) {
+            if (publishedRounds.get((int) sequence & mask) != (int) (sequence >>> indexShift)) {
+                return sequence - 1;
+            }
+        }
+        return claimed;
+    }
+
+    private void wakeUpConsumers() {
+        lock.lock();
+        try {
+            consumersWaiting = false;
+            eventsPublished.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Usypia odbiorcę do czasu publikacji zdarzenia. Odbiorca najpierw ustawia flagę czekania, a dopiero potem
+     * sprawdza bufor, a publikujący najpierw publikuje, a potem sprawdza flagę - więc nie może dojść do sytuacji,
+     * w której żaden z nich nie zauważy drugiego. Mimo to sen jest ograniczony czasowo, na wypadek zamknięcia szyny.
+     */
+    private void awaitPublication(long sequence) throws InterruptedException {
+        lock.lock();
+        try {
+            consumersWaiting = true;
+            if (highestPublishedSequence(sequence) < sequence && running) {
+                eventsPublished.await(1, TimeUnit.MILLISECONDS);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Odbiorca zdarzeń wraz ze swoim wątkiem i licznikiem przetworzonych zdarzeń.
+     */
+    private class Consumer implements Runnable {
+        private final PurchaseEventHandler handler;
+        private final AtomicLong sequence = new AtomicLong(NOT_STARTED);
+        private final Thread thread;
+
+        private Consumer(String name, PurchaseEventHandler handler) {
+            this.handler = handler;
+            this.thread = new Thread(this, "purchase-events-" + name);
+            thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            long nextSequence = sequence.get() + 1;
+            int attempt = 0;
+            try {
+                while (true) {
+                    long available = highestPublishedSequence(nextSequence);
+                    if (available < nextSequence) {
+                        if (!running && claimedSequence.get() < nextSequence) {
+                            return;
+                        }
+                        if (waitStrategy == WaitStrategy.BLOCKING && attempt >= WaitStrategy.SPIN_TRIES) {
+                            awaitPublication(nextSequence);
+                        } else {
+                            attempt = waitStrategy.idle(attempt);
+                        }
+                        continue;
+                    }
+                    attempt = 0;
+                    for (long current = nextSequence; current <= available; current++) {
+                        handle(events[(int) current & mask], current == available);
+                    }
+                    // zwolnienie komórek dla publikujących - zapis z semantyką release wystarcza
+                    sequence.lazySet(available);
+                    nextSequence = available + 1;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void handle(PurchaseEvent event, boolean endOfBatch) {
+            try {
+                handler.onEvent(event, endOfBatch);
+            } catch (RuntimeException e) {
+                // błąd jednego odbiorcy nie może zatrzymać jego wątku - kolejne zdarzenia są przetwarzane dalej
+                System.err.println("Purchase event handler " + thread.getName() + " failed: " + e);
+            }
+        }
+    }
+
+    public static class Builder {
+        private final List<String> handlerNames = new ArrayList<>();
+        private final List<PurchaseEventHandler> handlers = new ArrayList<>();
+        private int capacity = 4096;
+        private WaitStrategy waitStrategy = WaitStrategy.SLEEPING;
+        private OverflowPolicy overflowPolicy = OverflowPolicy.DROP;
+        private int samplingInterval = 8;
+
+        private Builder() {
+        }
+
+        /**
+         * @param capacity ilość zdarzeń mieszczących się w buforze - potęga dwójki
+         * @return ten sam Builder
+         */
+        public Builder capacity(int capacity) {
+            this.capacity = capacity;
+            return this;
+        }
+
+        public Builder waitStrategy(WaitStrategy waitStrategy) {
+            this.waitStrategy = waitStrategy;
+            return this;
+        }
+
+        public Builder overflowPolicy(OverflowPolicy overflowPolicy) {
+            this.overflowPolicy = overflowPolicy;
+            return this;
+        }
+
+        /**
+         * @param samplingInterval co które zdarzenie jest publikowane przy prawie pełnym buforze w trybie
+         *                         {@link OverflowPolicy#SAMPLE} - potęga dwójki
+         * @return ten sam Builder
+         */
+        public Builder samplingInterval(int samplingInterval) {
+            this.samplingInterval = samplingInterval;
+            return this;
+        }
+
+        /**
+         * Dodaje odbiorcę zdarzeń.
+         * @param name nazwa odbiorcy, używana w nazwie jego wątku
+         * @param handler odbiorca
+         * @return ten sam Builder
+         */
+        public Builder handler(String name, PurchaseEventHandler handler) {
+            handlerNames.add(name);
+            handlers.add(handler);
+            return this;
+        }
+
+        /**
+         * Dodaje jako odbiorcę zwykłego słuchacza zakupów (np. dziennik zakupów) - będzie on wywoływany w wątku
+         * odbiorcy zamiast w wątku kupującego i otrzyma zarówno zakupy (razem z ceną), jak i uzupełnienia tacek.
+         * Słuchacz, który musi otrzymać każde zdarzenie (jak dziennik), wymaga zasady {@link OverflowPolicy#BLOCK}.
+         * @param name nazwa odbiorcy
+         * @param listener słuchacz zakupów
+         * @return ten sam Builder
+         */
+        public Builder listener(String name, PurchaseListener listener) {
+            return handler(name, (event, endOfBatch) -> {
+                if (event.isRestock()) {
+                    listener.productsRestocked(event.tray(), event.product(), event.restockedCount());
+                } else {
+                    listener.productPurchased(event.tray(), event.product(), event.price());
+                }
+            });
+        }
+
+        public PurchaseEventBus build() {
+            if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+                throw new IllegalStateException("Event bus capacity must be a power of two, was " + capacity);
+            }
+            if (samplingInterval < 1 || Integer.bitCount(samplingInterval) != 1) {
+                throw new IllegalStateException("Sampling interval must be a power of two, was " + samplingInterval);
+            }
+            return new PurchaseEventBus(this);
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package pl.sdacademy.vending.events;
+
+/**
+ * Odbiorca zdarzeń zakupów z {@link PurchaseEventBus}. Każdy odbiorca posiada własny wątek i otrzymuje wszystkie
+ * opublikowane zdarzenia w kolejności ich publikacji, we własnym tempie.
+ */
+public interface PurchaseEventHandler {
+    /**
+     * Przetwarza jedno zdarzenie.
+     * @param event zdarzenie - ważne tylko w trakcie tego wywołania
+     * @param endOfBatch true, jeżeli to ostatnie z zdarzeń dostępnych w tej chwili - dobry moment np. na zapis
+     *                   zebranych danych na dysk
+     */
+    void onEvent(PurchaseEvent event, boolean endOfBatch);
+}
@@ -0,0 +1,104 @@
+package pl.sdacademy.vending.events;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Sposób, w jaki odbiorca {@link PurchaseEventBus} czeka na nowe zdarzenia. Strategie różnią się opóźnieniem
+ * dostarczenia zdarzenia i zużyciem procesora przez bezczynnego odbiorcę.
+ */
+public enum WaitStrategy {
+    /**
+     * Ciągłe sprawdzanie bufora - najmniejsze opóźnienie, ale każdy odbiorca stale zajmuje cały rdzeń procesora.
+     */
+    BUSY_SPIN {
+        @Override
+        int idle(int attempt) {
+            spinWait();
+            return attempt;
+        }
+    },
+    /**
+     * Krótkie sprawdzanie, a następnie oddawanie procesora innym wątkom ({@link Thread#yield()}).
+     */
+    YIELDING {
+        @Override
+        int idle(int attempt) {
+            if (attempt < SPIN_TRIES) {
+                spinWait();
+            } else {
+                Thread.yield();
+            }
+            return attempt + 1;
+        }
+    },
+    /**
+     * Sprawdzanie, oddawanie procesora, a w końcu usypianie wątku na krótkie okresy. Bezczynny odbiorca prawie nie
+     * zużywa procesora, a publikujący nic nie płaci za budzenie odbiorców.
+     */
+    SLEEPING {
+        @Override
+        int idle(int attempt) {
+            if (attempt < SPIN_TRIES) {
+                spinWait();
+            } else if (attempt < SPIN_TRIES + YIELD_TRIES) {
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(SLEEP_NANOS);
+            }
+            return attempt + 1;
+        }
+    },
+    /**
+     * Bezczynny odbiorca czeka na zamku i jest budzony przez publikującego. Publikujący płaci za budzenie tylko wtedy,
+     * gdy któryś z odbiorców faktycznie śpi.
+     */
+    BLOCKING {
+        @Override
+        int idle(int attempt) {
+            // po krótkim sprawdzaniu szyna usypia odbiorcę na zamku - patrz PurchaseEventBus
+            spinWait();
+            return attempt + 1;
+        }
+    };
+
+    static final int SPIN_TRIES = 100;
+    private static final int YIELD_TRIES = 100;
+    private static final long SLEEP_NANOS = 100_000;
+    /**
+     * Thread.onSpinWait() jest dostępna dopiero od Javy 9 - na Javie 8 uchwyt jest null, a krok sprawdzania bufora
+     * nic nie robi. Stały uchwyt jest wywoływany przez JIT tak samo szybko, jak metoda wywołana wprost.
+     */
+    private static final MethodHandle ON_SPIN_WAIT = findOnSpinWait();
+
+    /**
+     * Wykonuje jeden krok czekania.
+     * @param attempt ilość dotychczasowych kroków czekania na to samo zdarzenie
+     * @return nowa ilość kroków
+     */
+    abstract int idle(int attempt);
+
+    /**
+     * Informuje procesor, że wątek aktywnie czeka (na Javie 9 i nowszych) - np. instrukcją PAUSE na x86.
+     */
+    static void spinWait() {
+        if (ON_SPIN_WAIT != null) {
+            try {
+                ON_SPIN_WAIT.invokeExact();
+            } catch (Throwable e) {
+                throw new IllegalStateException("Thread.onSpinWait failed", e);
+            }
+        }
+    }
+
+    private static MethodHandle findOnSpinWait() {
+        try {
+            return MethodHandles.publicLookup()
+                    .findStatic(Thread.class, "onSpinWait", MethodType.methodType(void.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package pl.sdacademy.vending.fleet;
+
+import pl.sdacademy.vending.model.Product;
+import pl.sdacademy.vending.model.RandomTrayFactory;
+import pl.sdacademy.vending.model.TrayFactory;
+import pl.sdacademy.vending.model.VendingMachine;
+import pl.sdacademy.vending.persistence.MachineSnapshot;
+import pl.sdacademy.vending.persistence.MachineSnapshotWriter;
+import pl.sdacademy.vending.util.Configuration;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Klasa zarządzająca wieloma automatami sprzedającymi uruchomionymi w jednej maszynie wirtualnej. Każdy automat jest
+ * identyfikowany przez swój identyfikator (machineId). Automaty są dzielone na shardy - każdy shard posiada własny
+ * wątek roboczy, który obsługuje zakupy tylko w automatach należących do tego sharda. Dzięki temu zakupy w różnych
+ * automatach rozkładają się równomiernie na wszystkie wątki.
+ * <br>
+ * Zapytania obejmujące całą flotę (np. łączna ilość produktów) są wykonywane równolegle na wszystkich shardach, ale
+ * nie korzystają z wątków roboczych shardów - dzięki temu nie zatrzymują one trwających zakupów.
+ */
+public class Fleet implements AutoCloseable {
+
+    private static final String SNAPSHOT_SUFFIX = ".snapshot";
+
+    private final Shard[] shards;
+    /**
+     * Obiekty zapisujące migawki automatów, według pliku migawki. Pamiętają one, co zostało już zapisane, dzięki czemu
+     * kolejne migawki są przyrostowe.
+     */
+    private final Map<Path, MachineSnapshotWriter> snapshotWriters = new ConcurrentHashMap<>();
+
+    /**
+     * Tworzy pustą flotę z zadaną ilością shardów.
+     * @param shardsCount ilość shardów (a tym samym wątków roboczych) floty
+     */
+    public Fleet(int shardsCount) {
+        if (shardsCount < 1) {
+            throw new IllegalArgumentException("Fleet can not be created with " + shardsCount + " shards");
+        }
+        shards = new Shard[shardsCount];
+        for (int shardNumber = 0; shardNumber < shardsCount; shardNumber++) {
+            shards[shardNumber] = new Shard(shardNumber);
+        }
+    }
+
+    /**
+     * Tworzy flotę na podstawie konfiguracji. Ilość automatów jest odczytywana z klucza "fleet.machines.count",
+     * a ilość shardów z klucza "fleet.shards.count" (domyślnie ilość dostępnych procesorów). Automaty otrzymują
+     * identyfikatory w postaci "machine-0", "machine-1" itd. i są tworzone z tej samej konfiguracji.
+     * <br>
+     * Automaty są tworzone równolegle. Jeżeli podano ziarno losowania ("machine.seed"), to każdy automat jest
+     * wypełniany z własnego ziarna wyliczonego z numeru automatu, więc ta sama konfiguracja zawsze daje tę samą flotę.
+     * Wraz z "machine.construction=lazy" tacki powstają dopiero przy pierwszym odwołaniu, więc nawet flota z tysiącami
+     * automatów jest tworzona od razu.
+     * @param configuration konfiguracja floty oraz tworzonych automatów
+     * @return flota wypełniona automatami
+     */
+    public static Fleet fromConfiguration(Configuration configuration) {
+        Long machinesCount = configuration.getProperty("fleet.machines.count", 1L);
+        Long shardsCount = configuration.getProperty("fleet.shards.count",
+                (long) Runtime.getRuntime().availableProcessors());
+        Fleet fleet = new Fleet(shardsCount.intValue());
+        IntStream.range(0, machinesCount.intValue()).parallel().forEach(machineNumber -> {
+            TrayFactory trayFactory = RandomTrayFactory.fromConfiguration(configuration, machineNumber);
+            fleet.addMachine("machine-" + machineNumber, new VendingMachine(configuration, trayFactory));
+        });
+        return fleet;
+    }
+
+    /**
+     * Odtwarza flotę z migawek zapisanych przez {@link #saveSnapshots(Path)}. Każdy plik "&lt;machineId&gt;.snapshot"
+     * we wskazanym katalogu staje się jednym automatem. Migawki są odczytywane równolegle, a ich wielkość musi zgadzać
+     * się z wielkością automatu w konfiguracji.
+     * @param directory katalog z migawkami
+     * @param configuration konfiguracja floty oraz odtwarzanych automatów
+     * @return odtworzona flota
+     */
+    public static Fleet fromSnapshots(Path directory, Configuration configuration) throws IOException {
+        Long shardsCount = configuration.getProperty("fleet.shards.count",
+                (long) Runtime.getRuntime().availableProcessors());
+        Fleet fleet = new Fleet(shardsCount.intValue());
+        List<Path> snapshotFiles;
+        try (Stream<Path> files = Files.list(directory)) {
+            snapshotFiles = files
+                    .filter(file -> file.getFileName().toString().endsWith(SNAPSHOT_SUFFIX))
+                    .collect(Collectors.toList());
+        }
+        try {
+            snapshotFiles.parallelStream().forEach(file -> {
+                String fileName = file.getFileName().toString();
+                String machineId = fileName.substring(0, fileName.length() - SNAPSHOT_SUFFIX.length());
+                try {
+                    MachineSnapshot snapshot = MachineSnapshot.restore(file);
+                    VendingMachine machine = new VendingMachine(configuration, snapshot);
+                    fleet.addMachine(machineId, machine);
+                    fleet.snapshotWriters.put(file, MachineSnapshotWriter.resume(machine, snapshot, file));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            fleet.close();
+            throw e.getCause();
+        }
+        return fleet;
+    }
+
+    /**
+     * Równolegle zapisuje migawki wszystkich automatów floty do plików "&lt;machineId&gt;.snapshot" we wskazanym
+     * katalogu. Pierwsza migawka automatu jest pełna, a kolejne zawierają tylko tacki zmienione od poprzedniej.
+     * @param directory katalog na migawki
+     * @return łączna ilość zapisanych pozycji automatów
+     */
+    public long saveSnapshots(Path directory) throws IOException {
+        try {
+            return Arrays.stream(shards)
+                    .parallel()
+                    .flatMap(shard -> shard.machines.entrySet().stream())
+                    .mapToLong(machine -> {
+                        Path file = directory.resolve(machine.getKey() + SNAPSHOT_SUFFIX);
+                        MachineSnapshotWriter writer = snapshotWriters.computeIfAbsent(file,
+                                snapshotFile -> new MachineSnapshotWriter(machine.getValue(), snapshotFile));
+                        try {
+                            return writer.saveIncremental();
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    })
+                    .sum();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Dodaje automat do floty. Automat trafia do sharda wyliczonego na podstawie jego identyfikatora.
+     * @param machineId identyfikator automatu
+     * @param machine automat do dodania
+     */
+    public void addMachine(String machineId, VendingMachine machine) {
+        if (machineId == null || machine == null) {
+            throw new IllegalArgumentException("Machine id and machine cannot be null");
+        }
+        shardFor(machineId).machines.put(machineId, machine);
+    }
+
+    /**
+     * Pobiera automat o wskazanym identyfikatorze.
+     * @param machineId identyfikator automatu
+     * @return automat opakowany w {@link Optional} lub pusty optional, jeżeli automat nie należy do floty
+     */
+    public Optional<VendingMachine> machine(String machineId) {
+        return Optional.ofNullable(shardFor(machineId).machines.get(machineId));
+    }
+
+    /**
+     * Zwraca identyfikatory wszystkich automatów floty, posortowane alfabetycznie.
+     * @return identyfikatory automatów
+     */
+    public List<String> machineIds() {
+        return Arrays.stream(shards)
+                .flatMap(shard -> shard.machines.keySet().stream())
+                .sorted()
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Zwraca ilość automatów we flocie.
+     * @return ilość automatów
+     */
+    public int machinesCount() {
+        int machinesCount = 0;
+        for (Shard shard : shards) {
+            machinesCount += shard.machines.size();
+        }
+        return machinesCount;
+    }
+
+    /**
+     * Zleca zakup produktu w automacie o wskazanym identyfikatorze. Zakup jest wykonywany przez wątek roboczy sharda,
+     * do którego należy automat.
+     * @param machineId identyfikator automatu
+     * @param symbol symbol tacki
+     * @return przyszły wynik zakupu - produkt lub pusty optional, jeżeli produkt (lub automat) nie był dostępny
+     */
+    public CompletableFuture<Optional<Product>> buyProductWithSymbolAsync(String machineId, String symbol) {
+        Shard shard = shardFor(machineId);
+        VendingMachine machine = shard.machines.get(machineId);
+        if (machine == null) {
+            return CompletableFuture.completedFuture(Optional.empty());
+        }
+        return CompletableFuture.supplyAsync(() -> machine.buyProductWithSymbol(symbol), shard.worker);
+    }
+
+    /**
+     * Synchroniczna wersja metody {@link #buyProductWithSymbolAsync(String, String)} - czeka na zakończenie zakupu.
+     * @param machineId identyfikator automatu
+     * @param symbol symbol tacki
+     * @return kupiony produkt lub pusty optional
+     */
+    public Optional<Product> buyProductWithSymbol(String machineId, String symbol) {
+        return buyProductWithSymbolAsync(machineId, symbol).join();
+    }
+
+    /**
+     * Równolegle zlicza produkty we wszystkich automatach floty.
+     * @return łączna ilość produktów we flocie
+     */
+    public long totalProductsCount() {
+        return Arrays.stream(shards)
+                .parallel()
+                .flatMap(shard -> shard.machines.values().stream())
+                .mapToLong(VendingMachine::productsCount)
+                .sum();
+    }
+
+    /**
+     * Równolegle zlicza puste tacki we wszystkich automatach floty.
+     * @return łączna ilość pustych tacek we flocie
+     */
+    public long emptyTraysCount() {
+        return Arrays.stream(shards)
+                .parallel()
+                .flatMap(shard -> shard.machines.values().stream())
+                .mapToLong(VendingMachine::emptyTraysCount)
+                .sum();
+    }
+
+    /**
+     * Zatrzymuje wątki robocze wszystkich shardów, czekając na zakończenie już zleconych zakupów.
+     */
+    @Override
+    public void close() {
+        for (Shard shard : shards) {
+            shard.worker.shutdown();
+        }
+        try {
+            for (Shard shard : shards) {
+                shard.worker.awaitTermination(1, TimeUnit.MINUTES);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Shard shardFor(String machineId) {
+        // mieszamy bity hashCode, aby identyfikatory różniące się tylko końcówką równomiernie rozkładały się na shardy
+        int hash = machineId.hashCode();
+        hash ^= (hash >>> 16);
+        return shards[(hash & Integer.MAX_VALUE) % shards.length];
+    }
+
+    /**
+     * Pojedynczy shard floty - zbiór automatów obsługiwanych przez jeden wątek roboczy.
+     */
+    private static class Shard {
+        private final Map<String, VendingMachine> machines = new ConcurrentHashMap<>();
+        private final ExecutorService worker;
+
+        private Shard(int shardNumber) {
+            worker = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "fleet-shard-" + shardNumber);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
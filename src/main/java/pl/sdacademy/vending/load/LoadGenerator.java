@@ -0,0 +1,355 @@
+package pl.sdacademy.vending.load;
+
+import pl.sdacademy.vending.fleet.Fleet;
+import pl.sdacademy.vending.model.Product;
+import pl.sdacademy.vending.model.VendingMachine;
+import pl.sdacademy.vending.util.Configuration;
+import pl.sdacademy.vending.util.LatencyHistogram;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Generator syntetycznego obciążenia - symuluje wielu klientów jednocześnie kupujących w automacie lub we flocie
+ * automatów i mierzy czasy zakupów. Służy do szacowania, ile zakupów na sekundę obsłuży dany sprzęt.
+ * <br>
+ * Każdy wirtualny klient to osobny wątek. Tacka dla kolejnego zakupu jest losowana z rozkładu Zipfa - kilka tacek
+ * jest bardzo popularnych, a reszta rzadko odwiedzana. Generator działa w jednym z dwóch trybów:
+ * <ul>
+ *     <li>zamkniętym (arrivalRate = 0) - każdy klient kupuje natychmiast po zakończeniu poprzedniego zakupu, więc
+ *     mierzona jest maksymalna przepustowość,</li>
+ *     <li>otwartym (arrivalRate &gt; 0) - klienci przychodzą w losowych odstępach (proces Poissona) z zadaną łączną
+ *     częstotliwością, niezależnie od tego, czy automat nadąża. Czas zakupu jest liczony od planowanej chwili przyjścia
+ *     klienta, więc opóźnienia spowodowane przeciążeniem nie znikają z pomiaru.</li>
+ * </ul>
+ * Opcjonalny wątek serwisanta co restockInterval uzupełnia każdą tackę o restockAmount sztuk produktu, który leżał na
+ * niej na początku przebiegu. Tacki puste od początku nie są uzupełniane.
+ * <br>
+ * Instancja generatora jest tworzona TYLKO za pomocą Buildera.
+ */
+public class LoadGenerator {
+    private final List<Slot> slots;
+    private final Fleet fleet;
+    private final int customers;
+    private final double arrivalRate;
+    private final Duration duration;
+    private final double zipfExponent;
+    private final Duration restockInterval;
+    private final int restockAmount;
+    private final long seed;
+
+    private LoadGenerator(Builder builder) {
+        this.slots = builder.slots;
+        this.fleet = builder.fleet;
+        this.customers = builder.customers;
+        this.arrivalRate = builder.arrivalRate;
+        this.duration = builder.duration;
+        this.zipfExponent = builder.zipfExponent;
+        this.restockInterval = builder.restockInterval;
+        this.restockAmount = builder.restockAmount;
+        this.seed = builder.seed;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Tworzy generator na podstawie konfiguracji: "load.customers" (domyślnie 4), "load.arrival.rate" (zakupy na
+     * sekundę, domyślnie 0 - tryb zamknięty), "load.duration.seconds" (domyślnie 10), "load.zipf.exponent" w tysięcznych
+     * częściach (domyślnie 1000, czyli wykładnik 1), "load.restock.interval.ms" (domyślnie 0 - bez uzupełnień),
+     * "load.restock.amount" (domyślnie 10) oraz "load.seed" (domyślnie 42). Automaty należy dodać do zwróconego
+     * Buildera.
+     * @param configuration konfiguracja generatora
+     * @return Builder wypełniony parametrami z konfiguracji
+     */
+    public static Builder builder(Configuration configuration) {
+        return builder()
+                .customers(configuration.getProperty("load.customers", 4L).intValue())
+                .arrivalRate(configuration.getProperty("load.arrival.rate", 0L))
+                .duration(Duration.ofSeconds(configuration.getProperty("load.duration.seconds", 10L)))
+                .zipfExponent(configuration.getProperty("load.zipf.exponent", 1000L) / 1000.0)
+                .restock(Duration.ofMillis(configuration.getProperty("load.restock.interval.ms", 0L)),
+                        configuration.getProperty("load.restock.amount", 10L).intValue())
+                .seed(configuration.getProperty("load.seed", 42L));
+    }
+
+    /**
+     * Uruchamia przebieg i czeka na jego zakończenie.
+     * @return raport z przebiegu
+     */
+    public LoadReport run() {
+        ZipfDistribution popularity = new ZipfDistribution(slots.size(), zipfExponent, seed);
+        SplittableRandom seedRandom = new SplittableRandom(seed);
+        CountDownLatch startSignal = new CountDownLatch(1);
+        long startTime = System.nanoTime() + Duration.ofMillis(10).toNanos();
+        long endTime = startTime + duration.toNanos();
+        Customer[] customerTasks = new Customer[customers];
+        Thread[] customerThreads = new Thread[customers];
+        for (int customer = 0; customer < customers; customer++) {
+            customerTasks[customer] = new Customer(popularity, seedRandom.split(), startSignal, startTime, endTime);
+            customerThreads[customer] = new Thread(customerTasks[customer], "load-customer-" + customer);
+            customerThreads[customer].start();
+        }
+        AtomicLong restockedUnits = new AtomicLong();
+        Thread restocker = null;
+        if (!restockInterval.isZero() && restockAmount > 0) {
+            restocker = new Thread(() -> restockUntil(endTime, restockedUnits), "load-restocker");
+            restocker.setDaemon(true);
+            restocker.start();
+        }
+        startSignal.countDown();
+
+        LatencyHistogram latencies = new LatencyHistogram();
+        long purchases = 0;
+        long soldOut = 0;
+        for (int customer = 0; customer < customers; customer++) {
+            joinUninterruptibly(customerThreads[customer]);
+            latencies.add(customerTasks[customer].latencies);
+            purchases += customerTasks[customer].purchases;
+            soldOut += customerTasks[customer].soldOut;
+        }
+        long durationNanos = System.nanoTime() - startTime;
+        if (restocker != null) {
+            restocker.interrupt();
+            joinUninterruptibly(restocker);
+        }
+        return new LoadReport(customers, arrivalRate, durationNanos, purchases, soldOut, restockedUnits.get(),
+                latencies);
+    }
+
+    private void restockUntil(long endTime, AtomicLong restockedUnits) {
+        long nextRestock = System.nanoTime() + restockInterval.toNanos();
+        while (nextRestock < endTime && !Thread.currentThread().isInterrupted()) {
+            parkUntil(nextRestock);
+            for (Slot slot : slots) {
+                if (slot.product != null) {
+                    restockedUnits.addAndGet(slot.machine.restockTray(slot.symbol, slot.product, restockAmount));
+                }
+            }
+            nextRestock += restockInterval.toNanos();
+        }
+    }
+
+    private Optional<Product> buy(Slot slot) {
+        return slot.machineId == null
+                ? slot.machine.buyProductWithSymbol(slot.symbol)
+                : fleet.buyProductWithSymbol(slot.machineId, slot.symbol);
+    }
+
+    private static void parkUntil(long time) {
+        long remaining;
+        while ((remaining = time - System.nanoTime()) > 0 && !Thread.currentThread().isInterrupted()) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+
+    private static void joinUninterruptibly(Thread thread) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                thread.join();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Wirtualny klient. Wyniki zbiera we własnym histogramie i licznikach, które są sumowane po zakończeniu przebiegu,
+     * więc klienci nie rywalizują o wspólne liczniki.
+     */
+    private class Customer implements Runnable {
+        private final ZipfDistribution popularity;
+        private final SplittableRandom random;
+        private final CountDownLatch startSignal;
+        private final long startTime;
+        private final long endTime;
+        private final LatencyHistogram latencies = new LatencyHistogram();
+        private long purchases;
+        private long soldOut;
+
+        private Customer(ZipfDistribution popularity, SplittableRandom random, CountDownLatch startSignal,
+                         long startTime, long endTime) {
+            this.popularity = popularity;
+            this.random = random;
+            this.startSignal = startSignal;
+            this.startTime = startTime;
+            this.endTime = endTime;
+        }
+
+        @Override
+        public void run() {
+            try {
+                startSignal.await();
+            } catch (InterruptedException e) {
+                return;
+            }
+            // każdy klient generuje 1 / customers wszystkich przyjść
+            double meanIntervalNanos = arrivalRate > 0 ? customers * 1e9 / arrivalRate : 0;
+            long arrivalTime = startTime + nextInterval(meanIntervalNanos);
+            parkUntil(startTime);
+            while (true) {
+                long purchaseStart;
+                if (meanIntervalNanos > 0) {
+                    if (arrivalTime >= endTime) {
+                        break;
+                    }
+                    parkUntil(arrivalTime);
+                    purchaseStart = arrivalTime;
+                    arrivalTime += nextInterval(meanIntervalNanos);
+                } else {
+                    purchaseStart = System.nanoTime();
+                    if (purchaseStart >= endTime) {
+                        break;
+                    }
+                }
+                Optional<Product> product = buy(slots.get(popularity.sample(random)));
+                latencies.record(System.nanoTime() - purchaseStart);
+                if (product.isPresent()) {
+                    purchases++;
+                } else {
+                    soldOut++;
+                }
+            }
+        }
+
+        /**
+         * Odstępy między przyjściami klientów w procesie Poissona mają rozkład wykładniczy.
+         */
+        private long nextInterval(double meanIntervalNanos) {
+            return (long) (-Math.log(1 - random.nextDouble()) * meanIntervalNanos);
+        }
+    }
+
+    /**
+     * Jedna tacka jednego automatu, na której mogą kupować klienci.
+     */
+    private static class Slot {
+        private final String machineId;
+        private final VendingMachine machine;
+        private final String symbol;
+        private final Product product;
+
+        private Slot(String machineId, VendingMachine machine, String symbol, Product product) {
+            this.machineId = machineId;
+            this.machine = machine;
+            this.symbol = symbol;
+            this.product = product;
+        }
+    }
+
+    public static class Builder {
+        private final List<Slot> slots = new ArrayList<>();
+        private Fleet fleet;
+        private int customers = 4;
+        private double arrivalRate;
+        private Duration duration = Duration.ofSeconds(10);
+        private double zipfExponent = 1;
+        private Duration restockInterval = Duration.ZERO;
+        private int restockAmount;
+        private long seed = 42;
+
+        private Builder() {
+        }
+
+        /**
+         * Dodaje wszystkie tacki automatu do tacek, na których kupują klienci. Zakupy są wykonywane bezpośrednio
+         * w wątkach klientów.
+         * @param machine automat
+         * @return ten sam Builder
+         */
+        public Builder machine(VendingMachine machine) {
+            addSlots(null, machine);
+            return this;
+        }
+
+        /**
+         * Dodaje tacki wszystkich automatów floty. Zakupy są zlecane flocie, więc przechodzą przez wątki jej shardów.
+         * @param fleet flota automatów
+         * @return ten sam Builder
+         */
+        public Builder fleet(Fleet fleet) {
+            if (this.fleet != null && this.fleet != fleet) {
+                throw new IllegalStateException("Load generator can drive only one fleet");
+            }
+            this.fleet = fleet;
+            for (String machineId : fleet.machineIds()) {
+                addSlots(machineId, fleet.machine(machineId).get());
+            }
+            return this;
+        }
+
+        public Builder customers(int customers) {
+            this.customers = customers;
+            return this;
+        }
+
+        /**
+         * @param arrivalRate łączna ilość przyjść klientów na sekundę; 0 oznacza tryb zamknięty
+         * @return ten sam Builder
+         */
+        public Builder arrivalRate(double arrivalRate) {
+            this.arrivalRate = arrivalRate;
+            return this;
+        }
+
+        public Builder duration(Duration duration) {
+            this.duration = duration;
+            return this;
+        }
+
+        /**
+         * @param zipfExponent wykładnik rozkładu popularności tacek; 0 oznacza jednakową popularność
+         * @return ten sam Builder
+         */
+        public Builder zipfExponent(double zipfExponent) {
+            this.zipfExponent = zipfExponent;
+            return this;
+        }
+
+        /**
+         * @param interval odstęp między uzupełnieniami; zero wyłącza uzupełnienia
+         * @param amount ilość sztuk dokładanych na każdą tackę przy uzupełnieniu
+         * @return ten sam Builder
+         */
+        public Builder restock(Duration interval, int amount) {
+            this.restockInterval = interval;
+            this.restockAmount = amount;
+            return this;
+        }
+
+        public Builder seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        public LoadGenerator build() {
+            if (slots.isEmpty()) {
+                throw new IllegalStateException("Load generator needs at least one tray");
+            }
+            if (customers < 1 || arrivalRate < 0 || duration.isNegative() || duration.isZero()
+                    || restockInterval.isNegative() || restockAmount < 0) {
+                throw new IllegalStateException("Invalid load parameters");
+            }
+            return new LoadGenerator(this);
+        }
+
+        private void addSlots(String machineId, VendingMachine machine) {
+            machine.forEachTray(tray -> {
+                Product product = tray.firstProductName().map(Product::new).orElse(null);
+                slots.add(new Slot(machineId, machine, tray.getSymbol(), product));
+            });
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package pl.sdacademy.vending.load;
+
+import pl.sdacademy.vending.util.LatencyHistogram;
+
+import java.util.Locale;
+
+/**
+ * Wynik jednego przebiegu {@link LoadGenerator}: ilości zakupów i uzupełnień, przepustowość oraz rozkład czasów
+ * zakupów. Raport można wypisać czytelnie ({@link #toString()}) albo jako wiersz CSV ({@link #toCsvRow()}) - kolejne
+ * przebiegi dopisywane do jednego pliku tworzą gotową tabelę do arkusza kalkulacyjnego.
+ * <br>
+ * Czasy zakupów są w mikrosekundach. W trybie otwartym czas jest liczony od chwili, w której klient miał przyjść, a nie
+ * od chwili faktycznego rozpoczęcia zakupu - obejmuje więc także czekanie klienta na zwolnienie się automatu.
+ */
+public class LoadReport {
+    private static final String CSV_HEADER = "customers,arrival_rate_per_s,duration_s,purchases,sold_out,"
+            + "restocked_units,throughput_per_s,mean_us,p50_us,p99_us,p999_us,max_us";
+
+    private final int customers;
+    private final double arrivalRate;
+    private final long durationNanos;
+    private final long purchases;
+    private final long soldOut;
+    private final long restockedUnits;
+    private final LatencyHistogram latencies;
+
+    LoadReport(int customers, double arrivalRate, long durationNanos, long purchases, long soldOut,
+               long restockedUnits, LatencyHistogram latencies) {
+        this.customers = customers;
+        this.arrivalRate = arrivalRate;
+        this.durationNanos = durationNanos;
+        this.purchases = purchases;
+        this.soldOut = soldOut;
+        this.restockedUnits = restockedUnits;
+        this.latencies = latencies;
+    }
+
+    public static String csvHeader() {
+        return CSV_HEADER;
+    }
+
+    /**
+     * @return ilość udanych zakupów
+     */
+    public long purchases() {
+        return purchases;
+    }
+
+    /**
+     * @return ilość prób zakupu, które trafiły na pustą tackę
+     */
+    public long soldOut() {
+        return soldOut;
+    }
+
+    /**
+     * @return ilość sztuk dołożonych przez uzupełnienia
+     */
+    public long restockedUnits() {
+        return restockedUnits;
+    }
+
+    /**
+     * @return ilość wszystkich prób zakupu - udanych i nieudanych
+     */
+    public long attempts() {
+        return purchases + soldOut;
+    }
+
+    /**
+     * @return ilość prób zakupu na sekundę
+     */
+    public double throughput() {
+        return durationNanos == 0 ? 0 : attempts() * 1e9 / durationNanos;
+    }
+
+    /**
+     * @param percentile procent, np. 99.9
+     * @return czas zakupu w mikrosekundach, którego nie przekroczyło wskazane procent zakupów
+     */
+    public double latencyMicros(double percentile) {
+        return latencies.valueAtPercentile(percentile) / 1e3;
+    }
+
+    public LatencyHistogram latencies() {
+        return latencies;
+    }
+
+    public String toCsvRow() {
+        return String.format(Locale.ROOT, "%d,%.1f,%.3f,%d,%d,%d,%.1f,%.3f,%.3f,%.3f,%.3f,%.3f", customers,
+                arrivalRate, durationNanos / 1e9, purchases, soldOut, restockedUnits, throughput(),
+                latencies.mean() / 1e3, latencyMicros(50), latencyMicros(99), latencyMicros(99.9),
+                latencies.max() / 1e3);
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "Customers: %d, arrival rate: %s, duration: %.3f s%n"
+                        + "Attempts: %d (purchases: %d, sold out: %d), restocked units: %d%n"
+                        + "Throughput: %.1f purchases/s%n"
+                        + "Latency [us]: mean %.3f, p50 %.3f, p99 %.3f, p999 %.3f, max %.3f",
+                customers, arrivalRate > 0 ? String.format(Locale.ROOT, "%.1f/s", arrivalRate) : "closed loop",
+                durationNanos / 1e9, attempts(), purchases, soldOut, restockedUnits, throughput(),
+                latencies.mean() / 1e3, latencyMicros(50), latencyMicros(99), latencyMicros(99.9),
+                latencies.max() / 1e3);
+    }
+}
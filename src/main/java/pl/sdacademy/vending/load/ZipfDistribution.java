@@ -0,0 +1,72 @@
+package pl.sdacademy.vending.load;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Rozkład Zipfa na elementach 0..n-1 - element o randze k jest wybierany z prawdopodobieństwem proporcjonalnym do
+ * 1 / k^exponent. Wykładnik 0 oznacza rozkład jednostajny, a wykładnik około 1 odpowiada typowej popularności
+ * produktów: kilka tacek obsługuje większość zakupów.
+ * <br>
+ * Dystrybuanta jest wyliczana raz, a losowanie to wyszukiwanie binarne w tablicy - bez tworzenia obiektów. Rangi są
+ * przydzielane elementom losowo (na podstawie ziarna), aby najpopularniejsza nie była zawsze pierwsza tacka.
+ */
+class ZipfDistribution {
+    private final double[] cumulativeProbabilities;
+    private final int[] elementsByRank;
+
+    ZipfDistribution(int elementsCount, double exponent, long seed) {
+        if (elementsCount < 1) {
+            throw new IllegalArgumentException("Zipf distribution needs at least one element");
+        }
+        if (exponent < 0) {
+            throw new IllegalArgumentException("Zipf exponent cannot be negative, was " + exponent);
+        }
+        cumulativeProbabilities = new double[elementsCount];
+        double sum = 0;
+        for (int rank = 0; rank < elementsCount; rank++) {
+            sum += 1 / Math.pow(rank + 1, exponent);
+            cumulativeProbabilities[rank] = sum;
+        }
+        for (int rank = 0; rank < elementsCount; rank++) {
+            cumulativeProbabilities[rank] /= sum;
+        }
+        // ostatnia wartość musi wynosić dokładnie 1, niezależnie od błędów zaokrągleń
+        cumulativeProbabilities[elementsCount - 1] = 1;
+        elementsByRank = new int[elementsCount];
+        for (int element = 0; element < elementsCount; element++) {
+            elementsByRank[element] = element;
+        }
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int index = elementsCount - 1; index > 0; index--) {
+            int swapped = random.nextInt(index + 1);
+            int element = elementsByRank[index];
+            elementsByRank[index] = elementsByRank[swapped];
+            elementsByRank[swapped] = element;
+        }
+    }
+
+    /**
+     * Losuje jeden element.
+     * @param random generator liczb losowych wątku losującego
+     * @return wylosowany element
+     */
+    int sample(SplittableRandom random) {
+        int rank = Arrays.binarySearch(cumulativeProbabilities, random.nextDouble());
+        // wartość nie znaleziona wprost oznacza pierwszą rangę o dystrybuancie większej niż wylosowana liczba
+        return elementsByRank[rank >= 0 ? rank : -rank - 1];
+    }
+
+    /**
+     * @param element element rozkładu
+     * @return prawdopodobieństwo wylosowania elementu
+     */
+    double probability(int element) {
+        for (int rank = 0; rank < elementsByRank.length; rank++) {
+            if (elementsByRank[rank] == element) {
+                return cumulativeProbabilities[rank] - (rank == 0 ? 0 : cumulativeProbabilities[rank - 1]);
+            }
+        }
+        throw new IllegalArgumentException("No element " + element);
+    }
+}
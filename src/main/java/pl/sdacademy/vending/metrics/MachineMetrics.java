@@ -0,0 +1,136 @@
+package pl.sdacademy.vending.metrics;
+
+import pl.sdacademy.vending.util.LatencyHistogram;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Liczniki i histogramy opisujące pracę jednego automatu: udane zakupy oraz trafienia na pustą tackę dla każdej tacki,
+ * próby zakupu z niepoprawnym symbolem, a także czasy zakupów i wyświetlania automatu.
+ * <br>
+ * Liczniki tacek leżą w jednej tablicy {@link TrayCounters} (licznik zakupów i licznik pustej tacki danej pozycji
+ * obok siebie), w której każdy kupujący wątek zwiększa własną kopię liczników - zapisanie zakupu nie wymaga więc
+ * operacji atomowej, a kupujący nie rywalizują o wspólne zmienne. Pozostałe liczniki są typu {@link LongAdder}.
+ * Odczyt ({@link #snapshot()}) tylko sumuje kopie i nie zatrzymuje kupujących. Migawka nie jest atomowa - zakupy
+ * trwające w czasie jej tworzenia mogą zostać uwzględnione tylko w części liczników.
+ * <br>
+ * Liczniki są dokładne, natomiast czas zakupu jest domyślnie mierzony tylko dla co 16. zakupu (wybieranego losowo).
+ * Sam odczyt zegara kosztuje kilkadziesiąt nanosekund - więcej niż cały zakup - a próbka tej wielkości wystarcza do
+ * wyznaczenia percentyli. Histogram czasów zakupów zawiera więc tylko próbki, a dokładną ilość zakupów podają liczniki.
+ * Czas wyświetlania automatu jest mierzony zawsze.
+ * <br>
+ * Zbieranie metryk można wyłączyć ({@link #setEnabled(boolean)}) - np. aby zmierzyć ich narzut.
+ */
+public class MachineMetrics {
+    private final String[] traySymbols;
+    /**
+     * Pod indeksem 2 * pozycja - ilość kupionych sztuk, pod 2 * pozycja + 1 - ilość trafień na pustą tackę.
+     */
+    private final TrayCounters trayCounters;
+    private final LongAdder invalidSymbols = new LongAdder();
+    private final LatencyHistogram purchaseLatency = new LatencyHistogram();
+    private final LatencyHistogram renderLatency = new LatencyHistogram();
+    private volatile boolean enabled = true;
+    private volatile int latencySamplingMask = 15;
+
+    /**
+     * @param traySymbols symbole tacek według pozycji w automacie; null oznacza pozycję bez tacki
+     */
+    public MachineMetrics(String[] traySymbols) {
+        this.traySymbols = traySymbols.clone();
+        this.trayCounters = new TrayCounters(2 * traySymbols.length);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Ustawia, jak często mierzony jest czas zakupu.
+     * @param interval co który zakup jest mierzony - potęga dwójki; 1 oznacza pomiar każdego zakupu
+     */
+    public void setLatencySamplingInterval(int interval) {
+        if (interval < 1 || Integer.bitCount(interval) != 1) {
+            throw new IllegalArgumentException("Latency sampling interval must be a power of two, was " + interval);
+        }
+        this.latencySamplingMask = interval - 1;
+    }
+
+    /**
+     * Decyduje, czy czas bieżącego zakupu ma zostać zmierzony. Flaga włączenia metryk jest sprawdzana tylko dla
+     * zakupów wylosowanych do pomiaru.
+     * @return true, jeżeli metryki są włączone, a zakup został wylosowany do pomiaru
+     */
+    public boolean shouldSamplePurchaseLatency() {
+        return (ThreadLocalRandom.current().nextInt() & latencySamplingMask) == 0 && enabled;
+    }
+
+    /**
+     * Zapisuje udany zakup sztuk z tacki na wskazanej pozycji.
+     * @param position pozycja tacki w automacie
+     * @param units ilość kupionych sztuk
+     */
+    public void purchased(int position, int units) {
+        if (enabled) {
+            trayCounters.add(2 * position, units);
+        }
+    }
+
+    /**
+     * Zapisuje próbę zakupu z pustej tacki na wskazanej pozycji.
+     * @param position pozycja tacki w automacie
+     */
+    public void soldOut(int position) {
+        if (enabled) {
+            trayCounters.add(2 * position + 1, 1);
+        }
+    }
+
+    /**
+     * Zapisuje próbę zakupu z symbolem, który nie wskazuje żadnej tacki.
+     */
+    public void invalidSymbol() {
+        if (enabled) {
+            invalidSymbols.increment();
+        }
+    }
+
+    /**
+     * Zapisuje czas zakupu wybranego do pomiaru przez {@link #shouldSamplePurchaseLatency()} - flaga włączenia metryk
+     * została już wtedy sprawdzona, więc nie jest sprawdzana ponownie.
+     * @param nanos czas zakupu w nanosekundach
+     */
+    public void recordPurchaseLatency(long nanos) {
+        purchaseLatency.record(nanos);
+    }
+
+    /**
+     * @param nanos czas wyświetlenia automatu w nanosekundach
+     */
+    public void recordRenderLatency(long nanos) {
+        if (enabled) {
+            renderLatency.record(nanos);
+        }
+    }
+
+    /**
+     * Odczytuje aktualne wartości wszystkich liczników i histogramów.
+     * @return migawka metryk
+     */
+    public MetricsSnapshot snapshot() {
+        long[] purchasesByTray = new long[traySymbols.length];
+        long[] soldOutByTray = new long[traySymbols.length];
+        for (int position = 0; position < traySymbols.length; position++) {
+            purchasesByTray[position] = trayCounters.get(2 * position);
+            soldOutByTray[position] = trayCounters.get(2 * position + 1);
+        }
+        return new MetricsSnapshot(traySymbols, purchasesByTray, soldOutByTray, invalidSymbols.sum(),
+                new MetricsSnapshot.LatencySummary(purchaseLatency),
+                new MetricsSnapshot.LatencySummary(renderLatency));
+    }
+}
@@ -0,0 +1,213 @@
+package pl.sdacademy.vending.metrics;
+
+import pl.sdacademy.vending.util.LatencyHistogram;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Locale;
+
+/**
+ * Niezmienna migawka metryk automatu utworzona przez {@link MachineMetrics#snapshot()}. Poza odczytem pojedynczych
+ * wartości migawkę można zapisać w formacie tekstowym Prometheusa ({@link #writePrometheus(String, Appendable)}).
+ */
+public class MetricsSnapshot {
+    private final String[] traySymbols;
+    private final long[] purchases;
+    private final long[] soldOut;
+    private final long invalidSymbols;
+    private final LatencySummary purchaseLatency;
+    private final LatencySummary renderLatency;
+
+    MetricsSnapshot(String[] traySymbols, long[] purchases, long[] soldOut, long invalidSymbols,
+                    LatencySummary purchaseLatency, LatencySummary renderLatency) {
+        this.traySymbols = traySymbols;
+        this.purchases = purchases;
+        this.soldOut = soldOut;
+        this.invalidSymbols = invalidSymbols;
+        this.purchaseLatency = purchaseLatency;
+        this.renderLatency = renderLatency;
+    }
+
+    /**
+     * @param symbol symbol tacki
+     * @return ilość udanych zakupów z tacki lub 0, jeżeli tacka o takim symbolu nie istnieje
+     */
+    public long purchases(String symbol) {
+        int position = positionOf(symbol);
+        return position < 0 ? 0 : purchases[position];
+    }
+
+    /**
+     * @param symbol symbol tacki
+     * @return ilość prób zakupu z pustej tacki lub 0, jeżeli tacka o takim symbolu nie istnieje
+     */
+    public long soldOut(String symbol) {
+        int position = positionOf(symbol);
+        return position < 0 ? 0 : soldOut[position];
+    }
+
+    /**
+     * @return ilość udanych zakupów ze wszystkich tacek
+     */
+    public long totalPurchases() {
+        long total = 0;
+        for (long trayPurchases : purchases) {
+            total += trayPurchases;
+        }
+        return total;
+    }
+
+    /**
+     * @return ilość prób zakupu z pustych tacek
+     */
+    public long totalSoldOut() {
+        long total = 0;
+        for (long traySoldOut : soldOut) {
+            total += traySoldOut;
+        }
+        return total;
+    }
+
+    public long invalidSymbols() {
+        return invalidSymbols;
+    }
+
+    public LatencySummary purchaseLatency() {
+        return purchaseLatency;
+    }
+
+    public LatencySummary renderLatency() {
+        return renderLatency;
+    }
+
+    /**
+     * Zapisuje migawkę w formacie tekstowym Prometheusa. Liczniki tacek mają etykiety "machine" i "tray", a czasy są
+     * zapisywane w sekundach jako podsumowania (summary) z kwantylami 0.5, 0.99 i 0.999.
+     * @param machineId identyfikator automatu, zapisywany jako etykieta "machine"
+     * @param out obiekt, do którego zostanie dopisany tekst
+     */
+    public void writePrometheus(String machineId, Appendable out) {
+        try {
+            String machineLabel = "machine=\"" + escapeLabel(machineId) + "\"";
+            writeHeader(out, "vending_purchases_total", "counter", "Successful purchases per tray.");
+            writeTrayCounters(out, "vending_purchases_total", machineLabel, purchases);
+            writeHeader(out, "vending_sold_out_total", "counter", "Purchase attempts on an empty tray.");
+            writeTrayCounters(out, "vending_sold_out_total", machineLabel, soldOut);
+            writeHeader(out, "vending_invalid_symbols_total", "counter",
+                    "Purchase attempts with a symbol that matches no tray.");
+            out.append("vending_invalid_symbols_total{").append(machineLabel).append("} ")
+                    .append(Long.toString(invalidSymbols)).append('\n');
+            writeSummary(out, "vending_purchase_latency_seconds", "Purchase latency.", machineLabel, purchaseLatency);
+            writeSummary(out, "vending_render_latency_seconds", "Machine render latency.", machineLabel,
+                    renderLatency);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return migawka w formacie tekstowym Prometheusa, z pustą etykietą automatu
+     */
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        writePrometheus("", text);
+        return text.toString();
+    }
+
+    private int positionOf(String symbol) {
+        for (int position = 0; position < traySymbols.length; position++) {
+            if (traySymbols[position] != null && traySymbols[position].equalsIgnoreCase(symbol)) {
+                return position;
+            }
+        }
+        return -1;
+    }
+
+    private void writeTrayCounters(Appendable out, String name, String machineLabel, long[] values)
+            throws IOException {
+        for (int position = 0; position < traySymbols.length; position++) {
+            if (traySymbols[position] != null) {
+                out.append(name).append('{').append(machineLabel).append(",tray=\"")
+                        .append(escapeLabel(traySymbols[position])).append("\"} ")
+                        .append(Long.toString(values[position])).append('\n');
+            }
+        }
+    }
+
+    private static void writeSummary(Appendable out, String name, String help, String machineLabel,
+                                     LatencySummary latency) throws IOException {
+        writeHeader(out, name, "summary", help);
+        writeQuantile(out, name, machineLabel, "0.5", latency.p50Nanos);
+        writeQuantile(out, name, machineLabel, "0.99", latency.p99Nanos);
+        writeQuantile(out, name, machineLabel, "0.999", latency.p999Nanos);
+        out.append(name).append("_sum{").append(machineLabel).append("} ")
+                .append(seconds(latency.sumNanos)).append('\n');
+        out.append(name).append("_count{").append(machineLabel).append("} ")
+                .append(Long.toString(latency.count)).append('\n');
+    }
+
+    private static void writeQuantile(Appendable out, String name, String machineLabel, String quantile, long nanos)
+            throws IOException {
+        out.append(name).append('{').append(machineLabel).append(",quantile=\"").append(quantile).append("\"} ")
+                .append(seconds(nanos)).append('\n');
+    }
+
+    private static void writeHeader(Appendable out, String name, String type, String help) throws IOException {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static String seconds(long nanos) {
+        return String.format(Locale.ROOT, "%.9f", nanos / 1e9);
+    }
+
+    private static String escapeLabel(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    /**
+     * Podsumowanie histogramu czasów: ilość, suma oraz wybrane percentyle, w nanosekundach.
+     */
+    public static class LatencySummary {
+        private final long count;
+        private final long sumNanos;
+        private final long p50Nanos;
+        private final long p99Nanos;
+        private final long p999Nanos;
+        private final long maxNanos;
+
+        LatencySummary(LatencyHistogram histogram) {
+            this.count = histogram.count();
+            this.sumNanos = histogram.sum();
+            this.p50Nanos = histogram.valueAtPercentile(50);
+            this.p99Nanos = histogram.valueAtPercentile(99);
+            this.p999Nanos = histogram.valueAtPercentile(99.9);
+            this.maxNanos = histogram.max();
+        }
+
+        public long count() {
+            return count;
+        }
+
+        public long sumNanos() {
+            return sumNanos;
+        }
+
+        public long p50Nanos() {
+            return p50Nanos;
+        }
+
+        public long p99Nanos() {
+            return p99Nanos;
+        }
+
+        public long p999Nanos() {
+            return p999Nanos;
+        }
+
+        public long maxNanos() {
+            return maxNanos;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package pl.sdacademy.vending.metrics;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Tablica liczników tacek, w której każdy kupujący wątek zwiększa liczniki we własnej kopii tablicy ("pasie").
+ * Pas ma tylko jednego piszącego, więc zwiększenie licznika to zwykły odczyt i zapis z semantyką release - bez
+ * atomowej operacji dodawania, która przy każdym zakupie blokowałaby linię pamięci podręcznej.
+ * <br>
+ * Ilość pasów jest ograniczona (dwa razy więcej niż procesorów i łącznie najwyżej {@link #MAX_STRIPED_COUNTERS}
+ * liczników), a pas wątku, który się zakończył, przejmuje kolejny wątek - razem z dotychczasowymi wartościami. Wątek,
+ * dla którego zabrakło pasa, zwiększa liczniki wspólnej tablicy operacją atomową. Wartość licznika to suma wspólnej
+ * tablicy i wszystkich pasów.
+ */
+class TrayCounters {
+    static final int MAX_STRIPED_COUNTERS = 1 << 20;
+
+    private final int length;
+    private final AtomicLongArray shared;
+    private final Stripe[] stripes;
+    private final ThreadLocal<AtomicLongArray> ownStripe = ThreadLocal.withInitial(this::claimStripe);
+
+    /**
+     * @param length ilość liczników
+     */
+    TrayCounters(int length) {
+        this.length = length;
+        this.shared = new AtomicLongArray(length);
+        int stripesCount = Math.min(2 * Runtime.getRuntime().availableProcessors(),
+                MAX_STRIPED_COUNTERS / Math.max(1, length));
+        this.stripes = new Stripe[stripesCount];
+    }
+
+    void add(int index, long delta) {
+        AtomicLongArray counters = ownStripe.get();
+        if (counters != null) {
+            counters.lazySet(index, counters.get(index) + delta);
+        } else {
+            shared.getAndAdd(index, delta);
+        }
+    }
+
+    synchronized long get(int index) {
+        long sum = shared.get(index);
+        for (Stripe stripe : stripes) {
+            if (stripe != null) {
+                sum += stripe.counters.get(index);
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Przydziela bieżącemu wątkowi wolny pas - jeszcze nieutworzony albo należący do zakończonego wątku.
+     * @return liczniki pasu lub null, jeżeli wszystkie pasy należą do działających wątków
+     */
+    private synchronized AtomicLongArray claimStripe() {
+        Thread current = Thread.currentThread();
+        for (int index = 0; index < stripes.length; index++) {
+            if (stripes[index] == null) {
+                stripes[index] = new Stripe(new AtomicLongArray(length));
+            }
+            Stripe stripe = stripes[index];
+            Thread owner = stripe.owner.get();
+            if (owner == null || !owner.isAlive()) {
+                stripe.owner = new WeakReference<>(current);
+                return stripe.counters;
+            }
+        }
+        return null;
+    }
+
+    private static class Stripe {
+        private final AtomicLongArray counters;
+        private WeakReference<Thread> owner = new WeakReference<>(null);
+
+        private Stripe(AtomicLongArray counters) {
+            this.counters = counters;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package pl.sdacademy.vending.model;
+
+import pl.sdacademy.vending.util.Configuration;
+
+import java.util.Locale;
+
+/**
+ * Sposób wypełniania automatu tackami podczas jego tworzenia. Tryb jest odczytywany z klucza "machine.construction"
+ * (domyślnie {@link #EAGER}) i stosowany tylko z fabrykami, które na to pozwalają
+ * ({@link TrayFactory#supportsDeferredCreation()}) - z pozostałymi automat jest zawsze wypełniany od razu.
+ */
+public enum ConstructionMode {
+    /**
+     * Wszystkie tacki są tworzone w konstruktorze automatu, wiersz po wierszu, w wątku tworzącym automat.
+     */
+    EAGER,
+    /**
+     * Wszystkie tacki są tworzone w konstruktorze automatu, ale wiersze są wypełniane równolegle we wspólnej puli
+     * fork-join. Fabryka musi pozwalać na tworzenie tacek z wielu wątków jednocześnie.
+     */
+    PARALLEL,
+    /**
+     * Tacka jest tworzona dopiero przy pierwszym odwołaniu do jej pozycji - dokładnie raz, nawet jeżeli pierwsze
+     * odwołania nastąpią jednocześnie w wielu wątkach. Utworzenie automatu nie tworzy żadnej tacki, więc np. flota
+     * testowa z tysiącami automatów powstaje od razu. Fabryka jest przechowywana przez automat i wywoływana później,
+     * z dowolnego wątku.
+     */
+    LAZY;
+
+    /**
+     * @param configuration konfiguracja automatu
+     * @return tryb zapisany pod kluczem "machine.construction" (wielkość liter nie ma znaczenia) lub {@link #EAGER}
+     * @throws IllegalArgumentException jeżeli zapisano nieznany tryb
+     */
+    public static ConstructionMode fromConfiguration(Configuration configuration) {
+        String mode = configuration.getProperty("machine.construction", EAGER.name());
+        if (mode == null) {
+            return EAGER;
+        }
+        try {
+            return valueOf(mode.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown machine construction mode: " + mode);
+        }
+    }
+}
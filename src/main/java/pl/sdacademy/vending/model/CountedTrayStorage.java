@@ -0,0 +1,92 @@
+package pl.sdacademy.vending.model;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * Przechowywanie produktów dla tacki, na której leżą identyczne sztuki tego samego produktu. Zamiast trzymać osobny
+ * obiekt dla każdej sztuki, przechowujemy jedną referencję do produktu oraz licznik sztuk. Wydanie produktu to atomowe
+ * zmniejszenie licznika (operacja CAS), więc dwóch kupujących nigdy nie otrzyma tej samej sztuki.
+ * <br>
+ * Tacka utworzona bez produktów nie zna jeszcze swojego produktu - przyjmuje produkt pierwszego uzupełnienia. Produkt
+ * jest ustawiany operacją CAS przed zwiększeniem licznika, więc kupujący, który zobaczy sztuki, widzi też produkt.
+ */
+class CountedTrayStorage implements TrayStorage {
+    private static final AtomicReferenceFieldUpdater<CountedTrayStorage, Product> PRODUCT =
+            AtomicReferenceFieldUpdater.newUpdater(CountedTrayStorage.class, Product.class, "product");
+
+    /**
+     * Produkt tacki - null tylko w tacce utworzonej bez produktów, do jej pierwszego uzupełnienia. Raz ustawiony nigdy
+     * się nie zmienia.
+     */
+    private volatile Product product;
+    private final AtomicInteger count;
+
+    CountedTrayStorage(Product product, int count) {
+        if (count < 0 || (product == null && count > 0)) {
+            throw new IllegalArgumentException("Invalid products count " + count + " for product " + product);
+        }
+        this.product = product;
+        this.count = new AtomicInteger(count);
+    }
+
+    @Override
+    public Product peek() {
+        return count.get() > 0 ? product : null;
+    }
+
+    @Override
+    public Product poll() {
+        int current;
+        do {
+            current = count.get();
+            if (current == 0) {
+                return null;
+            }
+        } while (!count.compareAndSet(current, current - 1));
+        return product;
+    }
+
+    @Override
+    public boolean pollMany(int count, Product[] target, int offset) {
+        int current;
+        do {
+            current = this.count.get();
+            if (current < count) {
+                return false;
+            }
+        } while (!this.count.compareAndSet(current, current - count));
+        for (int index = 0; index < count; index++) {
+            target[offset + index] = product;
+        }
+        return true;
+    }
+
+    @Override
+    public void putBack(Product[] products, int offset, int count) {
+        this.count.addAndGet(count);
+    }
+
+    @Override
+    public int restock(Product product, int count) {
+        if (this.product == null) {
+            PRODUCT.compareAndSet(this, null, product);
+        }
+        if (!Objects.equals(this.product.getName(), product.getName())) {
+            return 0;
+        }
+        int current;
+        int added;
+        do {
+            current = this.count.get();
+            added = Math.min(count, Integer.MAX_VALUE - current);
+        } while (!this.count.compareAndSet(current, current + added));
+        return added;
+    }
+
+    @Override
+    public int size() {
+        return count.get();
+    }
+}
@@ -0,0 +1,113 @@
+package pl.sdacademy.vending.model;
+
+import java.util.Optional;
+import java.util.stream.IntStream;
+
+/**
+ * Siatka gęsta - tablica z miejscem na każdą pozycję automatu (wiersz * ilość kolumn + kolumna). Tacki są opakowane
+ * w {@link Optional} tworzony raz dla każdej pozycji, więc wyszukanie tacki nie tworzy żadnych obiektów. Symbol jest
+ * zamieniany na pozycję przez {@link SymbolIndex}.
+ * <br>
+ * W siatce wypełnianej leniwie ({@link ConstructionMode#LAZY}) pozycja zawiera null, dopóki jej tacka nie zostanie
+ * utworzona. Raz ustawiona pozycja nigdy się już nie zmienia.
+ */
+class DenseTrayGrid implements TrayGrid {
+    private final int cols;
+    private final SymbolIndex symbolIndex;
+    private final Optional<Tray>[] trayOptionals;
+    /**
+     * Fabryka tworząca tacki przy pierwszym odwołaniu do pozycji - null, jeżeli wszystkie tacki utworzono od razu.
+     */
+    private final TrayFactory lazyTrayFactory;
+    private final Object materializationLock = new Object();
+
+    DenseTrayGrid(int rows, int cols, TrayFactory trayFactory, ConstructionMode constructionMode) {
+        this.cols = cols;
+        this.symbolIndex = new SymbolIndex(rows, cols);
+        this.trayOptionals = TrayGrid.newTrayOptionals(rows * cols);
+        if (constructionMode == ConstructionMode.LAZY) {
+            lazyTrayFactory = trayFactory;
+        } else {
+            lazyTrayFactory = null;
+            if (constructionMode == ConstructionMode.PARALLEL) {
+                // każdy wiersz zapisuje tylko swoje pozycje, a zakończenie strumienia gwarantuje widoczność wszystkich
+                // zapisów w wątku tworzącym automat
+                IntStream.range(0, rows).parallel().forEach(rowNumber -> fillRow(rowNumber, trayFactory));
+            } else {
+                for (int rowNumber = 0; rowNumber < rows; rowNumber++) {
+                    fillRow(rowNumber, trayFactory);
+                }
+            }
+        }
+    }
+
+    private void fillRow(int rowNumber, TrayFactory trayFactory) {
+        for (int colNumber = 0; colNumber < cols; colNumber++) {
+            int position = rowNumber * cols + colNumber;
+            trayOptionals[position] = Optional.ofNullable(trayFactory.createTray(rowNumber, colNumber));
+        }
+    }
+
+    @Override
+    public int positionsCount() {
+        return trayOptionals.length;
+    }
+
+    @Override
+    public int positionOf(String symbol) {
+        return symbolIndex.positionOf(symbol);
+    }
+
+    @Override
+    public int positionOf(int rowNumber, int colNumber) {
+        return symbolIndex.positionOf(rowNumber, colNumber);
+    }
+
+    @Override
+    public int rowAt(int position) {
+        return position / cols;
+    }
+
+    @Override
+    public int colAt(int position) {
+        return position % cols;
+    }
+
+    @Override
+    public Optional<Tray> trayAt(int position) {
+        // odczyt bez synchronizacji jest bezpieczny - pole Optional przechowujące tackę jest finalne (tak jak pola
+        // tacki), więc wątek, który zobaczy optional, widzi też w całości utworzoną tackę
+        Optional<Tray> tray = trayOptionals[position];
+        return tray != null ? tray : materializeTray(position);
+    }
+
+    @Override
+    public Tray existingTrayAt(int position) {
+        Optional<Tray> tray = trayOptionals[position];
+        return tray == null ? null : tray.orElse(null);
+    }
+
+    @Override
+    public String symbolAt(int position) {
+        if (lazyTrayFactory != null) {
+            // tacka mogła jeszcze nie powstać - przyjmujemy, że każda pozycja może mieć tackę
+            return SymbolIndex.symbolOf(position / cols, position % cols);
+        }
+        return trayOptionals[position].map(Tray::getSymbol).orElse(null);
+    }
+
+    /**
+     * Tworzy tackę siatki wypełnianej leniwie. Sprawdzenie pozycji jest powtarzane pod zamkiem, więc przy
+     * jednoczesnych pierwszych odwołaniach tacka jest tworzona dokładnie raz, a wszyscy otrzymują ten sam obiekt.
+     */
+    private Optional<Tray> materializeTray(int position) {
+        synchronized (materializationLock) {
+            Optional<Tray> tray = trayOptionals[position];
+            if (tray == null) {
+                tray = Optional.ofNullable(lazyTrayFactory.createTray(position / cols, position % cols));
+                trayOptionals[position] = tray;
+            }
+            return tray;
+        }
+    }
+}
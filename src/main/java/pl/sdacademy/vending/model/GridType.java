@@ -0,0 +1,62 @@
+package pl.sdacademy.vending.model;
+
+import pl.sdacademy.vending.util.Configuration;
+
+import java.util.Locale;
+
+/**
+ * Sposób przechowywania tacek automatu. Typ jest odczytywany z klucza "machine.grid" (domyślnie {@link #DENSE}).
+ */
+public enum GridType {
+    /**
+     * Tablica z miejscem na każdą pozycję automatu - wyszukanie tacki to jeden odczyt z tablicy. Automat ma najwyżej
+     * 26 wierszy i 9 kolumn, a symbole tacek składają się z litery i cyfry (np. "B3").
+     */
+    DENSE(26, 9),
+    /**
+     * Tablica haszująca przechowująca tylko istniejące tacki - pamięć zależy od ilości tacek, a nie od wielkości
+     * automatu, a wyszukanie tacki wciąż zajmuje stały czas. Przeznaczona dla dużych automatów (np. ścian skrytek
+     * z tysiącami miejsc), w większości pustych. Symbole tacek mogą być wieloznakowe (np. "AB12"). Taki automat jest
+     * zawsze wypełniany od razu - tryb {@link ConstructionMode#LAZY} jest traktowany jak {@link ConstructionMode#EAGER}.
+     */
+    SPARSE(18_278, 9_999);
+
+    private final int maxRows;
+    private final int maxCols;
+
+    GridType(int maxRows, int maxCols) {
+        this.maxRows = maxRows;
+        this.maxCols = maxCols;
+    }
+
+    /**
+     * @return największa ilość wierszy automatu (w siatce rzadkiej - do symbolu "ZZZ")
+     */
+    public int maxRows() {
+        return maxRows;
+    }
+
+    /**
+     * @return największa ilość kolumn automatu
+     */
+    public int maxCols() {
+        return maxCols;
+    }
+
+    /**
+     * @param configuration konfiguracja automatu
+     * @return typ zapisany pod kluczem "machine.grid" (wielkość liter nie ma znaczenia) lub {@link #DENSE}
+     * @throws IllegalArgumentException jeżeli zapisano nieznany typ
+     */
+    public static GridType fromConfiguration(Configuration configuration) {
+        String type = configuration.getProperty("machine.grid", DENSE.name());
+        if (type == null) {
+            return DENSE;
+        }
+        try {
+            return valueOf(type.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown machine grid type: " + type);
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package pl.sdacademy.vending.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Zamówienie wielu produktów naraz - lista pozycji, z których każda to symbol tacki oraz ilość sztuk do kupienia z tej
+ * tacki. Zamówienie jest realizowane przez {@link VendingMachine#buyProducts(Order)} w całości albo wcale.
+ * <br>
+ * Instancja zamówienia jest tworzona za pomocą Buildera albo z tekstu w postaci "3x A1, 2x C4".
+ */
+public class Order {
+    private final String[] symbols;
+    private final int[] quantities;
+    private final int totalQuantity;
+
+    private Order(Builder builder) {
+        int itemsCount = builder.symbols.size();
+        symbols = builder.symbols.toArray(new String[itemsCount]);
+        quantities = new int[itemsCount];
+        for (int item = 0; item < itemsCount; item++) {
+            quantities[item] = builder.quantities.get(item);
+        }
+        totalQuantity = builder.totalQuantity;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Tworzy zamówienie z tekstu, w którym pozycje są rozdzielone przecinkami, a każda pozycja ma postać
+     * "ILOŚĆx SYMBOL" (np. "3x A1", wielkość litery x nie ma znaczenia) lub samego symbolu (jedna sztuka).
+     * @param order tekst zamówienia, np. "3x A1, 2x C4"
+     * @return zamówienie
+     * @throws IllegalArgumentException jeżeli tekst nie jest poprawnym zamówieniem
+     */
+    public static Order parse(String order) {
+        Builder builder = builder();
+        for (String item : order.split(",")) {
+            String trimmedItem = item.trim();
+            int separator = quantitySeparator(trimmedItem);
+            try {
+                if (separator > 0) {
+                    builder.item(trimmedItem.substring(separator + 1).trim(),
+                            Integer.parseInt(trimmedItem.substring(0, separator).trim()));
+                } else {
+                    builder.item(trimmedItem, 1);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid order item \"" + trimmedItem + "\"", e);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Wyszukuje literę x (lub X) oddzielającą ilość od symbolu. Symbol tacki w siatce rzadkiej może sam zawierać
+     * literę X (np. "AX12"), więc litera jest separatorem tylko wtedy, gdy poprzedza ją liczba albo pozycja zawiera
+     * odstęp - sam symbol nigdy go nie zawiera.
+     * @return indeks separatora lub -1, jeżeli pozycja to sam symbol
+     */
+    private static int quantitySeparator(String item) {
+        boolean containsWhitespace = item.chars().anyMatch(Character::isWhitespace);
+        for (int index = 0; index < item.length(); index++) {
+            char character = item.charAt(index);
+            if (character == 'x' || character == 'X') {
+                String quantity = item.substring(0, index).trim();
+                if (containsWhitespace || !quantity.isEmpty() && quantity.chars().allMatch(Character::isDigit)) {
+                    return index;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return ilość pozycji zamówienia
+     */
+    public int itemsCount() {
+        return symbols.length;
+    }
+
+    public String symbol(int item) {
+        return symbols[item];
+    }
+
+    public int quantity(int item) {
+        return quantities[item];
+    }
+
+    /**
+     * @return łączna ilość sztuk we wszystkich pozycjach zamówienia
+     */
+    public int totalQuantity() {
+        return totalQuantity;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        for (int item = 0; item < symbols.length; item++) {
+            if (item > 0) {
+                text.append(", ");
+            }
+            text.append(quantities[item]).append("x ").append(symbols[item]);
+        }
+        return text.toString();
+    }
+
+    public static class Builder {
+        private final List<String> symbols = new ArrayList<>();
+        private final List<Integer> quantities = new ArrayList<>();
+        private int totalQuantity;
+
+        private Builder() {
+        }
+
+        /**
+         * Dodaje pozycję zamówienia.
+         * @param symbol symbol tacki
+         * @param quantity ilość sztuk, co najmniej 1
+         * @return ten sam Builder
+         */
+        public Builder item(String symbol, int quantity) {
+            if (symbol == null || symbol.isEmpty()) {
+                throw new IllegalArgumentException("Order item symbol cannot be empty");
+            }
+            if (quantity < 1) {
+                throw new IllegalArgumentException("Order item quantity must be positive, was " + quantity);
+            }
+            try {
+                totalQuantity = Math.addExact(totalQuantity, quantity);
+            } catch (ArithmeticException e) {
+                throw new IllegalArgumentException("Order total quantity exceeds " + Integer.MAX_VALUE, e);
+            }
+            symbols.add(symbol);
+            quantities.add(quantity);
+            return this;
+        }
+
+        public Order build() {
+            if (symbols.isEmpty()) {
+                throw new IllegalStateException("Order must contain at least one item");
+            }
+            return new Order(this);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package pl.sdacademy.vending.model;
+
+import java.util.Arrays;
+
+/**
+ * Niezmienna, wersjonowana tabela aktualnych cen tacek jednego automatu - ceny w groszach, jako wartości typu long,
+ * według pozycji tacek w automacie. Pozycja z wartością {@link #BASE_PRICE} używa ceny podstawowej tacki
+ * ({@link Tray#getPrice()}).
+ * <br>
+ * Automat przechowuje bieżącą tabelę w jednej referencji. Nowe ceny są publikowane przez utworzenie nowej tabeli
+ * i atomową podmianę referencji ({@link VendingMachine#reprice(TrayPricer)}), więc odczyt ceny to odczyt referencji
+ * i elementu tablicy - bez zamków i bez opakowywania wartości, a każdy odczyt widzi ceny w całości z jednej wersji.
+ */
+public final class PriceTable {
+    /**
+     * Wartość oznaczająca, że pozycja używa ceny podstawowej tacki.
+     */
+    public static final long BASE_PRICE = -1L;
+
+    private static final PriceTable BASE_PRICES = new PriceTable(0, null);
+
+    private final long version;
+    /**
+     * Ceny według pozycji - null w tabeli początkowej, w której wszystkie pozycje używają ceny podstawowej.
+     */
+    private final long[] prices;
+
+    private PriceTable(long version, long[] prices) {
+        this.version = version;
+        this.prices = prices;
+    }
+
+    /**
+     * @return tabela w wersji 0, w której każda tacka ma cenę podstawową - wspólna dla wszystkich automatów
+     */
+    static PriceTable basePrices() {
+        return BASE_PRICES;
+    }
+
+    /**
+     * @param prices ceny według pozycji - tablica jest przejmowana przez tabelę i nie może być już zmieniana
+     * @return kolejna wersja tabeli z podanymi cenami
+     */
+    PriceTable next(long[] prices) {
+        return new PriceTable(version + 1, prices);
+    }
+
+    /**
+     * @return numer wersji tabeli - rośnie z każdą zmianą cen automatu
+     */
+    public long version() {
+        return version;
+    }
+
+    /**
+     * @param position pozycja tacki w automacie
+     * @return cena w groszach lub {@link #BASE_PRICE}
+     */
+    long price(int position) {
+        return prices == null ? BASE_PRICE : prices[position];
+    }
+
+    @Override
+    public String toString() {
+        return "PriceTable{version=" + version + ", prices=" + (prices == null ? "base" : Arrays.toString(prices))
+                + '}';
+    }
+}
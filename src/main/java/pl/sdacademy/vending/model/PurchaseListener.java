@@ -0,0 +1,53 @@
+package pl.sdacademy.vending.model;
+
+/**
+ * Interface obiektów, które chcą być powiadamiane o każdym udanym zakupie (oraz uzupełnieniu tacki) w automacie.
+ * Słuchacze są rejestrowani za pomocą {@link VendingMachine#addPurchaseListener(PurchaseListener)} i wywoływani w wątku
+ * kupującego, zaraz po wydaniu produktu z tacki - produkt jest już wtedy sprzedany, więc słuchacz nie powinien zgłaszać
+ * wyjątków.
+ */
+public interface PurchaseListener {
+    /**
+     * Wywoływana po wydaniu produktu z tacki.
+     * @param tray tacka, z której wydano produkt
+     * @param product wydany produkt
+     */
+    void productPurchased(Tray tray, Product product);
+
+    /**
+     * Wywoływana po wydaniu produktu z tacki - razem z ceną obowiązującą w chwili zakupu
+     * ({@link VendingMachine#priceOf(String)}). Domyślnie pomija cenę.
+     * @param tray tacka, z której wydano produkt
+     * @param product wydany produkt
+     * @param price cena produktu w groszach
+     */
+    default void productPurchased(Tray tray, Product product, long price) {
+        productPurchased(tray, product);
+    }
+
+    /**
+     * Wywoływana raz po wydaniu kilku sztuk jednym zakupem - zamówienia ({@link VendingMachine#buyProducts(Order)})
+     * albo potwierdzonej rezerwacji - np. aby dziennik zakupów zapisał całe zamówienie jedną paczką. Domyślnie
+     * wywołuje {@link #productPurchased(Tray, Product, long)} dla każdej sztuki.
+     * @param trays tacki, z których wydano kolejne sztuki
+     * @param products wydane sztuki
+     * @param prices ceny kolejnych sztuk w groszach
+     */
+    default void productsPurchased(Tray[] trays, Product[] products, long[] prices) {
+        for (int unit = 0; unit < products.length; unit++) {
+            productPurchased(trays[unit], products[unit], prices[unit]);
+        }
+    }
+
+    /**
+     * Wywoływana przy uzupełnianiu tacki przez {@link VendingMachine#restockTray(String, Product, int)} - najpierw,
+     * jeszcze przed dołożeniem produktów, z ilością zapowiedzianych sztuk, a następnie, jeżeli dołożono ich mniej,
+     * z ujemną ilością sztuk, których jednak nie dołożono. Dzięki zapowiedzi słuchacz dowiaduje się o nowych sztukach,
+     * zanim którakolwiek z nich zostanie kupiona. Domyślnie nic nie robi.
+     * @param tray uzupełniana tacka
+     * @param product dokładany produkt
+     * @param count ilość zapowiedzianych sztuk lub ujemna ilość sztuk, których nie dołożono
+     */
+    default void productsRestocked(Tray tray, Product product, int count) {
+    }
+}
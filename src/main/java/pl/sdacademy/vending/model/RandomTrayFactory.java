@@ -0,0 +1,107 @@
+package pl.sdacademy.vending.model;
+
+import pl.sdacademy.vending.util.Configuration;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Fabryka tacek, która losowo decyduje o tym, czy w danym miejscu automatu znajduje się tacka, jaka jest cena produktu
+ * oraz ile produktów leży na tacce. Jest to domyślna fabryka używana przez {@link VendingMachine}.
+ * <br>
+ * Liczby są losowane z {@link ThreadLocalRandom} - każdy wątek ma własny generator, więc tacki mogą być tworzone
+ * równolegle, bez rywalizacji o wspólny generator. Wynik jest za każdym razem inny - do odtwarzalnego wypełniania
+ * automatów służy {@link SeededTrayFactory}.
+ */
+public class RandomTrayFactory implements TrayFactory {
+
+    /**
+     * Wybiera fabrykę tacek na podstawie konfiguracji: jeżeli podano ziarno losowania ("machine.seed"), to automat jest
+     * wypełniany odtwarzalnie przez {@link SeededTrayFactory}, a w przeciwnym wypadku losowo.
+     * @param configuration konfiguracja automatu
+     * @return fabryka tacek
+     */
+    public static TrayFactory fromConfiguration(Configuration configuration) {
+        Long seed = configuration.getProperty("machine.seed", (Long) null);
+        return seed == null ? new RandomTrayFactory() : new SeededTrayFactory(seed);
+    }
+
+    /**
+     * Wybiera fabrykę tacek dla kolejnego automatu floty. Przy podanym ziarnie każdy automat otrzymuje własne ziarno
+     * wyliczone z numeru automatu - automaty różnią się między sobą, a cała flota jest odtwarzalna.
+     * @param configuration konfiguracja floty
+     * @param machineNumber numer automatu we flocie
+     * @return fabryka tacek
+     */
+    public static TrayFactory fromConfiguration(Configuration configuration, int machineNumber) {
+        Long seed = configuration.getProperty("machine.seed", (Long) null);
+        return seed == null ? new RandomTrayFactory() : SeededTrayFactory.forMachine(seed, machineNumber);
+    }
+
+    @Override
+    public Tray createTray(int rowNumber, int colNumber) {
+        if (!shouldGenerateTray()) {
+            return null;
+        }
+        return createTray(rowNumber, colNumber, generateRandomPrice(), ThreadLocalRandom.current().nextDouble());
+    }
+
+    @Override
+    public boolean supportsDeferredCreation() {
+        return true;
+    }
+
+    /**
+     * Tworzy tackę z wylosowanych już wartości - wspólne dla wszystkich fabryk losujących tacki.
+     * @param calculatedPrice cena produktu
+     * @param productProbability liczba z przedziału od 0.0 do 1.0 decydująca o ilości produktów na tacce
+     */
+    static Tray createTray(int rowNumber, int colNumber, int calculatedPrice, double productProbability) {
+        String symbol = SymbolIndex.symbolOf(rowNumber, colNumber);
+
+        if (productProbability < 0.1) {
+            // 2 produkty - wszystkie sztuki na tacce są identyczne, więc tworzymy tylko jeden obiekt produktu
+            return Tray.builder(symbol).price((long) calculatedPrice)
+                    .products(new Product("Product " + symbol), 2)
+                    .build();
+        } else if (productProbability < 0.5) {
+            // 1 product
+            return Tray.builder(symbol).price((long) calculatedPrice)
+                    .product(new Product("Product " + symbol))
+                    .build();
+        }
+
+        return Tray.builder(symbol)
+                .price(calculatedPrice)
+                .build();
+    }
+
+    private boolean shouldGenerateTray() {
+        // true jeżeli tack powinna zostać wygenerowana
+        return ThreadLocalRandom.current().nextDouble() < 0.8;
+    }
+
+    private int generateRandomPrice() {
+        // generator bieżącego wątku - nie tworzymy nowego obiektu Random dla każdej tacki
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+//        random.nextInt(100) -> 0 - 99
+        int generatedPrice = random.nextInt(401); // values from 0 to 400
+
+        /*
+        metoda PRICE oczekuje wartości typu long (nie obiektu Long - cena nie jest opakowywana)
+        calcalutedPrice jest int
+        int -> long
+        Scenariusz 1: price((long) calculatedPrice)
+            sami rzutujemy int na long
+        Scenariusz 2: price(calculatedPrice)
+            JVM sam rozszerza int do long
+         */
+        /*
+        Inny sposób na generowanie losowej liczby
+        double Math.random()
+            double -> 0.0 do 1.0
+            (double * 400) -> 0.0 do 400.0
+            () + 100 -> 100.0 do 500.0
+         */
+        return generatedPrice + 100;
+    }
+}
@@ -0,0 +1,113 @@
+package pl.sdacademy.vending.model;
+
+import pl.sdacademy.vending.util.HashedTimingWheel;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Rezerwacja sztuk produktu z jednej tacki ({@link VendingMachine#reserve(String, int, Duration)}). Zarezerwowane sztuki są
+ * zdejmowane z tacki, więc inni kupujący ich nie widzą, a cena jest ustalana w chwili rezerwacji. Rezerwacja kończy
+ * się dokładnie raz: potwierdzeniem ({@link VendingMachine#confirmReservation(Reservation)}) - wtedy sztuki są
+ * sprzedawane, anulowaniem ({@link VendingMachine#cancelReservation(Reservation)}) albo wygaśnięciem - w obu ostatnich
+ * przypadkach sztuki wracają na tackę.
+ * <br>
+ * Rezerwacja jest jednocześnie zadaniem koła czasowego, które ją unieważnia ({@link HashedTimingWheel}), więc
+ * oczekująca rezerwacja to jeden obiekt (i tablica zdjętych sztuk).
+ */
+public final class Reservation extends HashedTimingWheel.Timeout {
+    /**
+     * Stan rezerwacji - każda zaczyna jako HELD i przechodzi do jednego z pozostałych stanów.
+     */
+    public enum Status {
+        HELD, CONFIRMED, CANCELLED, EXPIRED
+    }
+
+    private final VendingMachine machine;
+    private final HashedTimingWheel wheel;
+    private final Tray tray;
+    private final int position;
+    private final Product[] products;
+    private final long price;
+    private final AtomicReference<Status> status = new AtomicReference<>(Status.HELD);
+
+    Reservation(VendingMachine machine, HashedTimingWheel wheel, Tray tray, int position, Product[] products,
+                long price) {
+        this.machine = machine;
+        this.wheel = wheel;
+        this.tray = tray;
+        this.position = position;
+        this.products = products;
+        this.price = price;
+    }
+
+    public String symbol() {
+        return tray.getSymbol();
+    }
+
+    /**
+     * @return ilość zarezerwowanych sztuk
+     */
+    public int quantity() {
+        return products.length;
+    }
+
+    /**
+     * @return cena jednej sztuki w groszach, ustalona w chwili rezerwacji
+     */
+    public long price() {
+        return price;
+    }
+
+    /**
+     * @return termin wygaśnięcia rezerwacji według zegara koła czasowego, w milisekundach
+     */
+    public long expiresAt() {
+        return deadline();
+    }
+
+    public Status status() {
+        return status.get();
+    }
+
+    VendingMachine machine() {
+        return machine;
+    }
+
+    HashedTimingWheel wheel() {
+        return wheel;
+    }
+
+    Tray tray() {
+        return tray;
+    }
+
+    int position() {
+        return position;
+    }
+
+    Product[] products() {
+        return products;
+    }
+
+    /**
+     * Kończy rezerwację - tylko pierwsze zakończenie się udaje.
+     * @param finalStatus stan po zakończeniu
+     * @return true, jeżeli rezerwacja była aktywna i została zakończona tym wywołaniem
+     */
+    boolean finish(Status finalStatus) {
+        return status.compareAndSet(Status.HELD, finalStatus);
+    }
+
+    @Override
+    protected void expired() {
+        if (finish(Status.EXPIRED)) {
+            tray.returnProducts(products, 0, products.length);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Reservation{" + symbol() + " x" + quantity() + ", " + status.get() + '}';
+    }
+}
@@ -0,0 +1,153 @@
+package pl.sdacademy.vending.model;
+
+import java.util.Objects;
+
+/**
+ * Przechowywanie produktów dla tacki, na której leżą różne produkty. Każdy różny produkt jest zapisany tylko raz
+ * w lokalnym katalogu tacki, a kolejka sztuk jest buforem cyklicznym zawierającym wyłącznie identyfikatory (indeksy)
+ * produktów z katalogu - typ prosty int zamiast obiektu węzła listy dla każdej sztuki.
+ * <br>
+ * Bufor rośnie (podwaja się), gdy zabraknie w nim miejsca, więc uzupełnienie tacki nie jest obcinane, a odłożenie
+ * zdjętych sztuk ({@link #putBack(Product[], int, int)}) - np. po anulowaniu rezerwacji, która czekała w trakcie
+ * uzupełnienia - zawsze się udaje. Zmiany bufora są synchronizowane na obiekcie tej klasy, czyli tylko w obrębie jednej
+ * tacki, tak jak w innych sposobach przechowywania z licznikiem zmienianym pod zamkiem. Ilość sztuk i wersja zawartości
+ * są dodatkowo publikowane w polach volatile, więc ich odczyt (np. przy wyświetlaniu automatu) nie zajmuje zamka.
+ */
+class RingTrayStorage implements TrayStorage {
+    private final Product[] catalog;
+    private int[] productIds;
+    private int head;
+    private volatile int size;
+    /**
+     * Ilość wszystkich zmian zawartości bufora - rośnie przy każdym dołożeniu i zdjęciu sztuki.
+     */
+    private volatile long version;
+
+    /**
+     * @param catalog wszystkie różne produkty, jakie mogą pojawić się na tacce
+     * @param capacity początkowa pojemność bufora - zaokrąglana w górę do potęgi dwójki
+     */
+    RingTrayStorage(Product[] catalog, int capacity) {
+        this.catalog = catalog;
+        productIds = new int[Integer.highestOneBit(Math.max(1, capacity - 1)) << 1];
+    }
+
+    /**
+     * Dokłada na koniec tacki produkt o podanym indeksie w katalogu, w razie potrzeby powiększając bufor.
+     * @param productId indeks produktu w katalogu
+     * @return true, jeżeli produkt został dołożony; false, jeżeli tacka ma już największą możliwą ilość sztuk
+     */
+    synchronized boolean offer(int productId) {
+        if (size == productIds.length && !grow()) {
+            return false;
+        }
+        productIds[(head + size) & (productIds.length - 1)] = productId;
+        size++;
+        version++;
+        return true;
+    }
+
+    private boolean grow() {
+        if (productIds.length > Integer.MAX_VALUE / 2) {
+            return false;
+        }
+        int[] grown = new int[productIds.length * 2];
+        int firstPart = Math.min(size, productIds.length - head);
+        System.arraycopy(productIds, head, grown, 0, firstPart);
+        System.arraycopy(productIds, 0, grown, firstPart, size - firstPart);
+        productIds = grown;
+        head = 0;
+        return true;
+    }
+
+    @Override
+    public synchronized Product peek() {
+        return size == 0 ? null : catalog[productIds[head]];
+    }
+
+    @Override
+    public synchronized Product poll() {
+        if (size == 0) {
+            return null;
+        }
+        Product product = catalog[productIds[head]];
+        head = (head + 1) & (productIds.length - 1);
+        size--;
+        version++;
+        return product;
+    }
+
+    @Override
+    public synchronized boolean pollMany(int count, Product[] target, int offset) {
+        if (count > size) {
+            return false;
+        }
+        for (int index = 0; index < count; index++) {
+            target[offset + index] = catalog[productIds[head]];
+            head = (head + 1) & (productIds.length - 1);
+        }
+        size -= count;
+        version += count;
+        return true;
+    }
+
+    @Override
+    public synchronized void putBack(Product[] products, int offset, int count) {
+        for (int index = offset; index < offset + count; index++) {
+            if (!offer(productIdOf(products[index]))) {
+                throw new IllegalStateException("Tray has no room for returned product " + products[index].getName());
+            }
+        }
+    }
+
+    @Override
+    public synchronized int restock(Product product, int count) {
+        for (int productId = 0; productId < catalog.length; productId++) {
+            if (Objects.equals(catalog[productId].getName(), product.getName())) {
+                int added = 0;
+                while (added < count && offer(productId)) {
+                    added++;
+                }
+                return added;
+            }
+        }
+        return 0;
+    }
+
+    private int productIdOf(Product product) {
+        for (int productId = 0; productId < catalog.length; productId++) {
+            if (catalog[productId] == product) {
+                return productId;
+            }
+        }
+        throw new IllegalArgumentException("Product " + product.getName() + " does not come from this tray");
+    }
+
+    @Override
+    public long version() {
+        return version;
+    }
+
+    @Override
+    public synchronized void forEachRun(RunVisitor visitor) {
+        int runProductId = -1;
+        int runLength = 0;
+        for (int position = 0; position < size; position++) {
+            int productId = productIds[(head + position) & (productIds.length - 1)];
+            if (productId != runProductId && runLength > 0) {
+                visitor.visit(catalog[runProductId], runLength);
+                runLength = 0;
+            }
+            runProductId = productId;
+            runLength++;
+        }
+        if (runLength > 0) {
+            visitor.visit(catalog[runProductId], runLength);
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,66 @@
+package pl.sdacademy.vending.model;
+
+import java.util.SplittableRandom;
+
+/**
+ * Fabryka tacek losująca tacki tak jak {@link RandomTrayFactory}, ale odtwarzalnie - to samo ziarno zawsze daje ten sam
+ * automat.
+ * <br>
+ * Każda pozycja automatu ma własny generator {@link SplittableRandom}, którego ziarno jest wyliczane z ziarna fabryki
+ * oraz numeru wiersza i kolumny. Tacka zależy więc tylko od swojej pozycji - nie od kolejności tworzenia tacek ani od
+ * wątku, który ją tworzy. Dzięki temu automat wypełniony równolegle albo leniwie ({@link ConstructionMode}) jest
+ * identyczny z automatem wypełnionym po kolei, a po zmianie wielkości automatu pozycje, które w nim pozostały,
+ * otrzymują te same tacki.
+ */
+public class SeededTrayFactory implements TrayFactory {
+    /**
+     * Stała złotego podziału (2^64 / phi) - rozrzuca kolejne liczby całkowite po całym zakresie long.
+     */
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private final long seed;
+
+    /**
+     * @param seed ziarno losowania
+     */
+    public SeededTrayFactory(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Tworzy fabrykę dla kolejnego automatu floty wypełnianej z jednego ziarna - każdy automat otrzymuje inne tacki.
+     * @param seed ziarno losowania floty
+     * @param machineNumber numer automatu we flocie
+     * @return fabryka tacek automatu
+     */
+    public static SeededTrayFactory forMachine(long seed, int machineNumber) {
+        return new SeededTrayFactory(mix(seed + GOLDEN_GAMMA * (machineNumber + 1L)));
+    }
+
+    @Override
+    public Tray createTray(int rowNumber, int colNumber) {
+        // klucz pozycji nie zależy od wielkości automatu, więc tacka na danej pozycji jest taka sama w każdym automacie
+        long positionKey = ((long) rowNumber << 32) | (colNumber & 0xFFFFFFFFL);
+        SplittableRandom random = new SplittableRandom(mix(seed ^ mix(positionKey + GOLDEN_GAMMA)));
+        if (random.nextDouble() >= 0.8) {
+            return null;
+        }
+        int calculatedPrice = random.nextInt(401) + 100;
+        return RandomTrayFactory.createTray(rowNumber, colNumber, calculatedPrice, random.nextDouble());
+    }
+
+    @Override
+    public boolean supportsDeferredCreation() {
+        return true;
+    }
+
+    /**
+     * Funkcja mieszająca bity (wariant "Stafford 13" używany także przez {@link SplittableRandom}) - sąsiednie wartości
+     * wejściowe dają niepowiązane ze sobą wyniki.
+     */
+    private static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+        value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+        return value ^ (value >>> 31);
+    }
+}
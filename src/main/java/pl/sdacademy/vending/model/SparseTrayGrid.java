@@ -0,0 +1,168 @@
+package pl.sdacademy.vending.model;
+
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.stream.IntStream;
+
+/**
+ * Siatka rzadka - przechowuje tylko istniejące tacki, więc zajmowana pamięć zależy od ilości tacek, a nie od ilości
+ * wierszy i kolumn automatu. Pozycje otrzymują kolejno tylko istniejące tacki (wiersz po wierszu), a miejsce automatu
+ * (wiersz * ilość kolumn + kolumna, jako long) jest zamieniane na pozycję przez tablicę haszującą z adresowaniem
+ * otwartym: klucze i pozycje leżą w dwóch tablicach typów prostych, wypełnionych najwyżej w połowie, więc wyszukanie
+ * to zwykle jeden lub dwa odczyty z tablicy - bez tworzenia obiektów.
+ * <br>
+ * Siatka jest wypełniana od razu, przy tworzeniu automatu - aby znaleźć istniejące tacki, fabryka jest wywoływana dla
+ * każdego miejsca automatu (przy wypełnianiu równoległym wiersze są przeglądane jednocześnie, ale pozycje są nadawane
+ * zawsze w tej samej kolejności).
+ */
+class SparseTrayGrid implements TrayGrid {
+    private static final long EMPTY_KEY = -1L;
+    /**
+     * Stała złotego podziału (2^64 / phi) - mnożenie przez nią rozrzuca kolejne klucze po całej tablicy haszującej.
+     */
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private final int rows;
+    private final int cols;
+    private final long[] keys;
+    private final int[] positions;
+    private final int mask;
+    private final int hashShift;
+    private final Optional<Tray>[] trays;
+    /**
+     * Miejsca automatu (wiersz * ilość kolumn + kolumna) według pozycji - odwrotność tablicy haszującej.
+     */
+    private final long[] cells;
+
+    SparseTrayGrid(int rows, int cols, TrayFactory trayFactory, boolean parallel) {
+        this.rows = rows;
+        this.cols = cols;
+        RowTrays[] rowTrays = new RowTrays[rows];
+        IntStream rowNumbers = IntStream.range(0, rows);
+        if (parallel) {
+            rowNumbers = rowNumbers.parallel();
+        }
+        rowNumbers.forEach(rowNumber -> rowTrays[rowNumber] = collectRow(rowNumber, trayFactory));
+        int traysCount = 0;
+        for (RowTrays row : rowTrays) {
+            traysCount += row == null ? 0 : row.size;
+        }
+
+        int capacity = Integer.highestOneBit(Math.max(2, traysCount) * 2 - 1) << 1;
+        keys = new long[capacity];
+        Arrays.fill(keys, EMPTY_KEY);
+        positions = new int[capacity];
+        mask = capacity - 1;
+        hashShift = 64 - Integer.numberOfTrailingZeros(capacity);
+        trays = TrayGrid.newTrayOptionals(traysCount);
+        cells = new long[traysCount];
+        int position = 0;
+        for (int rowNumber = 0; rowNumber < rows; rowNumber++) {
+            RowTrays row = rowTrays[rowNumber];
+            for (int index = 0; row != null && index < row.size; index++) {
+                long cell = (long) rowNumber * cols + row.cols[index];
+                insert(cell, position);
+                cells[position] = cell;
+                trays[position++] = Optional.of(row.trays[index]);
+            }
+        }
+    }
+
+    private RowTrays collectRow(int rowNumber, TrayFactory trayFactory) {
+        RowTrays row = null;
+        for (int colNumber = 0; colNumber < cols; colNumber++) {
+            Tray tray = trayFactory.createTray(rowNumber, colNumber);
+            if (tray != null) {
+                if (row == null) {
+                    row = new RowTrays();
+                }
+                row.add(colNumber, tray);
+            }
+        }
+        return row;
+    }
+
+    private void insert(long key, int position) {
+        int index = slotFor(key);
+        while (keys[index] != EMPTY_KEY) {
+            index = (index + 1) & mask;
+        }
+        keys[index] = key;
+        positions[index] = position;
+    }
+
+    private int slotFor(long key) {
+        return (int) ((key * GOLDEN_GAMMA) >>> hashShift);
+    }
+
+    @Override
+    public int positionsCount() {
+        return trays.length;
+    }
+
+    @Override
+    public int positionOf(String symbol) {
+        long cell = SymbolIndex.parseCell(symbol);
+        if (cell == SymbolIndex.NO_CELL) {
+            return NO_POSITION;
+        }
+        return positionOf(SymbolIndex.rowOf(cell), SymbolIndex.colOf(cell));
+    }
+
+    @Override
+    public int positionOf(int rowNumber, int colNumber) {
+        if (rowNumber < 0 || rowNumber >= rows || colNumber < 0 || colNumber >= cols) {
+            return NO_POSITION;
+        }
+        long key = (long) rowNumber * cols + colNumber;
+        for (int index = slotFor(key); keys[index] != EMPTY_KEY; index = (index + 1) & mask) {
+            if (keys[index] == key) {
+                return positions[index];
+            }
+        }
+        return NO_POSITION;
+    }
+
+    @Override
+    public int rowAt(int position) {
+        return (int) (cells[position] / cols);
+    }
+
+    @Override
+    public int colAt(int position) {
+        return (int) (cells[position] % cols);
+    }
+
+    @Override
+    public Optional<Tray> trayAt(int position) {
+        return trays[position];
+    }
+
+    @Override
+    public Tray existingTrayAt(int position) {
+        return trays[position].get();
+    }
+
+    @Override
+    public String symbolAt(int position) {
+        return trays[position].get().getSymbol();
+    }
+
+    /**
+     * Tacki jednego wiersza zebrane przed wstawieniem do tablicy haszującej, razem z numerami ich kolumn.
+     */
+    private static final class RowTrays {
+        private int[] cols = new int[4];
+        private Tray[] trays = new Tray[4];
+        private int size;
+
+        private void add(int colNumber, Tray tray) {
+            if (size == trays.length) {
+                cols = Arrays.copyOf(cols, size * 2);
+                trays = Arrays.copyOf(trays, size * 2);
+            }
+            cols[size] = colNumber;
+            trays[size++] = tray;
+        }
+    }
+}
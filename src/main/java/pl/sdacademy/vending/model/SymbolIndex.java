@@ -0,0 +1,147 @@
+package pl.sdacademy.vending.model;
+
+import java.util.Arrays;
+
+/**
+ * Indeks zamieniający symbol tacki (np. "B3") na jej pozycję w automacie. Tablice zamieniające znak wiersza oraz znak
+ * kolumny na ich numery są wyliczane raz, przy ładowaniu klasy, dzięki czemu wyszukanie pozycji to dwa odczyty z
+ * tablicy i porównanie z wielkością automatu - bez zmiany wielkości liter, tworzenia obiektów i wyjątków.
+ * <br>
+ * Wielkość liter symbolu wiersza nie ma znaczenia ("b3" to ta sama tacka co "B3"). Symbole niepoprawne (o złej
+ * długości, z nieznanymi znakami) oraz wskazujące poza automat dają pozycję {@link #NO_POSITION}.
+ * <br>
+ * Automaty większe niż 26x9 ({@link GridType#SPARSE}) używają symboli wieloznakowych: wiersz to litery numerowane jak
+ * kolumny arkusza kalkulacyjnego ("A" - "Z", "AA" - "AZ", "BA" itd., najwyżej {@value #MAX_ROW_LETTERS} litery), a
+ * kolumna to numer bez zer wiodących (najwyżej {@value #MAX_COL_DIGITS} cyfry), np. "AB12". Takie symbole są
+ * odczytywane przez {@link #parseCell(String)}.
+ */
+class SymbolIndex {
+    static final int NO_POSITION = -1;
+    /**
+     * Wynik {@link #parseCell(String)} dla niepoprawnego symbolu.
+     */
+    static final long NO_CELL = -1L;
+    static final int MAX_ROW_LETTERS = 3;
+    static final int MAX_COL_DIGITS = 4;
+
+    private static final int ASCII_SIZE = 128;
+    private static final byte[] ROW_NUMBERS = new byte[ASCII_SIZE];
+    private static final byte[] COL_NUMBERS = new byte[ASCII_SIZE];
+    private static final int MAX_COLS = 9;
+    /**
+     * Symbole wszystkich możliwych pozycji (26 wierszy po 9 kolumn) - wspólne dla wszystkich automatów.
+     */
+    private static final String[] SYMBOLS = new String[26 * MAX_COLS];
+
+    static {
+        Arrays.fill(ROW_NUMBERS, (byte) -1);
+        Arrays.fill(COL_NUMBERS, (byte) -1);
+        for (char rowSymbol = 'A'; rowSymbol <= 'Z'; rowSymbol++) {
+            ROW_NUMBERS[rowSymbol] = (byte) (rowSymbol - 'A');
+            ROW_NUMBERS[Character.toLowerCase(rowSymbol)] = (byte) (rowSymbol - 'A');
+        }
+        for (char colSymbol = '1'; colSymbol <= '9'; colSymbol++) {
+            COL_NUMBERS[colSymbol] = (byte) (colSymbol - '1');
+        }
+        for (int rowNumber = 0; rowNumber < 26; rowNumber++) {
+            for (int colNumber = 0; colNumber < MAX_COLS; colNumber++) {
+                SYMBOLS[rowNumber * MAX_COLS + colNumber] = "" + (char) ('A' + rowNumber) + (colNumber + 1);
+            }
+        }
+    }
+
+    private final int rows;
+    private final int cols;
+
+    SymbolIndex(int rows, int cols) {
+        this.rows = rows;
+        this.cols = cols;
+    }
+
+    /**
+     * @param symbol symbol tacki
+     * @return pozycja tacki (wiersz * ilość kolumn + kolumna) lub {@link #NO_POSITION} dla niepoprawnego symbolu
+     */
+    int positionOf(String symbol) {
+        if (symbol == null || symbol.length() != 2) {
+            return NO_POSITION;
+        }
+        char rowSymbol = symbol.charAt(0);
+        char colSymbol = symbol.charAt(1);
+        if (rowSymbol >= ASCII_SIZE || colSymbol >= ASCII_SIZE) {
+            return NO_POSITION;
+        }
+        return positionOf(ROW_NUMBERS[rowSymbol], COL_NUMBERS[colSymbol]);
+    }
+
+    /**
+     * @return pozycja tacki lub {@link #NO_POSITION}, jeżeli wiersz lub kolumna wykraczają poza automat
+     */
+    int positionOf(int rowNumber, int colNumber) {
+        if (rowNumber < 0 || rowNumber >= rows || colNumber < 0 || colNumber >= cols) {
+            return NO_POSITION;
+        }
+        return rowNumber * cols + colNumber;
+    }
+
+    /**
+     * @return symbol pozycji o wskazanym wierszu i kolumnie, np. "B3" lub "AB12" - dla automatów do 26x9 bez tworzenia
+     * nowego obiektu
+     */
+    static String symbolOf(int rowNumber, int colNumber) {
+        if (rowNumber < 26 && colNumber < MAX_COLS) {
+            return SYMBOLS[rowNumber * MAX_COLS + colNumber];
+        }
+        char[] rowLetters = new char[MAX_ROW_LETTERS];
+        int start = rowLetters.length;
+        for (int remaining = rowNumber + 1; remaining > 0; remaining = (remaining - 1) / 26) {
+            rowLetters[--start] = (char) ('A' + (remaining - 1) % 26);
+        }
+        return new String(rowLetters, start, rowLetters.length - start) + (colNumber + 1);
+    }
+
+    /**
+     * Odczytuje wiersz i kolumnę z symbolu o dowolnej długości, bez sprawdzania wielkości automatu.
+     * @param symbol symbol tacki, np. "b3" lub "AB12"
+     * @return wiersz i kolumna zapisane w jednej liczbie (odczytywane przez {@link #rowOf(long)} i
+     * {@link #colOf(long)}) lub {@link #NO_CELL} dla niepoprawnego symbolu
+     */
+    static long parseCell(String symbol) {
+        if (symbol == null) {
+            return NO_CELL;
+        }
+        int length = symbol.length();
+        int index = 0;
+        int row = 0;
+        while (index < length && index < MAX_ROW_LETTERS) {
+            char rowSymbol = symbol.charAt(index);
+            if (rowSymbol >= ASCII_SIZE || ROW_NUMBERS[rowSymbol] < 0) {
+                break;
+            }
+            row = row * 26 + ROW_NUMBERS[rowSymbol] + 1;
+            index++;
+        }
+        int colStart = index;
+        if (colStart == 0 || length - colStart < 1 || length - colStart > MAX_COL_DIGITS
+                || symbol.charAt(colStart) == '0') {
+            return NO_CELL;
+        }
+        int col = 0;
+        for (; index < length; index++) {
+            char colSymbol = symbol.charAt(index);
+            if (colSymbol < '0' || colSymbol > '9') {
+                return NO_CELL;
+            }
+            col = col * 10 + (colSymbol - '0');
+        }
+        return ((long) (row - 1) << 32) | (col - 1);
+    }
+
+    static int rowOf(long cell) {
+        return (int) (cell >>> 32);
+    }
+
+    static int colOf(long cell) {
+        return (int) cell;
+    }
+}
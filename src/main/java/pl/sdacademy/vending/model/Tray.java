@@ -1,8 +1,11 @@
 package pl.sdacademy.vending.model;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
-import java.util.Queue;
 
 /**
  * Klasa reprezentująca tackę/podajnik. Przechowuje cenę produktu oraz swój symbol, a także kolejkę produktów.
@@ -10,16 +13,31 @@ import java.util.Queue;
  * szyby/przedniej ściany automatu).
  *
  * Instancja tacki jest tworzona TYLKO za pomocą Buildera.
+ *
+ * Tacka jest bezpieczna wielowątkowo: wielu kupujących może jednocześnie pobierać produkty z tej samej tacki, a każdy
+ * produkt zostanie wydany dokładnie raz. Zakupy z różnych tacek nigdy się wzajemnie nie blokują, a zakupy z tacki
+ * identycznych sztuk nie wymagają żadnego zamka (licznik zmieniany operacją CAS). Tacka z różnymi produktami zmienia
+ * swój bufor pod zamkiem tej jednej tacki.
+ *
+ * Produkty nie są przechowywane jako lista obiektów. Jeżeli wszystkie sztuki na tacce są takie same, to tacka pamięta
+ * jeden produkt oraz licznik sztuk ({@link CountedTrayStorage}). Jeżeli sztuki się różnią, to tacka pamięta katalog
+ * różnych produktów oraz bufor cykliczny z ich identyfikatorami ({@link RingTrayStorage}).
  */
 public class Tray {
-    private String symbol;
-    private Long price;
-    private Queue<Product> products;
+    /**
+     * Cena tacki, dla której w Builderze nie podano ceny.
+     */
+    public static final long DEFAULT_PRICE = 990L;
+
+    private final String symbol;
+    private final long price;
+    private final TrayStorage products;
 
     private Tray(Builder builder) {
         this.symbol = builder.symbol;
         this.price = builder.price;
-        this.products = builder.products;
+        // pola tacki są finalne, dzięki czemu tacka jest bezpiecznie publikowana do wszystkich wątków kupujących
+        this.products = builder.createStorage();
     }
 
     public static Builder builder(String symbol) {
@@ -30,7 +48,12 @@ public class Tray {
         return symbol;
     }
 
-    public Long getPrice() {
+    /**
+     * Zwraca cenę podstawową tacki, ustaloną przy jej tworzeniu. Aktualną cenę, która może się zmieniać (np. zależnie
+     * od popytu), podaje automat - {@link VendingMachine#priceOf(String)}.
+     * @return cena podstawowa w groszach
+     */
+    public long getPrice() {
         return price;
     }
 
@@ -74,38 +97,174 @@ public class Tray {
      */
     public Optional<Product> getFirstProduct() {
         // operacja poll pobiera wartość z kolejki oraz usuwa ją z tej kolejki (wszystkie elementy przesuwają się  do przodu)
+        // operacja ta jest atomowa - dwóch kupujących nigdy nie otrzyma tej samej sztuki produktu
         return Optional.ofNullable(products.poll());
     }
 
+    /**
+     * Atomowo zdejmuje z tacki dokładnie count produktów albo żaden, jeżeli na tacce jest ich mniej.
+     * @param count ilość zdejmowanych produktów
+     * @param target tablica na zdjęte produkty
+     * @param offset indeks w tablicy, od którego zostaną zapisane produkty
+     * @return true, jeżeli produkty zostały zdjęte
+     */
+    boolean takeProducts(int count, Product[] target, int offset) {
+        return products.pollMany(count, target, offset);
+    }
+
+    /**
+     * Odkłada na tackę produkty zdjęte wcześniej przez {@link #takeProducts(int, Product[], int)}.
+     */
+    void returnProducts(Product[] returnedProducts, int offset, int count) {
+        products.putBack(returnedProducts, offset, count);
+    }
+
+    /**
+     * Uzupełnia tackę nowymi sztukami produktu. Zakupy mogą odbywać się w trakcie uzupełniania. Uzupełnienie tacki
+     * automatu powinno odbywać się przez {@link VendingMachine#restockTray(String, Product, int)} - tylko wtedy jest
+     * zgłaszane słuchaczom zakupów (np. dziennikowi zakupów).
+     * @param product dokładany produkt - rozpoznawany po nazwie, musi pasować do tacki
+     * @param count ilość dokładanych sztuk
+     * @return ilość faktycznie dołożonych sztuk
+     */
+    public int restock(Product product, int count) {
+        if (product == null || count < 0) {
+            throw new IllegalArgumentException("Cannot restock " + count + " units of " + product);
+        }
+        return products.restock(product, count);
+    }
+
+    /**
+     * Zwraca ilość produktów znajdujących się aktualnie na tacce. Wartość może być nieaktualna już w chwili jej
+     * zwrócenia, jeżeli inni kupujący w tym samym czasie pobierają produkty z tacki.
+     * @return ilość produktów na tacce
+     */
+    public int productsCount() {
+        return products.size();
+    }
+
+    /**
+     * Zwraca wersję zawartości tacki - wartość, która zmienia się przy każdej zmianie produktów leżących na tacce.
+     * Pozwala to np. zapisywać w migawce stanu automatu tylko te tacki, które zmieniły się od poprzedniej migawki.
+     * @return wersja zawartości tacki
+     */
+    public long contentVersion() {
+        return products.version();
+    }
+
+    /**
+     * Przekazuje zawartość tacki jako kolejne serie identycznych produktów, w kolejności, w jakiej będą wydawane.
+     * @param visitor obiekt odbierający kolejne serie produktów
+     */
+    public void forEachProductRun(TrayStorage.RunVisitor visitor) {
+        products.forEachRun(visitor);
+    }
+
     public static class Builder {
         private String symbol;
-        private Long price;
-        private Queue<Product> products;
+        private long price = DEFAULT_PRICE;
+        // dopóki na tacce są tylko identyczne produkty, pamiętamy jeden produkt i ilość jego sztuk
+        private Product uniformProduct;
+        private int uniformCount;
+        // pojawienie się innego produktu przełącza Buildera na listę wszystkich sztuk
+        private List<Product> mixedProducts;
+        // gotowy sposób przechowywania produktów przekazany z zewnątrz
+        private TrayStorage storage;
 
         private Builder(String symbol) {
             if (symbol == null) {
                 throw new IllegalArgumentException("Tray symbol cannot be null");
             }
             this.symbol = symbol;
-            this.products = new LinkedList();
         }
 
-        public Builder price(Long price) {
+        public Builder price(long price) {
             this.price = price;
             return this;
         }
 
         public Builder product(Product product) {
-            this.products.add(product);
+            return products(product, 1);
+        }
+
+        /**
+         * Dodaje na tackę kilka identycznych sztuk produktu bez tworzenia osobnego obiektu dla każdej z nich.
+         * @param product dokładany produkt
+         * @param count ilość sztuk
+         * @return ten sam Builder
+         */
+        public Builder products(Product product, int count) {
+            if (product == null) {
+                throw new IllegalArgumentException("Product cannot be null");
+            }
+            if (count < 0) {
+                throw new IllegalArgumentException("Products count cannot be negative");
+            }
+            if (mixedProducts == null
+                    && (uniformProduct == null || Objects.equals(uniformProduct.getName(), product.getName()))) {
+                if (uniformProduct == null) {
+                    uniformProduct = product;
+                }
+                uniformCount += count;
+                return this;
+            }
+            if (mixedProducts == null) {
+                mixedProducts = new ArrayList<>();
+                for (int i = 0; i < uniformCount; i++) {
+                    mixedProducts.add(uniformProduct);
+                }
+            }
+            for (int i = 0; i < count; i++) {
+                mixedProducts.add(product);
+            }
+            return this;
+        }
+
+        /**
+         * Ustawia gotowy sposób przechowywania produktów, np. oparty o plik. Tacka z własnym sposobem przechowywania
+         * nie może otrzymać produktów za pomocą {@link #product(Product)}.
+         * @param storage sposób przechowywania produktów
+         * @return ten sam Builder
+         */
+        public Builder storage(TrayStorage storage) {
+            this.storage = storage;
             return this;
         }
 
         public Tray build() {
-            if (price == null) {
-                price = 990L;
+            if (storage != null && (uniformProduct != null || mixedProducts != null)) {
+                throw new IllegalStateException("Tray with custom storage cannot have products added by builder");
             }
             return new Tray(this);
         }
+
+        private TrayStorage createStorage() {
+            if (storage != null) {
+                return storage;
+            }
+            if (mixedProducts == null) {
+                return new CountedTrayStorage(uniformProduct, uniformCount);
+            }
+            // każdy różny produkt otrzymuje swój identyfikator - indeks w katalogu tacki
+            Map<String, Integer> productIds = new LinkedHashMap<>();
+            List<Product> catalog = new ArrayList<>();
+            int[] ids = new int[mixedProducts.size()];
+            for (int i = 0; i < ids.length; i++) {
+                Product product = mixedProducts.get(i);
+                Integer productId = productIds.get(product.getName());
+                if (productId == null) {
+                    productId = catalog.size();
+                    productIds.put(product.getName(), productId);
+                    catalog.add(product);
+                }
+                ids[i] = productId;
+            }
+            RingTrayStorage storage = new RingTrayStorage(catalog.toArray(new Product[0]), ids.length);
+            for (int productId : ids) {
+                storage.offer(productId);
+            }
+            return storage;
+        }
     }
 
 }
@@ -0,0 +1,26 @@
+package pl.sdacademy.vending.model;
+
+/**
+ * Interface fabryki tworzącej tacki dla kolejnych pozycji automatu. {@link VendingMachine} wywołuje fabrykę dla każdej
+ * komórki podczas swojego tworzenia, nie wiedząc, skąd pochodzą tacki - czy zostały wylosowane, czy np. odczytane
+ * z pliku.
+ */
+public interface TrayFactory {
+    /**
+     * Tworzy tackę dla wskazanej pozycji.
+     * @param rowNumber numer wiersza indeksowany od zera
+     * @param colNumber numer kolumny indeksowany od zera
+     * @return tacka dla wskazanej pozycji lub null, jeżeli w tym miejscu nie ma być tacki
+     */
+    Tray createTray(int rowNumber, int colNumber);
+
+    /**
+     * Informuje, czy fabryka może tworzyć tacki w dowolnej kolejności, z wielu wątków jednocześnie i w dowolnym
+     * momencie po utworzeniu automatu - tylko wtedy automat stosuje tryb {@link ConstructionMode} odczytany
+     * z konfiguracji. Fabryki odczytujące tacki z plików lub zależne od kolejności wywołań zwracają false.
+     * @return true, jeżeli fabryka pozwala na równoległe i leniwe tworzenie tacek
+     */
+    default boolean supportsDeferredCreation() {
+        return false;
+    }
+}
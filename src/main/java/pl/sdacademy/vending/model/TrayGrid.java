@@ -0,0 +1,75 @@
+package pl.sdacademy.vending.model;
+
+import java.util.Optional;
+
+/**
+ * Siatka przechowująca tacki automatu. Tacki są identyfikowane przez pozycje - kolejne liczby od 0 do
+ * {@link #positionsCount()} - 1, według których automat prowadzi także swoje metryki. To, które pozycje odpowiadają
+ * którym miejscom automatu, zależy od implementacji: w siatce gęstej ({@link DenseTrayGrid}) każde miejsce automatu ma
+ * pozycję, a w siatce rzadkiej ({@link SparseTrayGrid}) pozycje mają tylko istniejące tacki. W obu siatkach pozycje
+ * są nadawane wiersz po wierszu, a w wierszu według kolumn.
+ * <br>
+ * Siatka nie zmienia się po utworzeniu (poza leniwym tworzeniem tacek), więc może być odczytywana przez wielu
+ * kupujących jednocześnie, bez synchronizacji.
+ */
+interface TrayGrid {
+    int NO_POSITION = SymbolIndex.NO_POSITION;
+
+    /**
+     * @return ilość pozycji siatki
+     */
+    int positionsCount();
+
+    /**
+     * @param symbol symbol tacki
+     * @return pozycja tacki lub {@link #NO_POSITION} dla symbolu niepoprawnego lub wskazującego miejsce bez pozycji
+     */
+    int positionOf(String symbol);
+
+    /**
+     * @return pozycja tacki lub {@link #NO_POSITION} dla miejsca poza automatem lub bez pozycji
+     */
+    int positionOf(int rowNumber, int colNumber);
+
+    /**
+     * @param position pozycja z przedziału od 0 do {@link #positionsCount()} - 1
+     * @return numer wiersza miejsca automatu, któremu odpowiada pozycja
+     */
+    int rowAt(int position);
+
+    /**
+     * @param position pozycja z przedziału od 0 do {@link #positionsCount()} - 1
+     * @return numer kolumny miejsca automatu, któremu odpowiada pozycja
+     */
+    int colAt(int position);
+
+    /**
+     * @param position pozycja z przedziału od 0 do {@link #positionsCount()} - 1
+     * @return tacka na wskazanej pozycji lub pusty optional - bez tworzenia obiektów
+     */
+    Optional<Tray> trayAt(int position);
+
+    /**
+     * Pobiera tackę tylko wtedy, gdy już istnieje - nie tworzy leniwie tworzonych tacek.
+     * @param position pozycja z przedziału od 0 do {@link #positionsCount()} - 1
+     * @return tacka na wskazanej pozycji lub null, jeżeli jej nie ma albo jeszcze nie została utworzona
+     */
+    Tray existingTrayAt(int position);
+
+    /**
+     * Symbol pozycji dla metryk automatu. Nie tworzy leniwie tworzonych tacek.
+     * @param position pozycja z przedziału od 0 do {@link #positionsCount()} - 1
+     * @return symbol tacki lub null, jeżeli na pozycji na pewno nie ma tacki
+     */
+    String symbolAt(int position);
+
+    /**
+     * Tworzy tablicę tacek siatki - Java nie pozwala utworzyć tablicy typu generycznego wprost.
+     * @param length długość tablicy
+     * @return tablica wypełniona wartościami null
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static Optional<Tray>[] newTrayOptionals(int length) {
+        return new Optional[length];
+    }
+}
@@ -0,0 +1,13 @@
+package pl.sdacademy.vending.model;
+
+/**
+ * Interface funkcji wyliczającej nową cenę tacki - przekazywanej do {@link VendingMachine#reprice(TrayPricer)}.
+ */
+public interface TrayPricer {
+    /**
+     * @param tray wyceniana tacka
+     * @param currentPrice aktualna cena tacki w groszach
+     * @return nowa cena tacki w groszach - nie mniejsza niż 0
+     */
+    long price(Tray tray, long currentPrice);
+}
@@ -0,0 +1,88 @@
+package pl.sdacademy.vending.model;
+
+/**
+ * Wewnętrzny sposób przechowywania produktów leżących na tacce. Tacka nie musi wiedzieć, czy produkty są trzymane jako
+ * jeden produkt z licznikiem, czy jako bufor identyfikatorów - korzysta tylko z operacji tego interface.
+ * <br>
+ * Wszystkie implementacje muszą być bezpieczne wielowątkowo, nie mogą blokować innych tacek, a metoda {@link #poll()}
+ * musi wydać każdą sztukę produktu dokładnie raz. Interface jest publiczny, aby inne warstwy aplikacji (np. trwały
+ * magazyn stanu tacek) mogły dostarczyć własny sposób przechowywania produktów za pomocą
+ * {@link Tray.Builder#storage(TrayStorage)}.
+ */
+public interface TrayStorage {
+    /**
+     * Zwraca pierwszy produkt bez zdejmowania go z tacki.
+     * @return pierwszy produkt lub null, jeżeli tacka jest pusta
+     */
+    Product peek();
+
+    /**
+     * Zdejmuje pierwszy produkt z tacki.
+     * @return zdjęty produkt lub null, jeżeli tacka jest pusta
+     */
+    Product poll();
+
+    /**
+     * Atomowo zdejmuje z tacki dokładnie count pierwszych produktów albo - jeżeli na tacce jest ich mniej - nie zdejmuje
+     * żadnego.
+     * @param count ilość zdejmowanych produktów
+     * @param target tablica, do której zostaną zapisane zdjęte produkty
+     * @param offset indeks w tablicy, od którego zostaną zapisane zdjęte produkty
+     * @return true, jeżeli produkty zostały zdjęte; false, jeżeli na tacce nie było wystarczającej ilości produktów
+     */
+    boolean pollMany(int count, Product[] target, int offset);
+
+    /**
+     * Odkłada na tackę produkty zdjęte wcześniej z tej samej tacki (np. gdy zamówienie, dla którego je zdjęto, nie
+     * mogło zostać zrealizowane). Produkty mogą trafić na koniec tacki.
+     * @param products tablica z odkładanymi produktami
+     * @param offset indeks pierwszego odkładanego produktu w tablicy
+     * @param count ilość odkładanych produktów
+     */
+    void putBack(Product[] products, int offset, int count);
+
+    /**
+     * Dokłada na tackę nowe sztuki produktu (uzupełnienie towaru przez serwisanta). Produkt jest rozpoznawany po nazwie
+     * i musi być produktem, który może leżeć na tej tacce.
+     * @param product dokładany produkt
+     * @param count ilość dokładanych sztuk
+     * @return ilość faktycznie dołożonych sztuk - mniejsza od count, jeżeli na tacce zabrakło miejsca, oraz 0, jeżeli
+     * produkt nie pasuje do tacki
+     */
+    int restock(Product product, int count);
+
+    /**
+     * @return ilość produktów aktualnie znajdujących się na tacce
+     */
+    int size();
+
+    /**
+     * Zwraca wartość opisującą aktualną zawartość tacki. Każda zmiana zawartości musi zmienić tę wartość - dzięki temu
+     * można tanio sprawdzić, czy tacka zmieniła się od poprzedniego odczytu. Domyślnie jest to ilość sztuk, co
+     * wystarcza dla tacek, na których wszystkie sztuki są tym samym produktem.
+     * @return wersja zawartości tacki
+     */
+    default long version() {
+        return size();
+    }
+
+    /**
+     * Przekazuje zawartość tacki jako kolejne serie identycznych produktów, w kolejności ich wydawania. Domyślna
+     * implementacja zakłada, że wszystkie sztuki na tacce są tym samym produktem.
+     * @param visitor obiekt odbierający kolejne serie produktów
+     */
+    default void forEachRun(RunVisitor visitor) {
+        Product product = peek();
+        int count = size();
+        if (product != null && count > 0) {
+            visitor.visit(product, count);
+        }
+    }
+
+    /**
+     * Odbiorca serii identycznych produktów leżących na tacce jeden za drugim.
+     */
+    interface RunVisitor {
+        void visit(Product product, int count);
+    }
+}
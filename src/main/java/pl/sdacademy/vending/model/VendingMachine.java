@@ -1,9 +1,16 @@
 package pl.sdacademy.vending.model;
 
+import pl.sdacademy.vending.metrics.MachineMetrics;
 import pl.sdacademy.vending.util.Configuration;
+import pl.sdacademy.vending.util.HashedTimingWheel;
 
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
-import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 /**
  * Główna klasa automatu przechowująca jego stan oraz zachowania. Aktualnie jest bardzo "uboga" w zachowania, umożliwia
@@ -22,7 +29,29 @@ public class VendingMachine {
      */
     private final Long maxRowsSize;
     private final Long maxColsSize;
-    private final Tray[][] trays;
+    /**
+     * Tacki automatu według pozycji - w siatce gęstej albo rzadkiej ({@link GridType}). Siatka nie zmienia się po
+     * utworzeniu automatu, a wyszukanie tacki nie tworzy żadnych obiektów.
+     */
+    private final TrayGrid grid;
+    /**
+     * Słuchacze powiadamiani o udanych zakupach. Lista jest kopiowana przy każdej modyfikacji, dzięki czemu jej
+     * odczyt na ścieżce zakupu nie wymaga żadnej synchronizacji.
+     */
+    private final List<PurchaseListener> purchaseListeners = new CopyOnWriteArrayList<>();
+    /**
+     * Liczniki zakupów automatu - zwiększane na ścieżce zakupu, odczytywane bez zatrzymywania kupujących.
+     */
+    private final MachineMetrics metrics;
+    /**
+     * Bieżąca tabela cen automatu. Nowe ceny są publikowane przez podmianę całej tabeli, więc odczyt ceny na ścieżce
+     * zakupu nie wymaga żadnej synchronizacji.
+     */
+    private final AtomicReference<PriceTable> prices = new AtomicReference<>(PriceTable.basePrices());
+    /**
+     * Koło czasowe unieważniające rezerwacje - zwykle wspólne dla całej floty; null, dopóki go nie ustawiono.
+     */
+    private volatile HashedTimingWheel reservationWheel;
 
     /**
      * Konstruktor, który umożliwia przekazanie używanej klasy konfiguracji. Podczas normalnego działania aplikacji będzie
@@ -30,85 +59,108 @@ public class VendingMachine {
      * @param configuration obiekt zawierający używaną konfigurację.
      */
     public VendingMachine(Configuration configuration) {
+        this(configuration, RandomTrayFactory.fromConfiguration(configuration));
+    }
+
+    /**
+     * Konstruktor, który poza konfiguracją przyjmuje także fabrykę tacek. To fabryka decyduje, jakie tacki (i z jakimi
+     * produktami) znajdą się w automacie - mogą być one wylosowane ({@link RandomTrayFactory}) albo np. odczytane z pliku.
+     * Jeżeli fabryka na to pozwala ({@link TrayFactory#supportsDeferredCreation()}), to automat jest wypełniany
+     * w trybie odczytanym z konfiguracji ({@link ConstructionMode#fromConfiguration(Configuration)}), a w przeciwnym
+     * wypadku od razu, po kolei. Sposób przechowywania tacek jest odczytywany z klucza "machine.grid"
+     * ({@link GridType#fromConfiguration(Configuration)}).
+     * @param configuration obiekt zawierający używaną konfigurację.
+     * @param trayFactory fabryka tworząca tacki dla kolejnych pozycji automatu
+     */
+    public VendingMachine(Configuration configuration, TrayFactory trayFactory) {
+        this(configuration, trayFactory, trayFactory.supportsDeferredCreation()
+                ? ConstructionMode.fromConfiguration(configuration)
+                : ConstructionMode.EAGER);
+    }
+
+    /**
+     * Konstruktor, który poza konfiguracją i fabryką tacek przyjmuje także sposób wypełniania automatu. Fabryka musi
+     * spełniać wymagania wybranego trybu - np. przy wypełnianiu równoległym tworzyć tacki z wielu wątków jednocześnie.
+     * @param configuration obiekt zawierający używaną konfigurację.
+     * @param trayFactory fabryka tworząca tacki dla kolejnych pozycji automatu
+     * @param constructionMode sposób wypełniania automatu tackami
+     */
+    public VendingMachine(Configuration configuration, TrayFactory trayFactory,
+                          ConstructionMode constructionMode) {
+        GridType gridType = GridType.fromConfiguration(configuration);
         // tekst "machine.size.rows" jest kluczem, pod którym powinna być zapisana maksymalna ilość wierszy tego automatu
         maxRowsSize = configuration.getProperty("machine.size.rows", 6L);
-        if (maxRowsSize < 1 || maxRowsSize > 26) {
+        if (maxRowsSize < 1 || maxRowsSize > gridType.maxRows()) {
             throw new IllegalArgumentException("VendingMachine can not be created with " + maxRowsSize + " rows");
         }
         maxColsSize = configuration.getProperty("machine.size.cols", 4L);
-        if (maxColsSize < 1 || maxColsSize > 9) {
+        if (maxColsSize < 1 || maxColsSize > gridType.maxCols()) {
             throw new IllegalArgumentException("VendingMachine can not be created with " + maxColsSize + " cols");
         }
-        trays = new Tray[maxRowsSize.intValue()][maxColsSize.intValue()];
-
-        for (int rowNumber = 0; rowNumber < maxRowsSize; rowNumber++) {
-            for (int colNumber = 0; colNumber < maxColsSize; colNumber++) {
-                trays[rowNumber][colNumber] =
-                        createTrayForPosition(rowNumber, colNumber);
-            }
+        int rows = maxRowsSize.intValue();
+        int cols = maxColsSize.intValue();
+        if (gridType == GridType.SPARSE) {
+            grid = new SparseTrayGrid(rows, cols, trayFactory, constructionMode == ConstructionMode.PARALLEL);
+        } else {
+            grid = new DenseTrayGrid(rows, cols, trayFactory, constructionMode);
         }
-    }
 
-    private Tray createTrayForPosition(int rowNumber, int colNumber) {
-        if (!shouldGenerateTray()) {
-            return null;
+        String[] traySymbols = new String[grid.positionsCount()];
+        for (int position = 0; position < traySymbols.length; position++) {
+            traySymbols[position] = grid.symbolAt(position);
         }
-
-        char rowSymbol = (char) ('A' + rowNumber);
-        int colSymbol = colNumber + 1;
-        String symbol = "" + rowSymbol + colSymbol;
-        int calculatedPrice = generateRandomPrice();
-
-        double productProbability = Math.random();
-
-
-        if (productProbability < 0.1) {
-            // 2 produkty
-            return Tray.builder(symbol).price((long) calculatedPrice)
-                    .product(new Product("Product " + symbol))
-                    .product(new Product("Product " + symbol))
-                    .build();
-        } else if (productProbability < 0.5) {
-            // 1 product
-            return Tray.builder(symbol).price((long) calculatedPrice)
-                    .product(new Product("Product " + symbol))
-                    .build();
-        }
-
-        return Tray.builder(symbol)
-                .price(Long.valueOf(calculatedPrice))
-                .build();
+        metrics = new MachineMetrics(traySymbols);
     }
 
-    private boolean shouldGenerateTray() {
-        // true jeżeli tack powinna zostać wygenerowana
-        return Math.random() < 0.8;
+    /**
+     * Tworzy automat o wielkości odczytanej z nowej konfiguracji (np. po jej przeładowaniu), który przejmuje tacki tego
+     * automatu. Tacki na pozycjach mieszczących się w nowym automacie są przenoszone razem z produktami (to te same
+     * obiekty, więc zakupy trwające jeszcze w tym automacie zdejmują produkty z tych samych tacek), a nowe pozycje są
+     * wypełniane przez fabrykę. Nowy automat otrzymuje także wszystkich słuchaczy zakupów i koło czasowe rezerwacji,
+     * natomiast jego metryki zaczynają się od zera. Rezerwacje złożone w tym automacie są nadal potwierdzane
+     * i anulowane przez ten automat.
+     * <br>
+     * Ten automat się nie zmienia - wielkość automatu jest niezmienna, dzięki czemu żaden zakup nie musi się
+     * synchronizować ze zmianą wielkości. Po utworzeniu nowego automatu należy go używać zamiast tego.
+     * @param configuration konfiguracja z nową wielkością automatu
+     * @param trayFactory fabryka tacek dla pozycji, których nie było w tym automacie
+     * @return nowy automat
+     */
+    public VendingMachine resized(Configuration configuration, TrayFactory trayFactory) {
+        VendingMachine resized = new VendingMachine(configuration, (rowNumber, colNumber) -> {
+            // miejsce, które było w tym automacie, przenosi swoją tackę - także brak tacki
+            return rowNumber < maxRowsSize && colNumber < maxColsSize
+                    ? trayAt(grid.positionOf(rowNumber, colNumber))
+                    : trayFactory.createTray(rowNumber, colNumber);
+        });
+        resized.purchaseListeners.addAll(purchaseListeners);
+        resized.reservationWheel = reservationWheel;
+        resized.prices.set(resizedPrices(prices.get(), resized.grid));
+        return resized;
     }
 
-    private int generateRandomPrice() {
-        Random random = new Random();
-//        random.nextInt(100) -> 0 - 99
-        int generatedPrice = random.nextInt(401); // values from 0 to 400
-
-        /*
-        metoda PRICE oczekuje OBIEKTU Long
-        calcalutedPrice jest int
-        int -(A)-> long -(B)-> Long
-        Scenariusz 1: price((long) calculatedPrice)
-            A) (long) intValue
-            B) JVM sam rzutuje long na Long
-        Scenariusz 2: price(Long.valueOf(calculatedPrice))
-            A) JVM sam rzutuje int na long
-            B) sami dbamy o przekonwetowanie long na Long
-         */
-        /*
-        Inny sposób na generowanie losowej liczby
-        double Math.random()
-            double -> 0.0 do 1.0
-            (double * 400) -> 0.0 do 400.0
-            () + 100 -> 100.0 do 500.0
-         */
-        return generatedPrice + 100;
+    /**
+     * Przenosi ceny tabeli na pozycje nowej siatki - przeniesiona tacka zachowuje swoją cenę, a tacki nowych pozycji
+     * mają cenę podstawową. Numer wersji tabeli rośnie, więc zmiana jest widoczna dla odczytujących wersję.
+     */
+    private PriceTable resizedPrices(PriceTable current, TrayGrid resizedGrid) {
+        if (current.version() == 0) {
+            return current;
+        }
+        long[] newPrices = new long[resizedGrid.positionsCount()];
+        Arrays.fill(newPrices, PriceTable.BASE_PRICE);
+        for (int position = 0; position < grid.positionsCount(); position++) {
+            long price = current.price(position);
+            Tray tray = grid.existingTrayAt(position);
+            if (price == PriceTable.BASE_PRICE || tray == null) {
+                continue;
+            }
+            int resizedPosition = resizedGrid.positionOf(tray.getSymbol());
+            if (resizedPosition != TrayGrid.NO_POSITION) {
+                newPrices[resizedPosition] = price;
+            }
+        }
+        return current.next(newPrices);
     }
 
     /**
@@ -131,17 +183,41 @@ public class VendingMachine {
         return maxColsSize;
     }
 
+    /**
+     * Ilość pozycji automatu. Pozycje to kolejne liczby od 0, nadawane miejscom automatu wiersz po wierszu - w automacie
+     * z siatką gęstą każdemu miejscu, a z siatką rzadką tylko miejscom z tackami. Przeglądanie automatu po pozycjach
+     * zajmuje więc czas zależny od ilości tacek, a nie od ilości wierszy i kolumn.
+     * @return ilość pozycji automatu
+     */
+    public int positionsCount() {
+        return grid.positionsCount();
+    }
+
+    /**
+     * @param position pozycja z przedziału od 0 do {@link #positionsCount()} - 1
+     * @return numer wiersza miejsca automatu o wskazanej pozycji
+     */
+    public int rowAtPosition(int position) {
+        return grid.rowAt(position);
+    }
+
+    /**
+     * @param position pozycja z przedziału od 0 do {@link #positionsCount()} - 1
+     * @return numer kolumny miejsca automatu o wskazanej pozycji
+     */
+    public int colAtPosition(int position) {
+        return grid.colAt(position);
+    }
+
     /**
      * Zwraca obiekt {@link Tray} opakowany w {@link Optional} dla wskazanej pozycji. W przypadku, gdy pod wskazanym
-     * adresem nie ma tacki, zwraca pusty obiekt optional.
+     * adresem nie ma tacki (lub adres wykracza poza automat), zwraca pusty obiekt optional.
      * @param rowNumber
      * @param colNumber
      * @return
      */
     public Optional<Tray> trayDetailsAtPosition(int rowNumber, int colNumber) {
-        Tray obtainedTray = trays[rowNumber][colNumber];
-        Optional<Tray> tray = Optional.ofNullable(obtainedTray);
-        return tray;
+        return trayAtPosition(grid.positionOf(rowNumber, colNumber));
     }
 
     /**
@@ -153,7 +229,8 @@ public class VendingMachine {
      * @return
      */
     public Optional<String> productNameAtPosition(int rowNumber, int colNumber) {
-        Tray tray = trays[rowNumber][colNumber];
+        int position = grid.positionOf(rowNumber, colNumber);
+        Tray tray = trayAt(position);
         if (tray != null) {
             //tacka istnieje
             return tray.firstProductName();
@@ -163,39 +240,416 @@ public class VendingMachine {
         }
     }
 
+    /**
+     * Zlicza wszystkie produkty znajdujące się we wszystkich tackach automatu. Metoda nie blokuje kupujących, więc
+     * przy trwających zakupach zwraca wartość przybliżoną. W automacie wypełnianym leniwie tworzy wszystkie
+     * brakujące tacki.
+     * @return łączna ilość produktów w automacie
+     */
+    public long productsCount() {
+        long productsCount = 0;
+        for (int position = 0; position < grid.positionsCount(); position++) {
+            Tray tray = trayAt(position);
+            if (tray != null) {
+                productsCount += tray.productsCount();
+            }
+        }
+        return productsCount;
+    }
+
+    /**
+     * Zlicza tacki, które są zainstalowane w automacie, ale nie zawierają już żadnego produktu.
+     * @return ilość pustych tacek
+     */
+    public int emptyTraysCount() {
+        int emptyTraysCount = 0;
+        for (int position = 0; position < grid.positionsCount(); position++) {
+            Tray tray = trayAt(position);
+            if (tray != null && tray.productsCount() == 0) {
+                emptyTraysCount++;
+            }
+        }
+        return emptyTraysCount;
+    }
+
+    /**
+     * Przekazuje wszystkie tacki automatu (z pominięciem miejsc bez tacek) do wskazanej operacji - w automacie z siatką
+     * rzadką bez przeglądania pustych miejsc. W automacie wypełnianym leniwie tworzy wszystkie brakujące tacki.
+     * @param action operacja wykonywana dla każdej tacki
+     */
+    public void forEachTray(Consumer<Tray> action) {
+        for (int position = 0; position < grid.positionsCount(); position++) {
+            Tray tray = trayAt(position);
+            if (tray != null) {
+                action.accept(tray);
+            }
+        }
+    }
+
+    /**
+     * Pobiera aktualną cenę tacki o wskazanym symbolu - z bieżącej tabeli cen, a jeżeli tabela nie ustala ceny tacki,
+     * to jej cenę podstawową. Odczyt nie blokuje ani nie tworzy obiektów.
+     * @param symbol symbol tacki
+     * @return cena w groszach lub -1, jeżeli tacka o takim symbolu nie istnieje
+     */
+    public long priceOf(String symbol) {
+        return priceOf(symbol, prices.get());
+    }
+
+    /**
+     * Pobiera cenę tacki o wskazanym symbolu z podanej wersji tabeli cen - np. aby pobrać za zakup dokładnie tę cenę,
+     * z którą zakup zostanie przekazany słuchaczom ({@link #buyProductWithSymbol(String, PriceTable)}).
+     * @param symbol symbol tacki
+     * @param priceTable tabela cen tego automatu ({@link #priceTable()})
+     * @return cena w groszach lub -1, jeżeli tacka o takim symbolu nie istnieje
+     */
+    public long priceOf(String symbol, PriceTable priceTable) {
+        int position = grid.positionOf(symbol);
+        Tray tray = trayAt(position);
+        return tray == null ? -1L : currentPrice(priceTable, position, tray);
+    }
+
+    /**
+     * Pobiera aktualną cenę tacki na wskazanej pozycji - tak jak {@link #priceOf(String)}.
+     * @return cena w groszach lub -1, jeżeli na wskazanej pozycji nie ma tacki
+     */
+    public long priceAt(int rowNumber, int colNumber) {
+        return priceAtPosition(grid.positionOf(rowNumber, colNumber));
+    }
+
+    /**
+     * @return bieżąca tabela cen automatu - jej wersja rośnie z każdą zmianą cen
+     */
+    public PriceTable priceTable() {
+        return prices.get();
+    }
+
+    /**
+     * Wylicza nowe ceny wszystkich tacek i publikuje je jako nową wersję tabeli cen - jedną atomową podmianą, więc
+     * kupujący widzą albo wszystkie stare, albo wszystkie nowe ceny. Jeżeli żadna cena się nie zmieniła, to tabela nie
+     * jest podmieniana. W automacie wypełnianym leniwie wyceniane są tylko już utworzone tacki - pozostałe zachowują
+     * cenę podstawową.
+     * <br>
+     * Metoda nie powinna być wywoływana jednocześnie z wielu wątków - jeżeli w trakcie wyceny tabela zostanie
+     * podmieniona przez inny wątek, to nowe ceny są odrzucane.
+     * @param pricer funkcja wyliczająca nową cenę tacki na podstawie jej aktualnej ceny
+     * @return true, jeżeli opublikowano nową wersję tabeli cen
+     */
+    public boolean reprice(TrayPricer pricer) {
+        PriceTable current = prices.get();
+        long[] newPrices = new long[grid.positionsCount()];
+        boolean changed = false;
+        for (int position = 0; position < newPrices.length; position++) {
+            Tray tray = grid.existingTrayAt(position);
+            if (tray == null) {
+                newPrices[position] = PriceTable.BASE_PRICE;
+                continue;
+            }
+            long currentPrice = currentPrice(current, position, tray);
+            long newPrice = pricer.price(tray, currentPrice);
+            if (newPrice < 0) {
+                throw new IllegalArgumentException("Price of tray " + tray.getSymbol() + " can not be " + newPrice);
+            }
+            newPrices[position] = newPrice;
+            changed |= newPrice != currentPrice;
+        }
+        return changed && prices.compareAndSet(current, current.next(newPrices));
+    }
+
+    /**
+     * Uzupełnia tackę o wskazanym symbolu nowymi sztukami produktu. Słuchacze zakupów są powiadamiani o uzupełnieniu
+     * przed dołożeniem produktów ({@link PurchaseListener#productsRestocked(Tray, Product, int)}), więc np. dziennik
+     * zakupów zapisuje nowe sztuki przed zakupami, które je zdejmują.
+     * @param symbol symbol tacki
+     * @param product dokładany produkt - musi pasować do tacki
+     * @param count ilość dokładanych sztuk
+     * @return ilość faktycznie dołożonych sztuk; 0, jeżeli tacka o takim symbolu nie istnieje
+     */
+    public int restockTray(String symbol, Product product, int count) {
+        Optional<Tray> tray = getTrayForSymbol(symbol);
+        if (!tray.isPresent()) {
+            return 0;
+        }
+        if (product == null || count <= 0 || purchaseListeners.isEmpty()) {
+            return tray.get().restock(product, count);
+        }
+        // korekta trafia do tych samych słuchaczy, którzy otrzymali zapowiedź
+        PurchaseListener[] listeners = purchaseListeners.toArray(new PurchaseListener[0]);
+        for (PurchaseListener purchaseListener : listeners) {
+            purchaseListener.productsRestocked(tray.get(), product, count);
+        }
+        int added = tray.get().restock(product, count);
+        if (added < count) {
+            for (PurchaseListener purchaseListener : listeners) {
+                purchaseListener.productsRestocked(tray.get(), product, added - count);
+            }
+        }
+        return added;
+    }
+
+    /**
+     * @return metryki automatu - liczniki zakupów, trafień na pustą tackę i niepoprawnych symboli
+     */
+    public MachineMetrics metrics() {
+        return metrics;
+    }
+
+    /**
+     * Rejestruje słuchacza, który będzie powiadamiany o każdym udanym zakupie.
+     * @param purchaseListener rejestrowany słuchacz
+     */
+    public void addPurchaseListener(PurchaseListener purchaseListener) {
+        purchaseListeners.add(purchaseListener);
+    }
+
+    /**
+     * Wyrejestrowuje słuchacza zakupów.
+     * @param purchaseListener wyrejestrowywany słuchacz
+     */
+    public void removePurchaseListener(PurchaseListener purchaseListener) {
+        purchaseListeners.remove(purchaseListener);
+    }
+
     /**
      * Umożliwia pobranie produktu z automatu przez kupującego. Metoda ta aktualnie nie analizuje dostępnych funduszy oraz
      * ceny produktu. Zamiast tego zwraca pobrany produkt, jeżeli był dostępny. Jeżeli produkt nie był dostępny, to zwraca
      * pusty obiekt optional.
+     * Metoda może być wywoływana jednocześnie przez wielu kupujących - tablica tacek nie zmienia się po utworzeniu
+     * automatu, a samo wydanie produktu odbywa się atomowo na poziomie tacki, bez blokowania całego automatu.
      * @param symbol
      * @return
      */
     public Optional<Product> buyProductWithSymbol(String symbol) {
-        Optional<Tray> trayForSymbol = getTrayForSymbol(symbol);
+        return buyProductWithSymbol(symbol, prices.get());
+    }
+
+    /**
+     * Kupuje produkt tak jak {@link #buyProductWithSymbol(String)}, ale słuchacze zakupów otrzymują cenę z podanej
+     * wersji tabeli cen, a nie z bieżącej. Dzięki temu sprzedaż, która odczytała cenę przed zakupem
+     * ({@link #priceOf(String, PriceTable)}), zapisuje w słuchaczach tę samą cenę, którą pobrała od kupującego - nawet
+     * jeżeli w międzyczasie tabela cen została podmieniona.
+     * @param symbol symbol tacki
+     * @param priceTable tabela cen tego automatu ({@link #priceTable()}), z której pochodzi cena zakupu
+     * @return kupiony produkt lub pusty optional, jeżeli tacka nie istnieje albo jest pusta
+     */
+    public Optional<Product> buyProductWithSymbol(String symbol, PriceTable priceTable) {
+        int position = grid.positionOf(symbol);
+        Optional<Tray> trayForSymbol = trayAtPosition(position);
         if (trayForSymbol.isPresent()) {
             Tray tray = trayForSymbol.get();
-            return tray.getFirstProduct();
+            Optional<Product> product = tray.getFirstProduct();
+            if (product.isPresent()) {
+                metrics.purchased(position, 1);
+                if (!purchaseListeners.isEmpty()) {
+                    long price = currentPrice(priceTable, position, tray);
+                    for (PurchaseListener purchaseListener : purchaseListeners) {
+                        purchaseListener.productPurchased(tray, product.get(), price);
+                    }
+                }
+            } else {
+                metrics.soldOut(position);
+            }
+            return product;
         } else {
+            metrics.invalidSymbol();
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Kupuje wszystkie produkty z zamówienia albo żaden. Najpierw wyszukiwane są wszystkie tacki zamówienia - niepoprawny
+     * symbol odrzuca zamówienie bez zdejmowania czegokolwiek. Następnie z każdej tacki atomowo zdejmowana jest cała ilość
+     * sztuk danej pozycji. Jeżeli na którejś tacce zabraknie produktów, to sztuki zdjęte dla poprzednich pozycji są
+     * odkładane na ich tacki, a zamówienie jest odrzucane.
+     * <br>
+     * Zamówienie nie blokuje automatu ani tacek - pojedyncze zakupy w tym samym czasie przebiegają normalnie. Kupujący,
+     * który trafi na tackę w chwili między zdjęciem sztuk a ich odłożeniem, może jednak otrzymać informację o braku
+     * produktu. Słuchacze zakupów są powiadamiani o całym zamówieniu jednym wywołaniem
+     * ({@link PurchaseListener#productsPurchased(Tray[], Product[], long[])}) dopiero po jego skompletowaniu.
+     * @param order zamówienie
+     * @return wszystkie kupione produkty (w kolejności pozycji zamówienia) lub pusty optional, jeżeli zamówienia nie
+     * udało się zrealizować w całości
+     */
+    public Optional<List<Product>> buyProducts(Order order) {
+        int itemsCount = order.itemsCount();
+        Tray[] orderTrays = new Tray[itemsCount];
+        int[] positions = new int[itemsCount];
+        for (int item = 0; item < itemsCount; item++) {
+            int position = grid.positionOf(order.symbol(item));
+            Tray tray = trayAt(position);
+            if (tray == null) {
+                metrics.invalidSymbol();
+                return Optional.empty();
+            }
+            orderTrays[item] = tray;
+            positions[item] = position;
+        }
+        Product[] products = new Product[order.totalQuantity()];
+        int offset = 0;
+        for (int item = 0; item < itemsCount; item++) {
+            if (!orderTrays[item].takeProducts(order.quantity(item), products, offset)) {
+                metrics.soldOut(positions[item]);
+                // wycofujemy pozycje, które zostały już skompletowane - w odwrotnej kolejności
+                for (int takenItem = item - 1; takenItem >= 0; takenItem--) {
+                    offset -= order.quantity(takenItem);
+                    orderTrays[takenItem].returnProducts(products, offset, order.quantity(takenItem));
+                }
+                return Optional.empty();
+            }
+            offset += order.quantity(item);
+        }
+        for (int item = 0; item < itemsCount; item++) {
+            metrics.purchased(positions[item], order.quantity(item));
+        }
+        if (!purchaseListeners.isEmpty()) {
+            // wszystkie pozycje zamówienia są wyceniane według tej samej wersji tabeli cen
+            PriceTable priceTable = prices.get();
+            Tray[] unitTrays = new Tray[products.length];
+            long[] unitPrices = new long[products.length];
+            offset = 0;
+            for (int item = 0; item < itemsCount; item++) {
+                long price = currentPrice(priceTable, positions[item], orderTrays[item]);
+                Arrays.fill(unitTrays, offset, offset + order.quantity(item), orderTrays[item]);
+                Arrays.fill(unitPrices, offset, offset + order.quantity(item), price);
+                offset += order.quantity(item);
+            }
+            // całe zamówienie trafia do słuchacza jednym wywołaniem - np. dziennik czeka na jeden zapis na dysk
+            for (PurchaseListener purchaseListener : purchaseListeners) {
+                purchaseListener.productsPurchased(unitTrays, products, unitPrices);
+            }
+        }
+        return Optional.of(Arrays.asList(products));
+    }
+
+    /**
+     * Ustawia koło czasowe, które unieważnia rezerwacje po upływie czasu ich ważności. Jedno koło może (i powinno)
+     * obsługiwać wszystkie automaty floty - koszt oczekującej rezerwacji nie zależy od ilości pozostałych.
+     * @param reservationWheel koło czasowe przesuwane w tle ({@link HashedTimingWheel#start()}) lub przez wywołującego
+     */
+    public void setReservationWheel(HashedTimingWheel reservationWheel) {
+        this.reservationWheel = reservationWheel;
+    }
+
+    /**
+     * Rezerwuje sztuki produktu z tacki o wskazanym symbolu - np. dla klienta aplikacji mobilnej, który odbierze je
+     * później. Sztuki są atomowo zdejmowane z tacki (wszystkie albo żadna), więc od tej chwili nie widzą ich inni
+     * kupujący. Rezerwacja, która nie zostanie potwierdzona ani anulowana w czasie ważności, wygasa, a jej sztuki
+     * wracają na tackę.
+     * @param symbol symbol tacki
+     * @param quantity ilość rezerwowanych sztuk
+     * @param holdTime czas ważności rezerwacji
+     * @return rezerwacja lub pusty optional, jeżeli nie ma tacki o takim symbolu albo jest na niej za mało sztuk
+     * @throws IllegalStateException jeżeli nie ustawiono koła czasowego rezerwacji
+     */
+    public Optional<Reservation> reserve(String symbol, int quantity, Duration holdTime) {
+        if (quantity < 1) {
+            throw new IllegalArgumentException("Reservation needs at least one unit, was " + quantity);
+        }
+        HashedTimingWheel wheel = reservationWheel;
+        if (wheel == null) {
+            throw new IllegalStateException("Reservation wheel is not set");
+        }
+        int position = grid.positionOf(symbol);
+        Tray tray = trayAt(position);
+        if (tray == null) {
+            metrics.invalidSymbol();
+            return Optional.empty();
+        }
+        Product[] products = new Product[quantity];
+        if (!tray.takeProducts(quantity, products, 0)) {
+            metrics.soldOut(position);
             return Optional.empty();
         }
+        Reservation reservation = new Reservation(this, wheel, tray, position, products,
+                currentPrice(prices.get(), position, tray));
+        wheel.schedule(reservation, holdTime.toMillis());
+        return Optional.of(reservation);
     }
 
     /**
-     * Metoda pomocnicza, która pobiera tackę bazując na jej symbolu, a nie na pozycji w automacie.
-     * Przekazany symbol jest rozbijany na dwa znaki: pierwszą literę, będącą symbolem wiersza, oraz drugą liczbę, będącą
-     * symbolem kolumny. Ponieważ pierwszym dostępnym wierszem jest ten, o symbolu 'A', to odejmujemy wartość tego znaku
-     * od pobranego symbolu wiersza, aby otrzymać jego numer indeksowany od 0 (zera) - sprójrz na tablicę ASCII, aby
-     * przypomnieć sobie numerację znaków.
-     * Podobnie postępujemy dla symbolu kolumny, gdzie pierwszą kolumną jest ta o numerze '1', dlatego podczas konwersji
-     * na numer kolumny odejmujemy właśnie ten znak.
+     * Potwierdza rezerwację - zarezerwowane sztuki zostają sprzedane po cenie z chwili rezerwacji, a słuchacze zakupów
+     * są powiadamiani o wszystkich jednym wywołaniem.
+     * @param reservation rezerwacja złożona w tym automacie
+     * @return sprzedane produkty lub pusty optional, jeżeli rezerwacja została już potwierdzona, anulowana lub wygasła
+     */
+    public Optional<List<Product>> confirmReservation(Reservation reservation) {
+        checkOwnReservation(reservation);
+        if (!reservation.finish(Reservation.Status.CONFIRMED)) {
+            return Optional.empty();
+        }
+        reservation.wheel().cancel(reservation);
+        Product[] products = reservation.products();
+        metrics.purchased(reservation.position(), products.length);
+        if (!purchaseListeners.isEmpty()) {
+            Tray[] unitTrays = new Tray[products.length];
+            long[] unitPrices = new long[products.length];
+            Arrays.fill(unitTrays, reservation.tray());
+            Arrays.fill(unitPrices, reservation.price());
+            for (PurchaseListener purchaseListener : purchaseListeners) {
+                purchaseListener.productsPurchased(unitTrays, products, unitPrices);
+            }
+        }
+        return Optional.of(Arrays.asList(products));
+    }
+
+    /**
+     * Anuluje rezerwację - zarezerwowane sztuki wracają na tackę.
+     * @param reservation rezerwacja złożona w tym automacie
+     * @return true, jeżeli rezerwacja była aktywna i została anulowana
+     */
+    public boolean cancelReservation(Reservation reservation) {
+        checkOwnReservation(reservation);
+        if (!reservation.finish(Reservation.Status.CANCELLED)) {
+            return false;
+        }
+        reservation.wheel().cancel(reservation);
+        reservation.tray().returnProducts(reservation.products(), 0, reservation.quantity());
+        return true;
+    }
+
+    /**
+     * Metoda pomocnicza, która pobiera tackę bazując na jej symbolu, a nie na pozycji w automacie. Symbol jest
+     * zamieniany na pozycję przez {@link SymbolIndex} - pierwsza litera symbolu to wiersz ('A' to pierwszy wiersz,
+     * wielkość litery nie ma znaczenia), a druga cyfra to kolumna ('1' to pierwsza kolumna). W automacie z siatką
+     * rzadką symbol może mieć kilka liter i cyfr (np. "AB12"). Dla symbolu niepoprawnego lub wskazującego poza automat
+     * zwracany jest pusty optional.
      * @param symbol
      * @return
      */
-    private Optional<Tray> getTrayForSymbol(String symbol) {
-        char rowSymbol = symbol.toUpperCase().charAt(0);
-        char colSymbol = symbol.charAt(1);
-        int rowNumber = rowSymbol - 'A';
-        int colNumber = colSymbol - '1';
-        return trayDetailsAtPosition(rowNumber, colNumber);
+    Optional<Tray> getTrayForSymbol(String symbol) {
+        return trayAtPosition(grid.positionOf(symbol));
+    }
+
+    /**
+     * Pobiera tackę według pozycji automatu ({@link #positionsCount()}). W automacie wypełnianym leniwie tworzy
+     * brakującą tackę.
+     * @param position pozycja z przedziału od 0 do {@link #positionsCount()} - 1
+     * @return tacka lub pusty optional, jeżeli na pozycji nie ma tacki
+     */
+    public Optional<Tray> trayAtPosition(int position) {
+        if (position == TrayGrid.NO_POSITION) {
+            return Optional.empty();
+        }
+        return grid.trayAt(position);
+    }
+
+    private Tray trayAt(int position) {
+        return trayAtPosition(position).orElse(null);
+    }
+
+    private void checkOwnReservation(Reservation reservation) {
+        if (reservation.machine() != this) {
+            throw new IllegalArgumentException(reservation + " belongs to another machine");
+        }
+    }
+
+    private long priceAtPosition(int position) {
+        Tray tray = trayAt(position);
+        return tray == null ? -1L : currentPrice(prices.get(), position, tray);
+    }
+
+    private static long currentPrice(PriceTable priceTable, int position, Tray tray) {
+        long price = priceTable.price(position);
+        return price == PriceTable.BASE_PRICE ? tray.getPrice() : price;
     }
 }
@@ -0,0 +1,378 @@
+package pl.sdacademy.vending.network;
+
+import pl.sdacademy.vending.controller.CommandProcessor;
+import pl.sdacademy.vending.util.Configuration;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Nieblokujący serwer TCP udostępniający automat przez sieć. Klient wysyła polecenia protokołu opisanego
+ * w {@link CommandProcessor} - każde zakończone znakiem nowej linii - i otrzymuje odpowiedzi w tej samej kolejności.
+ * Klient może wysłać wiele poleceń naraz, nie czekając na odpowiedzi (pipelining).
+ * <br>
+ * Serwer obsługuje wszystkie połączenia kilkoma wątkami roboczymi. Każdy wątek posiada własny {@link Selector}
+ * i obsługuje przydzielone mu połączenia. Pierwszy wątek dodatkowo przyjmuje nowe połączenia i rozdziela je po kolei
+ * między wszystkie wątki.
+ * <br>
+ * Każde połączenie ma ograniczony bufor odpowiedzi. Jeżeli klient wysyła polecenia szybciej, niż odbiera odpowiedzi,
+ * i w buforze zbierze się więcej niż maxPendingOutputBytes bajtów, to serwer przestaje wykonywać kolejne polecenia
+ * i czytać dane z tego połączenia, dopóki klient nie odbierze zaległych odpowiedzi. Nieodczytane polecenia czekają
+ * wtedy w buforach TCP, a klient sam zostaje spowolniony - pamięć serwera nie rośnie bez ograniczeń.
+ */
+public class VendingServer implements Closeable {
+    /**
+     * Wielkość bufora wejściowego połączenia - a zarazem maksymalna długość jednego polecenia.
+     */
+    static final int MAX_COMMAND_LENGTH = 8192;
+    private static final int INITIAL_OUTPUT_SIZE = 1024;
+
+    private final CommandProcessor processor;
+    private final int maxPendingOutputBytes;
+    private final ServerSocketChannel serverChannel;
+    private final Worker[] workers;
+    private final AtomicInteger nextWorker = new AtomicInteger();
+    private final AtomicInteger connectionsCount = new AtomicInteger();
+    private final AtomicLong highestPendingOutputBytes = new AtomicLong();
+    private volatile boolean running = true;
+
+    private VendingServer(CommandProcessor processor, InetSocketAddress address, int workersCount,
+                          int maxPendingOutputBytes) throws IOException {
+        if (workersCount < 1 || maxPendingOutputBytes < 1) {
+            throw new IllegalArgumentException("Server needs at least one worker and positive output buffer limit");
+        }
+        this.processor = processor;
+        this.maxPendingOutputBytes = maxPendingOutputBytes;
+        this.serverChannel = ServerSocketChannel.open();
+        this.workers = new Worker[workersCount];
+        try {
+            serverChannel.bind(address, 1024);
+            serverChannel.configureBlocking(false);
+            for (int workerNumber = 0; workerNumber < workersCount; workerNumber++) {
+                workers[workerNumber] = new Worker(workerNumber);
+            }
+            serverChannel.register(workers[0].selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            closeQuietly(serverChannel);
+            for (Worker worker : workers) {
+                if (worker != null) {
+                    closeQuietly(worker.selector);
+                }
+            }
+            throw e;
+        }
+        for (Worker worker : workers) {
+            worker.thread.start();
+        }
+    }
+
+    /**
+     * Uruchamia serwer nasłuchujący na wskazanym adresie.
+     * @param processor interpreter poleceń
+     * @param address adres nasłuchiwania; port 0 oznacza dowolny wolny port (patrz {@link #port()})
+     * @param workersCount ilość wątków obsługujących połączenia
+     * @param maxPendingOutputBytes ilość bajtów nieodebranych odpowiedzi, po której serwer wstrzymuje czytanie poleceń
+     *                              z połączenia
+     * @return uruchomiony serwer
+     */
+    public static VendingServer start(CommandProcessor processor, InetSocketAddress address, int workersCount,
+                                      int maxPendingOutputBytes) throws IOException {
+        return new VendingServer(processor, address, workersCount, maxPendingOutputBytes);
+    }
+
+    /**
+     * Uruchamia serwer na podstawie konfiguracji: "network.host" (domyślnie wszystkie interfejsy), "network.port",
+     * "network.workers" (domyślnie 2) oraz "network.max.pending.output" (domyślnie 65536 bajtów).
+     * @param processor interpreter poleceń
+     * @param configuration konfiguracja serwera
+     * @return uruchomiony serwer
+     */
+    public static VendingServer start(CommandProcessor processor, Configuration configuration) throws IOException {
+        String host = configuration.getProperty("network.host", "");
+        int port = configuration.getProperty("network.port", 7070L).intValue();
+        InetSocketAddress address = host.isEmpty() ? new InetSocketAddress(port) : new InetSocketAddress(host, port);
+        return start(processor, address,
+                configuration.getProperty("network.workers", 2L).intValue(),
+                configuration.getProperty("network.max.pending.output", 65536L).intValue());
+    }
+
+    /**
+     * @return port, na którym serwer nasłuchuje
+     */
+    public int port() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * @return ilość aktualnie otwartych połączeń
+     */
+    public int connectionsCount() {
+        return connectionsCount.get();
+    }
+
+    /**
+     * @return największa ilość nieodebranych bajtów odpowiedzi, jaka zebrała się w jednym połączeniu
+     */
+    long highestPendingOutputBytes() {
+        return highestPendingOutputBytes.get();
+    }
+
+    /**
+     * Zatrzymuje serwer i zamyka wszystkie połączenia.
+     */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        for (Worker worker : workers) {
+            worker.selector.wakeup();
+        }
+        for (Worker worker : workers) {
+            try {
+                worker.thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        serverChannel.close();
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // zamykamy zasób, którego i tak nie będziemy już używać
+        }
+    }
+
+    /**
+     * Wątek roboczy serwera wraz ze swoim selektorem oraz kolejką połączeń przydzielonych mu przez wątek przyjmujący.
+     */
+    private class Worker implements Runnable {
+        private final Selector selector;
+        private final Thread thread;
+        private final Queue<SocketChannel> newConnections = new ConcurrentLinkedQueue<>();
+
+        private Worker(int workerNumber) throws IOException {
+            selector = Selector.open();
+            thread = new Thread(this, "vending-server-" + workerNumber);
+            thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (running) {
+                    selector.select();
+                    registerNewConnections();
+                    Iterator<SelectionKey> selectedKeys = selector.selectedKeys().iterator();
+                    while (selectedKeys.hasNext()) {
+                        SelectionKey key = selectedKeys.next();
+                        selectedKeys.remove();
+                        if (key.isValid() && key.isAcceptable()) {
+                            acceptConnections();
+                        } else if (key.isValid()) {
+                            handle((Connection) key.attachment());
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                System.err.println("Vending server worker " + thread.getName() + " failed: " + e);
+            } finally {
+                for (SelectionKey key : selector.keys()) {
+                    if (key.attachment() instanceof Connection) {
+                        ((Connection) key.attachment()).close();
+                    }
+                }
+                SocketChannel channel;
+                while ((channel = newConnections.poll()) != null) {
+                    closeQuietly(channel);
+                }
+                closeQuietly(selector);
+            }
+        }
+
+        private void acceptConnections() throws IOException {
+            SocketChannel channel;
+            while ((channel = serverChannel.accept()) != null) {
+                channel.configureBlocking(false);
+                channel.socket().setTcpNoDelay(true);
+                Worker worker = workers[(nextWorker.getAndIncrement() & Integer.MAX_VALUE) % workers.length];
+                worker.newConnections.add(channel);
+                if (worker != this) {
+                    worker.selector.wakeup();
+                }
+            }
+            registerNewConnections();
+        }
+
+        private void registerNewConnections() throws IOException {
+            SocketChannel channel;
+            while ((channel = newConnections.poll()) != null) {
+                Connection connection = new Connection(channel);
+                connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+                connectionsCount.incrementAndGet();
+            }
+        }
+
+        private void handle(Connection connection) {
+            try {
+                if (connection.key.isReadable()) {
+                    connection.read();
+                }
+                if (connection.key.isValid() && connection.key.isWritable()) {
+                    connection.write();
+                }
+            } catch (IOException e) {
+                connection.close();
+            }
+        }
+    }
+
+    /**
+     * Stan jednego połączenia: bufor z przeczytanymi, ale jeszcze niewykonanymi poleceniami oraz bufor z jeszcze
+     * niewysłanymi odpowiedziami. Połączenie jest obsługiwane zawsze przez ten sam wątek, więc nie wymaga synchronizacji.
+     */
+    private class Connection {
+        private final SocketChannel channel;
+        private final ByteBuffer input = ByteBuffer.allocate(MAX_COMMAND_LENGTH);
+        private final StringBuilder response = new StringBuilder();
+        private ByteBuffer output = ByteBuffer.allocate(INITIAL_OUTPUT_SIZE);
+        private SelectionKey key;
+        private boolean inputFinished;
+        private boolean closeAfterWrite;
+
+        private Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        private void read() throws IOException {
+            if (channel.read(input) < 0) {
+                inputFinished = true;
+            }
+            write();
+        }
+
+        private void write() throws IOException {
+            // po wysłaniu odpowiedzi zwalnia się miejsce na wykonanie wstrzymanych poleceń, więc polecenia są
+            // wykonywane i wysyłane na zmianę - dopóki są kompletne polecenia, a gniazdo przyjmuje dane
+            boolean outputSent = flushOutput();
+            while (outputSent && executeCommands() > 0) {
+                outputSent = flushOutput();
+            }
+            // każde wykonane polecenie daje odpowiedź, więc pusty bufor odpowiedzi oznacza, że w buforze wejściowym
+            // nie ma już żadnego kompletnego polecenia
+            if (output.position() == 0 && (inputFinished || closeAfterWrite)) {
+                close();
+                return;
+            }
+            updateInterest();
+        }
+
+        /**
+         * @return true, jeżeli wszystkie zaległe odpowiedzi zostały wysłane
+         */
+        private boolean flushOutput() throws IOException {
+            if (output.position() > 0) {
+                output.flip();
+                channel.write(output);
+                output.compact();
+            }
+            return output.position() == 0;
+        }
+
+        /**
+         * Wykonuje kolejne kompletne polecenia z bufora wejściowego, dopóki bufor odpowiedzi nie przekroczy limitu.
+         * @return ilość wykonanych poleceń
+         */
+        private int executeCommands() {
+            int executedCommands = 0;
+            input.flip();
+            boolean lineFound = true;
+            while (output.position() < maxPendingOutputBytes && !closeAfterWrite) {
+                int lineEnd = indexOfNewLine();
+                if (lineEnd < 0) {
+                    lineFound = false;
+                    break;
+                }
+                int lineStart = input.position();
+                int lineLength = lineEnd - lineStart;
+                if (lineLength > 0 && input.get(lineEnd - 1) == '\r') {
+                    lineLength--;
+                }
+                String command = new String(input.array(), lineStart, lineLength, StandardCharsets.UTF_8);
+                input.position(lineEnd + 1);
+                response.setLength(0);
+                processor.execute(command, response);
+                appendOutput(response);
+                executedCommands++;
+            }
+            if (!lineFound && input.position() == 0 && input.limit() == input.capacity()) {
+                // bufor jest pełny, a nie zawiera ani jednego całego polecenia
+                response.setLength(0);
+                appendOutput(response.append("ERR command too long\n"));
+                closeAfterWrite = true;
+            }
+            input.compact();
+            return executedCommands;
+        }
+
+        private int indexOfNewLine() {
+            for (int index = input.position(); index < input.limit(); index++) {
+                if (input.get(index) == '\n') {
+                    return index;
+                }
+            }
+            return -1;
+        }
+
+        private void appendOutput(CharSequence text) {
+            byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+            if (output.remaining() < bytes.length) {
+                ByteBuffer grownOutput = ByteBuffer.allocate(Math.max(2 * output.capacity(),
+                        output.position() + bytes.length));
+                output.flip();
+                grownOutput.put(output);
+                output = grownOutput;
+            }
+            output.put(bytes);
+            long pendingBytes = output.position();
+            long highest;
+            while (pendingBytes > (highest = highestPendingOutputBytes.get())
+                    && !highestPendingOutputBytes.compareAndSet(highest, pendingBytes)) {
+                // inny wątek zapisał w międzyczasie wartość - porównujemy ponownie
+            }
+        }
+
+        private void updateInterest() {
+            int interest = 0;
+            if (!inputFinished && !closeAfterWrite && output.position() < maxPendingOutputBytes
+                    && input.hasRemaining()) {
+                interest |= SelectionKey.OP_READ;
+            }
+            if (output.position() > 0) {
+                interest |= SelectionKey.OP_WRITE;
+            }
+            key.interestOps(interest);
+        }
+
+        private void close() {
+            if (key.isValid()) {
+                key.cancel();
+                connectionsCount.decrementAndGet();
+            }
+            closeQuietly(channel);
+        }
+    }
+}
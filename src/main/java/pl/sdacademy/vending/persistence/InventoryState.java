@@ -0,0 +1,240 @@
+package pl.sdacademy.vending.persistence;
+
+import pl.sdacademy.vending.model.Product;
+import pl.sdacademy.vending.model.Tray;
+import pl.sdacademy.vending.model.TrayFactory;
+import pl.sdacademy.vending.model.VendingMachine;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Prosty, niezależny od obiektów modelu opis stanu tacek automatu: dla każdej pozycji symbol, cena oraz serie
+ * identycznych produktów (nazwa produktu i ilość sztuk) w kolejności, w jakiej będą wydawane - tacka z różnymi
+ * produktami jest opisana wszystkimi swoimi seriami. Jest używany przez dziennik zakupów ({@link PurchaseJournal}) jako
+ * stan odtwarzany z punktu kontrolnego oraz kolejnych zakupów. Stan zawiera tylko istniejące tacki, według miejsca
+ * automatu (wiersz * ilość kolumn + kolumna, jako long), więc jego rozmiar zależy od ilości tacek, a nie od ilości
+ * wierszy i kolumn automatu. Odtworzony stan jest fabryką tacek, więc można z niego bezpośrednio utworzyć
+ * {@link VendingMachine}.
+ * <br>
+ * Klasa nie jest bezpieczna wielowątkowo - modyfikuje ją tylko jeden wątek (wątek zapisujący dziennik lub narzędzie
+ * odtwarzające stan).
+ */
+public class InventoryState implements TrayFactory {
+    private final int rows;
+    private final int cols;
+    /**
+     * Tacki według miejsca automatu, w kolejności pozycji automatu.
+     */
+    private final Map<Long, TrayState> trays = new LinkedHashMap<>();
+    private final Map<String, TrayState> traysBySymbol = new HashMap<>();
+
+    private InventoryState(int rows, int cols) {
+        this.rows = rows;
+        this.cols = cols;
+    }
+
+    /**
+     * Odczytuje aktualny stan wszystkich tacek automatu. Automat nie powinien w tym czasie obsługiwać zakupów.
+     * @param machine automat, którego stan jest odczytywany
+     * @return stan tacek automatu
+     */
+    public static InventoryState of(VendingMachine machine) {
+        InventoryState state = new InventoryState(machine.rowsSize().intValue(), machine.colsSize().intValue());
+        for (int position = 0; position < machine.positionsCount(); position++) {
+            Optional<Tray> tray = machine.trayAtPosition(position);
+            if (tray.isPresent()) {
+                Tray presentTray = tray.get();
+                TrayState trayState = new TrayState(presentTray.getSymbol(), presentTray.getPrice());
+                presentTray.forEachProductRun((product, count) -> trayState.addRun(product.getName(), count));
+                if (trayState.productNames.isEmpty()) {
+                    // pusta tacka - zachowujemy produkt, którym będzie mogła zostać uzupełniona
+                    trayState.addRun(presentTray.firstProductName().orElse("Product " + presentTray.getSymbol()), 0);
+                }
+                state.put((long) machine.rowAtPosition(position) * state.cols + machine.colAtPosition(position),
+                        trayState);
+            }
+        }
+        return state;
+    }
+
+    public int rows() {
+        return rows;
+    }
+
+    public int cols() {
+        return cols;
+    }
+
+    /**
+     * @return symbole wszystkich tacek, w kolejności pozycji automatu
+     */
+    List<String> symbols() {
+        List<String> symbols = new ArrayList<>(trays.size());
+        for (TrayState tray : trays.values()) {
+            symbols.add(tray.symbol);
+        }
+        return symbols;
+    }
+
+    /**
+     * @param symbol symbol tacki
+     * @return ilość sztuk na tacce o podanym symbolu lub -1, jeżeli takiej tacki nie ma
+     */
+    public int stock(String symbol) {
+        TrayState tray = traysBySymbol.get(symbol);
+        return tray == null ? -1 : tray.stock;
+    }
+
+    /**
+     * Odnotowuje zakup jednej sztuki z tacki o podanym symbolu.
+     * @param symbol symbol tacki
+     * @throws IOException jeżeli takiej tacki nie ma albo jest ona pusta - stan nie zgadza się wtedy z zapisanymi
+     * zdarzeniami
+     */
+    void productPurchased(String symbol) throws IOException {
+        TrayState tray = traysBySymbol.get(symbol);
+        if (tray == null || tray.stock == 0) {
+            throw new IOException("Purchase from tray " + symbol + " exceeds its recorded stock");
+        }
+        tray.purchased();
+    }
+
+    /**
+     * Odnotowuje uzupełnienie tacki o podanym symbolu ({@link PurchaseJournal#productsRestocked}).
+     * @param symbol symbol tacki
+     * @param productName nazwa dokładanego produktu
+     * @param count ilość dołożonych sztuk lub ujemna ilość sztuk, których nie dołożono do zapowiedzianego uzupełnienia
+     * @throws IOException jeżeli takiej tacki nie ma albo korekta nie pasuje do uzupełnienia
+     */
+    void productsRestocked(String symbol, String productName, int count) throws IOException {
+        TrayState tray = traysBySymbol.get(symbol);
+        if (tray == null) {
+            throw new IOException("Restock of unknown tray " + symbol);
+        }
+        if (count >= 0) {
+            tray.addRun(productName, count);
+        } else if (!tray.withdraw(productName, -count)) {
+            throw new IOException("Restock correction of tray " + symbol + " exceeds its recorded stock");
+        }
+    }
+
+    @Override
+    public Tray createTray(int rowNumber, int colNumber) {
+        TrayState tray = trays.get((long) rowNumber * cols + colNumber);
+        if (tray == null) {
+            return null;
+        }
+        Tray.Builder builder = Tray.builder(tray.symbol).price(tray.price);
+        for (int run = 0; run < tray.productNames.size(); run++) {
+            builder.products(new Product(tray.productNames.get(run)), tray.counts.get(run));
+        }
+        return builder.build();
+    }
+
+    void writeTo(DataOutput output) throws IOException {
+        output.writeInt(rows);
+        output.writeInt(cols);
+        output.writeInt(trays.size());
+        for (Map.Entry<Long, TrayState> entry : trays.entrySet()) {
+            TrayState tray = entry.getValue();
+            output.writeLong(entry.getKey());
+            output.writeUTF(tray.symbol);
+            output.writeLong(tray.price);
+            output.writeShort(tray.productNames.size());
+            for (int run = 0; run < tray.productNames.size(); run++) {
+                output.writeUTF(tray.productNames.get(run));
+                output.writeInt(tray.counts.get(run));
+            }
+        }
+    }
+
+    static InventoryState readFrom(DataInput input) throws IOException {
+        InventoryState state = new InventoryState(input.readInt(), input.readInt());
+        int traysCount = input.readInt();
+        for (int index = 0; index < traysCount; index++) {
+            long cell = input.readLong();
+            TrayState tray = new TrayState(input.readUTF(), input.readLong());
+            int runsCount = input.readShort();
+            for (int run = 0; run < runsCount; run++) {
+                tray.addRun(input.readUTF(), input.readInt());
+            }
+            state.put(cell, tray);
+        }
+        return state;
+    }
+
+    private void put(long cell, TrayState tray) {
+        trays.put(cell, tray);
+        traysBySymbol.put(tray.symbol, tray);
+    }
+
+    private static class TrayState {
+        private final String symbol;
+        private final long price;
+        /**
+         * Serie produktów w kolejności wydawania. Ostatnia seria jest zachowywana także po wyczerpaniu tacki, aby
+         * odtworzona tacka pamiętała swój produkt.
+         */
+        private final List<String> productNames = new ArrayList<>(1);
+        private final List<Integer> counts = new ArrayList<>(1);
+        private int stock;
+
+        private TrayState(String symbol, long price) {
+            this.symbol = symbol;
+            this.price = price;
+        }
+
+        private void addRun(String productName, int count) {
+            int last = productNames.size() - 1;
+            if (last >= 0 && productNames.get(last).equals(productName)) {
+                counts.set(last, counts.get(last) + count);
+            } else if (last >= 0 && counts.get(last) == 0) {
+                productNames.set(last, productName);
+                counts.set(last, count);
+            } else {
+                productNames.add(productName);
+                counts.add(count);
+            }
+            stock += count;
+        }
+
+        /**
+         * Wycofuje sztuki dołożone na koniec tacki - zapowiedziane, ale niedołożone sztuki nie mogły zostać kupione,
+         * więc nadal są w ostatniej serii.
+         */
+        private boolean withdraw(String productName, int count) {
+            int last = productNames.size() - 1;
+            if (last < 0 || !productNames.get(last).equals(productName) || counts.get(last) < count) {
+                return false;
+            }
+            int remaining = counts.get(last) - count;
+            if (remaining == 0 && last > 0) {
+                productNames.remove(last);
+                counts.remove(last);
+            } else {
+                counts.set(last, remaining);
+            }
+            stock -= count;
+            return true;
+        }
+
+        private void purchased() {
+            int remaining = counts.get(0) - 1;
+            if (remaining == 0 && productNames.size() > 1) {
+                productNames.remove(0);
+                counts.remove(0);
+            } else {
+                counts.set(0, remaining);
+            }
+            stock--;
+        }
+    }
+}
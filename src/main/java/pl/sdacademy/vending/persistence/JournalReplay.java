@@ -0,0 +1,127 @@
+package pl.sdacademy.vending.persistence;
+
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.zip.CRC32;
+
+/**
+ * Narzędzie odtwarzające stan tacek automatu z dziennika zakupów ({@link PurchaseJournal}). Odtwarzanie zaczyna się od
+ * ostatniego punktu kontrolnego zapisanego w dzienniku, a następnie odejmuje od stanu tacek wszystkie zakupy i dodaje
+ * uzupełnienia zapisane po tym punkcie. Niedokończony ostatni wpis (np. po awarii w trakcie zapisu) jest pomijany,
+ * natomiast zakup z pustej tacki oznacza niezgodny dziennik i przerywa odtwarzanie.
+ * <br>
+ * Odtworzony {@link InventoryState} jest fabryką tacek, więc można go przekazać do konstruktora
+ * {@link pl.sdacademy.vending.model.VendingMachine}.
+ */
+public class JournalReplay {
+
+    private JournalReplay() {
+    }
+
+    /**
+     * Odtwarza stan tacek z dziennika.
+     * @param journalFile plik dziennika
+     * @return odtworzony stan tacek
+     * @throws IOException jeżeli dziennika nie udało się odczytać, nie zawiera on żadnego punktu kontrolnego lub jego
+     * wpisy nie zgadzają się ze stanem tacek
+     */
+    public static InventoryState replay(Path journalFile) throws IOException {
+        Result result = read(journalFile);
+        if (result.state == null) {
+            throw new IOException("Journal " + journalFile + " does not contain any checkpoint");
+        }
+        return result.state;
+    }
+
+    /**
+     * Odczytuje dziennik, zwracając odtworzony stan (lub null, jeżeli dziennik nie zawierał punktu kontrolnego) oraz
+     * długość poprawnej części pliku.
+     */
+    static Result read(Path journalFile) throws IOException {
+        Result result = new Result();
+        CRC32 crc = new CRC32();
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(journalFile)))) {
+            while (true) {
+                byte[] payload;
+                try {
+                    int length = input.readInt();
+                    int expectedCrc = input.readInt();
+                    if (length <= 0) {
+                        break;
+                    }
+                    payload = new byte[length];
+                    input.readFully(payload);
+                    crc.reset();
+                    crc.update(payload, 0, length);
+                    if ((int) crc.getValue() != expectedCrc) {
+                        break;
+                    }
+                } catch (EOFException e) {
+                    // niedokończony wpis na końcu pliku - wszystko przed nim jest poprawne
+                    break;
+                }
+                apply(result, payload);
+                result.validLength += PurchaseJournal.RECORD_HEADER_SIZE + payload.length;
+            }
+        }
+        return result;
+    }
+
+    private static void apply(Result result, byte[] payload) throws IOException {
+        DataInputStream record = new DataInputStream(new ByteArrayInputStream(payload));
+        byte type = record.readByte();
+        if (type == PurchaseJournal.CHECKPOINT_RECORD) {
+            result.state = InventoryState.readFrom(record);
+            result.purchasesSinceCheckpoint = 0;
+        } else if (type == PurchaseJournal.PURCHASE_RECORD) {
+            String symbol = record.readUTF();
+            if (result.state != null) {
+                result.state.productPurchased(symbol);
+                result.purchasesSinceCheckpoint++;
+            }
+        } else if (type == PurchaseJournal.RESTOCK_RECORD) {
+            String symbol = record.readUTF();
+            String productName = record.readUTF();
+            int count = record.readInt();
+            if (result.state != null) {
+                result.state.productsRestocked(symbol, productName, count);
+            }
+        } else {
+            throw new IOException("Unknown journal record type " + type);
+        }
+    }
+
+    /**
+     * Wypisuje na ekran stan tacek odtworzony z dziennika wskazanego jako pierwszy argument.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: JournalReplay <journal file>");
+            System.exit(1);
+        }
+        Result result = read(Paths.get(args[0]));
+        if (result.state == null) {
+            System.err.println("Journal does not contain any checkpoint");
+            System.exit(2);
+        }
+        InventoryState state = result.state;
+        System.out.println("Machine " + state.rows() + "x" + state.cols() + ", "
+                + result.purchasesSinceCheckpoint + " purchases replayed since last checkpoint");
+        for (String symbol : state.symbols()) {
+            System.out.println(symbol + " " + state.stock(symbol));
+        }
+    }
+
+    static class Result {
+        InventoryState state;
+        long validLength;
+        long purchasesSinceCheckpoint;
+    }
+}
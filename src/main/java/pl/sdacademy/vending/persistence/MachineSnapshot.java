@@ -0,0 +1,214 @@
+package pl.sdacademy.vending.persistence;
+
+import pl.sdacademy.vending.model.Product;
+import pl.sdacademy.vending.model.Tray;
+import pl.sdacademy.vending.model.TrayFactory;
+import pl.sdacademy.vending.model.VendingMachine;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Migawka stanu tacek automatu odczytana z pliku binarnego. Migawka jest fabryką tacek, więc po jej odczytaniu można
+ * od razu utworzyć automat: {@code new VendingMachine(configuration, MachineSnapshot.restore(file))}.
+ * <br>
+ * Plik migawki składa się z segmentów. Pierwszy segment jest pełny - zawiera wszystkie pozycje automatu. Kolejne
+ * segmenty są przyrostowe i zawierają tylko te pozycje, które zmieniły się od poprzedniego segmentu (zapisuje je
+ * {@link MachineSnapshotWriter}). Każdy segment ma nagłówek:
+ * <pre>
+ * magic (int) | wersja formatu (short) | typ segmentu (byte) | wiersze (int) | kolumny (int) |
+ * długość treści (int) | suma kontrolna CRC32 treści (int) | treść
+ * </pre>
+ * Treść segmentu to ilość wpisów, a następnie dla każdego wpisu: miejsce automatu (wiersz * ilość kolumn + kolumna,
+ * jako long), znacznik obecności tacki oraz - jeżeli tacka istnieje - symbol, cena i serie identycznych produktów
+ * (nazwa produktu oraz ilość sztuk). Segment pełny zawiera wszystkie pozycje automatu
+ * ({@link VendingMachine#positionsCount()}) - w automacie z siatką rzadką tylko miejsca z tackami - a odczytana migawka
+ * przechowuje tylko istniejące tacki, więc rozmiar pliku i pamięć zależą od ilości tacek, a nie od ilości wierszy
+ * i kolumn automatu.
+ * <br>
+ * Cały plik jest odczytywany jedną operacją, a obiekty tacek są tworzone dopiero z końcowego stanu, dlatego odczyt
+ * migawki jest ograniczony głównie szybkością dysku.
+ */
+public class MachineSnapshot implements TrayFactory {
+    static final int MAGIC = 0x564D534E;
+    static final short FORMAT_VERSION = 2;
+    static final byte FULL_SEGMENT = 0;
+    static final byte INCREMENTAL_SEGMENT = 1;
+    static final int SEGMENT_HEADER_SIZE = 4 + 2 + 1 + 4 + 4 + 4 + 4;
+
+    private final int rows;
+    private final int cols;
+    /**
+     * Tacki według miejsca automatu (wiersz * ilość kolumn + kolumna).
+     */
+    private final Map<Long, Tray> trays;
+    private final long validLength;
+
+    private MachineSnapshot(int rows, int cols, Map<Long, Tray> trays, long validLength) {
+        this.rows = rows;
+        this.cols = cols;
+        this.trays = trays;
+        this.validLength = validLength;
+    }
+
+    /**
+     * Odczytuje migawkę z pliku - segment pełny oraz wszystkie kolejne segmenty przyrostowe. Niedokończony ostatni
+     * segment (np. po awarii w trakcie dopisywania) jest pomijany - przed dopisaniem kolejnych segmentów trzeba go
+     * odciąć ({@link #validLength()}, {@link MachineSnapshotWriter#resume(VendingMachine, MachineSnapshot, Path)}).
+     * @param file plik migawki
+     * @return odczytana migawka
+     * @throws IOException jeżeli pliku nie udało się odczytać albo nie zaczyna się on od pełnego segmentu
+     */
+    public static MachineSnapshot restore(Path file) throws IOException {
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(file)));
+        CRC32 crc = new CRC32();
+        int rows = -1;
+        int cols = -1;
+        Map<Long, TrayEntry> entries = null;
+        long validLength = 0;
+        while (true) {
+            byte[] payload;
+            byte type;
+            try {
+                if (input.readInt() != MAGIC) {
+                    throw new IOException("File " + file + " is not a machine snapshot");
+                }
+                short formatVersion = input.readShort();
+                if (formatVersion != FORMAT_VERSION) {
+                    throw new IOException("Unsupported snapshot format version " + formatVersion + " in " + file);
+                }
+                type = input.readByte();
+                int segmentRows = input.readInt();
+                int segmentCols = input.readInt();
+                payload = new byte[input.readInt()];
+                int expectedCrc = input.readInt();
+                input.readFully(payload);
+                crc.reset();
+                crc.update(payload, 0, payload.length);
+                if ((int) crc.getValue() != expectedCrc) {
+                    break;
+                }
+                if (type == FULL_SEGMENT) {
+                    rows = segmentRows;
+                    cols = segmentCols;
+                    entries = new HashMap<>();
+                } else if (entries == null) {
+                    throw new IOException("Snapshot " + file + " does not start with a full segment");
+                } else if (segmentRows != rows || segmentCols != cols) {
+                    throw new IOException("Snapshot " + file + " contains segments of different machine sizes");
+                }
+            } catch (EOFException e) {
+                // koniec pliku lub niedokończony segment - wszystko przed nim zostało już odczytane
+                break;
+            }
+            readEntries(new DataInputStream(new ByteArrayInputStream(payload)), entries);
+            validLength += SEGMENT_HEADER_SIZE + payload.length;
+        }
+        if (entries == null) {
+            throw new IOException("Snapshot " + file + " does not contain a full segment");
+        }
+        Map<Long, Tray> trays = new HashMap<>(entries.size() * 2);
+        for (Map.Entry<Long, TrayEntry> entry : entries.entrySet()) {
+            trays.put(entry.getKey(), entry.getValue().toTray());
+        }
+        return new MachineSnapshot(rows, cols, trays, validLength);
+    }
+
+    private static void readEntries(DataInputStream payload, Map<Long, TrayEntry> entries) throws IOException {
+        int entriesCount = payload.readInt();
+        for (int entry = 0; entry < entriesCount; entry++) {
+            long cell = payload.readLong();
+            if (!payload.readBoolean()) {
+                entries.remove(cell);
+                continue;
+            }
+            TrayEntry tray = new TrayEntry(payload.readUTF(), payload.readLong());
+            int runsCount = payload.readShort();
+            for (int run = 0; run < runsCount; run++) {
+                tray.productNames.add(payload.readUTF());
+                tray.counts.add(payload.readInt());
+            }
+            entries.put(cell, tray);
+        }
+    }
+
+    /**
+     * Zapisuje miejsce automatu jako wpis segmentu migawki.
+     * @param cell miejsce automatu - wiersz * ilość kolumn + kolumna
+     */
+    static void writeEntry(DataOutput output, long cell, Tray tray) throws IOException {
+        output.writeLong(cell);
+        output.writeBoolean(tray != null);
+        if (tray == null) {
+            return;
+        }
+        output.writeUTF(tray.getSymbol());
+        output.writeLong(tray.getPrice());
+        List<Product> runProducts = new ArrayList<>();
+        List<Integer> runCounts = new ArrayList<>();
+        tray.forEachProductRun((product, count) -> {
+            runProducts.add(product);
+            runCounts.add(count);
+        });
+        output.writeShort(runProducts.size());
+        for (int run = 0; run < runProducts.size(); run++) {
+            output.writeUTF(runProducts.get(run).getName());
+            output.writeInt(runCounts.get(run));
+        }
+    }
+
+    /**
+     * @return długość początku pliku w bajtach, który zawiera tylko kompletne i poprawne segmenty - dalsza część pliku
+     * to niedokończony segment, który trzeba odciąć przed dopisaniem kolejnych
+     */
+    public long validLength() {
+        return validLength;
+    }
+
+    public int rows() {
+        return rows;
+    }
+
+    public int cols() {
+        return cols;
+    }
+
+    @Override
+    public Tray createTray(int rowNumber, int colNumber) {
+        if (rowNumber >= rows || colNumber >= cols) {
+            throw new IllegalStateException("Snapshot of " + rows + "x" + cols + " machine has no position "
+                    + rowNumber + "x" + colNumber);
+        }
+        return trays.get((long) rowNumber * cols + colNumber);
+    }
+
+    private static class TrayEntry {
+        private final String symbol;
+        private final long price;
+        private final List<String> productNames = new ArrayList<>(1);
+        private final List<Integer> counts = new ArrayList<>(1);
+
+        private TrayEntry(String symbol, long price) {
+            this.symbol = symbol;
+            this.price = price;
+        }
+
+        private Tray toTray() {
+            Tray.Builder builder = Tray.builder(symbol).price(price);
+            for (int run = 0; run < productNames.size(); run++) {
+                builder.products(new Product(productNames.get(run)), counts.get(run));
+            }
+            return builder.build();
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package pl.sdacademy.vending.persistence;
+
+import pl.sdacademy.vending.model.Tray;
+import pl.sdacademy.vending.model.VendingMachine;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * Klasa zapisująca migawki stanu jednego automatu do pliku w formacie opisanym w {@link MachineSnapshot}. Pamięta, jaka
+ * była wersja zawartości każdej tacki ({@link Tray#contentVersion()}) w chwili poprzedniego zapisu, dzięki czemu
+ * migawka przyrostowa zawiera tylko tacki zmienione od poprzedniej migawki. Wersje są pamiętane według pozycji automatu
+ * ({@link VendingMachine#positionsCount()}), więc w automacie z siatką rzadką tylko dla istniejących tacek.
+ * <br>
+ * Migawki mogą być zapisywane w trakcie zakupów - wersja tacki jest odczytywana przed jej zawartością, więc zmiana
+ * wykonana w trakcie zapisu zostanie uwzględniona najpóźniej w kolejnej migawce. Klasa nie jest bezpieczna wielowątkowo
+ * - migawki jednego automatu powinien zapisywać jeden wątek.
+ */
+public class MachineSnapshotWriter {
+    private static final long NO_TRAY = Long.MIN_VALUE;
+
+    private final VendingMachine machine;
+    private final Path file;
+    private final int rows;
+    private final int cols;
+    private final long[] savedVersions;
+    private boolean fullSnapshotSaved;
+    /**
+     * Długość poprawnej części pliku - kolejny segment jest zapisywany od tego miejsca, więc pozostałości segmentu,
+     * którego zapis się nie powiódł, są nadpisywane.
+     */
+    private long fileLength;
+
+    public MachineSnapshotWriter(VendingMachine machine, Path file) {
+        this.machine = machine;
+        this.file = file;
+        this.rows = machine.rowsSize().intValue();
+        this.cols = machine.colsSize().intValue();
+        this.savedVersions = new long[machine.positionsCount()];
+    }
+
+    /**
+     * Tworzy obiekt zapisujący dla automatu, który został właśnie odtworzony ze wskazanego pliku migawki. Aktualny stan
+     * automatu jest uznawany za zapisany, więc kolejna migawka przyrostowa zawiera tylko późniejsze zmiany. Kolejne
+     * segmenty są dopisywane za ostatnim poprawnym segmentem migawki - niedokończony segment z końca pliku jest
+     * odcinany.
+     * @param machine automat odtworzony z pliku migawki
+     * @param snapshot migawka, z której odtworzono automat
+     * @param file plik migawki, z którego odtworzono automat
+     * @return obiekt zapisujący kolejne migawki
+     */
+    public static MachineSnapshotWriter resume(VendingMachine machine, MachineSnapshot snapshot, Path file)
+            throws IOException {
+        MachineSnapshotWriter writer = new MachineSnapshotWriter(machine, file);
+        for (int position = 0; position < writer.savedVersions.length; position++) {
+            writer.savedVersions[position] = versionOf(writer.trayAt(position));
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(snapshot.validLength());
+        }
+        writer.fileLength = snapshot.validLength();
+        writer.fullSnapshotSaved = true;
+        return writer;
+    }
+
+    /**
+     * Zapisuje pełną migawkę, zastępując poprzednią zawartość pliku. Plik jest najpierw zapisywany obok, a następnie
+     * przenoszony w miejsce docelowe, więc przerwany zapis nie niszczy poprzedniej migawki.
+     */
+    public void saveFull() throws IOException {
+        ByteArrayOutputStream entriesBytes = new ByteArrayOutputStream(
+                (int) Math.min(savedVersions.length * 48L, Integer.MAX_VALUE - 8));
+        DataOutputStream entries = new DataOutputStream(entriesBytes);
+        long[] versions = new long[savedVersions.length];
+        for (int position = 0; position < savedVersions.length; position++) {
+            Tray tray = trayAt(position);
+            versions[position] = versionOf(tray);
+            MachineSnapshot.writeEntry(entries, cellAt(position), tray);
+        }
+        Path temporaryFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeSegment(channel, MachineSnapshot.FULL_SEGMENT, savedVersions.length, entriesBytes.toByteArray());
+        }
+        Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        System.arraycopy(versions, 0, savedVersions, 0, versions.length);
+        fileLength = Files.size(file);
+        fullSnapshotSaved = true;
+    }
+
+    /**
+     * Dopisuje do pliku segment zawierający tylko tacki zmienione od poprzedniej migawki. Jeżeli pełna migawka nie
+     * została jeszcze zapisana, to zapisuje pełną migawkę.
+     * @return ilość zapisanych pozycji automatu
+     */
+    public int saveIncremental() throws IOException {
+        if (!fullSnapshotSaved) {
+            saveFull();
+            return savedVersions.length;
+        }
+        ByteArrayOutputStream entriesBytes = new ByteArrayOutputStream();
+        DataOutputStream entries = new DataOutputStream(entriesBytes);
+        long[] versions = Arrays.copyOf(savedVersions, savedVersions.length);
+        int changed = 0;
+        for (int position = 0; position < savedVersions.length; position++) {
+            Tray tray = trayAt(position);
+            long version = versionOf(tray);
+            if (version != savedVersions[position]) {
+                versions[position] = version;
+                MachineSnapshot.writeEntry(entries, cellAt(position), tray);
+                changed++;
+            }
+        }
+        if (changed == 0) {
+            return 0;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            // odcinamy ewentualne pozostałości segmentu, którego zapis się nie powiódł
+            channel.truncate(fileLength);
+            channel.position(fileLength);
+            writeSegment(channel, MachineSnapshot.INCREMENTAL_SEGMENT, changed, entriesBytes.toByteArray());
+            fileLength = channel.position();
+        }
+        System.arraycopy(versions, 0, savedVersions, 0, versions.length);
+        return changed;
+    }
+
+    private void writeSegment(FileChannel channel, byte type, int entriesCount, byte[] entries)
+            throws IOException {
+        // treść segmentu to ilość wpisów oraz same wpisy
+        ByteBuffer payload = ByteBuffer.allocate(4 + entries.length);
+        payload.putInt(entriesCount).put(entries);
+        CRC32 crc = new CRC32();
+        crc.update(payload.array(), 0, payload.capacity());
+        ByteBuffer segment = ByteBuffer.allocate(MachineSnapshot.SEGMENT_HEADER_SIZE + payload.capacity());
+        segment.putInt(MachineSnapshot.MAGIC)
+                .putShort(MachineSnapshot.FORMAT_VERSION)
+                .put(type)
+                .putInt(rows)
+                .putInt(cols)
+                .putInt(payload.capacity())
+                .putInt((int) crc.getValue())
+                .put(payload.array());
+        segment.flip();
+        while (segment.hasRemaining()) {
+            channel.write(segment);
+        }
+        channel.force(false);
+    }
+
+    private Tray trayAt(int position) {
+        return machine.trayAtPosition(position).orElse(null);
+    }
+
+    private long cellAt(int position) {
+        return (long) machine.rowAtPosition(position) * cols + machine.colAtPosition(position);
+    }
+
+    private static long versionOf(Tray tray) {
+        return tray == null ? NO_TRAY : tray.contentVersion();
+    }
+}
@@ -0,0 +1,248 @@
+package pl.sdacademy.vending.persistence;
+
+import pl.sdacademy.vending.model.Product;
+import pl.sdacademy.vending.model.Tray;
+import pl.sdacademy.vending.model.TrayFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Trwały magazyn stanu tacek automatu oparty o plik zmapowany do pamięci. Plik ma stały układ: nagłówek, mapa pozycji
+ * (jeden bajt dla każdej pozycji automatu - wiersz x kolumna - mówiący, czy na pozycji leży tacka) oraz jeden slot
+ * o stałej wielkości dla każdej pozycji. Slot przechowuje symbol tacki, cenę, nazwę produktu oraz ilość sztuk - tacka
+ * w magazynie może więc zawierać tylko jeden produkt, a tacki z różnymi produktami są odrzucane.
+ * <br>
+ * Numer pozycji i położenie slotu w pliku są liczone jako long, a mapa pozycji i sloty są mapowane fragmentami
+ * (sloty po 1 GB) - pojedynczy {@link MappedByteBuffer} nie może przekroczyć 2 GB - więc magazyn obsługuje także
+ * automaty z siatką rzadką o wielu wierszach i kolumnach. Slot jest zapisywany i odczytywany tylko dla pozycji
+ * z tacką, a pozycja bez tacki zajmuje jedynie swój bajt w mapie pozycji. Fragmenty slotów bez tacek nie są więc nigdy
+ * dotykane - nie zajmują pamięci ani (w systemach plików obsługujących pliki rzadkie) miejsca na dysku.
+ * <br>
+ * Magazyn jest fabryką tacek ({@link TrayFactory}) - przekazany do {@link pl.sdacademy.vending.model.VendingMachine}
+ * tworzy tacki, których licznik produktów leży bezpośrednio w pliku. Jeżeli pozycja nie została jeszcze zapisana
+ * (nowy plik), to tacka jest tworzona przez fabrykę zapasową i zapisywana do slotu, a brak tacki - tylko do mapy
+ * pozycji. Dzięki temu po restarcie aplikacji stan automatu, także rozmieszczenie pustych pozycji, jest odczytywany
+ * z pliku, a nie losowany od nowa.
+ * <br>
+ * Zapisy trafiają do pamięci podręcznej systemu operacyjnego w chwili ich wykonania, więc przetrwają nagłe zabicie
+ * procesu (kill -9). Pozycja jest oznaczana w mapie jako zapisana dopiero po zapisaniu wszystkich pól slotu, więc
+ * przerwane zapisywanie slotu skutkuje jego ponownym utworzeniem przy kolejnym starcie. Ochronę przed utratą zasilania
+ * daje dopiero {@link #flush()}.
+ */
+public class MappedInventoryStore implements TrayFactory, Closeable {
+    private static final int MAGIC = 0x564D4953;
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 64;
+    private static final int SLOT_SIZE = 64;
+    /**
+     * Sloty zaczynają się od granicy strony pamięci, aby strony ze slotami nie były współdzielone z mapą pozycji.
+     */
+    private static final int PAGE_SIZE = 4096;
+    /**
+     * Domyślna ilość slotów w jednym zmapowanym fragmencie pliku - 2^24 slotów po 64 bajty to 1 GB.
+     */
+    private static final int SEGMENT_SLOTS = 1 << 24;
+
+    // bajty 0-3 slotu są nieużywane - stan pozycji przechowuje mapa pozycji
+    private static final int SLOT_STOCK = 4;
+    private static final int SLOT_PRICE = 8;
+    private static final int SLOT_SYMBOL = 16;
+    private static final int SLOT_NAME = 24;
+    private static final int MAX_SYMBOL_LENGTH = SLOT_NAME - SLOT_SYMBOL - 1;
+    private static final int MAX_NAME_LENGTH = SLOT_SIZE - SLOT_NAME - 1;
+
+    private static final byte CELL_UNINITIALIZED = 0;
+    private static final byte CELL_TRAY = 1;
+    private static final byte CELL_NO_TRAY = 2;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer header;
+    /**
+     * Kolejne fragmenty mapy pozycji - fragment o numerze i zawiera stany pozycji od i * segmentSlots.
+     */
+    private final MappedByteBuffer[] cellSegments;
+    /**
+     * Kolejne fragmenty pliku ze slotami - fragment o numerze i zawiera sloty od i * segmentSlots.
+     */
+    private final MappedByteBuffer[] segments;
+    private final int segmentSlots;
+    private final int cols;
+    private final TrayFactory initialTrays;
+
+    private MappedInventoryStore(FileChannel channel, MappedByteBuffer header, MappedByteBuffer[] cellSegments,
+                                 MappedByteBuffer[] segments, int segmentSlots, int cols, TrayFactory initialTrays) {
+        this.channel = channel;
+        this.header = header;
+        this.cellSegments = cellSegments;
+        this.segments = segments;
+        this.segmentSlots = segmentSlots;
+        this.cols = cols;
+        this.initialTrays = initialTrays;
+    }
+
+    /**
+     * Otwiera (lub tworzy) plik magazynu dla automatu o zadanej wielkości.
+     * @param file ścieżka do pliku magazynu
+     * @param rows ilość wierszy automatu
+     * @param cols ilość kolumn automatu
+     * @param initialTrays fabryka tworząca tacki dla slotów, które nie zostały jeszcze zapisane w pliku - każda tacka
+     * może zawierać tylko jeden produkt
+     * @return otwarty magazyn
+     * @throws IOException jeżeli pliku nie udało się otworzyć lub został utworzony dla automatu innej wielkości
+     */
+    public static MappedInventoryStore open(Path file, int rows, int cols, TrayFactory initialTrays)
+            throws IOException {
+        return open(file, rows, cols, initialTrays, SEGMENT_SLOTS);
+    }
+
+    /**
+     * Otwiera magazyn mapujący sloty fragmentami o wskazanej wielkości - np. aby sprawdzić w teście podział na
+     * fragmenty bez tworzenia wielogigabajtowego pliku.
+     */
+    static MappedInventoryStore open(Path file, int rows, int cols, TrayFactory initialTrays, int segmentSlots)
+            throws IOException {
+        FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            boolean newFile = channel.size() == 0;
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+            if (newFile) {
+                header.putInt(4, VERSION);
+                header.putInt(8, rows);
+                header.putInt(12, cols);
+                header.putInt(16, SLOT_SIZE);
+                // magiczna liczba jest zapisywana na końcu - plik bez niej nie jest uznawany za poprawny
+                header.putInt(0, MAGIC);
+            } else {
+                verifyHeader(file, header, rows, cols);
+            }
+            long slotsCount = (long) rows * cols;
+            long slotsStart = (HEADER_SIZE + slotsCount + PAGE_SIZE - 1) / PAGE_SIZE * PAGE_SIZE;
+            int segmentsCount = (int) ((slotsCount + segmentSlots - 1) / segmentSlots);
+            MappedByteBuffer[] cellSegments = new MappedByteBuffer[segmentsCount];
+            MappedByteBuffer[] segments = new MappedByteBuffer[segmentsCount];
+            for (int segment = 0; segment < segmentsCount; segment++) {
+                long firstSlot = (long) segment * segmentSlots;
+                long slots = Math.min(segmentSlots, slotsCount - firstSlot);
+                cellSegments[segment] = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE + firstSlot, slots);
+                segments[segment] = channel.map(FileChannel.MapMode.READ_WRITE,
+                        slotsStart + firstSlot * SLOT_SIZE, slots * SLOT_SIZE);
+            }
+            return new MappedInventoryStore(channel, header, cellSegments, segments, segmentSlots, cols,
+                    initialTrays);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static void verifyHeader(Path file, MappedByteBuffer header, int rows, int cols) throws IOException {
+        if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION || header.getInt(16) != SLOT_SIZE) {
+            throw new IOException("File " + file + " is not a supported inventory store");
+        }
+        if (header.getInt(8) != rows || header.getInt(12) != cols) {
+            throw new IOException("Inventory store " + file + " was created for " + header.getInt(8) + "x"
+                    + header.getInt(12) + " machine, not " + rows + "x" + cols);
+        }
+    }
+
+    @Override
+    public Tray createTray(int rowNumber, int colNumber) {
+        long slotNumber = (long) rowNumber * cols + colNumber;
+        MappedByteBuffer cells = cellSegments[(int) (slotNumber / segmentSlots)];
+        int cell = (int) (slotNumber % segmentSlots);
+        MappedByteBuffer buffer = segments[(int) (slotNumber / segmentSlots)];
+        int slot = cell * SLOT_SIZE;
+        byte state = cells.get(cell);
+        if (state == CELL_UNINITIALIZED) {
+            Tray initialTray = initialTrays.createTray(rowNumber, colNumber);
+            if (initialTray == null) {
+                // slot pozycji bez tacki nie jest zapisywany - wystarczy bajt w mapie pozycji
+                state = CELL_NO_TRAY;
+            } else {
+                writeSlot(buffer, slot, initialTray);
+                state = CELL_TRAY;
+            }
+            cells.put(cell, state);
+        }
+        if (state == CELL_NO_TRAY) {
+            return null;
+        }
+        String symbol = readText(buffer, slot + SLOT_SYMBOL);
+        Product product = new Product(readText(buffer, slot + SLOT_NAME));
+        return Tray.builder(symbol)
+                .price(buffer.getLong(slot + SLOT_PRICE))
+                .storage(new MappedTrayStorage(buffer, slot + SLOT_STOCK, product))
+                .build();
+    }
+
+    private static void writeSlot(MappedByteBuffer buffer, int slot, Tray tray) {
+        String productName = productName(tray);
+        writeText(buffer, slot + SLOT_SYMBOL, tray.getSymbol(), MAX_SYMBOL_LENGTH);
+        writeText(buffer, slot + SLOT_NAME, productName, MAX_NAME_LENGTH);
+        buffer.putLong(slot + SLOT_PRICE, tray.getPrice());
+        buffer.putInt(slot + SLOT_STOCK, tray.productsCount());
+    }
+
+    /**
+     * @return nazwa jedynego produktu tacki
+     * @throws IllegalArgumentException jeżeli na tacce leżą różne produkty - slot nie może ich zapamiętać
+     */
+    private static String productName(Tray tray) {
+        Set<String> productNames = new LinkedHashSet<>();
+        tray.forEachProductRun((product, count) -> productNames.add(product.getName()));
+        if (productNames.size() > 1) {
+            throw new IllegalArgumentException("Inventory store keeps one product per tray, but tray "
+                    + tray.getSymbol() + " holds " + productNames);
+        }
+        // pusta tacka nie zna nazwy swojego produktu - zapamiętujemy wtedy nazwę domyślną
+        return productNames.isEmpty() ? tray.firstProductName().orElse("Product " + tray.getSymbol())
+                : productNames.iterator().next();
+    }
+
+    private static void writeText(MappedByteBuffer buffer, int offset, String text, int maxLength) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > maxLength) {
+            throw new IllegalArgumentException("Text '" + text + "' is longer than " + maxLength + " bytes");
+        }
+        buffer.put(offset, (byte) bytes.length);
+        for (int i = 0; i < bytes.length; i++) {
+            buffer.put(offset + 1 + i, bytes[i]);
+        }
+    }
+
+    private static String readText(MappedByteBuffer buffer, int offset) {
+        byte[] bytes = new byte[buffer.get(offset)];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(offset + 1 + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Wymusza zapisanie zmian z pamięci na dysk.
+     */
+    public void flush() {
+        header.force();
+        for (MappedByteBuffer cells : cellSegments) {
+            cells.force();
+        }
+        for (MappedByteBuffer segment : segments) {
+            segment.force();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        channel.close();
+    }
+}
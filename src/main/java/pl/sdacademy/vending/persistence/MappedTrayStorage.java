@@ -0,0 +1,77 @@
+package pl.sdacademy.vending.persistence;
+
+import pl.sdacademy.vending.model.Product;
+import pl.sdacademy.vending.model.TrayStorage;
+
+import java.nio.MappedByteBuffer;
+import java.util.Objects;
+
+/**
+ * Sposób przechowywania produktów tacki, w którym ilość sztuk jest zapisana bezpośrednio w pliku zmapowanym do pamięci.
+ * Zakup zmniejsza licznik w miejscu, w którym leży on w pliku - bez żadnej serializacji. Wszystkie sztuki na tacce są
+ * tym samym produktem.
+ * <br>
+ * Zmiana licznika jest synchronizowana na obiekcie tej klasy, czyli tylko w obrębie jednej tacki - zakupy z różnych
+ * tacek nadal się nie blokują. Licznik jest wyrównaną czterobajtową liczbą, więc jego zapis nigdy nie zostanie
+ * przerwany w połowie.
+ */
+class MappedTrayStorage implements TrayStorage {
+    private final MappedByteBuffer buffer;
+    private final int stockOffset;
+    private final Product product;
+
+    MappedTrayStorage(MappedByteBuffer buffer, int stockOffset, Product product) {
+        this.buffer = buffer;
+        this.stockOffset = stockOffset;
+        this.product = product;
+    }
+
+    @Override
+    public synchronized Product peek() {
+        return buffer.getInt(stockOffset) > 0 ? product : null;
+    }
+
+    @Override
+    public synchronized Product poll() {
+        int stock = buffer.getInt(stockOffset);
+        if (stock <= 0) {
+            return null;
+        }
+        buffer.putInt(stockOffset, stock - 1);
+        return product;
+    }
+
+    @Override
+    public synchronized boolean pollMany(int count, Product[] target, int offset) {
+        int stock = buffer.getInt(stockOffset);
+        if (stock < count) {
+            return false;
+        }
+        buffer.putInt(stockOffset, stock - count);
+        for (int index = 0; index < count; index++) {
+            target[offset + index] = product;
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized void putBack(Product[] products, int offset, int count) {
+        buffer.putInt(stockOffset, buffer.getInt(stockOffset) + count);
+    }
+
+    @Override
+    public synchronized int restock(Product product, int count) {
+        if (!Objects.equals(this.product.getName(), product.getName())) {
+            return 0;
+        }
+        int stock = buffer.getInt(stockOffset);
+        int added = Math.min(count, Integer.MAX_VALUE - stock);
+        buffer.putInt(stockOffset, stock + added);
+        return added;
+    }
+
+    @Override
+    public synchronized int size() {
+        return buffer.getInt(stockOffset);
+    }
+}
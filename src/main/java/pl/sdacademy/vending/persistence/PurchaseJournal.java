@@ -0,0 +1,434 @@
+package pl.sdacademy.vending.persistence;
+
+import pl.sdacademy.vending.model.Product;
+import pl.sdacademy.vending.model.PurchaseListener;
+import pl.sdacademy.vending.model.Tray;
+import pl.sdacademy.vending.model.VendingMachine;
+import pl.sdacademy.vending.util.Configuration;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * Dziennik zakupów (write-ahead log), w którym jest zapisywany każdy udany zakup oraz każde uzupełnienie tacki
+ * ({@link VendingMachine#restockTray(String, Product, int)}) w automacie. Dziennik jest słuchaczem
+ * zakupów ({@link PurchaseListener}) - po otwarciu rejestruje się w automacie i od tej chwili zapisuje każdy zakup.
+ * <br>
+ * Wymuszenie zapisu na dysk (fsync) po każdym zakupie byłoby bardzo wolne, dlatego dziennik stosuje "group commit":
+ * zakupy zgłoszone w tym samym czasie przez wielu kupujących są zbierane w paczkę, a osobny wątek zapisuje całą paczkę
+ * i wymusza jej zapis na dysk jedną operacją. Paczka jest zapisywana, gdy osiągnie zadaną wielkość albo gdy minie
+ * zadany czas od pojawienia się pierwszego zakupu. Domyślnie kupujący czeka, aż jego zakup trafi na dysk. Zamówienie
+ * wielu sztuk trafia do paczki w całości, więc kupujący czeka na jeden zapis.
+ * <br>
+ * Dziennik jest powiadamiany po wydaniu produktu, więc błąd zapisu nie może już cofnąć sprzedaży - nie jest zgłaszany
+ * kupującemu wyjątkiem, tylko zapamiętywany ({@link #writeFailure()}), a zdarzenia, których nie udało się zapisać, są
+ * zliczane ({@link #nonDurableEvents()}).
+ * <br>
+ * Poza zakupami dziennik zawiera punkty kontrolne - pełny stan tacek. Stan do punktu kontrolnego jest wyliczany przez
+ * wątek zapisujący z poprzedniego punktu i zapisanych zakupów, dzięki czemu zawsze zgadza się z kolejnością wpisów
+ * w dzienniku. Stan automatu można odtworzyć narzędziem {@link JournalReplay}.
+ * <br>
+ * Każdy wpis ma postać: długość (int), suma kontrolna CRC32 (int), treść wpisu. Pierwszy bajt treści określa typ wpisu.
+ */
+public class PurchaseJournal implements PurchaseListener, Closeable {
+    static final byte PURCHASE_RECORD = 1;
+    static final byte CHECKPOINT_RECORD = 2;
+    static final byte RESTOCK_RECORD = 3;
+    static final int RECORD_HEADER_SIZE = 8;
+
+    private final FileChannel channel;
+    private final VendingMachine machine;
+    private final InventoryState state;
+    private final long flushIntervalNanos;
+    private final int batchSize;
+    private final boolean waitForDurability;
+    private final long checkpointEvery;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition batchReady = lock.newCondition();
+    private final Condition batchFlushed = lock.newCondition();
+    /**
+     * Zdarzenia czekające na zapis - zakupy jako symbole tacek oraz uzupełnienia ({@link Restock}). Wartość null
+     * oznacza żądanie zapisania punktu kontrolnego.
+     */
+    private List<Object> pending = new ArrayList<>();
+    private long appendedSequence;
+    private long flushedSequence;
+    private boolean closed;
+    private IOException failure;
+    private long nonDurableEvents;
+
+    private final ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+    private final DataOutputStream record = new DataOutputStream(recordBytes);
+    private final CRC32 crc = new CRC32();
+    private ByteBuffer writeBuffer = ByteBuffer.allocate(64 * 1024);
+    private long purchasesSinceCheckpoint;
+    private final Thread writer;
+
+    private PurchaseJournal(FileChannel channel, VendingMachine machine, InventoryState state,
+                            long flushIntervalMillis, int batchSize, boolean waitForDurability, long checkpointEvery) {
+        this.channel = channel;
+        this.machine = machine;
+        this.state = state;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        this.batchSize = batchSize;
+        this.waitForDurability = waitForDurability;
+        this.checkpointEvery = checkpointEvery;
+        this.writer = new Thread(this::writeLoop, "purchase-journal-writer");
+        this.writer.setDaemon(true);
+    }
+
+    /**
+     * Otwiera dziennik z ustawieniami odczytanymi z konfiguracji:
+     * "journal.flush.interval.ms" (domyślnie 2), "journal.batch.size" (domyślnie 512),
+     * "journal.checkpoint.every" (domyślnie 100000 zakupów, 0 wyłącza automatyczne punkty kontrolne) oraz
+     * "journal.wait.for.durability" (domyślnie "true").
+     * @see #open(Path, VendingMachine, long, int, boolean, long)
+     */
+    public static PurchaseJournal open(Path file, VendingMachine machine, Configuration configuration)
+            throws IOException {
+        return open(file, machine,
+                configuration.getProperty("journal.flush.interval.ms", 2L),
+                configuration.getProperty("journal.batch.size", 512L).intValue(),
+                Boolean.parseBoolean(configuration.getProperty("journal.wait.for.durability", "true")),
+                configuration.getProperty("journal.checkpoint.every", 100_000L));
+    }
+
+    /**
+     * Otwiera dziennik i rejestruje go jako słuchacza zakupów w automacie. Jeżeli plik dziennika nie istnieje lub nie
+     * zawiera punktu kontrolnego, to pierwszym wpisem staje się punkt kontrolny z aktualnym stanem automatu. Jeżeli
+     * dziennik już istnieje, to automat powinien zostać utworzony ze stanu odtworzonego przez {@link JournalReplay}.
+     * @param file plik dziennika
+     * @param machine automat, którego zakupy są zapisywane
+     * @param flushIntervalMillis maksymalny czas oczekiwania na zebranie paczki zakupów
+     * @param batchSize ilość zakupów, po której paczka jest zapisywana bez dalszego czekania
+     * @param waitForDurability czy kupujący ma czekać na zapisanie zakupu na dysk
+     * @param checkpointEvery co ile zakupów zapisywać punkt kontrolny (0 - tylko na żądanie)
+     * @return otwarty dziennik
+     */
+    public static PurchaseJournal open(Path file, VendingMachine machine, long flushIntervalMillis, int batchSize,
+                                       boolean waitForDurability, long checkpointEvery) throws IOException {
+        if (flushIntervalMillis < 0 || batchSize < 1 || checkpointEvery < 0) {
+            throw new IllegalArgumentException("Invalid journal settings");
+        }
+        JournalReplay.Result replayed = Files.exists(file) ? JournalReplay.read(file) : null;
+        FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        PurchaseJournal journal;
+        try {
+            boolean hasCheckpoint = replayed != null && replayed.state != null;
+            // odcinamy ewentualny niedokończony wpis z końca pliku i dopisujemy kolejne za ostatnim poprawnym
+            channel.truncate(hasCheckpoint ? replayed.validLength : 0);
+            channel.position(channel.size());
+            InventoryState state = hasCheckpoint ? replayed.state : InventoryState.of(machine);
+            journal = new PurchaseJournal(channel, machine, state, flushIntervalMillis, batchSize, waitForDurability,
+                    checkpointEvery);
+            if (hasCheckpoint) {
+                journal.purchasesSinceCheckpoint = replayed.purchasesSinceCheckpoint;
+            } else {
+                journal.appendCheckpoint();
+                journal.flushWriteBuffer();
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        journal.writer.start();
+        machine.addPurchaseListener(journal);
+        return journal;
+    }
+
+    @Override
+    public void productPurchased(Tray tray, Product product) {
+        lock.lock();
+        try {
+            if (enqueue(tray.getSymbol()) && waitForDurability) {
+                awaitFlushed(appendedSequence);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void productsPurchased(Tray[] trays, Product[] products, long[] prices) {
+        lock.lock();
+        try {
+            boolean enqueued = true;
+            for (Tray tray : trays) {
+                enqueued &= enqueue(tray.getSymbol());
+            }
+            if (enqueued && waitForDurability) {
+                awaitFlushed(appendedSequence);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void productsRestocked(Tray tray, Product product, int count) {
+        lock.lock();
+        try {
+            if (enqueue(new Restock(tray.getSymbol(), product.getName(), count)) && waitForDurability) {
+                awaitFlushed(appendedSequence);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Zapisuje w dzienniku punkt kontrolny i czeka na jego zapisanie na dysk. Po zapisaniu punktu kontrolnego
+     * odtwarzanie stanu nie musi czytać wcześniejszych wpisów.
+     * @throws IllegalStateException jeżeli dziennik jest zamknięty
+     * @throws UncheckedIOException jeżeli zapis dziennika się nie powiódł
+     */
+    public void checkpoint() {
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Purchase journal is closed");
+            }
+            enqueue(null);
+            awaitFlushed(appendedSequence);
+            if (failure != null) {
+                throw new UncheckedIOException("Purchase journal write failed", failure);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return błąd zapisu dziennika lub pusty optional, jeżeli wszystkie dotychczasowe zapisy się powiodły
+     */
+    public Optional<IOException> writeFailure() {
+        lock.lock();
+        try {
+            return Optional.ofNullable(failure);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return ilość zdarzeń (zakupów i uzupełnień), które nie trafiły na dysk - z powodu błędu zapisu lub zgłoszonych
+     * po zamknięciu dziennika
+     */
+    public long nonDurableEvents() {
+        lock.lock();
+        try {
+            return nonDurableEvents;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Dodaje zdarzenie do paczki czekającej na zapis. Wywoływana pod zamkiem dziennika.
+     * @return false, jeżeli dziennik jest już zamknięty i zdarzenie nie zostanie zapisane
+     */
+    private boolean enqueue(Object event) {
+        if (closed) {
+            nonDurableEvents++;
+            return false;
+        }
+        pending.add(event);
+        appendedSequence++;
+        if (pending.size() == 1 || pending.size() >= batchSize) {
+            batchReady.signal();
+        }
+        return true;
+    }
+
+    /**
+     * Czeka, aż zdarzenie o podanym numerze zostanie zapisane na dysk albo zapis dziennika się nie powiedzie.
+     * Wywoływana pod zamkiem dziennika.
+     */
+    private void awaitFlushed(long sequence) {
+        while (flushedSequence < sequence && failure == null) {
+            batchFlushed.awaitUninterruptibly();
+        }
+    }
+
+    private void writeLoop() {
+        List<Object> batch = new ArrayList<>();
+        while (true) {
+            long batchSequence;
+            lock.lock();
+            try {
+                while (!closed && pending.isEmpty()) {
+                    batchReady.awaitUninterruptibly();
+                }
+                // pierwszy zakup w paczce - czekamy chwilę na kolejne, aby zapisać je jednym fsync
+                long deadline = System.nanoTime() + flushIntervalNanos;
+                long remaining = flushIntervalNanos;
+                while (!closed && pending.size() < batchSize && remaining > 0) {
+                    try {
+                        batchReady.awaitNanos(remaining);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                    remaining = deadline - System.nanoTime();
+                }
+                if (closed && pending.isEmpty()) {
+                    return;
+                }
+                List<Object> filled = pending;
+                pending = batch;
+                batch = filled;
+                batchSequence = appendedSequence;
+            } finally {
+                lock.unlock();
+            }
+
+            IOException batchFailure = null;
+            // punkty kontrolne (null) nie są zdarzeniami automatu
+            int batchEvents = batch.size() - Collections.frequency(batch, null);
+            try {
+                writeBatch(batch);
+            } catch (IOException e) {
+                batchFailure = e;
+            }
+            batch.clear();
+
+            lock.lock();
+            try {
+                if (batchFailure != null) {
+                    if (failure == null) {
+                        System.err.println("Purchase journal write failed: " + batchFailure);
+                    }
+                    failure = batchFailure;
+                    nonDurableEvents += batchEvents;
+                }
+                flushedSequence = batchSequence;
+                batchFlushed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void writeBatch(List<Object> batch) throws IOException {
+        for (Object event : batch) {
+            if (event == null) {
+                appendCheckpoint();
+                continue;
+            }
+            if (event instanceof Restock) {
+                Restock restock = (Restock) event;
+                state.productsRestocked(restock.symbol, restock.productName, restock.count);
+                record.writeByte(RESTOCK_RECORD);
+                record.writeUTF(restock.symbol);
+                record.writeUTF(restock.productName);
+                record.writeInt(restock.count);
+                appendRecord();
+                continue;
+            }
+            String symbol = (String) event;
+            state.productPurchased(symbol);
+            record.writeByte(PURCHASE_RECORD);
+            record.writeUTF(symbol);
+            appendRecord();
+            purchasesSinceCheckpoint++;
+            if (checkpointEvery > 0 && purchasesSinceCheckpoint >= checkpointEvery) {
+                appendCheckpoint();
+            }
+        }
+        flushWriteBuffer();
+    }
+
+    private void appendCheckpoint() throws IOException {
+        record.writeByte(CHECKPOINT_RECORD);
+        state.writeTo(record);
+        appendRecord();
+        purchasesSinceCheckpoint = 0;
+    }
+
+    private void appendRecord() throws IOException {
+        int length = recordBytes.size();
+        byte[] payload = recordBytes.toByteArray();
+        recordBytes.reset();
+        crc.reset();
+        crc.update(payload, 0, length);
+        if (writeBuffer.remaining() < RECORD_HEADER_SIZE + length) {
+            writeOut();
+            if (writeBuffer.capacity() < RECORD_HEADER_SIZE + length) {
+                writeBuffer = ByteBuffer.allocate(RECORD_HEADER_SIZE + length);
+            }
+        }
+        writeBuffer.putInt(length);
+        writeBuffer.putInt((int) crc.getValue());
+        writeBuffer.put(payload, 0, length);
+    }
+
+    private void writeOut() throws IOException {
+        writeBuffer.flip();
+        while (writeBuffer.hasRemaining()) {
+            channel.write(writeBuffer);
+        }
+        writeBuffer.clear();
+    }
+
+    private void flushWriteBuffer() throws IOException {
+        writeOut();
+        channel.force(false);
+    }
+
+    /**
+     * Wyrejestrowuje dziennik z automatu, zapisuje wszystkie oczekujące zakupy i zamyka plik dziennika.
+     */
+    @Override
+    public void close() throws IOException {
+        machine.removePurchaseListener(this);
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            batchReady.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+    }
+
+    /**
+     * Uzupełnienie tacki czekające na zapis.
+     */
+    private static final class Restock {
+        private final String symbol;
+        private final String productName;
+        private final int count;
+
+        private Restock(String symbol, String productName, int count) {
+            this.symbol = symbol;
+            this.productName = productName;
+            this.count = count;
+        }
+    }
+}
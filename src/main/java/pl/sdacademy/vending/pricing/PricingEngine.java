@@ -0,0 +1,231 @@
+package pl.sdacademy.vending.pricing;
+
+import pl.sdacademy.vending.fleet.Fleet;
+import pl.sdacademy.vending.model.Tray;
+import pl.sdacademy.vending.model.VendingMachine;
+import pl.sdacademy.vending.restock.DepletionTracker;
+import pl.sdacademy.vending.util.Configuration;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Silnik cen dynamicznych. Co zadany czas, w tle, wylicza ceny wszystkich tacek obsługiwanych automatów: cena
+ * podstawowa tacki ({@link Tray#getPrice()}) przechodzi kolejno przez reguły cenowe ({@link PricingRule}), które
+ * uwzględniają tempo sprzedaży tacki ({@link DepletionTracker}) oraz porę dnia. Ceny automatu są publikowane jako nowa
+ * wersja jego tabeli cen ({@link VendingMachine#reprice(pl.sdacademy.vending.model.TrayPricer)}) - jedną atomową
+ * podmianą, więc kupujący i ekran automatu czytają ceny bez zamków.
+ * <br>
+ * Ceny są zawsze wyliczane od ceny podstawowej, więc kolejne przeliczenia przy niezmienionym tempie sprzedaży i porze
+ * dnia nie zmieniają cen (i nie tworzą nowych wersji tabel).
+ * <br>
+ * Instancja silnika jest tworzona TYLKO za pomocą Buildera.
+ */
+public class PricingEngine implements AutoCloseable {
+    private final DepletionTracker tracker;
+    private final Supplier<List<PricingRule>> rules;
+    private final Map<String, Supplier<VendingMachine>> machines;
+    private final Fleet fleet;
+    private final Duration interval;
+    private final Clock clock;
+    private ScheduledExecutorService scheduler;
+
+    private PricingEngine(Builder builder) {
+        this.tracker = builder.tracker;
+        List<PricingRule> fixedRules = new ArrayList<>(builder.fixedRules);
+        this.rules = builder.rules != null ? builder.rules : () -> fixedRules;
+        this.machines = new LinkedHashMap<>(builder.machines);
+        this.fleet = builder.fleet;
+        this.interval = builder.interval;
+        this.clock = builder.clock;
+    }
+
+    public static Builder builder(DepletionTracker tracker) {
+        return new Builder(tracker);
+    }
+
+    /**
+     * Tworzy Builder, którego reguły są odczytywane z konfiguracji ({@link PricingRules#fromConfiguration(Configuration)})
+     * przy każdym przeliczeniu cen - zmiany w przeładowanej konfiguracji obowiązują od kolejnego przeliczenia. Odstęp
+     * między przeliczeniami jest odczytywany z klucza "pricing.interval" (domyślnie minuta).
+     * @param tracker źródło tempa sprzedaży tacek
+     * @param configuration konfiguracja silnika
+     * @return Builder silnika
+     */
+    public static Builder builder(DepletionTracker tracker, Configuration configuration) {
+        Builder builder = builder(tracker)
+                .interval(configuration.getDuration("pricing.interval", Duration.ofMinutes(1)));
+        builder.rules = () -> PricingRules.fromConfiguration(configuration);
+        return builder;
+    }
+
+    /**
+     * Przelicza ceny wszystkich automatów.
+     * @return ilość automatów, których ceny się zmieniły
+     */
+    public synchronized int reprice() {
+        List<PricingRule> currentRules = rules.get();
+        LocalTime time = LocalTime.now(clock);
+        int changedMachines = 0;
+        for (Map.Entry<String, Supplier<VendingMachine>> machine : machines.entrySet()) {
+            changedMachines += reprice(machine.getKey(), machine.getValue().get(), currentRules, time);
+        }
+        if (fleet != null) {
+            for (String machineId : fleet.machineIds()) {
+                Optional<VendingMachine> machine = fleet.machine(machineId);
+                if (machine.isPresent()) {
+                    changedMachines += reprice(machineId, machine.get(), currentRules, time);
+                }
+            }
+        }
+        return changedMachines;
+    }
+
+    /**
+     * Uruchamia przeliczanie cen w tle - pierwsze od razu, a kolejne co zadany odstęp.
+     */
+    public synchronized void start() {
+        if (scheduler != null) {
+            throw new IllegalStateException("Pricing engine is already started");
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "pricing-engine");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::repriceInBackground, 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Zatrzymuje przeliczanie cen w tle. Opublikowane ceny pozostają w automatach.
+     */
+    @Override
+    public void close() {
+        ScheduledExecutorService scheduler;
+        synchronized (this) {
+            scheduler = this.scheduler;
+            this.scheduler = null;
+        }
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    private void repriceInBackground() {
+        try {
+            reprice();
+        } catch (RuntimeException e) {
+            // błąd jednego przeliczenia (np. niepoprawna reguła w przeładowanej konfiguracji) nie może zatrzymać
+            // kolejnych - do tego czasu obowiązują ostatnio opublikowane ceny
+            System.err.println("Pricing failed: " + e);
+        }
+    }
+
+    private int reprice(String machineId, VendingMachine machine, List<PricingRule> currentRules, LocalTime time) {
+        if (machine == null) {
+            return 0;
+        }
+        boolean changed = machine.reprice((tray, currentPrice) -> {
+            double unitsPerHour = tracker.unitsPerHour(machineId, tray.getSymbol());
+            long price = tray.getPrice();
+            for (PricingRule rule : currentRules) {
+                price = rule.apply(price, unitsPerHour, time);
+            }
+            return Math.max(0, price);
+        });
+        return changed ? 1 : 0;
+    }
+
+    public static class Builder {
+        private final DepletionTracker tracker;
+        private final List<PricingRule> fixedRules = new ArrayList<>();
+        private Supplier<List<PricingRule>> rules;
+        private final Map<String, Supplier<VendingMachine>> machines = new LinkedHashMap<>();
+        private Fleet fleet;
+        private Duration interval = Duration.ofMinutes(1);
+        private Clock clock = Clock.systemDefaultZone();
+
+        private Builder(DepletionTracker tracker) {
+            this.tracker = tracker;
+        }
+
+        /**
+         * @param machineId identyfikator automatu, pod którym tracker zna jego sprzedaż
+         * @param machine wyceniany automat
+         * @return ten sam Builder
+         */
+        public Builder machine(String machineId, VendingMachine machine) {
+            return machine(machineId, () -> machine);
+        }
+
+        /**
+         * @param machineId identyfikator automatu, pod którym tracker zna jego sprzedaż
+         * @param machine dostawca automatu odpytywany przy każdym przeliczeniu - np. dla automatu podmienianego po
+         *                zmianie wielkości
+         * @return ten sam Builder
+         */
+        public Builder machine(String machineId, Supplier<VendingMachine> machine) {
+            machines.put(machineId, machine);
+            return this;
+        }
+
+        /**
+         * @param fleet flota, której wszystkie automaty (także dodane później) są wyceniane
+         * @return ten sam Builder
+         */
+        public Builder fleet(Fleet fleet) {
+            this.fleet = fleet;
+            return this;
+        }
+
+        /**
+         * Dodaje regułę cenową - reguły są stosowane w kolejności dodawania. Zastępuje reguły odczytywane
+         * z konfiguracji.
+         * @param rule dodawana reguła
+         * @return ten sam Builder
+         */
+        public Builder rule(PricingRule rule) {
+            fixedRules.add(rule);
+            rules = null;
+            return this;
+        }
+
+        /**
+         * @param interval odstęp między przeliczeniami cen w tle
+         * @return ten sam Builder
+         */
+        public Builder interval(Duration interval) {
+            this.interval = interval;
+            return this;
+        }
+
+        /**
+         * @param clock zegar, według którego reguły godzinowe ustalają porę dnia
+         * @return ten sam Builder
+         */
+        public Builder clock(Clock clock) {
+            this.clock = clock;
+            return this;
+        }
+
+        public PricingEngine build() {
+            if (machines.isEmpty() && fleet == null) {
+                throw new IllegalStateException("Pricing engine needs at least one machine or a fleet");
+            }
+            if (interval.isZero() || interval.isNegative()) {
+                throw new IllegalStateException("Pricing interval must be positive, was " + interval);
+            }
+            return new PricingEngine(this);
+        }
+    }
+}
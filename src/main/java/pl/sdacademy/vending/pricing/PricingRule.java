@@ -0,0 +1,18 @@
+package pl.sdacademy.vending.pricing;
+
+import java.time.LocalTime;
+
+/**
+ * Interface reguły cenowej - jednego kroku wyliczania ceny tacki przez {@link PricingEngine}. Reguły są stosowane po
+ * kolei: pierwsza otrzymuje cenę podstawową tacki, a każda kolejna cenę wyliczoną przez poprzednią.
+ */
+@FunctionalInterface
+public interface PricingRule {
+    /**
+     * @param price cena w groszach wyliczona przez poprzednie reguły
+     * @param unitsPerHour tempo sprzedaży tacki (sztuk na godzinę)
+     * @param time czas, dla którego wyliczana jest cena
+     * @return nowa cena w groszach
+     */
+    long apply(long price, double unitsPerHour, LocalTime time);
+}
@@ -0,0 +1,95 @@
+package pl.sdacademy.vending.pricing;
+
+import pl.sdacademy.vending.util.Configuration;
+
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Klasa narzędziowa tworząca reguły cenowe ({@link PricingRule}).
+ */
+public final class PricingRules {
+    private PricingRules() {
+    }
+
+    /**
+     * Tworzy regułę podnoszącą cenę tacek, które sprzedają się szybko.
+     * @param unitsPerHourThreshold tempo sprzedaży (sztuk na godzinę), od którego cena jest podnoszona
+     * @param increasePercent podwyżka w procentach
+     * @return reguła popytowa
+     */
+    public static PricingRule demand(double unitsPerHourThreshold, int increasePercent) {
+        return (price, unitsPerHour, time) -> unitsPerHour >= unitsPerHourThreshold
+                ? price + price * increasePercent / 100
+                : price;
+    }
+
+    /**
+     * Tworzy regułę zmieniającą cenę w zadanych godzinach (np. obniżkę w "happy hour"). Przedział zawiera początek,
+     * ale nie zawiera końca, i może przechodzić przez północ (np. od 22:00 do 6:00).
+     * @param from początek przedziału
+     * @param to koniec przedziału
+     * @param changePercent zmiana ceny w procentach - ujemna dla obniżki
+     * @return reguła godzinowa
+     */
+    public static PricingRule timeOfDay(LocalTime from, LocalTime to, int changePercent) {
+        if (changePercent < -100) {
+            throw new IllegalArgumentException("Price can not be lowered by " + -changePercent + "%");
+        }
+        return (price, unitsPerHour, time) -> isBetween(time, from, to)
+                ? price + price * changePercent / 100
+                : price;
+    }
+
+    /**
+     * Tworzy regułę zaokrąglającą cenę do wielokrotności zadanej kwoty (połówki w górę).
+     * @param step kwota w groszach, np. 10 dla zaokrąglenia do pełnych dziesięciu groszy
+     * @return reguła zaokrąglająca
+     */
+    public static PricingRule roundedTo(long step) {
+        if (step < 1) {
+            throw new IllegalArgumentException("Rounding step must be positive, was " + step);
+        }
+        return (price, unitsPerHour, time) -> (price + step / 2) / step * step;
+    }
+
+    /**
+     * Odczytuje reguły z konfiguracji. Reguła jest tworzona tylko wtedy, gdy podano jej klucze:
+     * <ul>
+     *     <li>popytowa - "pricing.demand.threshold" (sztuk na godzinę) i "pricing.demand.increase.percent"
+     *     (domyślnie 10)</li>
+     *     <li>godzinowa - "pricing.happyhour.start" i "pricing.happyhour.end" (np. "16:00")
+     *     oraz "pricing.happyhour.change.percent" (domyślnie -20)</li>
+     *     <li>zaokrąglająca, stosowana na końcu - "pricing.rounding" (kwota, np. "0.10")</li>
+     * </ul>
+     * @param configuration konfiguracja reguł
+     * @return reguły w kolejności stosowania
+     */
+    public static List<PricingRule> fromConfiguration(Configuration configuration) {
+        List<PricingRule> rules = new ArrayList<>();
+        Long threshold = configuration.getProperty("pricing.demand.threshold", (Long) null);
+        if (threshold != null) {
+            rules.add(demand(threshold, configuration.getInt("pricing.demand.increase.percent", 10)));
+        }
+        String start = configuration.getProperty("pricing.happyhour.start", (String) null);
+        String end = configuration.getProperty("pricing.happyhour.end", (String) null);
+        if (start != null && end != null) {
+            rules.add(timeOfDay(LocalTime.parse(start.trim()), LocalTime.parse(end.trim()),
+                    configuration.getInt("pricing.happyhour.change.percent", -20)));
+        }
+        long rounding = configuration.getMoney("pricing.rounding", 0L);
+        if (rounding > 0) {
+            rules.add(roundedTo(rounding));
+        }
+        return rules;
+    }
+
+    private static boolean isBetween(LocalTime time, LocalTime from, LocalTime to) {
+        if (from.isBefore(to)) {
+            return !time.isBefore(from) && time.isBefore(to);
+        }
+        // przedział przechodzący przez północ
+        return !time.isBefore(from) || time.isBefore(to);
+    }
+}
@@ -0,0 +1,136 @@
+package pl.sdacademy.vending.restock;
+
+import pl.sdacademy.vending.events.PurchaseEvent;
+import pl.sdacademy.vending.events.PurchaseEventHandler;
+import pl.sdacademy.vending.model.PurchaseListener;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Śledzi tempo wyprzedawania się każdej tacki każdego automatu na podstawie historii zakupów. Tempo jest średnią
+ * ruchomą o wykładniczo malejących wagach (EWMA) liczoną przyrostowo - każdy zakup aktualizuje ją w stałym czasie, bez
+ * przechowywania historii. Stała czasowa określa, jak szybko oszacowanie zapomina dawne zakupy: zakupy sprzed jednej
+ * stałej czasowej ważą e razy mniej od bieżących.
+ * <br>
+ * Dla zakupów przychodzących w nieregularnych odstępach wagi zależą od czasu, a nie od ilości zakupów: przy każdym
+ * zakupie dotychczasowe tempo jest mnożone przez exp(-odstęp / stała czasowa) i zwiększane o 1 / stała czasowa.
+ * Tacka bez zakupów ma tempo malejące do zera.
+ * <br>
+ * Tracker jest odbiorcą szyny zdarzeń ({@link pl.sdacademy.vending.events.PurchaseEventBus}), ale może też być
+ * podłączony bezpośrednio do automatu słuchaczem {@link #listener(String)}.
+ */
+public class DepletionTracker implements PurchaseEventHandler {
+    private static final double MILLIS_PER_HOUR = 3_600_000.0;
+
+    private final ConcurrentMap<String, ConcurrentMap<String, TrayDepletion>> machines = new ConcurrentHashMap<>();
+    private final double timeConstantMillis;
+    private final LongSupplier clock;
+
+    /**
+     * @param timeConstant stała czasowa średniej - np. kilka godzin dla automatów uzupełnianych raz na dobę
+     */
+    public DepletionTracker(Duration timeConstant) {
+        this(timeConstant, System::currentTimeMillis);
+    }
+
+    /**
+     * @param timeConstant stała czasowa średniej
+     * @param clock źródło bieżącego czasu w milisekundach
+     */
+    public DepletionTracker(Duration timeConstant, LongSupplier clock) {
+        if (timeConstant.isNegative() || timeConstant.isZero()) {
+            throw new IllegalArgumentException("Depletion time constant must be positive, was " + timeConstant);
+        }
+        this.timeConstantMillis = timeConstant.toMillis();
+        this.clock = clock;
+    }
+
+    @Override
+    public void onEvent(PurchaseEvent event, boolean endOfBatch) {
+        if (event.isRestock()) {
+            return;
+        }
+        record(event.machineId(), event.tray().getSymbol(), event.product().getName());
+    }
+
+    /**
+     * Tworzy słuchacza zakupów aktualizującego tempo tacek automatu bezpośrednio w wątku kupującego.
+     * @param machineId identyfikator automatu
+     * @return słuchacz zakupów
+     */
+    public PurchaseListener listener(String machineId) {
+        return (tray, product) -> record(machineId, tray.getSymbol(), product.getName());
+    }
+
+    /**
+     * Zapisuje sprzedaż jednej sztuki z tacki.
+     * @param machineId identyfikator automatu
+     * @param traySymbol symbol tacki
+     * @param productName nazwa sprzedanego produktu - zapamiętywana, aby wiedzieć czym uzupełnić pustą tackę
+     */
+    public void record(String machineId, String traySymbol, String productName) {
+        ConcurrentMap<String, TrayDepletion> trays = machines.get(machineId);
+        if (trays == null) {
+            trays = machines.computeIfAbsent(machineId, id -> new ConcurrentHashMap<>());
+        }
+        TrayDepletion depletion = trays.get(traySymbol);
+        if (depletion == null) {
+            depletion = trays.computeIfAbsent(traySymbol, symbol -> new TrayDepletion());
+        }
+        depletion.purchased(clock.getAsLong(), timeConstantMillis, productName);
+    }
+
+    /**
+     * @param machineId identyfikator automatu
+     * @param traySymbol symbol tacki
+     * @return oszacowane tempo sprzedaży z tacki w sztukach na godzinę; 0, jeżeli z tacki niczego nie sprzedano
+     */
+    public double unitsPerHour(String machineId, String traySymbol) {
+        TrayDepletion depletion = depletion(machineId, traySymbol);
+        return depletion == null ? 0 : depletion.ratePerMilli(clock.getAsLong(), timeConstantMillis) * MILLIS_PER_HOUR;
+    }
+
+    /**
+     * @param machineId identyfikator automatu
+     * @param traySymbol symbol tacki
+     * @return nazwa ostatnio sprzedanego z tacki produktu lub null, jeżeli z tacki niczego nie sprzedano
+     */
+    public String lastProductName(String machineId, String traySymbol) {
+        TrayDepletion depletion = depletion(machineId, traySymbol);
+        return depletion == null ? null : depletion.lastProductName();
+    }
+
+    private TrayDepletion depletion(String machineId, String traySymbol) {
+        ConcurrentMap<String, TrayDepletion> trays = machines.get(machineId);
+        return trays == null ? null : trays.get(traySymbol);
+    }
+
+    /**
+     * Stan średniej jednej tacki: tempo (w sztukach na milisekundę) w chwili ostatniego zakupu oraz czas tego zakupu.
+     */
+    private static class TrayDepletion {
+        private double rate;
+        private long lastPurchaseTime;
+        private String lastProductName;
+
+        synchronized void purchased(long time, double timeConstantMillis, String productName) {
+            if (lastProductName != null) {
+                rate *= Math.exp(-Math.max(time - lastPurchaseTime, 0) / timeConstantMillis);
+            }
+            rate += 1 / timeConstantMillis;
+            lastPurchaseTime = Math.max(time, lastPurchaseTime);
+            lastProductName = productName;
+        }
+
+        synchronized double ratePerMilli(long time, double timeConstantMillis) {
+            return rate * Math.exp(-Math.max(time - lastPurchaseTime, 0) / timeConstantMillis);
+        }
+
+        synchronized String lastProductName() {
+            return lastProductName;
+        }
+    }
+}
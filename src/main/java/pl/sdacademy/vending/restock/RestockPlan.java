@@ -0,0 +1,167 @@
+package pl.sdacademy.vending.restock;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Plan uzupełnień utworzony przez {@link RestockPlanner}: automaty do odwiedzenia, od najpilniejszego (najwcześniej
+ * wyprzedającego się), wraz z ilością sztuk do włożenia do każdej tacki.
+ */
+public class RestockPlan {
+    private final List<MachineVisit> visits;
+    private final int scannedTrays;
+
+    RestockPlan(List<MachineVisit> visits, int scannedTrays) {
+        this.visits = Collections.unmodifiableList(visits);
+        this.scannedTrays = scannedTrays;
+    }
+
+    /**
+     * @return automaty do odwiedzenia, od najpilniejszego
+     */
+    public List<MachineVisit> visits() {
+        return visits;
+    }
+
+    /**
+     * @return ilość tacek sprawdzonych przy tworzeniu planu
+     */
+    public int scannedTrays() {
+        return scannedTrays;
+    }
+
+    /**
+     * @return łączna ilość sztuk do włożenia we wszystkich automatach
+     */
+    public long totalUnits() {
+        long totalUnits = 0;
+        for (MachineVisit visit : visits) {
+            totalUnits += visit.totalUnits();
+        }
+        return totalUnits;
+    }
+
+    @Override
+    public String toString() {
+        return visits.size() + " machines to visit, " + totalUnits() + " units, " + scannedTrays + " trays scanned";
+    }
+
+    /**
+     * Odwiedziny jednego automatu - tacki, które należy uzupełnić.
+     */
+    public static class MachineVisit {
+        private final String machineId;
+        private final List<TrayRestock> trays;
+        private final double hoursUntilFirstEmpty;
+
+        MachineVisit(String machineId, List<TrayRestock> trays) {
+            this.machineId = machineId;
+            this.trays = Collections.unmodifiableList(trays);
+            double hoursUntilFirstEmpty = Double.POSITIVE_INFINITY;
+            for (TrayRestock tray : trays) {
+                hoursUntilFirstEmpty = Math.min(hoursUntilFirstEmpty, tray.hoursUntilEmpty());
+            }
+            this.hoursUntilFirstEmpty = hoursUntilFirstEmpty;
+        }
+
+        public String machineId() {
+            return machineId;
+        }
+
+        /**
+         * @return tacki do uzupełnienia, w kolejności ich położenia w automacie
+         */
+        public List<TrayRestock> trays() {
+            return trays;
+        }
+
+        /**
+         * @return ilość godzin do wyprzedania pierwszej z tacek automatu; 0 dla automatu z pustą tacką
+         */
+        public double hoursUntilFirstEmpty() {
+            return hoursUntilFirstEmpty;
+        }
+
+        /**
+         * @return łączna ilość sztuk do włożenia do automatu
+         */
+        public long totalUnits() {
+            long totalUnits = 0;
+            for (TrayRestock tray : trays) {
+                totalUnits += tray.units();
+            }
+            return totalUnits;
+        }
+
+        @Override
+        public String toString() {
+            return machineId + " " + trays;
+        }
+    }
+
+    /**
+     * Uzupełnienie jednej tacki.
+     */
+    public static class TrayRestock {
+        private final String symbol;
+        private final String productName;
+        private final int currentUnits;
+        private final int units;
+        private final double unitsPerHour;
+
+        TrayRestock(String symbol, String productName, int currentUnits, int units, double unitsPerHour) {
+            this.symbol = symbol;
+            this.productName = productName;
+            this.currentUnits = currentUnits;
+            this.units = units;
+            this.unitsPerHour = unitsPerHour;
+        }
+
+        public String symbol() {
+            return symbol;
+        }
+
+        /**
+         * @return nazwa produktu, którym należy uzupełnić tackę
+         */
+        public String productName() {
+            return productName;
+        }
+
+        /**
+         * @return ilość sztuk na tacce w chwili tworzenia planu
+         */
+        public int currentUnits() {
+            return currentUnits;
+        }
+
+        /**
+         * @return ilość sztuk do włożenia
+         */
+        public int units() {
+            return units;
+        }
+
+        /**
+         * @return oszacowane tempo sprzedaży z tacki w sztukach na godzinę
+         */
+        public double unitsPerHour() {
+            return unitsPerHour;
+        }
+
+        /**
+         * @return oszacowana ilość godzin do wyprzedania tacki; nieskończoność, jeżeli tacka się nie sprzedaje
+         */
+        public double hoursUntilEmpty() {
+            if (currentUnits == 0) {
+                return 0;
+            }
+            return unitsPerHour > 0 ? currentUnits / unitsPerHour : Double.POSITIVE_INFINITY;
+        }
+
+        @Override
+        public String toString() {
+            return symbol + "+" + units + " " + productName;
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package pl.sdacademy.vending.restock;
+
+import pl.sdacademy.vending.fleet.Fleet;
+import pl.sdacademy.vending.model.Tray;
+import pl.sdacademy.vending.model.VendingMachine;
+import pl.sdacademy.vending.util.Configuration;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Planuje trasę kierowców uzupełniających automaty. Planista sprawdza każdą tackę każdego automatu floty i na
+ * podstawie aktualnej ilości sztuk oraz tempa sprzedaży ({@link DepletionTracker}) wybiera tacki, które wyprzedadzą
+ * się przed kolejną wizytą - czyli w zadanym horyzoncie. Wybrane tacki są uzupełniane do zadanej ilości sztuk,
+ * a automat trafia do planu, jeżeli wymaga uzupełnienia choć jednej tacki. Puste tacki są uzupełniane zawsze.
+ * <br>
+ * Automaty floty są dzielone na części sprawdzane równolegle w puli fork-join (domyślnie wspólnej puli
+ * {@link ForkJoinPool#commonPool()}). Sprawdzanie tylko czyta stan tacek, więc nie zatrzymuje trwających zakupów -
+ * plan odpowiada stanowi automatów z chwili jego tworzenia z dokładnością do zakupów trwających w tym czasie.
+ * <br>
+ * Instancja planisty jest tworzona TYLKO za pomocą Buildera.
+ */
+public class RestockPlanner {
+    private final DepletionTracker tracker;
+    private final double horizonHours;
+    private final int targetUnits;
+    private final int machinesPerTask;
+    private final ForkJoinPool pool;
+
+    private RestockPlanner(Builder builder) {
+        this.tracker = builder.tracker;
+        this.horizonHours = builder.horizon.toMillis() / 3_600_000.0;
+        this.targetUnits = builder.targetUnits;
+        this.machinesPerTask = builder.machinesPerTask;
+        this.pool = builder.pool;
+    }
+
+    public static Builder builder(DepletionTracker tracker) {
+        return new Builder(tracker);
+    }
+
+    /**
+     * Tworzy Builder wypełniony parametrami z konfiguracji: "restock.horizon.hours" (domyślnie 24) oraz
+     * "restock.tray.capacity" (domyślnie 10).
+     * @param tracker źródło tempa sprzedaży tacek
+     * @param configuration konfiguracja planisty
+     * @return Builder planisty
+     */
+    public static Builder builder(DepletionTracker tracker, Configuration configuration) {
+        return builder(tracker)
+                .horizon(Duration.ofHours(configuration.getProperty("restock.horizon.hours", 24L)))
+                .targetUnits(configuration.getProperty("restock.tray.capacity", 10L).intValue());
+    }
+
+    /**
+     * Tworzy plan uzupełnień dla wszystkich automatów floty.
+     * @param fleet flota automatów
+     * @return plan uzupełnień
+     */
+    public RestockPlan plan(Fleet fleet) {
+        List<String> machineIds = new ArrayList<>();
+        List<VendingMachine> machines = new ArrayList<>();
+        for (String machineId : fleet.machineIds()) {
+            Optional<VendingMachine> machine = fleet.machine(machineId);
+            if (machine.isPresent()) {
+                machineIds.add(machineId);
+                machines.add(machine.get());
+            }
+        }
+        return plan(machineIds, machines);
+    }
+
+    /**
+     * Tworzy plan uzupełnień dla wskazanych automatów.
+     * @param machineIds identyfikatory automatów
+     * @param machines automaty, w kolejności identyfikatorów
+     * @return plan uzupełnień
+     */
+    public RestockPlan plan(List<String> machineIds, List<VendingMachine> machines) {
+        PlanTask task = new PlanTask(machineIds.toArray(new String[0]), machines.toArray(new VendingMachine[0]),
+                0, machineIds.size());
+        PartialPlan partialPlan = pool.invoke(task);
+        List<RestockPlan.MachineVisit> visits = partialPlan.visits;
+        visits.sort(Comparator.comparingDouble(RestockPlan.MachineVisit::hoursUntilFirstEmpty)
+                .thenComparing(RestockPlan.MachineVisit::machineId));
+        return new RestockPlan(visits, partialPlan.scannedTrays);
+    }
+
+    /**
+     * Sprawdza wszystkie tacki jednego automatu.
+     * @return odwiedziny automatu lub null, jeżeli żadna tacka nie wymaga uzupełnienia
+     */
+    private RestockPlan.MachineVisit planMachine(String machineId, VendingMachine machine, int[] scannedTrays) {
+        List<RestockPlan.TrayRestock> trays = new ArrayList<>(0);
+        machine.forEachTray(tray -> {
+            scannedTrays[0]++;
+            RestockPlan.TrayRestock restock = planTray(machineId, tray);
+            if (restock != null) {
+                trays.add(restock);
+            }
+        });
+        return trays.isEmpty() ? null : new RestockPlan.MachineVisit(machineId, trays);
+    }
+
+    private RestockPlan.TrayRestock planTray(String machineId, Tray tray) {
+        int currentUnits = tray.productsCount();
+        if (currentUnits >= targetUnits) {
+            return null;
+        }
+        String symbol = tray.getSymbol();
+        double unitsPerHour = tracker.unitsPerHour(machineId, symbol);
+        if (currentUnits > 0 && currentUnits > unitsPerHour * horizonHours) {
+            // tacka nie wyprzeda się przed kolejną wizytą
+            return null;
+        }
+        String productName = tray.firstProductName().orElse(tracker.lastProductName(machineId, symbol));
+        if (productName == null) {
+            // pusta tacka, z której niczego nie sprzedano - nie wiadomo, czym ją uzupełnić
+            return null;
+        }
+        return new RestockPlan.TrayRestock(symbol, productName, currentUnits, targetUnits - currentUnits,
+                unitsPerHour);
+    }
+
+    /**
+     * Częściowy plan - odwiedziny automatów z jednej części floty i ilość sprawdzonych w niej tacek.
+     */
+    private static class PartialPlan {
+        private final List<RestockPlan.MachineVisit> visits;
+        private final int scannedTrays;
+
+        private PartialPlan(List<RestockPlan.MachineVisit> visits, int scannedTrays) {
+            this.visits = visits;
+            this.scannedTrays = scannedTrays;
+        }
+    }
+
+    /**
+     * Zadanie planujące automaty z zakresu [from, to) - zakres większy od machinesPerTask jest dzielony na pół.
+     */
+    private class PlanTask extends RecursiveTask<PartialPlan> {
+        private static final long serialVersionUID = 1L;
+
+        private final String[] machineIds;
+        private final VendingMachine[] machines;
+        private final int from;
+        private final int to;
+
+        private PlanTask(String[] machineIds, VendingMachine[] machines, int from, int to) {
+            this.machineIds = machineIds;
+            this.machines = machines;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected PartialPlan compute() {
+            if (to - from <= machinesPerTask) {
+                return computeDirectly();
+            }
+            int middle = (from + to) >>> 1;
+            PlanTask left = new PlanTask(machineIds, machines, from, middle);
+            PlanTask right = new PlanTask(machineIds, machines, middle, to);
+            left.fork();
+            PartialPlan rightPlan = right.compute();
+            PartialPlan leftPlan = left.join();
+            leftPlan.visits.addAll(rightPlan.visits);
+            return new PartialPlan(leftPlan.visits, leftPlan.scannedTrays + rightPlan.scannedTrays);
+        }
+
+        private PartialPlan computeDirectly() {
+            List<RestockPlan.MachineVisit> visits = new ArrayList<>();
+            int[] scannedTrays = new int[1];
+            for (int index = from; index < to; index++) {
+                RestockPlan.MachineVisit visit = planMachine(machineIds[index], machines[index], scannedTrays);
+                if (visit != null) {
+                    visits.add(visit);
+                }
+            }
+            return new PartialPlan(visits, scannedTrays[0]);
+        }
+    }
+
+    public static class Builder {
+        private final DepletionTracker tracker;
+        private Duration horizon = Duration.ofHours(24);
+        private int targetUnits = 10;
+        private int machinesPerTask = 16;
+        private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+        private Builder(DepletionTracker tracker) {
+            this.tracker = tracker;
+        }
+
+        /**
+         * @param horizon czas do kolejnej wizyty - uzupełniane są tacki, które wyprzedadzą się wcześniej
+         * @return ten sam Builder
+         */
+        public Builder horizon(Duration horizon) {
+            this.horizon = horizon;
+            return this;
+        }
+
+        /**
+         * @param targetUnits ilość sztuk na tacce po uzupełnieniu
+         * @return ten sam Builder
+         */
+        public Builder targetUnits(int targetUnits) {
+            this.targetUnits = targetUnits;
+            return this;
+        }
+
+        /**
+         * @param machinesPerTask ilość automatów, poniżej której część floty nie jest już dzielona
+         * @return ten sam Builder
+         */
+        public Builder machinesPerTask(int machinesPerTask) {
+            this.machinesPerTask = machinesPerTask;
+            return this;
+        }
+
+        public Builder pool(ForkJoinPool pool) {
+            this.pool = pool;
+            return this;
+        }
+
+        public RestockPlanner build() {
+            if (targetUnits < 1) {
+                throw new IllegalStateException("Restock target must be at least one unit, was " + targetUnits);
+            }
+            if (machinesPerTask < 1) {
+                throw new IllegalStateException("Each planning task needs at least one machine");
+            }
+            return new RestockPlanner(this);
+        }
+    }
+}
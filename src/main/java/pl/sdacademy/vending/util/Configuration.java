@@ -1,9 +1,16 @@
 package pl.sdacademy.vending.util;
 
+import java.time.Duration;
+
 /**
  * Interface reprezentujący konfigurację aplikacji. Do klas wymagających konfiguracji powinna zostać przekazana dowolna
  * implementacja tego interface, aby mogły one poprawnie działać. Interface oryginalnie został wprowadzony po to, aby
  * zmniejszość zleżność między klasami aplikacji z singletonem reprezentującym konfigurację zaczytaną z pliku properties.
+ * <br>
+ * Poza wartościami tekstowymi i liczbowymi interface udostępnia odczyt wartości typowanych (int, wartość logiczna, czas
+ * trwania, kwota). Domyślne implementacje parsują wartość tekstową przy każdym odczycie w formatach opisanych
+ * w {@link ConfigurationSnapshot} - implementacje przechowujące sparsowane wartości (jak {@link ConfigurationSnapshot})
+ * nadpisują je odczytem bez parsowania.
  */
 public interface Configuration {
     /**
@@ -22,4 +29,69 @@ public interface Configuration {
      * wartość zapisana w defaultValue
      */
     Long getProperty(String propertyName, Long defaultValue);
+
+    /**
+     * Metoda pozwalająca pobrać wartość typu int z konfiguracji aplikacji
+     * @param propertyName nazwa klucza, pod którym jest zapisana wartość
+     * @param defaultValue domyślna wartość do zwrócenia
+     * @return odczytana wartość lub defaultValue, jeżeli wartość nie istnieje
+     */
+    default int getInt(String propertyName, int defaultValue) {
+        Long value = ConfigurationSnapshot.parseLong(getProperty(propertyName, String.valueOf(defaultValue)).trim());
+        if (value == null || value != value.intValue()) {
+            throw new IllegalArgumentException("Property " + propertyName + " is not an int");
+        }
+        return value.intValue();
+    }
+
+    /**
+     * Metoda pozwalająca pobrać wartość logiczną z konfiguracji aplikacji ("true"/"false", "yes"/"no", "on"/"off")
+     * @param propertyName nazwa klucza, pod którym jest zapisana wartość
+     * @param defaultValue domyślna wartość do zwrócenia
+     * @return odczytana wartość lub defaultValue, jeżeli wartość nie istnieje
+     */
+    default boolean getBoolean(String propertyName, boolean defaultValue) {
+        Boolean value = ConfigurationSnapshot.parseBoolean(
+                getProperty(propertyName, String.valueOf(defaultValue)).trim());
+        if (value == null) {
+            throw new IllegalArgumentException("Property " + propertyName + " is not a boolean");
+        }
+        return value;
+    }
+
+    /**
+     * Metoda pozwalająca pobrać czas trwania z konfiguracji aplikacji (np. "15m", "500ms" lub "PT15M")
+     * @param propertyName nazwa klucza, pod którym jest zapisana wartość
+     * @param defaultValue domyślna wartość do zwrócenia
+     * @return odczytana wartość lub defaultValue, jeżeli wartość nie istnieje
+     */
+    default Duration getDuration(String propertyName, Duration defaultValue) {
+        String text = getProperty(propertyName, (String) null);
+        if (text == null) {
+            return defaultValue;
+        }
+        Duration value = ConfigurationSnapshot.parseDuration(text.trim());
+        if (value == null) {
+            throw new IllegalArgumentException("Property " + propertyName + " is not a duration: " + text);
+        }
+        return value;
+    }
+
+    /**
+     * Metoda pozwalająca pobrać kwotę z konfiguracji aplikacji (np. "2.50")
+     * @param propertyName nazwa klucza, pod którym jest zapisana wartość
+     * @param defaultValue domyślna kwota w groszach
+     * @return odczytana kwota w groszach lub defaultValue, jeżeli wartość nie istnieje
+     */
+    default long getMoney(String propertyName, long defaultValue) {
+        String text = getProperty(propertyName, (String) null);
+        if (text == null) {
+            return defaultValue;
+        }
+        Long value = ConfigurationSnapshot.parseMoney(text.trim());
+        if (value == null) {
+            throw new IllegalArgumentException("Property " + propertyName + " is not an amount of money: " + text);
+        }
+        return value;
+    }
 }
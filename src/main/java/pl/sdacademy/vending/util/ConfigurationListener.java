@@ -0,0 +1,15 @@
+package pl.sdacademy.vending.util;
+
+/**
+ * Interface obiektów, które chcą być powiadamiane o przeładowaniu konfiguracji. Słuchacze są rejestrowani za pomocą
+ * {@link ReloadableConfiguration#addListener(ConfigurationListener)} i wywoływani w wątku przeładowującym konfigurację,
+ * już po podmianie migawki - odczyty konfiguracji w trakcie wywołania zwracają nowe wartości.
+ */
+public interface ConfigurationListener {
+    /**
+     * Wywoływana po przeładowaniu konfiguracji, jeżeli zmieniła się choć jedna wartość.
+     * @param previous poprzednia konfiguracja
+     * @param current nowa konfiguracja
+     */
+    void configurationChanged(ConfigurationSnapshot previous, ConfigurationSnapshot current);
+}
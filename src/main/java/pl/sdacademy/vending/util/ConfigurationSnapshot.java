@@ -0,0 +1,249 @@
+package pl.sdacademy.vending.util;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.format.DateTimeParseException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+
+/**
+ * Niezmienna, sparsowana konfiguracja. Każda wartość jest przy tworzeniu migawki parsowana raz do wszystkich typów,
+ * do których pasuje (liczba, wartość logiczna, czas trwania, kwota), więc odczyt wartości typowanej to jedno wyszukanie
+ * w mapie - bez parsowania tekstu i bez tworzenia obiektów.
+ * <br>
+ * Rozpoznawane formaty:
+ * <ul>
+ *     <li>liczby - liczby całkowite, np. "42"</li>
+ *     <li>wartości logiczne - "true"/"false", "yes"/"no", "on"/"off" (wielkość liter nie ma znaczenia)</li>
+ *     <li>czas trwania - liczba z jednostką "ms", "s", "m", "h" lub "d" (np. "15m", "500ms") albo zapis ISO-8601
+ *     (np. "PT15M")</li>
+ *     <li>kwoty - złote z najwyżej dwoma miejscami po przecinku lub kropce, np. "2.50" lub "2,50"; kwoty są zwracane
+ *     w groszach</li>
+ * </ul>
+ * Wartość istniejąca, ale niepasująca do żądanego typu, powoduje {@link IllegalArgumentException} - tak jak
+ * nieprawidłowa liczba w {@link PropertiesFileConfiguration}.
+ */
+public class ConfigurationSnapshot implements Configuration {
+    private static final ConfigurationSnapshot EMPTY = new ConfigurationSnapshot(Collections.emptyMap(), 0);
+
+    private final Map<String, String> values;
+    private final Map<String, Long> longs = new HashMap<>();
+    private final Map<String, Integer> ints = new HashMap<>();
+    private final Map<String, Boolean> booleans = new HashMap<>();
+    private final Map<String, Duration> durations = new HashMap<>();
+    private final Map<String, Long> money = new HashMap<>();
+    private final long version;
+
+    private ConfigurationSnapshot(Map<String, String> values, long version) {
+        this.values = Collections.unmodifiableMap(new HashMap<>(values));
+        this.version = version;
+        for (Map.Entry<String, String> entry : this.values.entrySet()) {
+            parse(entry.getKey(), entry.getValue().trim());
+        }
+    }
+
+    /**
+     * @return migawka bez żadnych wartości - każdy odczyt zwraca wartość domyślną
+     */
+    public static ConfigurationSnapshot empty() {
+        return EMPTY;
+    }
+
+    /**
+     * @param properties wartości konfiguracji
+     * @return migawka w wersji 1 zawierająca podane wartości
+     */
+    public static ConfigurationSnapshot of(Properties properties) {
+        return EMPTY.withOverrides(properties);
+    }
+
+    /**
+     * Tworzy kolejną wersję migawki: wartości tej migawki nadpisane podanymi.
+     * @param overrides wartości nadpisujące
+     * @return nowa migawka z numerem wersji większym o 1
+     */
+    public ConfigurationSnapshot withOverrides(Properties overrides) {
+        return withOverrides(overrides, version + 1);
+    }
+
+    /**
+     * @param overrides wartości nadpisujące
+     * @param version numer wersji nowej migawki
+     * @return nowa migawka: wartości tej migawki nadpisane podanymi
+     */
+    ConfigurationSnapshot withOverrides(Properties overrides, long version) {
+        Map<String, String> merged = new HashMap<>(values);
+        for (String name : overrides.stringPropertyNames()) {
+            merged.put(name, overrides.getProperty(name));
+        }
+        return new ConfigurationSnapshot(merged, version);
+    }
+
+    /**
+     * @return numer wersji migawki - rośnie z każdym przeładowaniem konfiguracji
+     */
+    public long version() {
+        return version;
+    }
+
+    /**
+     * Sprawdza, czy wartość klucza różni się w obu migawkach - np. aby słuchacz przeładowania reagował tylko na zmianę
+     * interesujących go kluczy.
+     * @param other porównywana migawka
+     * @param propertyName nazwa klucza
+     * @return true, jeżeli wartość klucza (lub jej brak) różni się w obu migawkach
+     */
+    public boolean differs(ConfigurationSnapshot other, String propertyName) {
+        return !Objects.equals(values.get(propertyName), other.values.get(propertyName));
+    }
+
+    /**
+     * @param other porównywana migawka
+     * @return true, jeżeli obie migawki zawierają te same wartości (niezależnie od wersji)
+     */
+    public boolean hasSameValues(ConfigurationSnapshot other) {
+        return values.equals(other.values);
+    }
+
+    @Override
+    public String getProperty(String propertyName, String defaultValue) {
+        String value = values.get(propertyName);
+        return value == null ? defaultValue : value;
+    }
+
+    @Override
+    public Long getProperty(String propertyName, Long defaultValue) {
+        return typed(longs, propertyName, defaultValue, "a number");
+    }
+
+    @Override
+    public int getInt(String propertyName, int defaultValue) {
+        return typed(ints, propertyName, defaultValue, "an int");
+    }
+
+    @Override
+    public boolean getBoolean(String propertyName, boolean defaultValue) {
+        return typed(booleans, propertyName, defaultValue, "a boolean");
+    }
+
+    @Override
+    public Duration getDuration(String propertyName, Duration defaultValue) {
+        return typed(durations, propertyName, defaultValue, "a duration");
+    }
+
+    @Override
+    public long getMoney(String propertyName, long defaultValue) {
+        return typed(money, propertyName, defaultValue, "an amount of money");
+    }
+
+    private <T> T typed(Map<String, T> parsed, String propertyName, T defaultValue, String typeName) {
+        T value = parsed.get(propertyName);
+        if (value != null) {
+            return value;
+        }
+        String text = values.get(propertyName);
+        if (text == null) {
+            return defaultValue;
+        }
+        throw new IllegalArgumentException("Property " + propertyName + " is not " + typeName + ": " + text);
+    }
+
+    private void parse(String name, String text) {
+        Long number = parseLong(text);
+        if (number != null) {
+            longs.put(name, number);
+            if (number == number.intValue()) {
+                ints.put(name, number.intValue());
+            }
+        }
+        Boolean bool = parseBoolean(text);
+        if (bool != null) {
+            booleans.put(name, bool);
+        }
+        Duration duration = parseDuration(text);
+        if (duration != null) {
+            durations.put(name, duration);
+        }
+        Long amount = parseMoney(text);
+        if (amount != null) {
+            money.put(name, amount);
+        }
+    }
+
+    static Long parseLong(String text) {
+        try {
+            return Long.parseLong(text);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    static Boolean parseBoolean(String text) {
+        switch (text.toLowerCase(Locale.ROOT)) {
+            case "true":
+            case "yes":
+            case "on":
+                return Boolean.TRUE;
+            case "false":
+            case "no":
+            case "off":
+                return Boolean.FALSE;
+            default:
+                return null;
+        }
+    }
+
+    static Duration parseDuration(String text) {
+        if (text.startsWith("P") || text.startsWith("p")) {
+            try {
+                return Duration.parse(text);
+            } catch (DateTimeParseException e) {
+                return null;
+            }
+        }
+        int unitStart = 0;
+        while (unitStart < text.length() && Character.isDigit(text.charAt(unitStart))) {
+            unitStart++;
+        }
+        if (unitStart == 0) {
+            return null;
+        }
+        Long amount = parseLong(text.substring(0, unitStart));
+        if (amount == null) {
+            return null;
+        }
+        switch (text.substring(unitStart).trim().toLowerCase(Locale.ROOT)) {
+            case "ms":
+                return Duration.ofMillis(amount);
+            case "s":
+                return Duration.ofSeconds(amount);
+            case "m":
+                return Duration.ofMinutes(amount);
+            case "h":
+                return Duration.ofHours(amount);
+            case "d":
+                return Duration.ofDays(amount);
+            default:
+                return null;
+        }
+    }
+
+    static Long parseMoney(String text) {
+        if (text.isEmpty() || !Character.isDigit(text.charAt(text.length() - 1))) {
+            return null;
+        }
+        try {
+            BigDecimal amount = new BigDecimal(text.replace(',', '.'));
+            if (amount.scale() > 2 || amount.signum() < 0) {
+                return null;
+            }
+            return amount.movePointRight(2).longValueExact();
+        } catch (NumberFormatException | ArithmeticException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package pl.sdacademy.vending.util;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Haszowane koło czasowe - harmonogram ogromnej ilości zadań wykonywanych po upływie zadanego czasu (np. wygaśnięć
+ * rezerwacji), bez osobnego zadania w puli wątków dla każdego z nich. Czas jest dzielony na takty o stałej długości,
+ * a koło ma stałą ilość przegródek (potęgę dwójki): zadanie trafia do przegródki swojego taktu (numer taktu modulo
+ * ilość przegródek) i pamięta, ile pełnych obrotów koła musi jeszcze poczekać. Przy każdym takcie przeglądana jest
+ * tylko jedna przegródka.
+ * <br>
+ * Przegródki to listy dwukierunkowe, których węzłami są same zadania ({@link Timeout}), więc dodanie i anulowanie
+ * zadania to stała ilość operacji na wskaźnikach, bez tworzenia żadnych obiektów - niezależnie od tego, ile zadań
+ * czeka. Zadanie jest wykonywane w takcie następującym po jego terminie, czyli z opóźnieniem nie większym niż
+ * długość taktu.
+ * <br>
+ * Koło jest przesuwane przez {@link #advance()} - wywoływane co takt w tle po {@link #start()} albo bezpośrednio
+ * (np. w testach z własnym zegarem). Dodawanie, anulowanie i przesuwanie są synchronizowane jednym zamkiem koła,
+ * a zadania wykonywane są już po jego zwolnieniu.
+ * <br>
+ * Instancja koła jest tworzona TYLKO za pomocą Buildera.
+ */
+public class HashedTimingWheel implements AutoCloseable {
+    private final long tickMillis;
+    private final int mask;
+    private final Timeout[] buckets;
+    private final LongSupplier clock;
+    private final long startTime;
+    private final Object lock = new Object();
+    /**
+     * Numer kolejnego taktu do przetworzenia - liczony od utworzenia koła.
+     */
+    private long tick;
+    private long pendingCount;
+    private ScheduledExecutorService scheduler;
+
+    private HashedTimingWheel(Builder builder) {
+        this.tickMillis = builder.tick.toMillis();
+        this.buckets = new Timeout[builder.wheelSize];
+        this.mask = builder.wheelSize - 1;
+        this.clock = builder.clock;
+        this.startTime = clock.getAsLong();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Tworzy Builder koła o długości taktu z klucza "reservation.wheel.tick" (domyślnie sekunda) i ilości przegródek
+     * z klucza "reservation.wheel.size" (domyślnie 1024).
+     * @param configuration konfiguracja koła
+     * @return Builder koła
+     */
+    public static Builder builder(Configuration configuration) {
+        return builder()
+                .tick(configuration.getDuration("reservation.wheel.tick", Duration.ofSeconds(1)))
+                .wheelSize(configuration.getInt("reservation.wheel.size", 1024));
+    }
+
+    /**
+     * @return bieżący czas zegara koła w milisekundach
+     */
+    public long currentTimeMillis() {
+        return clock.getAsLong();
+    }
+
+    /**
+     * Dodaje zadanie do koła.
+     * @param timeout zadanie - nie może już czekać w żadnym kole
+     * @param delayMillis czas, po którym zadanie zostanie wykonane
+     */
+    public void schedule(Timeout timeout, long delayMillis) {
+        synchronized (lock) {
+            if (timeout.scheduled) {
+                throw new IllegalStateException("Timeout is already scheduled");
+            }
+            timeout.deadline = clock.getAsLong() + Math.max(delayMillis, 0);
+            // takt, w którym termin już minął - zaokrąglenie w górę
+            long deadlineTick = Math.max((timeout.deadline - startTime + tickMillis - 1) / tickMillis, tick);
+            timeout.remainingRounds = (deadlineTick - tick) / buckets.length;
+            int bucket = (int) (deadlineTick & mask);
+            timeout.bucket = bucket;
+            timeout.previous = null;
+            timeout.next = buckets[bucket];
+            if (timeout.next != null) {
+                timeout.next.previous = timeout;
+            }
+            buckets[bucket] = timeout;
+            timeout.scheduled = true;
+            pendingCount++;
+        }
+    }
+
+    /**
+     * Usuwa zadanie z koła przed jego terminem.
+     * @param timeout anulowane zadanie
+     * @return true, jeżeli zadanie czekało i zostało usunięte; false, jeżeli zostało już wykonane lub anulowane
+     */
+    public boolean cancel(Timeout timeout) {
+        synchronized (lock) {
+            if (!timeout.scheduled) {
+                return false;
+            }
+            unlink(timeout);
+            return true;
+        }
+    }
+
+    /**
+     * Przetwarza wszystkie takty, które upłynęły według zegara koła, i wykonuje zadania, których termin minął.
+     * @return ilość wykonanych zadań
+     */
+    public int advance() {
+        Timeout expired = null;
+        synchronized (lock) {
+            long now = clock.getAsLong();
+            while (startTime + tick * tickMillis <= now) {
+                Timeout timeout = buckets[(int) (tick & mask)];
+                while (timeout != null) {
+                    Timeout next = timeout.next;
+                    if (timeout.remainingRounds <= 0) {
+                        unlink(timeout);
+                        // wykonane zadania tworzą listę jednokierunkową, przeglądaną po zwolnieniu zamka
+                        timeout.next = expired;
+                        expired = timeout;
+                    } else {
+                        timeout.remainingRounds--;
+                    }
+                    timeout = next;
+                }
+                tick++;
+            }
+        }
+        int expiredCount = 0;
+        while (expired != null) {
+            Timeout next = expired.next;
+            expired.next = null;
+            expired.expired();
+            expired = next;
+            expiredCount++;
+        }
+        return expiredCount;
+    }
+
+    /**
+     * @return ilość zadań czekających w kole
+     */
+    public long pendingCount() {
+        synchronized (lock) {
+            return pendingCount;
+        }
+    }
+
+    /**
+     * Uruchamia przesuwanie koła w tle, co jeden takt.
+     */
+    public synchronized void start() {
+        if (scheduler != null) {
+            throw new IllegalStateException("Timing wheel is already started");
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "timing-wheel");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(this::advanceInBackground, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Zatrzymuje przesuwanie koła w tle. Czekające zadania pozostają w kole.
+     */
+    @Override
+    public void close() {
+        ScheduledExecutorService scheduler;
+        synchronized (this) {
+            scheduler = this.scheduler;
+            this.scheduler = null;
+        }
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    private void advanceInBackground() {
+        try {
+            advance();
+        } catch (RuntimeException e) {
+            // błąd jednego zadania nie może zatrzymać koła
+            System.err.println("Timeout failed: " + e);
+        }
+    }
+
+    private void unlink(Timeout timeout) {
+        if (timeout.previous != null) {
+            timeout.previous.next = timeout.next;
+        } else {
+            buckets[timeout.bucket] = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.previous = timeout.previous;
+        }
+        timeout.previous = null;
+        timeout.next = null;
+        timeout.scheduled = false;
+        pendingCount--;
+    }
+
+    /**
+     * Zadanie koła czasowego - klasy dziedziczące z niej (np. rezerwacje) są jednocześnie węzłami list przegródek,
+     * więc dodanie zadania do koła nie tworzy dodatkowych obiektów. Pola węzła są chronione zamkiem koła (poza
+     * terminem, który można odczytać w dowolnej chwili).
+     */
+    public abstract static class Timeout {
+        private Timeout previous;
+        private Timeout next;
+        private int bucket;
+        private long remainingRounds;
+        private volatile long deadline;
+        private boolean scheduled;
+
+        /**
+         * Wywoływana przez koło po upływie terminu zadania - w wątku przesuwającym koło, poza zamkiem koła.
+         */
+        protected abstract void expired();
+
+        /**
+         * @return termin zadania według zegara koła, w milisekundach
+         */
+        public long deadline() {
+            return deadline;
+        }
+    }
+
+    public static class Builder {
+        private Duration tick = Duration.ofSeconds(1);
+        private int wheelSize = 1024;
+        private LongSupplier clock = System::currentTimeMillis;
+
+        private Builder() {
+        }
+
+        /**
+         * @param tick długość taktu - dokładność, z jaką wykonywane są zadania
+         * @return ten sam Builder
+         */
+        public Builder tick(Duration tick) {
+            this.tick = tick;
+            return this;
+        }
+
+        /**
+         * @param wheelSize ilość przegródek koła - potęga dwójki; koło obraca się raz na wheelSize taktów
+         * @return ten sam Builder
+         */
+        public Builder wheelSize(int wheelSize) {
+            this.wheelSize = wheelSize;
+            return this;
+        }
+
+        /**
+         * @param clock zegar w milisekundach
+         * @return ten sam Builder
+         */
+        public Builder clock(LongSupplier clock) {
+            this.clock = clock;
+            return this;
+        }
+
+        public HashedTimingWheel build() {
+            if (tick.toMillis() < 1) {
+                throw new IllegalStateException("Timing wheel tick must be at least 1ms, was " + tick);
+            }
+            if (wheelSize < 1 || Integer.bitCount(wheelSize) != 1) {
+                throw new IllegalStateException("Timing wheel size must be a power of two, was " + wheelSize);
+            }
+            return new HashedTimingWheel(this);
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package pl.sdacademy.vending.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram czasów trwania operacji (np. zakupów) o stałej względnej dokładności. Przedziały są logarytmiczno-liniowe:
+ * wartości mniejsze niż 2^precisionBits mają własne przedziały, a każdy kolejny zakres [2^k, 2^(k+1)) jest dzielony
+ * na 2^(precisionBits - 1) równych przedziałów. Błąd odczytanej wartości nie przekracza więc 1 / 2^(precisionBits - 1)
+ * tej wartości - dla domyślnych 8 bitów jest to mniej niż 1%, niezależnie od tego, czy mierzymy nanosekundy czy sekundy.
+ * <br>
+ * Numer przedziału jest wyliczany kilkoma operacjami bitowymi, a zapis to jedno atomowe zwiększenie licznika, więc
+ * wiele wątków może zapisywać wartości jednocześnie, bez blokad i bez tworzenia obiektów. Cały histogram dla wartości
+ * typu long zajmuje kilkadziesiąt kilobajtów. Tablica przedziałów jest tworzona dopiero przy zapisie pierwszej wartości,
+ * więc histogram, do którego nic nie zapisano (np. w jednym z tysięcy automatów floty testowej), zajmuje kilkadziesiąt
+ * bajtów.
+ */
+public class LatencyHistogram {
+    private static final int DEFAULT_PRECISION_BITS = 8;
+
+    private final int precisionBits;
+    private final int halfBucketsCount;
+    private final int bucketsCount;
+    /**
+     * Liczniki przedziałów - null, dopóki nie zapisano żadnej wartości.
+     */
+    private volatile AtomicLongArray counts;
+    private final LongAdder totalCount = new LongAdder();
+    private final LongAdder totalValue = new LongAdder();
+    private final LongAccumulator maxValue = new LongAccumulator(Math::max, 0);
+
+    public LatencyHistogram() {
+        this(DEFAULT_PRECISION_BITS);
+    }
+
+    /**
+     * @param precisionBits ilość bitów dokładności - od 2 do 16
+     */
+    public LatencyHistogram(int precisionBits) {
+        if (precisionBits < 2 || precisionBits > 16) {
+            throw new IllegalArgumentException("Histogram precision must be between 2 and 16 bits, was "
+                    + precisionBits);
+        }
+        this.precisionBits = precisionBits;
+        this.halfBucketsCount = 1 << (precisionBits - 1);
+        this.bucketsCount = bucketIndex(Long.MAX_VALUE) + 1;
+    }
+
+    /**
+     * Zapisuje jedną wartość. Wartości ujemne są zapisywane jako 0.
+     * @param value zapisywana wartość, np. czas zakupu w nanosekundach
+     */
+    public void record(long value) {
+        long recordedValue = Math.max(value, 0);
+        countsForWriting().incrementAndGet(bucketIndex(recordedValue));
+        totalCount.increment();
+        totalValue.add(recordedValue);
+        maxValue.accumulate(recordedValue);
+    }
+
+    /**
+     * Dodaje do tego histogramu wszystkie wartości zapisane w innym histogramie o tej samej dokładności.
+     * @param other dodawany histogram
+     */
+    public void add(LatencyHistogram other) {
+        if (other.precisionBits != precisionBits) {
+            throw new IllegalArgumentException("Cannot add histogram with different precision");
+        }
+        AtomicLongArray otherCounts = other.counts;
+        if (otherCounts != null) {
+            AtomicLongArray counts = countsForWriting();
+            for (int bucket = 0; bucket < bucketsCount; bucket++) {
+                long bucketCount = otherCounts.get(bucket);
+                if (bucketCount > 0) {
+                    counts.addAndGet(bucket, bucketCount);
+                }
+            }
+        }
+        totalCount.add(other.count());
+        totalValue.add(other.totalValue.sum());
+        maxValue.accumulate(other.max());
+    }
+
+    /**
+     * Usuwa wszystkie zapisane wartości. Wartości zapisywane w trakcie czyszczenia mogą zostać częściowo zachowane.
+     */
+    public void reset() {
+        AtomicLongArray counts = this.counts;
+        if (counts != null) {
+            for (int bucket = 0; bucket < bucketsCount; bucket++) {
+                counts.set(bucket, 0);
+            }
+        }
+        totalCount.reset();
+        totalValue.reset();
+        maxValue.reset();
+    }
+
+    /**
+     * @return ilość zapisanych wartości
+     */
+    public long count() {
+        return totalCount.sum();
+    }
+
+    /**
+     * @return suma zapisanych wartości
+     */
+    public long sum() {
+        return totalValue.sum();
+    }
+
+    /**
+     * @return największa zapisana wartość (dokładna, a nie zaokrąglona do przedziału)
+     */
+    public long max() {
+        return maxValue.get();
+    }
+
+    /**
+     * @return średnia zapisanych wartości lub 0, jeżeli histogram jest pusty
+     */
+    public double mean() {
+        long count = count();
+        return count == 0 ? 0 : (double) totalValue.sum() / count;
+    }
+
+    /**
+     * Zwraca wartość, której nie przekroczyło wskazane procent zapisanych wartości - górną granicę przedziału,
+     * w którym leży szukana wartość, ale nie więcej niż największa zapisana wartość.
+     * @param percentile procent, np. 50, 99 lub 99.9
+     * @return wartość percentyla lub 0, jeżeli histogram jest pusty
+     */
+    public long valueAtPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 100, was " + percentile);
+        }
+        AtomicLongArray counts = this.counts;
+        if (counts == null) {
+            return 0;
+        }
+        long total = 0;
+        for (int bucket = 0; bucket < bucketsCount; bucket++) {
+            total += counts.get(bucket);
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int bucket = 0; bucket < bucketsCount; bucket++) {
+            seen += counts.get(bucket);
+            if (seen >= rank) {
+                return Math.min(highestValueInBucket(bucket), max());
+            }
+        }
+        return max();
+    }
+
+    private AtomicLongArray countsForWriting() {
+        AtomicLongArray counts = this.counts;
+        if (counts == null) {
+            synchronized (this) {
+                counts = this.counts;
+                if (counts == null) {
+                    counts = new AtomicLongArray(bucketsCount);
+                    this.counts = counts;
+                }
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Wartości poniżej 2^precisionBits mają przedziały jednoelementowe. Większa wartość jest przesuwana w prawo tak,
+     * aby zostało z niej precisionBits najstarszych bitów - ilość przesunięć wybiera zakres, a pozostałe bity przedział
+     * w zakresie.
+     */
+    private int bucketIndex(long value) {
+        int shift = Math.max(0, 64 - Long.numberOfLeadingZeros(value) - precisionBits);
+        return (shift << (precisionBits - 1)) + (int) (value >>> shift);
+    }
+
+    private long highestValueInBucket(int bucket) {
+        if (bucket < 2 * halfBucketsCount) {
+            return bucket;
+        }
+        int shift = bucket / halfBucketsCount - 1;
+        long significantBits = bucket - ((long) shift << (precisionBits - 1));
+        long highestValue = ((significantBits + 1) << shift) - 1;
+        // ostatni przedział kończy się na Long.MAX_VALUE - przesunięcie przepełniłoby wartość
+        return highestValue < 0 ? Long.MAX_VALUE : highestValue;
+    }
+}
@@ -2,13 +2,18 @@ package pl.sdacademy.vending.util;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
 import java.util.Properties;
 
 /**
- * Jedyna znana nam implementacja interface {@link Configuration}, która odczytuje konfigurację z pliku application.properties
+ * Implementacja interface {@link Configuration}, która odczytuje konfigurację z pliku application.properties
  * zapisanego w src/main/resources. Jest to singleton w wersji Static Holder, gdzie pojedyńcza jego instancja jest
  * gwarantowana przez ClassLoadera - jest zazwyczaj szybszy w działaniu od wersji Double Checker, ze względu na brak
  * modyfikatora "volatile".
+ * <br>
+ * Plik jest częścią zbudowanej paczki, więc ta konfiguracja nie zmienia się w trakcie działania aplikacji. Konfigurację
+ * z zewnętrznego pliku, przeładowywaną po każdej jego zmianie, udostępnia {@link ReloadableConfiguration}.
  */
 public class PropertiesFileConfiguration implements Configuration {
 
@@ -17,17 +22,18 @@ public class PropertiesFileConfiguration implements Configuration {
      */
     private static final String PROPERTIES_FILE_LOCATION = "application.properties";
     /**
-     * Pole, do którego będą załadowane wpisy z pliku wskazanego przez {@link #PROPERTIES_FILE_LOCATION}
+     * Wpisy z pliku wskazanego przez {@link #PROPERTIES_FILE_LOCATION}, sparsowane raz przy tworzeniu singletona
+     * - kolejne odczyty nie parsują już tekstu (patrz {@link ConfigurationSnapshot}).
      */
-    private final Properties properties;
+    private final ConfigurationSnapshot snapshot;
 
     /**
      * Konstrukt jest prywatny, aby nikt nie mógł go użyć w nieodpowiedni sposób. Jedynym miejscem w aplikacji, gdzie
      * konstruktor może zostać użyty, jest {@link InstanceHolder}, który także przechowuje instancję tego singletona.
      */
     private PropertiesFileConfiguration() {
-        // konstruktor inicjalizuje pole properties, do którego wczytamy wszystkie wpisy z pliku application.properties
-        properties = new Properties();
+        // konstruktor wczytuje wszystkie wpisy z pliku application.properties do obiektu properties
+        Properties properties = new Properties();
 
         // Ponieważ pliki znajdujące się w katalogu resources będą dołączone automatycznie do zbudowanej paczki, to używamy
         // ClassLoadera do odczytania pliku z konfiguracją. Plik konfiguracji jest odczytywany jako InputStream.
@@ -37,12 +43,17 @@ public class PropertiesFileConfiguration implements Configuration {
         // wyciekła, nie może zostać zwolniona przez aplikację, co powoduje co raz większe jej zużycie.
         try (InputStream propertiesFile = ClassLoader
                 .getSystemResourceAsStream(PROPERTIES_FILE_LOCATION)) {
-            // metoda load pozwala na wczytanie pliku z parametrami do obiektu properties. Od tego momentu parametry
-            // konfiguracyjne mogą być odczytane z obiektu properties.
-             properties.load(propertiesFile);
+            if (propertiesFile == null) {
+                throw new IllegalStateException("Configuration file " + PROPERTIES_FILE_LOCATION + " not found");
+            }
+            // metoda load pozwala na wczytanie pliku z parametrami do obiektu properties.
+            properties.load(propertiesFile);
         } catch (IOException e) {
-            e.printStackTrace();
+            // bez konfiguracji automat nie może poprawnie działać - błąd nie może zostać przemilczany
+            throw new UncheckedIOException("Cannot read configuration file " + PROPERTIES_FILE_LOCATION, e);
         }
+        // od tego momentu parametry konfiguracyjne są odczytywane z niezmiennej, sparsowanej migawki
+        snapshot = ConfigurationSnapshot.of(properties);
     }
 
     // statyczna metoda umożliwiająca pobranie instancji singletona.
@@ -51,47 +62,55 @@ public class PropertiesFileConfiguration implements Configuration {
     }
 
     /**
-     * Metoda odczytująca parametr z obiektu properties - obiektu, który przechowuje parametry odczytane z application.properties.
+     * Metoda odczytująca parametr z migawki, która przechowuje parametry odczytane z application.properties.
      * @param propertyName nazwa klucza, pod którym jest zapisana wartość
      * @param defaultValue domyślna wartość do zwrócenia
      * @return jeżeli wartość istnieje, to jest zwracana jako String, jeżeli wartość dla klucza nie istnieje, to jest
      * zwracana wartość domyślna
      */
     public String getProperty(String propertyName, String defaultValue) {
-        // w pierwszym kroku próbujemy pobrać wartość z properties dla żądanego klucza (czyli na propertyName)
-        String requestedValue = properties.getProperty(propertyName);
-        // sprawdzamy, czy udało się odczytać wartość z properties
-        if (requestedValue == null) {
-            // jeżeli nie, to zwracamy domyślną wartość zdefiniowaną przez użytkownika
-            return defaultValue;
-        } else {
-            // jeżeli udało się odczytać wartość z properties, to zwracamy ją.
-            return requestedValue;
-        }
-
-        // alternatywny, jednolinijkowy sposób implementacji tej metody
-//        return properties.getProperty(propertyName, defaultValue);
+        return snapshot.getProperty(propertyName, defaultValue);
     }
 
 
     /**
-     * Metoda odczytująca parametr z obiektu properties - obiektu, który przechowuje parametry odczytane z application.properties.
+     * Metoda odczytująca parametr z migawki, która przechowuje parametry odczytane z application.properties.
      * @param propertyName nazwa klucza, pod którym jest zapisana wartość
      * @param defaultValue domyślna wartość do zwrócenia
      * @return jeżeli wartość istnieje, to jest zwracana jako Long, jeżeli wartość dla klucza nie istnieje, to jest
      * zwracana wartość domyślna
      */
     public Long getProperty(String propertyName, Long defaultValue) {
-        // w pierwszym kroku próbujemy pobrać wartość z properties dla żądanego klucza (czyli na propertyName)
-        String requestedValue = properties.getProperty(propertyName);
-        // sprawdzamy, czy udało się odczytać wartość z properties
-        if (requestedValue == null) {
-            // jeżeli nie, to zwracamy domyślną wartość zdefiniowaną przez użytkownika
-            return defaultValue;
-        } else {
-            // jeżeli odczytaliśmy wartość z properties, to za pomocą metody parseLong z klasy Long konwertujemy teskt na liczbę
-            return Long.parseLong(requestedValue);
-        }
+        // wartość została zamieniona na liczbę raz, przy wczytaniu pliku - nie parsujemy jej przy każdym odczycie
+        return snapshot.getProperty(propertyName, defaultValue);
+    }
+
+    @Override
+    public int getInt(String propertyName, int defaultValue) {
+        return snapshot.getInt(propertyName, defaultValue);
+    }
+
+    @Override
+    public boolean getBoolean(String propertyName, boolean defaultValue) {
+        return snapshot.getBoolean(propertyName, defaultValue);
+    }
+
+    @Override
+    public Duration getDuration(String propertyName, Duration defaultValue) {
+        return snapshot.getDuration(propertyName, defaultValue);
+    }
+
+    @Override
+    public long getMoney(String propertyName, long defaultValue) {
+        return snapshot.getMoney(propertyName, defaultValue);
+    }
+
+    /**
+     * @return sparsowana konfiguracja z pliku application.properties - np. jako wartości domyślne dla
+     * {@link ReloadableConfiguration}
+     */
+    public ConfigurationSnapshot snapshot() {
+        return snapshot;
     }
 
     /**
@@ -0,0 +1,223 @@
+package pl.sdacademy.vending.util;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Duration;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Konfiguracja odczytywana z zewnętrznego pliku properties i przeładowywana po każdej jego zmianie - bez restartu
+ * aplikacji. Wartości z pliku nadpisują wartości domyślne (zwykle konfigurację z application.properties).
+ * <br>
+ * Bieżąca konfiguracja to niezmienna migawka ({@link ConfigurationSnapshot}) trzymana w {@link AtomicReference}.
+ * Przeładowanie tworzy i parsuje nową migawkę, a następnie atomowo podmienia referencję - odczyty nigdy nie czekają na
+ * zamek, a każdy odczyt widzi w całości albo starą, albo nową konfigurację. Kod, który odczytuje kilka powiązanych
+ * wartości, powinien pobrać jedną migawkę ({@link #snapshot()}) i czytać z niej.
+ * <br>
+ * Zmiany pliku są wykrywane przez {@link WatchService} w osobnym wątku. Jeżeli pliku nie da się odczytać (np. został
+ * chwilowo usunięty), to poprzednia konfiguracja pozostaje w użyciu. Po podmianie migawki powiadamiani są słuchacze
+ * ({@link ConfigurationListener}) - np. aby zmienić wielkość automatu.
+ */
+public class ReloadableConfiguration implements Configuration, AutoCloseable {
+    /**
+     * Czas, przez jaki po zmianie pliku czekamy na kolejne zmiany - edytory często zapisują plik w kilku krokach,
+     * a konfigurację przeładowujemy raz, po ostatnim z nich.
+     */
+    private static final long SETTLE_MILLIS = 50;
+
+    private final Path file;
+    private final ConfigurationSnapshot defaults;
+    private final AtomicReference<ConfigurationSnapshot> current;
+    private final List<ConfigurationListener> listeners = new CopyOnWriteArrayList<>();
+    private WatchService watchService;
+    private Thread watcher;
+
+    private ReloadableConfiguration(Path file, ConfigurationSnapshot defaults) throws IOException {
+        this.file = file.toAbsolutePath();
+        this.defaults = defaults;
+        this.current = new AtomicReference<>(defaults.withOverrides(readFile(), defaults.version() + 1));
+    }
+
+    /**
+     * Wczytuje konfigurację z pliku, bez obserwowania jego zmian - przeładowanie następuje tylko po wywołaniu
+     * {@link #reload()}.
+     * @param file plik properties
+     * @param defaults wartości domyślne, nadpisywane wartościami z pliku
+     * @return konfiguracja
+     * @throws IOException jeżeli pliku nie udało się odczytać
+     */
+    public static ReloadableConfiguration load(Path file, ConfigurationSnapshot defaults) throws IOException {
+        return new ReloadableConfiguration(file, defaults);
+    }
+
+    /**
+     * Wczytuje konfigurację z pliku i uruchamia wątek przeładowujący ją po każdej zmianie pliku.
+     * @param file plik properties
+     * @param defaults wartości domyślne, nadpisywane wartościami z pliku
+     * @return konfiguracja - należy ją zamknąć, aby zatrzymać obserwowanie pliku
+     * @throws IOException jeżeli pliku nie udało się odczytać lub obserwować
+     */
+    public static ReloadableConfiguration watch(Path file, ConfigurationSnapshot defaults) throws IOException {
+        ReloadableConfiguration configuration = new ReloadableConfiguration(file, defaults);
+        configuration.startWatching();
+        return configuration;
+    }
+
+    /**
+     * @return bieżąca migawka konfiguracji
+     */
+    public ConfigurationSnapshot snapshot() {
+        return current.get();
+    }
+
+    /**
+     * Rejestruje słuchacza powiadamianego o każdym przeładowaniu, które zmieniło konfigurację.
+     * @param listener rejestrowany słuchacz
+     */
+    public void addListener(ConfigurationListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(ConfigurationListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Ponownie wczytuje plik konfiguracji. Jeżeli wartości się zmieniły, to podmienia migawkę i powiadamia słuchaczy.
+     * Przeładowania są wykonywane po kolei, więc słuchacze otrzymują zmiany w kolejności wersji.
+     * @return true, jeżeli plik został wczytany (nawet jeżeli nic się nie zmieniło); false, jeżeli odczyt się nie
+     * powiódł i pozostała poprzednia konfiguracja
+     */
+    public synchronized boolean reload() {
+        Properties properties;
+        try {
+            properties = readFile();
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Cannot reload configuration from " + file + ", keeping version "
+                    + current.get().version() + ": " + e);
+            return false;
+        }
+        ConfigurationSnapshot previous = current.get();
+        ConfigurationSnapshot next = defaults.withOverrides(properties, previous.version() + 1);
+        if (next.hasSameValues(previous)) {
+            return true;
+        }
+        current.set(next);
+        for (ConfigurationListener listener : listeners) {
+            try {
+                listener.configurationChanged(previous, next);
+            } catch (RuntimeException e) {
+                // błąd jednego słuchacza nie może zatrzymać powiadamiania pozostałych
+                System.err.println("Configuration listener failed: " + e);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String getProperty(String propertyName, String defaultValue) {
+        return current.get().getProperty(propertyName, defaultValue);
+    }
+
+    @Override
+    public Long getProperty(String propertyName, Long defaultValue) {
+        return current.get().getProperty(propertyName, defaultValue);
+    }
+
+    @Override
+    public int getInt(String propertyName, int defaultValue) {
+        return current.get().getInt(propertyName, defaultValue);
+    }
+
+    @Override
+    public boolean getBoolean(String propertyName, boolean defaultValue) {
+        return current.get().getBoolean(propertyName, defaultValue);
+    }
+
+    @Override
+    public Duration getDuration(String propertyName, Duration defaultValue) {
+        return current.get().getDuration(propertyName, defaultValue);
+    }
+
+    @Override
+    public long getMoney(String propertyName, long defaultValue) {
+        return current.get().getMoney(propertyName, defaultValue);
+    }
+
+    /**
+     * Zatrzymuje obserwowanie pliku. Ostatnio wczytana konfiguracja pozostaje dostępna.
+     */
+    @Override
+    public void close() throws IOException {
+        if (watchService != null) {
+            watchService.close();
+            try {
+                watcher.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private Properties readFile() throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        return properties;
+    }
+
+    private void startWatching() throws IOException {
+        watchService = file.getFileSystem().newWatchService();
+        // obserwować można tylko katalogi - zdarzenia dotyczące innych plików katalogu są pomijane
+        file.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+        watcher = new Thread(this::watchFile, "configuration-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    private void watchFile() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean changed = false;
+                while (key != null) {
+                    changed |= concernsFile(key);
+                    key.reset();
+                    key = watchService.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS);
+                }
+                if (changed) {
+                    reload();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // konfiguracja została zamknięta
+        }
+    }
+
+    private boolean concernsFile(WatchKey key) {
+        boolean concernsFile = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            // przy przepełnieniu kolejki zdarzeń nie wiadomo, co się zmieniło - przeładowujemy na wszelki wypadek
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW || file.getFileName().equals(event.context())) {
+                concernsFile = true;
+            }
+        }
+        return concernsFile;
+    }
+}
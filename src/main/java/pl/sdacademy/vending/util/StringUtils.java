@@ -1,9 +1,48 @@
 package pl.sdacademy.vending.util;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
 /**
  * Klasa przechowuje statyczne metody pomocnicze, używane podczas formatowania tekstu.
+ * <br>
+ * Każda metoda formatująca posiada dwie dodatkowe wersje: zapisującą wynik do tablicy znaków oraz dopisującą wynik do
+ * dowolnego {@link Appendable} (np. {@link StringBuilder}). Wersje te nie tworzą żadnych obiektów, więc mogą być
+ * wywoływane przy każdym wyświetleniu automatu bez obciążania odśmiecacza pamięci. Metody zwracające String są
+ * jedynie cienkimi nakładkami na wersje zapisujące do tablicy znaków.
  */
 public class StringUtils {
+    /**
+     * Maksymalna długość kwoty sformatowanej przez {@link #formatMoney(long, char[], int)} - tyle znaków zajmuje
+     * {@link Long#MIN_VALUE}: znak minus, 17 cyfr złotówek, 5 spacji rozdzielających, przecinek i 2 cyfry groszy.
+     */
+    public static final int MAX_MONEY_LENGTH = 26;
+
+    /**
+     * Tablica spacji używana do wyrównywania tekstu - zamiast dopisywać spacje pojedynczo, kopiujemy je z tej tablicy.
+     */
+    private static final String PADDING = "                                                                ";
+    /**
+     * Tablica wszystkich liczb dwucyfrowych ("00", "01", ..., "99") - cyfry liczby o wartości n znajdują się pod
+     * indeksami 2 * n oraz 2 * n + 1. Pozwala zapisać grosze bez dzielenia ich na cyfry.
+     */
+    private static final char[] TWO_DIGITS = new char[200];
+    private static final char THOUSANDS_SEPARATOR = ' ';
+    private static final char DECIMAL_SEPARATOR = ',';
+
+    static {
+        for (int number = 0; number < 100; number++) {
+            TWO_DIGITS[2 * number] = (char) ('0' + number / 10);
+            TWO_DIGITS[2 * number + 1] = (char) ('0' + number % 10);
+        }
+    }
+
+    /**
+     * Bufor używany przez wersje dopisujące do {@link Appendable} - kwota jest najpierw formatowana do tablicy znaków,
+     * a następnie dopisywana. Każdy wątek posiada własny bufor.
+     */
+    private static final ThreadLocal<char[]> MONEY_BUFFER = ThreadLocal.withInitial(() -> new char[MAX_MONEY_LENGTH]);
+
     /**
      * Metoda dopasowuje wskazany tekst do oczekiwanej długości. Jeżeli tekst jest za długi, to ucinane są nadmiarowe znaki.
      * Jeżeli tekst był za krótki, to jest on centrowany za pomocą spacji - spacje są doklejane przed i po przekazanym tekście.
@@ -12,83 +51,203 @@ public class StringUtils {
      * @return
      */
     public static String adjustText(String textToMatch, Integer expectedTextLength) {
-        if (textToMatch.length() < expectedTextLength) {
-            // jeżeli tekst jest za krótki, to doklejamy spacje. Wyliczamy potrzebną ilość spacji.
-            int requiredSpaces = expectedTextLength - textToMatch.length();
-            // korzystamy z zaokrąglania liczb całkowitych. Części dziesiętne z dzielenia są ucinane. np.:
-            // * jeżeli required spaces jest = 4, to po dodaniu 1 otrzymujemy 5. 5 podzielone przez 2, po rzutowaniu na inta
-            // daje wartość 2 - czyli nie ma to wpływu na ilość spacji.
-            // * jeżeli required spaces jest = 5, to po dodaniu 1 otrzymujemy 6. 6 podzielone przez 2, po rzutowaniu na inta
-            // daje wartość 3 - czyli dodatkowa spacje (bo 5 nie można równo podzielić) znajdzie się przed tekstem do wycentrowania
-            int spacesOnLeft = (requiredSpaces + 1) / 2;
-            int spacesOnRight = requiredSpaces / 2;
-            return multiplyText(" ", spacesOnLeft)
-                    + textToMatch
-                    + multiplyText(" ", spacesOnRight);
+        char[] adjustedText = new char[expectedTextLength];
+        adjustText(textToMatch, expectedTextLength, adjustedText, 0);
+        return new String(adjustedText);
+    }
+
+    /**
+     * Wersja {@link #adjustText(String, Integer)} zapisująca wynik do tablicy znaków. Zapisuje zawsze dokładnie
+     * expectedTextLength znaków.
+     * @param textToMatch dopasowywany tekst
+     * @param expectedTextLength oczekiwana długość tekstu
+     * @param target tablica, do której zostanie zapisany wynik
+     * @param offset indeks w tablicy, od którego zostanie zapisany wynik
+     * @return indeks w tablicy tuż za zapisanym tekstem
+     */
+    public static int adjustText(CharSequence textToMatch, int expectedTextLength, char[] target, int offset) {
+        int textLength = Math.min(textToMatch.length(), expectedTextLength);
+        // jeżeli tekst jest za krótki, to doklejamy spacje. Wyliczamy potrzebną ilość spacji.
+        int requiredSpaces = expectedTextLength - textLength;
+        // korzystamy z zaokrąglania liczb całkowitych. Części dziesiętne z dzielenia są ucinane. np.:
+        // * jeżeli required spaces jest = 4, to po dodaniu 1 otrzymujemy 5. 5 podzielone przez 2, po rzutowaniu na inta
+        // daje wartość 2 - czyli nie ma to wpływu na ilość spacji.
+        // * jeżeli required spaces jest = 5, to po dodaniu 1 otrzymujemy 6. 6 podzielone przez 2, po rzutowaniu na inta
+        // daje wartość 3 - czyli dodatkowa spacje (bo 5 nie można równo podzielić) znajdzie się przed tekstem do wycentrowania
+        int spacesOnLeft = (requiredSpaces + 1) / 2;
+        int spacesOnRight = requiredSpaces / 2;
+        int position = pad(spacesOnLeft, target, offset);
+        if (textToMatch instanceof String) {
+            ((String) textToMatch).getChars(0, textLength, target, position);
+            position += textLength;
         } else {
-            return textToMatch.substring(0, expectedTextLength);
+            for (int charIndex = 0; charIndex < textLength; charIndex++) {
+                target[position++] = textToMatch.charAt(charIndex);
+            }
         }
+        return pad(spacesOnRight, target, position);
     }
 
     /**
-     * Pomocnicza metoda zwielokroniająca tekst za pomocą pętli.
+     * Wersja {@link #adjustText(String, Integer)} dopisująca wynik do wskazanego obiektu.
+     * @param textToMatch dopasowywany tekst
+     * @param expectedTextLength oczekiwana długość tekstu
+     * @param target obiekt, do którego zostanie dopisany wynik
+     */
+    public static void adjustText(CharSequence textToMatch, int expectedTextLength, Appendable target) {
+        int textLength = Math.min(textToMatch.length(), expectedTextLength);
+        int requiredSpaces = expectedTextLength - textLength;
+        try {
+            pad((requiredSpaces + 1) / 2, target);
+            target.append(textToMatch, 0, textLength);
+            pad(requiredSpaces / 2, target);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Pomocnicza metoda zwielokroniająca tekst.
      * @param textToMultiply
      * @param times
      * @return
      */
     public static String multiplyText(String textToMultiply, Integer times) {
-        StringBuilder stringBuilder = new StringBuilder();
-        for (Integer count = 0; count < times; count++) {
-            stringBuilder = stringBuilder.append(textToMultiply);
+        char[] multipliedText = new char[textToMultiply.length() * Math.max(times, 0)];
+        multiplyText(textToMultiply, times, multipliedText, 0);
+        return new String(multipliedText);
+    }
+
+    /**
+     * Wersja {@link #multiplyText(String, Integer)} zapisująca wynik do tablicy znaków.
+     * @param textToMultiply zwielokrotniany tekst
+     * @param times ilość powtórzeń tekstu
+     * @param target tablica, do której zostanie zapisany wynik
+     * @param offset indeks w tablicy, od którego zostanie zapisany wynik
+     * @return indeks w tablicy tuż za zapisanym tekstem
+     */
+    public static int multiplyText(String textToMultiply, int times, char[] target, int offset) {
+        int textLength = textToMultiply.length();
+        for (int count = 0; count < times; count++) {
+            textToMultiply.getChars(0, textLength, target, offset);
+            offset += textLength;
         }
-        return stringBuilder.toString();
+        return offset;
     }
 
     /**
-     * Metoda formatująca liczbę jako pieniądze. Rozbija złożony problem na dwa mniejsze:
-     * - formatowanie całych złotówek
-     * - formatowanie groszy
+     * Wersja {@link #multiplyText(String, Integer)} dopisująca wynik do wskazanego obiektu.
+     * @param textToMultiply zwielokrotniany tekst
+     * @param times ilość powtórzeń tekstu
+     * @param target obiekt, do którego zostanie dopisany wynik
+     */
+    public static void multiplyText(CharSequence textToMultiply, int times, Appendable target) {
+        try {
+            for (int count = 0; count < times; count++) {
+                target.append(textToMultiply);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Metoda formatująca liczbę jako pieniądze - złotówki są rozdzielane spacją co trzy cyfry, a po przecinku zawsze
+     * wyświetlane są dwie cyfry groszy, np. 123456 groszy to "1 234,56".
      * @param money
      * @return
      */
     public static String formatMoney(Long money) {
-        return formatMoneyIntegrals(money) + "," + formatMoneyDecimals(money);
+        char[] formattedMoney = new char[MAX_MONEY_LENGTH];
+        int length = formatMoney(money, formattedMoney, 0);
+        return new String(formattedMoney, 0, length);
     }
 
     /**
-     * Metoda formatująca ilość złotówek. Na początku ucinamy grosze z kwoty za pomocą dzielenia przez 100 oraz rzutowania
-     * na longa - ucina to część dziesiętną i otrzymujemy tylko całości (a więc złotówki).
-     * Następnie stosujemy odwrotną pętlę, aby przejść po otrzymanej liczbie od końca i co trzy znaki wstawić spację.
-     * @param money
-     * @return
+     * Wersja {@link #formatMoney(Long)} zapisująca wynik do tablicy znaków. W tablicy musi być miejsce na co najmniej
+     * {@link #MAX_MONEY_LENGTH} znaków.
+     * <br>
+     * Najpierw wyliczana jest długość wyniku, a następnie kwota jest zapisywana od końca: grosze pobierane z tablicy
+     * {@link #TWO_DIGITS}, przecinek i kolejne cyfry złotówek, ze spacją wstawianą co trzy cyfry. Dzięki temu wyniku
+     * nie trzeba odwracać ani przycinać.
+     * @param money kwota w groszach
+     * @param target tablica, do której zostanie zapisany wynik
+     * @param offset indeks w tablicy, od którego zostanie zapisany wynik
+     * @return indeks w tablicy tuż za zapisaną kwotą
      */
-    private static String formatMoneyIntegrals(Long money) {
-        String integrals = Long.toString(money / 100);
-        StringBuilder formattedIntegralsBuilder = new StringBuilder();
-        int spaceCounter = 0;
-        for (int charIndex = integrals.length() - 1; charIndex >= 0; charIndex--) {
-            formattedIntegralsBuilder = formattedIntegralsBuilder.append(integrals.charAt(charIndex));
-            spaceCounter++;
-            if (spaceCounter >= 3) {
-                formattedIntegralsBuilder = formattedIntegralsBuilder.append(" ");
-                spaceCounter = 0;
+    public static int formatMoney(long money, char[] target, int offset) {
+        // kwoty ujemne formatujemy na liczbach ujemnych, bo wartości bezwzględnej Long.MIN_VALUE nie da się zapisać
+        boolean negative = money < 0;
+        long integrals = negative ? money / 100 : -(money / 100);
+        int cents = (int) Math.abs(money % 100);
+        int digits = digitsCount(integrals);
+        int end = offset + (negative ? 1 : 0) + digits + (digits - 1) / 3 + 3;
+
+        int position = end;
+        target[--position] = TWO_DIGITS[2 * cents + 1];
+        target[--position] = TWO_DIGITS[2 * cents];
+        target[--position] = DECIMAL_SEPARATOR;
+        int writtenDigits = 0;
+        do {
+            int digit = (int) -(integrals % 10);
+            integrals /= 10;
+            if (writtenDigits > 0 && writtenDigits % 3 == 0) {
+                target[--position] = THOUSANDS_SEPARATOR;
             }
+            target[--position] = (char) ('0' + digit);
+            writtenDigits++;
+        } while (integrals != 0);
+        if (negative) {
+            target[--position] = '-';
         }
-        return formattedIntegralsBuilder.reverse().toString().trim();
+        return end;
     }
 
     /**
-     * Proste ucięcie wszystkich złotówek za pomocą operacji modulo.
-     * Jeżeli ilość otrzymanych groszy jest mniejsza niż 10, to trzeba jeszcze dokleić zero, aby otrzymać 2 cyfry, np:
-     * 1205 groszy (modulo) 100 = 5; do 5 doklejamy 0 i otrzymujemy 05, czyli poprawnie sformatowaną część groszy
-     * @param money
-     * @return
+     * Wersja {@link #formatMoney(Long)} dopisująca wynik do wskazanego obiektu.
+     * @param money kwota w groszach
+     * @param target obiekt, do którego zostanie dopisany wynik
+     */
+    public static void formatMoney(long money, Appendable target) {
+        char[] buffer = MONEY_BUFFER.get();
+        int length = formatMoney(money, buffer, 0);
+        try {
+            for (int charIndex = 0; charIndex < length; charIndex++) {
+                target.append(buffer[charIndex]);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Zlicza cyfry liczby przekazanej jako wartość ujemna (lub zero).
      */
-    private static String formatMoneyDecimals(Long money) {
-        String cents = Long.toString(money % 100);
-        if (cents.length() == 1) {
-            return "0" + cents;
+    private static int digitsCount(long negativeNumber) {
+        int digits = 1;
+        long limit = -10;
+        while (digits < 19 && negativeNumber <= limit) {
+            digits++;
+            limit *= 10;
+        }
+        return digits;
+    }
+
+    private static int pad(int spaces, char[] target, int offset) {
+        while (spaces > 0) {
+            int chunk = Math.min(spaces, PADDING.length());
+            PADDING.getChars(0, chunk, target, offset);
+            offset += chunk;
+            spaces -= chunk;
+        }
+        return offset;
+    }
+
+    private static void pad(int spaces, Appendable target) throws IOException {
+        while (spaces > 0) {
+            int chunk = Math.min(spaces, PADDING.length());
+            target.append(PADDING, 0, chunk);
+            spaces -= chunk;
         }
-        return cents;
     }
 }
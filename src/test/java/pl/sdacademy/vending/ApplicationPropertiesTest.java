@@ -0,0 +1,41 @@
+package pl.sdacademy.vending;
+
+import org.junit.Test;
+import pl.sdacademy.vending.cash.CashRegister;
+import pl.sdacademy.vending.model.RandomTrayFactory;
+import pl.sdacademy.vending.model.VendingMachine;
+import pl.sdacademy.vending.util.ConfigurationSnapshot;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Properties;
+
+import static org.junit.Assert.*;
+
+/**
+ * W testach ClassLoader odczytuje application.properties z src/test/resources, dlatego plik dołączany do aplikacji
+ * jest tu odczytywany wprost z src/main/resources.
+ */
+public class ApplicationPropertiesTest {
+
+    @Test
+    public void shouldCreateMachineFromShippedConfiguration() throws IOException {
+        // given
+        Properties properties = new Properties();
+        try (InputStream propertiesFile = Files.newInputStream(Paths.get("src/main/resources/application.properties"))) {
+            properties.load(propertiesFile);
+        }
+        ConfigurationSnapshot configuration = ConfigurationSnapshot.of(properties);
+
+        // when
+        VendingMachine machine = new VendingMachine(configuration, RandomTrayFactory.fromConfiguration(configuration));
+        CashRegister cashRegister = CashRegister.fromConfiguration(machine, configuration);
+
+        // then
+        assertEquals((Long) 6L, machine.rowsSize());
+        assertEquals((Long) 4L, machine.colsSize());
+        assertEquals(10, cashRegister.inventory().count(200));
+    }
+}
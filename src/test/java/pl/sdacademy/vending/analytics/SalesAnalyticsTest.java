@@ -0,0 +1,110 @@
+package pl.sdacademy.vending.analytics;
+
+import org.junit.Test;
+import pl.sdacademy.vending.events.PurchaseEventBus;
+import pl.sdacademy.vending.model.Product;
+import pl.sdacademy.vending.model.Tray;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class SalesAnalyticsTest {
+    private final AtomicLong currentTime = new AtomicLong(1_000_000);
+
+    @Test
+    public void shouldRankBestSellersPerMachineAndFleet() {
+        // given
+        SalesAnalytics analytics = analytics();
+
+        // when
+        sell(analytics, "machine-1", "A1", "Cola", 5);
+        sell(analytics, "machine-1", "A2", "Water", 3);
+        sell(analytics, "machine-1", "B1", "Chips", 1);
+        sell(analytics, "machine-2", "A1", "Water", 6);
+        sell(analytics, "machine-2", "C3", "Cola", 2);
+
+        // then
+        assertEquals("[Cola=5, Water=3]", analytics.topProducts("machine-1", 2).toString());
+        assertEquals("[A1=5, A2=3, B1=1]", analytics.topTrays("machine-1", 10).toString());
+        assertEquals("[Water=9, Cola=7, Chips=1]", analytics.fleetTopProducts(3).toString());
+        assertEquals(6, analytics.traySales("machine-2", "A1"));
+        assertEquals(9, analytics.fleetProductSales("Water"));
+        assertTrue(analytics.topProducts("machine-3", 3).isEmpty());
+    }
+
+    @Test
+    public void shouldForgetSalesOlderThanWindow() {
+        // given
+        SalesAnalytics analytics = analytics();
+        sell(analytics, "machine-1", "A1", "Cola", 30);
+
+        // when
+        currentTime.addAndGet(Duration.ofMinutes(10).toMillis());
+        sell(analytics, "machine-1", "A2", "Water", 15);
+        long colaAfterTenMinutes = analytics.productSales("machine-1", "Cola");
+        currentTime.addAndGet(Duration.ofMinutes(6).toMillis());
+
+        // then
+        assertEquals(30, colaAfterTenMinutes);
+        assertEquals(0, analytics.productSales("machine-1", "Cola"));
+        assertEquals("[Water=15]", analytics.topProducts("machine-1", 3).toString());
+        assertEquals(1.0, analytics.trayRatePerMinute("machine-1", "A2"), 0.0001);
+    }
+
+    @Test
+    public void shouldFindBestSellerAmongManyRareProducts() {
+        // given
+        SalesAnalytics analytics = analytics();
+
+        // when
+        for (int product = 0; product < 5_000; product++) {
+            sell(analytics, "machine-1", "A1", "Product " + product, 1);
+            if (product % 10 == 0) {
+                sell(analytics, "machine-1", "B1", "Cola", 1);
+            }
+        }
+        List<SalesCount> top = analytics.topProducts("machine-1", 1);
+
+        // then
+        assertEquals("Cola", top.get(0).key());
+        // szkic może tylko zawyżać ilości
+        assertTrue(top.get(0).count() >= 500);
+        assertTrue(analytics.productSales("machine-1", "Product 7") >= 1);
+    }
+
+    @Test
+    public void shouldCountPurchasesPublishedOnEventBus() {
+        // given
+        SalesAnalytics analytics = analytics();
+        PurchaseEventBus bus = PurchaseEventBus.builder().handler("analytics", analytics).build();
+        Tray tray = Tray.builder("A1").build();
+
+        // when
+        for (int purchase = 0; purchase < 100; purchase++) {
+            bus.publish("machine-1", tray, new Product("Cola"));
+        }
+        bus.close();
+
+        // then
+        assertEquals(100, analytics.traySales("machine-1", "A1"));
+        assertEquals("[Cola=100]", analytics.fleetTopProducts(5).toString());
+    }
+
+    private SalesAnalytics analytics() {
+        return SalesAnalytics.builder()
+                .window(Duration.ofMinutes(15))
+                .buckets(15)
+                .clock(currentTime::get)
+                .build();
+    }
+
+    private static void sell(SalesAnalytics analytics, String machineId, String traySymbol, String productName,
+                             int units) {
+        for (int unit = 0; unit < units; unit++) {
+            analytics.record(machineId, traySymbol, productName);
+        }
+    }
+}
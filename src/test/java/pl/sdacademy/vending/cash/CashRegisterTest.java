@@ -0,0 +1,290 @@
+package pl.sdacademy.vending.cash;
+
+import org.junit.Test;
+import pl.sdacademy.vending.model.Product;
+import pl.sdacademy.vending.model.PurchaseListener;
+import pl.sdacademy.vending.model.Tray;
+import pl.sdacademy.vending.model.VendingMachine;
+import pl.sdacademy.vending.util.Configuration;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class CashRegisterTest {
+    private static final int[] DENOMINATIONS = {10, 20, 50, 100, 200, 500};
+
+    @Test
+    public void shouldGiveChangeWhenGreedyChoiceFails() {
+        // given
+        CoinInventory inventory = new CoinInventory(DENOMINATIONS, 0);
+        inventory.deposit(inventory.coins().coin(50).coin(20, 3).build());
+        ChangeMaker changeMaker = new ChangeMaker(inventory, 5000, 100);
+
+        // when
+        Coins change = changeMaker.reserveChange(60);
+
+        // then
+        assertEquals("3x20", change.toString());
+        assertEquals(0, inventory.count(20));
+        assertEquals(1, inventory.count(50));
+        assertNull(changeMaker.reserveChange(60));
+    }
+
+    @Test
+    public void shouldFindFewestAvailableCoins() {
+        // given
+        SplittableRandom random = new SplittableRandom(7);
+        int[] denominations = {1, 3, 4, 7};
+        for (int round = 0; round < 500; round++) {
+            int[] available = new int[denominations.length];
+            for (int index = 0; index < available.length; index++) {
+                available[index] = random.nextInt(4);
+            }
+            int amount = 1 + random.nextInt(30);
+
+            // when
+            int[] change = ChangeMaker.solve(amount, denominations, available);
+
+            // then
+            int expected = fewestCoins(amount, denominations, available, 0);
+            if (expected == Integer.MAX_VALUE) {
+                assertNull(change);
+            } else {
+                int value = 0;
+                int coins = 0;
+                for (int index = 0; index < change.length; index++) {
+                    assertTrue(change[index] <= available[index]);
+                    value += change[index] * denominations[index];
+                    coins += change[index];
+                }
+                assertEquals(amount, value);
+                assertEquals(expected, coins);
+            }
+        }
+    }
+
+    @Test
+    public void shouldReuseRememberedChangeForCommonAmounts() {
+        // given
+        CoinInventory inventory = new CoinInventory(DENOMINATIONS, 100);
+        ChangeMaker changeMaker = new ChangeMaker(inventory, 5000, 1000);
+
+        // when
+        Coins first = changeMaker.reserveChange(380);
+        Coins second = changeMaker.reserveChange(380);
+        changeMaker.reserveChange(4380);
+        changeMaker.reserveChange(4380);
+
+        // then
+        assertEquals("1x200 1x100 1x50 1x20 1x10", first.toString());
+        assertEquals(first, second);
+        // 380 jest pamiętana, a 4380 przekracza limit pamiętanych kwot
+        assertEquals(3, changeMaker.computations());
+        assertNull(changeMaker.reserveChange(5010));
+    }
+
+    @Test
+    public void shouldDispenseOnlyWhenPaidAndChangeAvailable() {
+        // given
+        VendingMachine machine = machine(2);
+        CoinInventory inventory = new CoinInventory(DENOMINATIONS, 0);
+        CashRegister register = new CashRegister(machine, inventory, new ChangeMaker(inventory, 5000, 100));
+        Coins twoZloty = inventory.coins().coin(200).build();
+
+        // when
+        Sale tooLittle = register.buy("A1", inventory.coins().coin(100).build());
+        Sale noChange = register.buy("A1", twoZloty);
+        inventory.deposit(inventory.coins().coin(50).build());
+        Sale sold = register.buy("A1", twoZloty);
+        Sale invalid = register.buy("Z9", twoZloty);
+
+        // then
+        assertEquals(Sale.Status.INSUFFICIENT_FUNDS, tooLittle.status());
+        assertEquals(Sale.Status.NO_CHANGE, noChange.status());
+        assertEquals(twoZloty, noChange.returnedCoins());
+        assertEquals(Sale.Status.SOLD, sold.status());
+        assertEquals("Cola", sold.product().get().getName());
+        assertEquals(150L, sold.price());
+        assertEquals("1x50", sold.returnedCoins().toString());
+        assertEquals(Sale.Status.INVALID_SYMBOL, invalid.status());
+        // wydano tylko jeden produkt, a w kasie została zapłata za niego
+        assertEquals(1, machine.productsCount());
+        assertEquals("1x200", inventory.snapshot().toString());
+    }
+
+    @Test
+    public void shouldReturnReservedChangeWhenTrayIsSoldOut() {
+        // given
+        VendingMachine machine = machine(0);
+        CoinInventory inventory = new CoinInventory(DENOMINATIONS, 1);
+        CashRegister register = new CashRegister(machine, inventory, new ChangeMaker(inventory, 5000, 100));
+
+        // when
+        Sale sale = register.buy("A1", inventory.coins().coin(200).build());
+
+        // then
+        assertEquals(Sale.Status.SOLD_OUT, sale.status());
+        assertEquals(inventory.coins().coin(10).coin(20).coin(50).coin(100).coin(200).coin(500).build(),
+                inventory.snapshot());
+    }
+
+    @Test
+    public void shouldRejectForeignCoinsBeforeDispensing() {
+        // given
+        VendingMachine machine = machine(1);
+        CoinInventory inventory = new CoinInventory(DENOMINATIONS, 1);
+        CashRegister register = new CashRegister(machine, inventory, new ChangeMaker(inventory, 5000, 100));
+        Coins inventoryBefore = inventory.snapshot();
+
+        // when
+        try {
+            register.buy("A1", Coins.builder(1, 2, 5, 200).coin(200).build());
+            fail("Foreign coins should be rejected");
+        } catch (IllegalArgumentException e) {
+            // then
+            assertEquals(1, machine.productsCount());
+            assertEquals(inventoryBefore, inventory.snapshot());
+        }
+    }
+
+    @Test
+    public void shouldReturnReservedChangeWhenPurchaseFails() {
+        // given
+        VendingMachine machine = machine(1);
+        machine.addPurchaseListener((tray, product) -> {
+            throw new IllegalStateException("listener failure");
+        });
+        CoinInventory inventory = new CoinInventory(DENOMINATIONS, 1);
+        CashRegister register = new CashRegister(machine, inventory, new ChangeMaker(inventory, 5000, 100));
+        Coins inventoryBefore = inventory.snapshot();
+
+        // when
+        try {
+            register.buy("A1", inventory.coins().coin(200).build());
+            fail("Listener failure should be propagated");
+        } catch (IllegalStateException e) {
+            // then
+            assertEquals(inventoryBefore, inventory.snapshot());
+        }
+    }
+
+    @Test
+    public void shouldChargePriceReportedToListenersWhenPricesChangeDuringPurchase() {
+        // given
+        VendingMachine machine = machine(1);
+        List<Long> reportedPrices = new ArrayList<>();
+        machine.addPurchaseListener(new PurchaseListener() {
+            @Override
+            public void productPurchased(Tray tray, Product product) {
+            }
+
+            @Override
+            public void productPurchased(Tray tray, Product product, long price) {
+                reportedPrices.add(price);
+            }
+        });
+        CoinInventory inventory = new CoinInventory(DENOMINATIONS, 1);
+        // nowe ceny są publikowane w trakcie zakupu - po odczytaniu ceny, a przed wydaniem produktu
+        ChangeMaker changeMaker = new ChangeMaker(inventory, 5000, 100) {
+            @Override
+            public Coins reserveChange(long amount) {
+                machine.reprice((tray, currentPrice) -> 190L);
+                return super.reserveChange(amount);
+            }
+        };
+        CashRegister register = new CashRegister(machine, inventory, changeMaker);
+
+        // when
+        Sale sale = register.buy("A1", inventory.coins().coin(200).build());
+
+        // then
+        assertEquals(Sale.Status.SOLD, sale.status());
+        assertEquals(150L, sale.price());
+        assertEquals(Collections.singletonList(150L), reportedPrices);
+        assertEquals(190L, machine.priceOf("A1"));
+    }
+
+    @Test
+    public void shouldNeverPromiseSameCoinsToConcurrentBuyers() throws InterruptedException {
+        // given
+        int buyers = 8;
+        int purchasesPerBuyer = 500;
+        VendingMachine machine = machine(buyers * purchasesPerBuyer);
+        CoinInventory inventory = new CoinInventory(DENOMINATIONS, 0);
+        // reszta z 2 zł to 50 gr - w kasie jest tylko 300 pięćdziesięciogroszówek
+        inventory.deposit(inventory.coins().coin(50, 300).build());
+        CashRegister register = new CashRegister(machine, inventory, new ChangeMaker(inventory, 5000, 100));
+        Coins twoZloty = inventory.coins().coin(200).build();
+        AtomicInteger sold = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int buyer = 0; buyer < buyers; buyer++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int purchase = 0; purchase < purchasesPerBuyer; purchase++) {
+                    if (register.buy("A1", twoZloty).isSold()) {
+                        sold.incrementAndGet();
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+
+        // when
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // then
+        assertEquals(300, sold.get());
+        assertEquals(0, inventory.count(50));
+        assertEquals(300, inventory.count(200));
+        assertEquals(buyers * purchasesPerBuyer - 300, machine.productsCount());
+    }
+
+    private VendingMachine machine(int products) {
+        Configuration configuration = mock(Configuration.class);
+        when(configuration.getProperty(eq("machine.size.rows"), anyLong())).thenReturn(1L);
+        when(configuration.getProperty(eq("machine.size.cols"), anyLong())).thenReturn(1L);
+        return new VendingMachine(configuration, (row, col) -> Tray.builder("A1")
+                .price(150L)
+                .products(new Product("Cola"), products)
+                .build());
+    }
+
+    /**
+     * Najmniejsza ilość monet wyznaczana przeglądem wszystkich możliwości - wzorzec dla programowania dynamicznego.
+     */
+    private int fewestCoins(int amount, int[] denominations, int[] available, int index) {
+        if (amount == 0) {
+            return 0;
+        }
+        if (index == denominations.length) {
+            return Integer.MAX_VALUE;
+        }
+        int fewest = Integer.MAX_VALUE;
+        for (int count = 0; count <= available[index] && count * denominations[index] <= amount; count++) {
+            int rest = fewestCoins(amount - count * denominations[index], denominations, available, index + 1);
+            if (rest != Integer.MAX_VALUE) {
+                fewest = Math.min(fewest, rest + count);
+            }
+        }
+        return fewest;
+    }
+}
@@ -0,0 +1,100 @@
+package pl.sdacademy.vending.controller;
+
+import org.junit.Test;
+import pl.sdacademy.vending.model.Order;
+import pl.sdacademy.vending.model.Product;
+import pl.sdacademy.vending.model.Tray;
+import pl.sdacademy.vending.model.TrayFactory;
+import pl.sdacademy.vending.model.VendingMachine;
+import pl.sdacademy.vending.util.Configuration;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class AsyncCustomerOperationControllerTest {
+
+    @Test
+    public void shouldBuyProductsAsynchronously() throws Exception {
+        // given
+        VendingMachine machine = new VendingMachine(configuration("virtual", 1L, 1L), colaTrays(3));
+
+        // when
+        try (AsyncCustomerOperationController controller =
+                     new AsyncCustomerOperationController(machine, configuration("virtual", 1L, 1L))) {
+            Optional<Product> product = controller.buyProduct("A1").get();
+            Optional<List<Product>> products = controller.buyProducts(Order.parse("2x B2")).get();
+            Optional<Product> missing = controller.buyProduct("Z9").get();
+
+            // then
+            assertEquals("Cola", product.get().getName());
+            assertEquals(2, products.get().size());
+            assertFalse(missing.isPresent());
+        }
+    }
+
+    @Test
+    public void shouldRejectPurchasesWhenBoundedQueueIsFull() throws Exception {
+        // given
+        // pula z jednym wątkiem i kolejką na jeden zakup. Pierwszy zakup blokuje wątek w słuchaczu, drugi czeka
+        // w kolejce, a trzeci nie ma już miejsca.
+        VendingMachine machine = new VendingMachine(configuration("bounded", 1L, 1L), colaTrays(3));
+        CountDownLatch purchaseStarted = new CountDownLatch(1);
+        CountDownLatch releasePurchase = new CountDownLatch(1);
+        machine.addPurchaseListener((tray, product) -> {
+            purchaseStarted.countDown();
+            try {
+                releasePurchase.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        try (AsyncCustomerOperationController controller =
+                     new AsyncCustomerOperationController(machine, configuration("bounded", 1L, 1L))) {
+            // when
+            CompletableFuture<Optional<Product>> first = controller.buyProduct("A1");
+            purchaseStarted.await();
+            CompletableFuture<Optional<Product>> queued = controller.buyProduct("A1");
+            CompletableFuture<Optional<Product>> rejected = controller.buyProduct("A1");
+            releasePurchase.countDown();
+
+            // then
+            assertTrue(first.get().isPresent());
+            assertTrue(queued.get().isPresent());
+            try {
+                rejected.get();
+                fail("Purchase should be rejected");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof RejectedExecutionException);
+            }
+        }
+    }
+
+    private static Configuration configuration(String executor, Long threads, Long queueSize) {
+        Configuration configuration = mock(Configuration.class);
+        when(configuration.getProperty(anyString(), anyLong())).thenAnswer(invocation -> invocation.getArguments()[1]);
+        when(configuration.getProperty(eq("machine.size.rows"), anyLong())).thenReturn(2L);
+        when(configuration.getProperty(eq("machine.size.cols"), anyLong())).thenReturn(2L);
+        when(configuration.getProperty(eq("controller.async.executor"), anyString())).thenReturn(executor);
+        when(configuration.getProperty(eq("controller.async.threads"), anyLong())).thenReturn(threads);
+        when(configuration.getProperty(eq("controller.async.queue.size"), anyLong())).thenReturn(queueSize);
+        return configuration;
+    }
+
+    private static TrayFactory colaTrays(int productsPerTray) {
+        return (row, col) -> Tray.builder("" + (char) ('A' + row) + (col + 1))
+                .products(new Product("Cola"), productsPerTray)
+                .build();
+    }
+}
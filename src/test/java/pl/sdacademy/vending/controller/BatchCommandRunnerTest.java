@@ -0,0 +1,118 @@
+package pl.sdacademy.vending.controller;
+
+import org.junit.Test;
+import pl.sdacademy.vending.cash.CashRegister;
+import pl.sdacademy.vending.cash.ChangeMaker;
+import pl.sdacademy.vending.cash.CoinInventory;
+import pl.sdacademy.vending.model.Product;
+import pl.sdacademy.vending.model.TestMachines;
+import pl.sdacademy.vending.model.Tray;
+import pl.sdacademy.vending.model.VendingMachine;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import static org.junit.Assert.*;
+
+public class BatchCommandRunnerTest {
+
+    @Test
+    public void shouldWriteOneResultLinePerCommandAndSkipComments() throws IOException {
+        // given
+        BatchCommandRunner runner = new BatchCommandRunner(new CommandProcessor(
+                new CustomerOperationController(machine(2))));
+        String commands = "# sesja klienta\n"
+                + "BUY A1\n"
+                + "\n"
+                + "   \n"
+                + "ORDER 2x A1\n"
+                + "  # kolejny komentarz\n"
+                + "BUY A1\n"
+                + "STATUS";
+        StringWriter results = new StringWriter();
+
+        // when
+        long executedCommands = runner.run(new BufferedReader(new StringReader(commands)), results);
+
+        // then
+        assertEquals(4, executedCommands);
+        assertEquals("OK Cola\n"
+                + "REJECTED 2x A1\n"
+                + "OK Cola\n"
+                + "OK rows=1 cols=1 products=0 emptyTrays=1\n", results.toString());
+    }
+
+    @Test
+    public void shouldWriteResponsesLongerThanInitialBuffer() throws IOException {
+        // given
+        String longName = "Product with a very long name ";
+        for (int repeat = 0; repeat < 4; repeat++) {
+            longName += longName;
+        }
+        String productName = longName;
+        VendingMachine machine = new VendingMachine(TestMachines.configuration(1, 1), (row, col) -> Tray.builder("A1")
+                .products(new Product(productName), 1)
+                .build());
+        BatchCommandRunner runner = new BatchCommandRunner(new CommandProcessor(
+                new CustomerOperationController(machine)));
+        StringWriter results = new StringWriter();
+
+        // when
+        runner.run(new BufferedReader(new StringReader("BUY A1\nBUY A1\n")), results);
+
+        // then
+        assertEquals("OK " + productName + "\nSOLD_OUT A1\n", results.toString());
+    }
+
+    @Test
+    public void shouldSellForCoinsThroughPayCommand() throws IOException {
+        // given
+        VendingMachine machine = new VendingMachine(TestMachines.configuration(1, 1), (row, col) -> Tray.builder("A1")
+                .price(150L)
+                .products(new Product("Cola"), 1)
+                .build());
+        CoinInventory inventory = new CoinInventory(new int[]{10, 20, 50, 100, 200}, 0);
+        CashRegister cashRegister = new CashRegister(machine, inventory, new ChangeMaker(inventory, 5000, 100));
+        BatchCommandRunner runner = new BatchCommandRunner(new CommandProcessor(
+                new CustomerOperationController(machine, cashRegister)));
+        String commands = "PAY A1 100\n"
+                + "PAY A1 200\n"
+                + "PAY A1 100,50\n"
+                + "PAY A1 100,50\n"
+                + "PAY A1 5\n"
+                + "PAY A1";
+        StringWriter results = new StringWriter();
+
+        // when
+        runner.run(new BufferedReader(new StringReader(commands)), results);
+
+        // then
+        assertEquals("INSUFFICIENT_FUNDS A1 100\n"
+                + "NO_CHANGE A1 200\n"
+                + "OK 0 Cola\n"
+                + "SOLD_OUT A1 150\n"
+                + "ERR Unknown coin 5\n"
+                + "ERR missing symbol or coins\n", results.toString());
+        assertEquals("1x100 1x50", inventory.snapshot().toString());
+    }
+
+    @Test
+    public void shouldRejectPayCommandWithoutCashRegister() throws IOException {
+        // given
+        BatchCommandRunner runner = new BatchCommandRunner(new CommandProcessor(
+                new CustomerOperationController(machine(1))));
+        StringWriter results = new StringWriter();
+
+        // when
+        runner.run(new BufferedReader(new StringReader("PAY A1 200\n")), results);
+
+        // then
+        assertEquals("ERR cash payments are not supported\n", results.toString());
+    }
+
+    private static VendingMachine machine(int productsPerTray) {
+        return TestMachines.machine(1, 1, productsPerTray);
+    }
+}
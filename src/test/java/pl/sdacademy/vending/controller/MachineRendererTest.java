@@ -0,0 +1,142 @@
+package pl.sdacademy.vending.controller;
+
+import org.junit.Test;
+import pl.sdacademy.vending.model.Product;
+import pl.sdacademy.vending.model.Tray;
+import pl.sdacademy.vending.model.VendingMachine;
+import pl.sdacademy.vending.util.Configuration;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class MachineRendererTest {
+
+    @Test
+    public void shouldRenderWholeMachine() {
+        // given
+        // automat z jednym wierszem: tacka A1 z dwoma produktami oraz brak tacki na drugiej pozycji
+        VendingMachine machine = new VendingMachine(configuration(1L, 2L), (row, col) -> col == 0
+                ? Tray.builder("A1").price(320L).products(new Product("Cola"), 2).build()
+                : null);
+        MachineRenderer renderer = new MachineRenderer(machine);
+        String newLine = System.lineSeparator();
+
+        // when
+        String frame = renderer.render();
+
+        // then
+        assertEquals(
+                "+------------++------------+" + newLine
+                        + "|     A1     ||     --     |" + newLine
+                        + "|    Cola    ||     --     |" + newLine
+                        + "|    3,20    ||    0,00    |" + newLine
+                        + "+------------++------------+" + newLine,
+                frame);
+    }
+
+    @Test
+    public void shouldRenderAgainOnlyChangedCells() {
+        // given
+        VendingMachine machine = new VendingMachine(configuration(2L, 2L), (row, col) -> Tray
+                .builder("" + (char) ('A' + row) + (col + 1))
+                .product(new Product("Cola"))
+                .product(new Product("Water"))
+                .build());
+        MachineRenderer renderer = new MachineRenderer(machine);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(output);
+
+        // when
+        int firstFrameCells = renderer.printTo(out);
+        int unchangedFrameCells = renderer.printTo(out);
+        machine.buyProductWithSymbol("B2");
+        int changedFrameCells = renderer.printTo(out);
+
+        // then
+        assertEquals(4, firstFrameCells);
+        assertEquals(0, unchangedFrameCells);
+        assertEquals(1, changedFrameCells);
+        String frame = renderer.render();
+        assertTrue(frame.contains("|    Cola    ||    Water   |"));
+        // każde wyświetlenie wypisuje cały obraz automatu
+        assertEquals(3 * frame.length(), output.toString().length());
+    }
+
+    @Test
+    public void shouldRenderAgainCellsWithChangedPrice() {
+        // given
+        VendingMachine machine = new VendingMachine(configuration(1L, 2L), (row, col) -> Tray
+                .builder("A" + (col + 1))
+                .price(200L)
+                .product(new Product("Cola"))
+                .build());
+        MachineRenderer renderer = new MachineRenderer(machine);
+        renderer.render();
+
+        // when
+        machine.reprice((tray, currentPrice) -> tray.getSymbol().equals("A2") ? 250L : currentPrice);
+        int changedFrameCells = renderer.printTo(new PrintStream(new ByteArrayOutputStream()));
+
+        // then
+        assertEquals(1, changedFrameCells);
+        assertTrue(renderer.render().contains("|    2,00    ||    2,50    |"));
+    }
+
+    @Test
+    public void shouldRenderOnlyRowsAndColumnsWithTraysOfSparseMachine() {
+        // given
+        // 10 milionów miejsc i tylko trzy tacki
+        Configuration configuration = configuration(5000L, 2000L);
+        when(configuration.getProperty(eq("machine.grid"), anyString())).thenReturn("SPARSE");
+        VendingMachine machine = new VendingMachine(configuration, (row, col) -> (row == 7 && (col == 3 || col == 1999))
+                || (row == 4999 && col == 3)
+                ? Tray.builder("" + row + col).price(100L).product(new Product("Cola")).build()
+                : null);
+        MachineRenderer renderer = new MachineRenderer(machine);
+
+        // when
+        String frame = renderer.render();
+
+        // then
+        // dwa wiersze i dwie kolumny z tackami - komórka wiersza 4999 w kolumnie 1999 nie ma tacki
+        String newLine = System.lineSeparator();
+        assertEquals(2 * 5 * (2 * 14 + newLine.length()), frame.length());
+        String[] lines = frame.split(newLine);
+        assertTrue(lines[1].contains("73") && lines[1].contains("71999"));
+        assertTrue(lines[6].contains("49993") && lines[6].endsWith("|     --     |"));
+    }
+
+    @Test
+    public void shouldReportTraysOutsideVisibleWindow() {
+        // given
+        Configuration configuration = configuration(100L, 100L);
+        when(configuration.getProperty(eq("machine.grid"), anyString())).thenReturn("SPARSE");
+        VendingMachine machine = new VendingMachine(configuration, (row, col) -> row == col
+                ? Tray.builder("" + row + col).product(new Product("Cola")).build()
+                : null);
+        MachineRenderer renderer = new MachineRenderer(machine);
+
+        // when
+        String frame = renderer.render();
+
+        // then
+        // przekątna: obraz ma 50 wierszy, ale tylko 10 kolumn, więc widać tacki z 10 pierwszych wierszy
+        assertTrue(frame.endsWith("... and 90 more trays" + System.lineSeparator()));
+        assertTrue(frame.contains("|     99     |"));
+        assertFalse(frame.contains("1010"));
+    }
+
+    private Configuration configuration(Long rows, Long cols) {
+        Configuration configuration = mock(Configuration.class);
+        when(configuration.getProperty(eq("machine.size.rows"), anyLong())).thenReturn(rows);
+        when(configuration.getProperty(eq("machine.size.cols"), anyLong())).thenReturn(cols);
+        return configuration;
+    }
+}
@@ -0,0 +1,189 @@
+package pl.sdacademy.vending.events;
+
+import org.junit.Test;
+import pl.sdacademy.vending.model.Product;
+import pl.sdacademy.vending.model.Tray;
+import pl.sdacademy.vending.model.VendingMachine;
+import pl.sdacademy.vending.util.Configuration;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class PurchaseEventBusTest {
+    private static final Tray TRAY = Tray.builder("A1").build();
+    private static final Product PRODUCT = new Product("Cola");
+
+    @Test
+    public void shouldDeliverEveryEventInOrderToEachConsumer() throws Exception {
+        // given
+        int publishersCount = 4;
+        int eventsPerPublisher = 20_000;
+        List<Long> fastSequences = Collections.synchronizedList(new ArrayList<>());
+        List<Long> slowSequences = Collections.synchronizedList(new ArrayList<>());
+        PurchaseEventBus bus = PurchaseEventBus.builder()
+                .capacity(256)
+                .overflowPolicy(OverflowPolicy.BLOCK)
+                .waitStrategy(WaitStrategy.BLOCKING)
+                .handler("fast", (event, endOfBatch) -> fastSequences.add(event.sequence()))
+                .handler("slow", (event, endOfBatch) -> {
+                    if (event.sequence() % 1000 == 0) {
+                        sleep(1);
+                    }
+                    slowSequences.add(event.sequence());
+                })
+                .build();
+
+        // when
+        publishConcurrently(bus, publishersCount, eventsPerPublisher);
+        bus.close();
+
+        // then
+        int expected = publishersCount * eventsPerPublisher;
+        assertEquals(expected, bus.publishedCount());
+        assertEquals(0, bus.droppedCount());
+        assertConsecutive(fastSequences, expected);
+        assertConsecutive(slowSequences, expected);
+    }
+
+    @Test
+    public void shouldDropEventsWithoutBlockingBuyersWhenConsumerIsTooSlow() {
+        // given
+        CountDownLatch consumerReleased = new CountDownLatch(1);
+        AtomicLong received = new AtomicLong();
+        PurchaseEventBus bus = PurchaseEventBus.builder()
+                .capacity(16)
+                .overflowPolicy(OverflowPolicy.DROP)
+                .handler("stuck", (event, endOfBatch) -> {
+                    await(consumerReleased);
+                    received.incrementAndGet();
+                })
+                .build();
+
+        // when
+        int accepted = 0;
+        for (int event = 0; event < 1000; event++) {
+            if (bus.publish("machine-0", TRAY, PRODUCT)) {
+                accepted++;
+            }
+        }
+        consumerReleased.countDown();
+        bus.close();
+
+        // then
+        // odbiorca utknął na pierwszym zdarzeniu, więc zmieściło się tylko tyle zdarzeń, ile ma bufor
+        assertEquals(16, accepted);
+        assertEquals(1000 - 16, bus.droppedCount());
+        assertEquals(16, received.get());
+    }
+
+    @Test
+    public void shouldPublishOnlySampleOfEventsWhenBufferIsAlmostFull() {
+        // given
+        CountDownLatch consumerReleased = new CountDownLatch(1);
+        PurchaseEventBus bus = PurchaseEventBus.builder()
+                .capacity(64)
+                .overflowPolicy(OverflowPolicy.SAMPLE)
+                .samplingInterval(4)
+                .handler("stuck", (event, endOfBatch) -> await(consumerReleased))
+                .build();
+
+        // when
+        int accepted = 0;
+        int attempts = 0;
+        while (accepted < 64 && attempts < 100_000) {
+            attempts++;
+            if (bus.publish("machine-0", TRAY, PRODUCT)) {
+                accepted++;
+            }
+        }
+        consumerReleased.countDown();
+        bus.close();
+
+        // then
+        // pierwsze 48 zdarzeń (3/4 bufora) przechodzi zawsze, z pozostałych tylko co czwarte
+        assertEquals(64, accepted);
+        assertTrue("attempts: " + attempts, attempts > 64);
+        assertEquals(attempts - 64, bus.droppedCount());
+    }
+
+    @Test
+    public void shouldReceivePurchasesFromMachineThroughListener() throws Exception {
+        // given
+        Configuration configuration = mock(Configuration.class);
+        when(configuration.getProperty(eq("machine.size.rows"), anyLong())).thenReturn(1L);
+        when(configuration.getProperty(eq("machine.size.cols"), anyLong())).thenReturn(1L);
+        VendingMachine machine = new VendingMachine(configuration,
+                (row, col) -> Tray.builder("A1").products(PRODUCT, 2).build());
+        List<String> purchases = Collections.synchronizedList(new ArrayList<>());
+        PurchaseEventBus bus = PurchaseEventBus.builder()
+                .listener("journal", (tray, product) -> purchases.add(tray.getSymbol() + ":" + product.getName()))
+                .handler("machines", (event, endOfBatch) -> purchases.add(event.machineId()))
+                .build();
+        machine.addPurchaseListener(bus.listener("machine-7"));
+
+        // when
+        machine.buyProductWithSymbol("A1");
+        machine.buyProductWithSymbol("A1");
+        machine.buyProductWithSymbol("A1");
+        bus.close();
+
+        // then
+        assertEquals(2, bus.publishedCount());
+        assertEquals(2, Collections.frequency(purchases, "A1:Cola"));
+        assertEquals(2, Collections.frequency(purchases, "machine-7"));
+    }
+
+    private static void publishConcurrently(PurchaseEventBus bus, int publishersCount, int eventsPerPublisher)
+            throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(publishersCount);
+        List<Future<?>> publishers = new ArrayList<>();
+        for (int publisher = 0; publisher < publishersCount; publisher++) {
+            String machineId = "machine-" + publisher;
+            publishers.add(executor.submit(() -> {
+                for (int event = 0; event < eventsPerPublisher; event++) {
+                    assertTrue(bus.publish(machineId, TRAY, PRODUCT));
+                }
+            }));
+        }
+        for (Future<?> publisher : publishers) {
+            publisher.get();
+        }
+        executor.shutdown();
+    }
+
+    private static void assertConsecutive(List<Long> sequences, int expectedCount) {
+        assertEquals(expectedCount, sequences.size());
+        for (int index = 0; index < expectedCount; index++) {
+            assertEquals(index, sequences.get(index).longValue());
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package pl.sdacademy.vending.fleet;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import pl.sdacademy.vending.model.Product;
+import pl.sdacademy.vending.model.Tray;
+import pl.sdacademy.vending.model.VendingMachine;
+import pl.sdacademy.vending.util.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class FleetTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void shouldCreateMachinesFromConfiguration() {
+        // given
+        Configuration mockedConfig = fleetConfiguration(50L, 4L);
+
+        // when
+        try (Fleet fleet = Fleet.fromConfiguration(mockedConfig)) {
+
+            // then
+            assertEquals(50, fleet.machinesCount());
+            assertTrue(fleet.machine("machine-0").isPresent());
+            assertTrue(fleet.machine("machine-49").isPresent());
+            assertFalse(fleet.machine("machine-50").isPresent());
+        }
+    }
+
+    @Test
+    public void shouldCreateSameFleetFromSameSeed() {
+        // given
+        Configuration mockedConfig = fleetConfiguration(40L, 2L);
+        when(mockedConfig.getProperty(eq("machine.seed"), anyLong())).thenReturn(2024L);
+        when(mockedConfig.getProperty(eq("machine.construction"), anyString())).thenReturn("lazy");
+
+        // when
+        try (Fleet fleet = Fleet.fromConfiguration(mockedConfig);
+             Fleet sameFleet = Fleet.fromConfiguration(mockedConfig)) {
+
+            // then
+            for (String machineId : fleet.machineIds()) {
+                assertEquals(layout(fleet.machine(machineId).get()), layout(sameFleet.machine(machineId).get()));
+            }
+            assertNotEquals(layout(fleet.machine("machine-0").get()), layout(fleet.machine("machine-1").get()));
+            assertEquals(fleet.totalProductsCount(), sameFleet.totalProductsCount());
+        }
+    }
+
+    @Test
+    public void shouldRouteBuyToRequestedMachine() {
+        // given
+        try (Fleet fleet = Fleet.fromConfiguration(fleetConfiguration(20L, 3L))) {
+            VendingMachine machine = fleet.machine("machine-7").get();
+            String symbol = findSymbolWithProduct(machine);
+            long machineStockBefore = machine.productsCount();
+            long fleetStockBefore = fleet.totalProductsCount();
+
+            // when
+            Optional<Product> boughtProduct = fleet.buyProductWithSymbol("machine-7", symbol);
+
+            // then
+            assertTrue(boughtProduct.isPresent());
+            assertEquals(machineStockBefore - 1, machine.productsCount());
+            assertEquals(fleetStockBefore - 1, fleet.totalProductsCount());
+        }
+    }
+
+    @Test
+    public void shouldReturnEmptyWhenMachineDoesNotExist() {
+        // given
+        try (Fleet fleet = new Fleet(2)) {
+
+            // when
+            Optional<Product> boughtProduct = fleet.buyProductWithSymbol("unknown", "A1");
+
+            // then
+            assertFalse(boughtProduct.isPresent());
+        }
+    }
+
+    @Test
+    public void shouldSumEmptyTraysOfAllMachines() {
+        // given
+        try (Fleet fleet = Fleet.fromConfiguration(fleetConfiguration(30L, 4L))) {
+            long expectedEmptyTrays = 0;
+            for (int machineNumber = 0; machineNumber < 30; machineNumber++) {
+                expectedEmptyTrays += fleet.machine("machine-" + machineNumber).get().emptyTraysCount();
+            }
+
+            // when
+            long emptyTrays = fleet.emptyTraysCount();
+
+            // then
+            assertEquals(expectedEmptyTrays, emptyTrays);
+        }
+    }
+
+    @Test
+    public void shouldRestoreFleetFromSnapshots() throws IOException {
+        // given
+        Path directory = temporaryFolder.getRoot().toPath();
+        Configuration configuration = fleetConfiguration(25L, 4L);
+        long stockAfterPurchase;
+        try (Fleet fleet = Fleet.fromConfiguration(configuration)) {
+            fleet.saveSnapshots(directory);
+            VendingMachine machine = fleet.machine("machine-3").get();
+            fleet.buyProductWithSymbol("machine-3", findSymbolWithProduct(machine));
+            stockAfterPurchase = fleet.totalProductsCount();
+            // druga migawka jest przyrostowa - zawiera tylko jedną zmienioną tackę
+            assertEquals(1, fleet.saveSnapshots(directory));
+        }
+
+        // when
+        try (Fleet restoredFleet = Fleet.fromSnapshots(directory, configuration)) {
+
+            // then
+            assertEquals(25, restoredFleet.machinesCount());
+            assertEquals(stockAfterPurchase, restoredFleet.totalProductsCount());
+            assertEquals(0, restoredFleet.saveSnapshots(directory));
+        }
+    }
+
+    private Configuration fleetConfiguration(Long machinesCount, Long shardsCount) {
+        Configuration mockedConfig = mock(Configuration.class);
+        when(mockedConfig.getProperty(eq("machine.size.rows"), anyLong())).thenReturn(6L);
+        when(mockedConfig.getProperty(eq("machine.size.cols"), anyLong())).thenReturn(4L);
+        when(mockedConfig.getProperty(eq("fleet.machines.count"), anyLong())).thenReturn(machinesCount);
+        when(mockedConfig.getProperty(eq("fleet.shards.count"), anyLong())).thenReturn(shardsCount);
+        return mockedConfig;
+    }
+
+    private String layout(VendingMachine machine) {
+        StringBuilder layout = new StringBuilder();
+        for (int row = 0; row < machine.rowsSize(); row++) {
+            for (int col = 0; col < machine.colsSize(); col++) {
+                Optional<Tray> tray = machine.trayDetailsAtPosition(row, col);
+                layout.append(tray.isPresent() ? tray.get().getPrice() + ":" + tray.get().productsCount() : "-")
+                        .append(' ');
+            }
+        }
+        return layout.toString();
+    }
+
+    private String findSymbolWithProduct(VendingMachine machine) {
+        // automat jest wypełniany losowo, więc szukamy pierwszej tacki, na której leży jakiś produkt
+        for (int row = 0; row < machine.rowsSize(); row++) {
+            for (int col = 0; col < machine.colsSize(); col++) {
+                Optional<Tray> tray = machine.trayDetailsAtPosition(row, col);
+                if (tray.isPresent() && tray.get().productsCount() > 0) {
+                    return tray.get().getSymbol();
+                }
+            }
+        }
+        throw new IllegalStateException("Machine has no products");
+    }
+}
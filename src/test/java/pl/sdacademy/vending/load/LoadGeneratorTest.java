@@ -0,0 +1,92 @@
+package pl.sdacademy.vending.load;
+
+import org.junit.Test;
+import pl.sdacademy.vending.fleet.Fleet;
+import pl.sdacademy.vending.model.TestMachines;
+import pl.sdacademy.vending.model.VendingMachine;
+
+import java.time.Duration;
+import java.util.SplittableRandom;
+
+import static org.junit.Assert.*;
+
+public class LoadGeneratorTest {
+
+    @Test
+    public void shouldSampleTraysAccordingToZipfPopularity() {
+        // given
+        ZipfDistribution popularity = new ZipfDistribution(10, 1.0, 7);
+        SplittableRandom random = new SplittableRandom(1);
+        int samplesCount = 200_000;
+        int[] samples = new int[10];
+
+        // when
+        for (int sample = 0; sample < samplesCount; sample++) {
+            samples[popularity.sample(random)]++;
+        }
+
+        // then
+        // najpopularniejsza tacka (ranga 1) ma prawdopodobieństwo 1 / H(10), czyli około 0.34
+        int mostPopular = 0;
+        for (int element = 0; element < samples.length; element++) {
+            assertEquals(popularity.probability(element), (double) samples[element] / samplesCount, 0.01);
+            if (samples[element] > samples[mostPopular]) {
+                mostPopular = element;
+            }
+        }
+        assertEquals(0.341, popularity.probability(mostPopular), 0.001);
+    }
+
+    @Test
+    public void shouldCountEveryAttemptInClosedLoop() {
+        // given
+        VendingMachine machine = machine(100);
+        long productsBefore = machine.productsCount();
+        LoadGenerator generator = LoadGenerator.builder()
+                .machine(machine)
+                .customers(3)
+                .duration(Duration.ofMillis(200))
+                .build();
+
+        // when
+        LoadReport report = generator.run();
+
+        // then
+        assertTrue(report.attempts() > 0);
+        assertEquals(report.attempts(), report.latencies().count());
+        assertEquals(productsBefore - report.purchases(), machine.productsCount());
+        assertTrue(report.soldOut() > 0);
+    }
+
+    @Test
+    public void shouldKeepArrivalRateAndRestockInOpenLoop() {
+        // given
+        // 2000 przyjść na sekundę przez pół sekundy - około 1000 prób zakupu, niezależnie od ilości klientów
+        try (Fleet fleet = new Fleet(2)) {
+            fleet.addMachine("machine-0", machine(1));
+            fleet.addMachine("machine-1", machine(1));
+            LoadGenerator generator = LoadGenerator.builder()
+                    .fleet(fleet)
+                    .customers(4)
+                    .arrivalRate(2000)
+                    .duration(Duration.ofMillis(500))
+                    .restock(Duration.ofMillis(50), 5)
+                    .build();
+
+            // when
+            LoadReport report = generator.run();
+
+            // then
+            assertEquals(1000, report.attempts(), 200);
+            assertTrue(report.restockedUnits() > 0);
+            assertTrue(report.purchases() > 8);
+            assertEquals(8 + report.restockedUnits() - report.purchases(), fleet.totalProductsCount());
+            assertTrue(report.toCsvRow().split(",").length == LoadReport.csvHeader().split(",").length);
+        }
+    }
+
+    private static VendingMachine machine(int productsPerTray) {
+        return new VendingMachine(TestMachines.configuration(2, 2),
+                (row, col) -> TestMachines.tray(row, col, "Product " + row + col, productsPerTray));
+    }
+}
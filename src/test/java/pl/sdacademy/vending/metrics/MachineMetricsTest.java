@@ -0,0 +1,153 @@
+package pl.sdacademy.vending.metrics;
+
+import org.junit.Test;
+import pl.sdacademy.vending.controller.CustomerOperationController;
+import pl.sdacademy.vending.model.Order;
+import pl.sdacademy.vending.model.TestMachines;
+import pl.sdacademy.vending.model.VendingMachine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class MachineMetricsTest {
+
+    @Test
+    public void shouldCountPurchasesSoldOutAndInvalidSymbolsPerTray() {
+        // given
+        VendingMachine machine = machine(2);
+
+        // when
+        machine.buyProductWithSymbol("A1");
+        machine.buyProductWithSymbol("a1");
+        machine.buyProductWithSymbol("A1");
+        machine.buyProductWithSymbol("Z9");
+        machine.buyProducts(Order.parse("2x B1"));
+        machine.buyProducts(Order.parse("1x B1"));
+        machine.buyProducts(Order.parse("1x B1, 1x C7"));
+        MetricsSnapshot snapshot = machine.metrics().snapshot();
+
+        // then
+        assertEquals(2, snapshot.purchases("A1"));
+        assertEquals(1, snapshot.soldOut("A1"));
+        assertEquals(2, snapshot.purchases("B1"));
+        assertEquals(1, snapshot.soldOut("B1"));
+        assertEquals(4, snapshot.totalPurchases());
+        assertEquals(2, snapshot.totalSoldOut());
+        assertEquals(2, snapshot.invalidSymbols());
+    }
+
+    @Test
+    public void shouldNotLoseCountsOfConcurrentBuyers() throws Exception {
+        // given
+        int buyersCount = 8;
+        int purchasesPerBuyer = 10_000;
+        VendingMachine machine = machine(buyersCount * purchasesPerBuyer / 2);
+        ExecutorService executor = Executors.newFixedThreadPool(buyersCount);
+        List<Future<?>> buyers = new ArrayList<>();
+
+        // when
+        for (int buyer = 0; buyer < buyersCount; buyer++) {
+            buyers.add(executor.submit(() -> {
+                for (int purchase = 0; purchase < purchasesPerBuyer; purchase++) {
+                    machine.buyProductWithSymbol("A1");
+                }
+            }));
+        }
+        for (Future<?> buyer : buyers) {
+            buyer.get();
+        }
+        executor.shutdown();
+        MetricsSnapshot snapshot = machine.metrics().snapshot();
+
+        // then
+        // połowa prób trafi na pustą tackę - ale żadna nie może zginąć
+        assertEquals(buyersCount * purchasesPerBuyer / 2, snapshot.purchases("A1"));
+        assertEquals(buyersCount * purchasesPerBuyer / 2, snapshot.soldOut("A1"));
+    }
+
+    @Test
+    public void shouldKeepCountsOfFinishedBuyerThreads() throws Exception {
+        // given
+        // więcej wątków niż pasów liczników - część zwiększa liczniki wspólne, a kolejna fala przejmuje pasy
+        int buyersPerWave = 4 * Runtime.getRuntime().availableProcessors() + 1;
+        int purchasesPerBuyer = 100;
+        VendingMachine machine = machine(buyersPerWave * purchasesPerBuyer);
+
+        // when
+        for (int wave = 0; wave < 2; wave++) {
+            List<Thread> buyers = new ArrayList<>();
+            for (int buyer = 0; buyer < buyersPerWave; buyer++) {
+                Thread thread = new Thread(() -> {
+                    for (int purchase = 0; purchase < purchasesPerBuyer; purchase++) {
+                        machine.buyProductWithSymbol("A1");
+                    }
+                });
+                thread.start();
+                buyers.add(thread);
+            }
+            for (Thread buyer : buyers) {
+                buyer.join();
+            }
+        }
+        MetricsSnapshot snapshot = machine.metrics().snapshot();
+
+        // then
+        assertEquals(buyersPerWave * purchasesPerBuyer, snapshot.purchases("A1"));
+        assertEquals(buyersPerWave * purchasesPerBuyer, snapshot.soldOut("A1"));
+    }
+
+    @Test
+    public void shouldRecordLatenciesAndWritePrometheusText() {
+        // given
+        VendingMachine machine = machine(1);
+        CustomerOperationController controller = new CustomerOperationController(machine);
+        machine.metrics().setLatencySamplingInterval(1);
+        controller.buyProduct("A1");
+        controller.buyProduct("A1");
+
+        // when
+        StringBuilder text = new StringBuilder();
+        controller.metricsSnapshot().writePrometheus("machine-\"1\"", text);
+
+        // then
+        String prometheus = text.toString();
+        assertEquals(2, controller.metricsSnapshot().purchaseLatency().count());
+        assertTrue(prometheus.contains("# TYPE vending_purchases_total counter\n"));
+        assertTrue(prometheus.contains("vending_purchases_total{machine=\"machine-\\\"1\\\"\",tray=\"A1\"} 1\n"));
+        assertTrue(prometheus.contains("vending_sold_out_total{machine=\"machine-\\\"1\\\"\",tray=\"A1\"} 1\n"));
+        assertTrue(prometheus.contains("vending_purchase_latency_seconds_count{machine=\"machine-\\\"1\\\"\"} 2\n"));
+        assertTrue(prometheus.contains("vending_purchase_latency_seconds{machine=\"machine-\\\"1\\\"\",quantile=\"0.99\"} "));
+        assertFalse(prometheus.contains("tray=\"C1\""));
+    }
+
+    @Test
+    public void shouldNotCountWhenDisabled() {
+        // given
+        VendingMachine machine = machine(1);
+        CustomerOperationController controller = new CustomerOperationController(machine);
+        machine.metrics().setEnabled(false);
+
+        // when
+        controller.buyProduct("A1");
+        controller.buyProduct("X1");
+        MetricsSnapshot snapshot = controller.metricsSnapshot();
+
+        // then
+        assertEquals(0, snapshot.totalPurchases());
+        assertEquals(0, snapshot.invalidSymbols());
+        assertEquals(0, snapshot.purchaseLatency().count());
+    }
+
+    /**
+     * Automat z trzema wierszami i jedną kolumną - tacki A1 i B1 oraz brak tacki na pozycji C1.
+     */
+    private static VendingMachine machine(int productsPerTray) {
+        return new VendingMachine(TestMachines.configuration(3, 1),
+                (row, col) -> row == 2 ? null : TestMachines.tray(row, col, "Cola", productsPerTray));
+    }
+}
@@ -0,0 +1,50 @@
+package pl.sdacademy.vending.model;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class OrderTest {
+
+    @Test
+    public void shouldParseOrderText() {
+        // when
+        Order order = Order.parse(" 3x A1,2 x C4, B2 ");
+
+        // then
+        assertEquals(3, order.itemsCount());
+        assertEquals("A1", order.symbol(0));
+        assertEquals(3, order.quantity(0));
+        assertEquals("C4", order.symbol(1));
+        assertEquals(2, order.quantity(1));
+        assertEquals("B2", order.symbol(2));
+        assertEquals(1, order.quantity(2));
+        assertEquals(6, order.totalQuantity());
+        assertEquals("3x A1, 2x C4, 1x B2", order.toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectInvalidQuantity() {
+        Order.parse("3x A1, zerox C4");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectNonPositiveQuantity() {
+        Order.parse("0x A1");
+    }
+
+    @Test
+    public void shouldAcceptUppercaseSeparatorAndSymbolsContainingX() {
+        // when
+        Order order = Order.parse("3X A1, 2XAX12, AX12");
+
+        // then
+        assertEquals("3x A1, 2x AX12, 1x AX12", order.toString());
+        assertEquals(6, order.totalQuantity());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectOrderWithOverflowingTotalQuantity() {
+        Order.parse(Integer.MAX_VALUE + "x A1, 1x A2");
+    }
+}
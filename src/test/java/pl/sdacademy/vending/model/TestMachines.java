@@ -0,0 +1,46 @@
+package pl.sdacademy.vending.model;
+
+import pl.sdacademy.vending.util.Configuration;
+
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Pomocnicza klasa testów tworząca konfigurację automatu o zadanej wielkości oraz automaty, w których na każdej
+ * pozycji leży tacka z zadaną ilością identycznych produktów.
+ */
+public class TestMachines {
+
+    private TestMachines() {
+    }
+
+    /**
+     * @return konfiguracja (mock) podająca tylko ilość wierszy i kolumn automatu
+     */
+    public static Configuration configuration(long rows, long cols) {
+        Configuration configuration = mock(Configuration.class);
+        when(configuration.getProperty(eq("machine.size.rows"), anyLong())).thenReturn(rows);
+        when(configuration.getProperty(eq("machine.size.cols"), anyLong())).thenReturn(cols);
+        return configuration;
+    }
+
+    /**
+     * @return automat, w którym każda tacka ma productsPerTray sztuk produktu "Cola"
+     */
+    public static VendingMachine machine(long rows, long cols, int productsPerTray) {
+        return new VendingMachine(configuration(rows, cols),
+                (row, col) -> tray(row, col, "Cola", productsPerTray));
+    }
+
+    /**
+     * @return tacka o symbolu wynikającym z pozycji (np. "B3" dla wiersza 1 i kolumny 2) z productsPerTray sztukami
+     * produktu o podanej nazwie
+     */
+    public static Tray tray(int row, int col, String productName, int productsPerTray) {
+        return Tray.builder("" + (char) ('A' + row) + (col + 1))
+                .products(new Product(productName), productsPerTray)
+                .build();
+    }
+}
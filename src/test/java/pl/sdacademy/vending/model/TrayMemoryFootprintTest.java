@@ -0,0 +1,92 @@
+package pl.sdacademy.vending.model;
+
+import org.junit.Test;
+
+import java.util.LinkedList;
+import java.util.Queue;
+
+import static org.junit.Assert.*;
+
+/**
+ * Porównanie zajętości pamięci dla floty 10 000 tacek: dawnej reprezentacji (osobny węzeł LinkedList, obiekt Product
+ * i String dla każdej sztuki) oraz reprezentacji kompaktowej stosowanej przez {@link Tray}. Wyniki są wypisywane na
+ * ekran, a test sprawdza jedynie, że reprezentacja kompaktowa jest co najmniej kilkukrotnie mniejsza.
+ */
+public class TrayMemoryFootprintTest {
+    private static final int TRAYS_COUNT = 10_000;
+    private static final int PRODUCTS_PER_TRAY = 10;
+
+    @Test
+    public void compactTraysShouldUseSeveralTimesLessMemoryThanLinkedLists() {
+        // given
+        long legacyFootprint = measure(this::createLegacyTrays);
+        long countedFootprint = measure(this::createCountedTrays);
+        long ringFootprint = measure(this::createRingTrays);
+
+        // when
+        System.out.printf("Footprint of %d trays x %d products:%n", TRAYS_COUNT, PRODUCTS_PER_TRAY);
+        System.out.printf("  LinkedList<Product>: %,d bytes%n", legacyFootprint);
+        System.out.printf("  counted storage:     %,d bytes%n", countedFootprint);
+        System.out.printf("  ring storage (2 kinds of products per tray): %,d bytes%n", ringFootprint);
+
+        // then
+        assertTrue(countedFootprint * 3 < legacyFootprint);
+        assertTrue(ringFootprint < legacyFootprint);
+    }
+
+    private Object createLegacyTrays() {
+        Object[] trays = new Object[TRAYS_COUNT];
+        for (int trayNumber = 0; trayNumber < TRAYS_COUNT; trayNumber++) {
+            String symbol = "T" + trayNumber;
+            Queue<Product> products = new LinkedList<>();
+            for (int productNumber = 0; productNumber < PRODUCTS_PER_TRAY; productNumber++) {
+                products.add(new Product("Product " + symbol));
+            }
+            trays[trayNumber] = products;
+        }
+        return trays;
+    }
+
+    private Object createCountedTrays() {
+        Tray[] trays = new Tray[TRAYS_COUNT];
+        for (int trayNumber = 0; trayNumber < TRAYS_COUNT; trayNumber++) {
+            String symbol = "T" + trayNumber;
+            trays[trayNumber] = Tray.builder(symbol)
+                    .products(new Product("Product " + symbol), PRODUCTS_PER_TRAY)
+                    .build();
+        }
+        return trays;
+    }
+
+    private Object createRingTrays() {
+        Tray[] trays = new Tray[TRAYS_COUNT];
+        for (int trayNumber = 0; trayNumber < TRAYS_COUNT; trayNumber++) {
+            String symbol = "T" + trayNumber;
+            Product regular = new Product("Product " + symbol);
+            Product light = new Product("Light " + symbol);
+            Tray.Builder builder = Tray.builder(symbol);
+            for (int productNumber = 0; productNumber < PRODUCTS_PER_TRAY; productNumber++) {
+                builder.product(productNumber % 2 == 0 ? regular : light);
+            }
+            trays[trayNumber] = builder.build();
+        }
+        return trays;
+    }
+
+    private long measure(java.util.function.Supplier<Object> allocation) {
+        long before = usedMemory();
+        Object trays = allocation.get();
+        long after = usedMemory();
+        // trzymamy referencję do utworzonych tacek aż do końca pomiaru, aby GC ich nie usunął
+        assertNotNull(trays);
+        return after - before;
+    }
+
+    private long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
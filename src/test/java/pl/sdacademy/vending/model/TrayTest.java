@@ -0,0 +1,297 @@
+package pl.sdacademy.vending.model;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class TrayTest {
+
+    @Test
+    public void shouldReturnProductsInInsertionOrder() {
+        // given
+        Product first = new Product("First");
+        Product second = new Product("Second");
+        Tray tray = Tray.builder("A1").product(first).product(second).build();
+
+        // when
+        Optional<Product> firstBought = tray.getFirstProduct();
+        Optional<Product> secondBought = tray.getFirstProduct();
+        Optional<Product> thirdBought = tray.getFirstProduct();
+
+        // then
+        assertSame(first, firstBought.get());
+        assertSame(second, secondBought.get());
+        assertFalse(thirdBought.isPresent());
+    }
+
+    @Test
+    public void shouldNeverDispenseTheSameProductTwiceUnderContention() throws Exception {
+        // given
+        // wiele wątków jednocześnie wykupuje wszystkie produkty z jednej tacki. Każdy produkt ma zostać wydany dokładnie
+        // raz - niezależnie od tego, jak wątki się przeplotą.
+        int productsCount = 20_000;
+        int buyersCount = 8;
+        Tray.Builder builder = Tray.builder("A1");
+        for (int i = 0; i < productsCount; i++) {
+            builder.product(new Product("Product " + i));
+        }
+        Tray tray = builder.build();
+        ExecutorService executor = Executors.newFixedThreadPool(buyersCount);
+        CountDownLatch startGate = new CountDownLatch(1);
+        List<Future<List<Product>>> results = new ArrayList<>();
+
+        // when
+        for (int buyer = 0; buyer < buyersCount; buyer++) {
+            results.add(executor.submit(buyAllFrom(tray, startGate)));
+        }
+        startGate.countDown();
+        Set<Product> dispensed = Collections.newSetFromMap(new IdentityHashMap<>());
+        int dispensedCount = 0;
+        for (Future<List<Product>> result : results) {
+            List<Product> bought = result.get();
+            dispensedCount += bought.size();
+            dispensed.addAll(bought);
+        }
+        executor.shutdown();
+
+        // then
+        assertEquals(productsCount, dispensedCount);
+        assertEquals(productsCount, dispensed.size());
+        assertFalse(tray.firstProductName().isPresent());
+    }
+
+    @Test
+    public void shouldDispenseEveryCountedUnitExactlyOnceUnderContention() throws Exception {
+        // given
+        // identyczne sztuki są przechowywane jako jeden produkt z licznikiem - sprawdzamy, że licznik nie "zgubi" ani
+        // nie wyda podwójnie żadnej sztuki
+        int productsCount = 100_000;
+        int buyersCount = 8;
+        Tray tray = Tray.builder("A1").products(new Product("Cola"), productsCount).build();
+        ExecutorService executor = Executors.newFixedThreadPool(buyersCount);
+        CountDownLatch startGate = new CountDownLatch(1);
+        List<Future<List<Product>>> results = new ArrayList<>();
+
+        // when
+        for (int buyer = 0; buyer < buyersCount; buyer++) {
+            results.add(executor.submit(buyAllFrom(tray, startGate)));
+        }
+        startGate.countDown();
+        int dispensedCount = 0;
+        for (Future<List<Product>> result : results) {
+            dispensedCount += result.get().size();
+        }
+        executor.shutdown();
+
+        // then
+        assertEquals(productsCount, dispensedCount);
+        assertEquals(0, tray.productsCount());
+    }
+
+    @Test
+    public void shouldKeepOrderOfDifferentProducts() {
+        // given
+        Tray tray = Tray.builder("A1")
+                .products(new Product("Cola"), 2)
+                .product(new Product("Water"))
+                .product(new Product("Cola"))
+                .build();
+
+        // when
+        String firstName = tray.firstProductName().get();
+        String boughtNames = tray.getFirstProduct().get().getName() + ","
+                + tray.getFirstProduct().get().getName() + ","
+                + tray.getFirstProduct().get().getName() + ","
+                + tray.getFirstProduct().get().getName();
+
+        // then
+        assertEquals("Cola", firstName);
+        assertEquals("Cola,Cola,Water,Cola", boughtNames);
+        assertEquals(0, tray.productsCount());
+        assertFalse(tray.firstProductName().isPresent());
+    }
+
+    @Test
+    public void shouldTakeAllRequestedProductsOrNone() {
+        // given
+        Tray countedTray = Tray.builder("A1").products(new Product("Cola"), 3).build();
+        Tray mixedTray = Tray.builder("A2")
+                .products(new Product("Cola"), 2)
+                .product(new Product("Water"))
+                .build();
+        Product[] taken = new Product[4];
+
+        // when
+        boolean tooManyCounted = countedTray.takeProducts(4, taken, 0);
+        boolean tooManyMixed = mixedTray.takeProducts(4, taken, 0);
+        boolean allCounted = countedTray.takeProducts(3, taken, 0);
+        boolean twoMixed = mixedTray.takeProducts(2, taken, 1);
+
+        // then
+        assertFalse(tooManyCounted);
+        assertFalse(tooManyMixed);
+        assertTrue(allCounted);
+        assertTrue(twoMixed);
+        assertEquals(0, countedTray.productsCount());
+        assertEquals("Cola", taken[1].getName());
+        assertEquals("Cola", taken[2].getName());
+        assertEquals("Water", mixedTray.firstProductName().get());
+    }
+
+    @Test
+    public void shouldPutBackTakenProducts() {
+        // given
+        Tray mixedTray = Tray.builder("A1")
+                .product(new Product("Cola"))
+                .product(new Product("Water"))
+                .build();
+        Product[] taken = new Product[2];
+        mixedTray.takeProducts(2, taken, 0);
+
+        // when
+        mixedTray.returnProducts(taken, 0, 2);
+
+        // then
+        assertEquals(2, mixedTray.productsCount());
+        assertSame(taken[0], mixedTray.getFirstProduct().get());
+        assertSame(taken[1], mixedTray.getFirstProduct().get());
+    }
+
+    @Test
+    public void shouldRestockOnlyMatchingProduct() {
+        // given
+        Tray countedTray = Tray.builder("A1").products(new Product("Cola"), 1).build();
+        // bufor tacki z różnymi produktami ma początkowo pojemność 4 - trzy sztuki i jedno wolne miejsce
+        Tray mixedTray = Tray.builder("B1")
+                .product(new Product("Cola"))
+                .product(new Product("Water"))
+                .product(new Product("Cola"))
+                .build();
+        countedTray.getFirstProduct();
+
+        // when
+        int restockedCounted = countedTray.restock(new Product("Cola"), 5);
+        int rejectedCounted = countedTray.restock(new Product("Water"), 5);
+        int restockedMixed = mixedTray.restock(new Product("Water"), 5);
+        int rejectedMixed = mixedTray.restock(new Product("Juice"), 5);
+
+        // then
+        assertEquals(5, restockedCounted);
+        assertEquals(0, rejectedCounted);
+        assertEquals(5, countedTray.productsCount());
+        assertEquals(5, restockedMixed);
+        assertEquals(0, rejectedMixed);
+        assertEquals(8, mixedTray.productsCount());
+    }
+
+    @Test
+    public void shouldPutBackTakenProductsAfterRestockFilledTray() {
+        // given
+        Tray mixedTray = Tray.builder("A1")
+                .product(new Product("Cola"))
+                .product(new Product("Water"))
+                .product(new Product("Cola"))
+                .build();
+        Product[] taken = new Product[2];
+        mixedTray.takeProducts(2, taken, 0);
+        mixedTray.restock(new Product("Water"), 10);
+
+        // when
+        mixedTray.returnProducts(taken, 0, 2);
+
+        // then
+        assertEquals(13, mixedTray.productsCount());
+        assertEquals("Cola", mixedTray.getFirstProduct().get().getName());
+    }
+
+    @Test
+    public void shouldRestockTrayBuiltEmpty() {
+        // given
+        Tray emptyTray = Tray.builder("A1").build();
+
+        // when
+        int restocked = emptyTray.restock(new Product("Cola"), 3);
+        int rejected = emptyTray.restock(new Product("Water"), 3);
+
+        // then
+        assertEquals(3, restocked);
+        assertEquals(0, rejected);
+        assertEquals(Optional.of("Cola"), emptyTray.firstProductName());
+        assertEquals(3, emptyTray.productsCount());
+    }
+
+    @Test
+    public void shouldNeverDispenseTheSameProductTwiceWhenTakingManyUnderContention() throws Exception {
+        // given
+        // część wątków zdejmuje produkty pojedynczo, a część po trzy naraz - każdy produkt ma zostać wydany dokładnie raz
+        int productsCount = 30_000;
+        int buyersCount = 8;
+        Tray.Builder builder = Tray.builder("A1");
+        for (int i = 0; i < productsCount; i++) {
+            builder.product(new Product("Product " + i));
+        }
+        Tray tray = builder.build();
+        ExecutorService executor = Executors.newFixedThreadPool(buyersCount);
+        CountDownLatch startGate = new CountDownLatch(1);
+        List<Future<List<Product>>> results = new ArrayList<>();
+
+        // when
+        for (int buyer = 0; buyer < buyersCount; buyer++) {
+            results.add(executor.submit(buyer % 2 == 0 ? buyAllFrom(tray, startGate) : takeAllFrom(tray, startGate)));
+        }
+        startGate.countDown();
+        Set<Product> dispensed = Collections.newSetFromMap(new IdentityHashMap<>());
+        int dispensedCount = 0;
+        for (Future<List<Product>> result : results) {
+            List<Product> bought = result.get();
+            dispensedCount += bought.size();
+            dispensed.addAll(bought);
+        }
+        executor.shutdown();
+
+        // then
+        assertEquals(productsCount, dispensedCount);
+        assertEquals(productsCount, dispensed.size());
+        assertEquals(0, tray.productsCount());
+    }
+
+    private Callable<List<Product>> takeAllFrom(Tray tray, CountDownLatch startGate) {
+        return () -> {
+            startGate.await();
+            List<Product> bought = new ArrayList<>();
+            Product[] taken = new Product[3];
+            while (tray.productsCount() > 0) {
+                if (tray.takeProducts(3, taken, 0)) {
+                    Collections.addAll(bought, taken);
+                } else {
+                    tray.getFirstProduct().ifPresent(bought::add);
+                }
+            }
+            return bought;
+        };
+    }
+
+    private Callable<List<Product>> buyAllFrom(Tray tray, CountDownLatch startGate) {
+        return () -> {
+            startGate.await();
+            List<Product> bought = new ArrayList<>();
+            Optional<Product> product;
+            while ((product = tray.getFirstProduct()).isPresent()) {
+                bought.add(product.get());
+            }
+            return bought;
+        };
+    }
+}
@@ -2,9 +2,25 @@ package pl.sdacademy.vending.model;
 
 import org.junit.Test;
 import pl.sdacademy.vending.util.Configuration;
+import pl.sdacademy.vending.util.HashedTimingWheel;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.junit.Assert.*;
 import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -107,4 +123,514 @@ public class VendingMachineTest {
         new VendingMachine(mockedConfig);
     }
 
-}
\ No newline at end of file
+    @Test
+    public void shouldFindTrayBySymbolRegardlessOfRowLetterCase() {
+        // given
+        VendingMachine machine = machineWithTrays(3L, 2L);
+
+        // when
+        Tray upperCaseTray = machine.getTrayForSymbol("C2").get();
+        Tray lowerCaseTray = machine.getTrayForSymbol("c2").get();
+
+        // then
+        assertSame(upperCaseTray, lowerCaseTray);
+        assertEquals("C2", upperCaseTray.getSymbol());
+        assertSame(upperCaseTray, machine.trayDetailsAtPosition(2, 1).get());
+    }
+
+    @Test
+    public void shouldNotFindTrayForInvalidSymbols() {
+        // given
+        VendingMachine machine = machineWithTrays(3L, 2L);
+
+        // when
+        // then
+        // symbole niepoprawne oraz wskazujące poza automat nie powodują wyjątku, a jedynie brak tacki
+        for (String symbol : new String[]{null, "", "A", "A10", "A0", "A3", "D1", "1A", "@1", "Ą1", "A\u0661"}) {
+            assertFalse("Tray found for " + symbol, machine.getTrayForSymbol(symbol).isPresent());
+            assertFalse("Product bought for " + symbol, machine.buyProductWithSymbol(symbol).isPresent());
+        }
+        assertFalse(machine.trayDetailsAtPosition(3, 0).isPresent());
+        assertFalse(machine.trayDetailsAtPosition(0, -1).isPresent());
+        assertFalse(machine.productNameAtPosition(-1, 0).isPresent());
+    }
+
+    @Test
+    public void shouldNotAllocateWhenLookingUpTrays() {
+        // given
+        VendingMachine machine = machineWithTrays(26L, 9L);
+        String[] symbols = {"A1", "z9", "M5", "Q0", "AA"};
+        lookUpTrays(machine, symbols, 100_000);
+        com.sun.management.ThreadMXBean threadBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        int lookups = symbols.length * 100_000;
+
+        // when
+        // licznik alokacji wątku obejmuje też szum środowiska (np. kompilację JIT), dlatego pomiar jest powtarzany,
+        // a sprawdzany jest najmniejszy wynik w przeliczeniu na jedno wyszukanie - alokacja obiektu przy każdym
+        // wyszukaniu to co najmniej 16 bajtów na wyszukanie; dokładny pomiar daje benchmark JMH z profilerem gc
+        long allocated = Long.MAX_VALUE;
+        for (int measurement = 0; measurement < 5; measurement++) {
+            long allocatedBefore = threadBean.getThreadAllocatedBytes(threadId);
+            assertEquals(300_000, lookUpTrays(machine, symbols, 100_000));
+            allocated = Math.min(allocated, threadBean.getThreadAllocatedBytes(threadId) - allocatedBefore);
+        }
+
+        // then
+        assertTrue("Allocated " + allocated + " bytes in " + lookups + " lookups", allocated < lookups);
+    }
+
+    @Test
+    public void shouldBuyWholeOrder() {
+        // given
+        VendingMachine machine = machineWithTrays(3L, 2L, 5);
+        List<Product> notified = new ArrayList<>();
+        machine.addPurchaseListener((tray, product) -> notified.add(product));
+
+        // when
+        Optional<List<Product>> bought = machine.buyProducts(Order.parse("3x A1, 2x c2"));
+
+        // then
+        assertEquals(5, bought.get().size());
+        assertEquals(bought.get(), notified);
+        assertEquals(2, machine.trayDetailsAtPosition(0, 0).get().productsCount());
+        assertEquals(3, machine.trayDetailsAtPosition(2, 1).get().productsCount());
+    }
+
+    @Test
+    public void shouldNotBuyAnythingWhenOrderCannotBeCompleted() {
+        // given
+        VendingMachine machine = machineWithTrays(3L, 2L, 5);
+        List<Product> notified = new ArrayList<>();
+        machine.addPurchaseListener((tray, product) -> notified.add(product));
+
+        // when
+        // brakuje sztuk na ostatniej pozycji, a w drugim zamówieniu jeden z symboli jest niepoprawny
+        Optional<List<Product>> notEnough = machine.buyProducts(Order.parse("3x A1, 2x B1, 6x C2"));
+        Optional<List<Product>> invalidSymbol = machine.buyProducts(Order.parse("1x A1, 1x Q7"));
+
+        // then
+        assertFalse(notEnough.isPresent());
+        assertFalse(invalidSymbol.isPresent());
+        assertTrue(notified.isEmpty());
+        assertEquals(30, machine.productsCount());
+    }
+
+    @Test
+    public void shouldNeverCompleteOrdersPartiallyUnderContention() throws Exception {
+        // given
+        // połowa wątków kupuje zamówienia "2x A1, 1x A2", a druga połowa pojedyncze sztuki z A2. Zamówienie nigdy nie
+        // może zostać zrealizowane częściowo, więc z A1 musi zniknąć dokładnie dwa razy więcej sztuk, niż zrealizowano
+        // zamówień.
+        int stock = 20_000;
+        VendingMachine machine = machineWithTrays(1L, 2L, stock);
+        Order order = Order.parse("2x A1, 1x A2");
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch startGate = new CountDownLatch(1);
+        List<Future<Integer>> orderBuyers = new ArrayList<>();
+        List<Future<Integer>> singleBuyers = new ArrayList<>();
+
+        // when
+        for (int buyer = 0; buyer < 4; buyer++) {
+            orderBuyers.add(executor.submit(() -> {
+                startGate.await();
+                int completed = 0;
+                while (machine.productsCount() > 0 && completed < stock) {
+                    if (machine.buyProducts(order).isPresent()) {
+                        completed++;
+                    } else if (machine.trayDetailsAtPosition(0, 1).get().productsCount() == 0) {
+                        break;
+                    }
+                }
+                return completed;
+            }));
+            singleBuyers.add(executor.submit(() -> {
+                startGate.await();
+                int bought = 0;
+                while (machine.buyProductWithSymbol("A2").isPresent()) {
+                    bought++;
+                }
+                return bought;
+            }));
+        }
+        startGate.countDown();
+        int completedOrders = 0;
+        for (Future<Integer> orderBuyer : orderBuyers) {
+            completedOrders += orderBuyer.get();
+        }
+        int singleProducts = 0;
+        for (Future<Integer> singleBuyer : singleBuyers) {
+            singleProducts += singleBuyer.get();
+        }
+        executor.shutdown();
+
+        // then
+        assertEquals(stock - 2 * completedOrders, machine.trayDetailsAtPosition(0, 0).get().productsCount());
+        assertEquals(stock - completedOrders - singleProducts,
+                machine.trayDetailsAtPosition(0, 1).get().productsCount());
+    }
+
+    @Test
+    public void shouldKeepTraysAndListenersWhenResized() {
+        // given
+        VendingMachine machine = machineWithTrays(2L, 2L, 3);
+        machine.buyProductWithSymbol("A1");
+        List<String> purchases = new ArrayList<>();
+        machine.addPurchaseListener((tray, product) -> purchases.add(tray.getSymbol()));
+        Configuration resizedConfig = mock(Configuration.class);
+        when(resizedConfig.getProperty(eq(PARAM_NAME_ROWS), anyLong())).thenReturn(3L);
+        when(resizedConfig.getProperty(eq(PARAM_NAME_COLS), anyLong())).thenReturn(1L);
+
+        // when
+        VendingMachine resized = machine.resized(resizedConfig,
+                (row, col) -> Tray.builder("" + (char) ('A' + row) + (col + 1)).build());
+        resized.buyProductWithSymbol("A1");
+
+        // then
+        assertEquals((Long) 3L, resized.rowsSize());
+        assertEquals((Long) 1L, resized.colsSize());
+        assertSame(machine.getTrayForSymbol("B1").get(), resized.getTrayForSymbol("B1").get());
+        assertEquals(1, machine.getTrayForSymbol("A1").get().productsCount());
+        assertEquals(0, resized.getTrayForSymbol("C1").get().productsCount());
+        assertFalse(resized.getTrayForSymbol("A2").isPresent());
+        assertEquals(1 + 3, resized.productsCount());
+        assertEquals(Collections.singletonList("A1"), purchases);
+    }
+
+    @Test
+    public void shouldKeepCurrentPricesWhenResized() {
+        // given
+        VendingMachine machine = machineWithTrays(2L, 2L, 3);
+        machine.reprice((tray, currentPrice) -> tray.getSymbol().equals("A2") ? 450 : 250);
+        Configuration resizedConfig = mock(Configuration.class);
+        when(resizedConfig.getProperty(eq(PARAM_NAME_ROWS), anyLong())).thenReturn(3L);
+        when(resizedConfig.getProperty(eq(PARAM_NAME_COLS), anyLong())).thenReturn(2L);
+
+        // when
+        VendingMachine resized = machine.resized(resizedConfig,
+                (row, col) -> Tray.builder("" + (char) ('A' + row) + (col + 1)).price(100).build());
+
+        // then
+        assertEquals(250, resized.priceOf("A1"));
+        assertEquals(450, resized.priceOf("A2"));
+        assertEquals(250, resized.priceOf("B2"));
+        assertEquals(100, resized.priceOf("C1"));
+        assertTrue(resized.priceTable().version() > machine.priceTable().version());
+    }
+
+    @Test
+    public void shouldCreateSameMachineFromSameSeedInEveryConstructionMode() {
+        // given
+        Configuration mockedConfig = mock(Configuration.class);
+        when(mockedConfig.getProperty(eq(PARAM_NAME_ROWS), anyLong())).thenReturn(26L);
+        when(mockedConfig.getProperty(eq(PARAM_NAME_COLS), anyLong())).thenReturn(9L);
+
+        // when
+        String eager = layout(new VendingMachine(mockedConfig, new SeededTrayFactory(42), ConstructionMode.EAGER));
+        String parallel = layout(new VendingMachine(mockedConfig, new SeededTrayFactory(42),
+                ConstructionMode.PARALLEL));
+        String lazy = layout(new VendingMachine(mockedConfig, new SeededTrayFactory(42), ConstructionMode.LAZY));
+        String otherSeed = layout(new VendingMachine(mockedConfig, new SeededTrayFactory(43),
+                ConstructionMode.EAGER));
+
+        // then
+        assertEquals(eager, parallel);
+        assertEquals(eager, lazy);
+        assertNotEquals(eager, otherSeed);
+    }
+
+    @Test
+    public void shouldReadSeedAndConstructionModeFromConfiguration() {
+        // given
+        Configuration mockedConfig = mock(Configuration.class);
+        when(mockedConfig.getProperty(eq(PARAM_NAME_ROWS), anyLong())).thenReturn(6L);
+        when(mockedConfig.getProperty(eq(PARAM_NAME_COLS), anyLong())).thenReturn(4L);
+        when(mockedConfig.getProperty(eq("machine.seed"), anyLong())).thenReturn(7L);
+        when(mockedConfig.getProperty(eq("machine.construction"), anyString())).thenReturn("lazy");
+
+        // when
+        VendingMachine configured = new VendingMachine(mockedConfig);
+
+        // then
+        assertEquals(layout(new VendingMachine(mockedConfig, new SeededTrayFactory(7), ConstructionMode.EAGER)),
+                layout(configured));
+    }
+
+    @Test
+    public void shouldCreateLazyTrayExactlyOnceWhenFirstAccessedConcurrently() throws Exception {
+        // given
+        Configuration mockedConfig = mock(Configuration.class);
+        when(mockedConfig.getProperty(eq(PARAM_NAME_ROWS), anyLong())).thenReturn(4L);
+        when(mockedConfig.getProperty(eq(PARAM_NAME_COLS), anyLong())).thenReturn(4L);
+        AtomicIntegerArray creations = new AtomicIntegerArray(16);
+        VendingMachine machine = new VendingMachine(mockedConfig, (row, col) -> {
+            creations.incrementAndGet(row * 4 + col);
+            return Tray.builder("" + (char) ('A' + row) + (col + 1))
+                    .products(new Product("Product"), 100)
+                    .build();
+        }, ConstructionMode.LAZY);
+        int buyersCount = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(buyersCount);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> results = new ArrayList<>();
+
+        // when
+        int createdBeforeAccess = 0;
+        for (int position = 0; position < 16; position++) {
+            createdBeforeAccess += creations.get(position);
+        }
+        for (int buyer = 0; buyer < buyersCount; buyer++) {
+            results.add(executor.submit(() -> {
+                start.await();
+                int bought = 0;
+                for (int row = 0; row < 4; row++) {
+                    for (int col = 0; col < 4; col++) {
+                        if (machine.buyProductWithSymbol("" + (char) ('A' + row) + (col + 1)).isPresent()) {
+                            bought++;
+                        }
+                    }
+                }
+                return bought;
+            }));
+        }
+        start.countDown();
+        int bought = 0;
+        for (Future<Integer> result : results) {
+            bought += result.get();
+        }
+        executor.shutdown();
+
+        // then
+        assertEquals(0, createdBeforeAccess);
+        for (int position = 0; position < 16; position++) {
+            assertEquals(1, creations.get(position));
+        }
+        assertEquals(buyersCount * 16, bought);
+        assertEquals(16 * 100 - bought, machine.productsCount());
+        assertSame(machine.getTrayForSymbol("B2").get(), machine.trayDetailsAtPosition(1, 1).get());
+    }
+
+    @Test
+    public void shouldFindTraysByMultiCharacterSymbolsInSparseGrid() {
+        // given
+        Configuration mockedConfig = mock(Configuration.class);
+        when(mockedConfig.getProperty(eq(PARAM_NAME_ROWS), anyLong())).thenReturn(800L);
+        when(mockedConfig.getProperty(eq(PARAM_NAME_COLS), anyLong())).thenReturn(250L);
+        when(mockedConfig.getProperty(eq("machine.grid"), anyString())).thenReturn("sparse");
+
+        // when
+        // co 997. miejsce ma tackę - ok. 200 tacek na 200 tysięcy miejsc
+        VendingMachine machine = new VendingMachine(mockedConfig, (row, col) -> (row * 250 + col) % 997 != 0 ? null
+                : Tray.builder(SymbolIndex.symbolOf(row, col)).products(new Product("Locker"), 1).build());
+
+        // then
+        assertEquals((Long) 800L, machine.rowsSize());
+        assertEquals(201, machine.productsCount());
+        assertTrue(machine.getTrayForSymbol("A1").isPresent());
+        // 997 = 3 * 250 + 247, więc tacka leży w wierszu "D", w kolumnie 248
+        assertEquals("D248", machine.getTrayForSymbol("d248").get().getSymbol());
+        // 199 * 997 = 793 * 250 + 153 - wiersz 793 to "ADN"
+        assertEquals("ADN154", machine.trayDetailsAtPosition(793, 153).get().getSymbol());
+        assertTrue(machine.buyProductWithSymbol("ADN154").isPresent());
+        assertEquals(1, machine.metrics().snapshot().purchases("ADN154"));
+        assertFalse(machine.getTrayForSymbol("A2").isPresent());
+        assertFalse(machine.trayDetailsAtPosition(800, 0).isPresent());
+        for (String symbol : new String[]{null, "", "A", "12", "A0", "A01", "A251", "ADU1", "AAAA1", "A12345", "A1B"}) {
+            assertFalse("Tray found for " + symbol, machine.getTrayForSymbol(symbol).isPresent());
+        }
+    }
+
+    @Test
+    public void shouldNumberRowsLikeSpreadsheetColumns() {
+        // given
+        int[] rows = {0, 25, 26, 51, 701, 702, 18_277};
+        String[] expectedSymbols = {"A7", "Z7", "AA7", "AZ7", "ZZ7", "AAA7", "ZZZ7"};
+
+        // when
+        // then
+        for (int index = 0; index < rows.length; index++) {
+            assertEquals(expectedSymbols[index], SymbolIndex.symbolOf(rows[index], 6));
+            long cell = SymbolIndex.parseCell(expectedSymbols[index].toLowerCase());
+            assertEquals(rows[index], SymbolIndex.rowOf(cell));
+            assertEquals(6, SymbolIndex.colOf(cell));
+        }
+        assertEquals("B10", SymbolIndex.symbolOf(1, 9));
+    }
+
+    @Test
+    public void shouldHideReservedUnitsUntilConfirmed() {
+        // given
+        AtomicLong currentTime = new AtomicLong();
+        VendingMachine machine = machineWithTrays(1L, 1L, 3);
+        machine.setReservationWheel(HashedTimingWheel.builder().clock(currentTime::get).build());
+        List<Long> purchasePrices = new ArrayList<>();
+        machine.addPurchaseListener(new PurchaseListener() {
+            @Override
+            public void productPurchased(Tray tray, Product product) {
+            }
+
+            @Override
+            public void productPurchased(Tray tray, Product product, long price) {
+                purchasePrices.add(price);
+            }
+        });
+
+        // when
+        Reservation reservation = machine.reserve("A1", 2, Duration.ofMinutes(15)).get();
+        Optional<Reservation> tooMany = machine.reserve("A1", 2, Duration.ofMinutes(15));
+        Optional<Product> lastUnit = machine.buyProductWithSymbol("A1");
+        Optional<Product> noUnit = machine.buyProductWithSymbol("A1");
+        Optional<List<Product>> confirmed = machine.confirmReservation(reservation);
+
+        // then
+        assertFalse(tooMany.isPresent());
+        assertTrue(lastUnit.isPresent());
+        assertFalse(noUnit.isPresent());
+        assertEquals(2, confirmed.get().size());
+        assertEquals(Reservation.Status.CONFIRMED, reservation.status());
+        assertFalse(machine.cancelReservation(reservation));
+        assertEquals(Arrays.asList(Tray.DEFAULT_PRICE, Tray.DEFAULT_PRICE, Tray.DEFAULT_PRICE), purchasePrices);
+        assertEquals(3, machine.metrics().snapshot().purchases("A1"));
+    }
+
+    @Test
+    public void shouldReturnUnitsOfCancelledAndExpiredReservations() {
+        // given
+        AtomicLong currentTime = new AtomicLong();
+        HashedTimingWheel wheel = HashedTimingWheel.builder()
+                .tick(Duration.ofSeconds(1))
+                .wheelSize(8)
+                .clock(currentTime::get)
+                .build();
+        VendingMachine machine = machineWithTrays(1L, 1L, 5);
+        machine.setReservationWheel(wheel);
+        Reservation cancelled = machine.reserve("A1", 1, Duration.ofMinutes(15)).get();
+        Reservation expiring = machine.reserve("A1", 2, Duration.ofMinutes(15)).get();
+        Reservation confirmedLate = machine.reserve("A1", 2, Duration.ofMinutes(20)).get();
+
+        // when
+        boolean cancelResult = machine.cancelReservation(cancelled);
+        long afterCancel = machine.productsCount();
+        currentTime.set(Duration.ofMinutes(15).toMillis() - 1);
+        int expiredEarly = wheel.advance();
+        currentTime.set(Duration.ofMinutes(15).toMillis() + 999);
+        int expired = wheel.advance();
+        long afterExpiry = machine.productsCount();
+
+        // then
+        assertTrue(cancelResult);
+        assertEquals(1, afterCancel);
+        assertEquals(0, expiredEarly);
+        assertEquals(1, expired);
+        assertEquals(Reservation.Status.EXPIRED, expiring.status());
+        assertEquals(3, afterExpiry);
+        assertFalse(machine.confirmReservation(expiring).isPresent());
+        assertTrue(machine.confirmReservation(confirmedLate).isPresent());
+        assertEquals(0, wheel.pendingCount());
+    }
+
+    @Test
+    public void shouldReturnReservedUnitsOfMixedTrayRestockedInMeantime() {
+        // given
+        AtomicLong currentTime = new AtomicLong();
+        HashedTimingWheel wheel = HashedTimingWheel.builder()
+                .tick(Duration.ofSeconds(1))
+                .wheelSize(8)
+                .clock(currentTime::get)
+                .build();
+        VendingMachine machine = new VendingMachine(configuration(1L, 1L), (row, col) -> Tray.builder("A1")
+                .products(new Product("Cola"), 2)
+                .product(new Product("Water"))
+                .product(new Product("Cola"))
+                .build());
+        machine.setReservationWheel(wheel);
+        Reservation cancelled = machine.reserve("A1", 2, Duration.ofMinutes(15)).get();
+        Reservation expiring = machine.reserve("A1", 1, Duration.ofMinutes(15)).get();
+        // uzupełnienie zapełnia tackę, zanim zarezerwowane sztuki wrócą
+        int restocked = machine.restockTray("A1", new Product("Water"), 10);
+
+        // when
+        boolean cancelResult = machine.cancelReservation(cancelled);
+        currentTime.set(Duration.ofMinutes(15).toMillis() + 999);
+        int expired = wheel.advance();
+
+        // then
+        assertEquals(10, restocked);
+        assertTrue(cancelResult);
+        assertEquals(Reservation.Status.CANCELLED, cancelled.status());
+        assertEquals(1, expired);
+        assertEquals(14, machine.productsCount());
+    }
+
+    @Test
+    public void shouldRollBackOrderAfterConcurrentRestock() {
+        // given
+        AtomicLong restocked = new AtomicLong();
+        VendingMachine[] machine = new VendingMachine[1];
+        // tacka A2 jest zawsze pusta, a przy próbie zdjęcia produktów uzupełnia tackę A1 - tak, jakby serwisant
+        // uzupełnił ją między zdjęciem sztuk zamówienia a ich odłożeniem
+        TrayStorage restockingStorage = new CountedTrayStorage(new Product("Juice"), 0) {
+            @Override
+            public boolean pollMany(int count, Product[] target, int offset) {
+                restocked.set(machine[0].restockTray("A1", new Product("Water"), 10));
+                return false;
+            }
+        };
+        machine[0] = new VendingMachine(configuration(1L, 2L), (row, col) -> col == 0
+                ? Tray.builder("A1").products(new Product("Cola"), 2).product(new Product("Water")).build()
+                : Tray.builder("A2").storage(restockingStorage).build());
+
+        // when
+        Optional<List<Product>> products = machine[0].buyProducts(Order.parse("2x A1, 1x A2"));
+
+        // then
+        assertFalse(products.isPresent());
+        assertEquals(10, restocked.get());
+        assertEquals(13, machine[0].productsCount());
+    }
+
+    private String layout(VendingMachine machine) {
+        StringBuilder layout = new StringBuilder();
+        for (int row = 0; row < machine.rowsSize(); row++) {
+            for (int col = 0; col < machine.colsSize(); col++) {
+                Optional<Tray> tray = machine.trayDetailsAtPosition(row, col);
+                layout.append(tray.isPresent()
+                        ? tray.get().getSymbol() + ":" + tray.get().getPrice() + ":" + tray.get().productsCount()
+                        : "-").append(' ');
+            }
+        }
+        return layout.toString();
+    }
+
+    private int lookUpTrays(VendingMachine machine, String[] symbols, int times) {
+        int found = 0;
+        for (int count = 0; count < times; count++) {
+            for (String symbol : symbols) {
+                if (machine.getTrayForSymbol(symbol).isPresent()) {
+                    found++;
+                }
+            }
+        }
+        return found;
+    }
+
+    private Configuration configuration(Long rows, Long cols) {
+        Configuration mockedConfig = mock(Configuration.class);
+        when(mockedConfig.getProperty(eq(PARAM_NAME_ROWS), anyLong())).thenReturn(rows);
+        when(mockedConfig.getProperty(eq(PARAM_NAME_COLS), anyLong())).thenReturn(cols);
+        return mockedConfig;
+    }
+
+    private VendingMachine machineWithTrays(Long rows, Long cols) {
+        return machineWithTrays(rows, cols, 1);
+    }
+
+    private VendingMachine machineWithTrays(Long rows, Long cols, int productsPerTray) {
+        return new VendingMachine(configuration(rows, cols), (row, col) -> Tray
+                .builder("" + (char) ('A' + row) + (col + 1))
+                .products(new Product("Product"), productsPerTray)
+                .build());
+    }
+}
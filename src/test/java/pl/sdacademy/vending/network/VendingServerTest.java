@@ -0,0 +1,157 @@
+package pl.sdacademy.vending.network;
+
+import org.junit.After;
+import org.junit.Test;
+import pl.sdacademy.vending.controller.CommandProcessor;
+import pl.sdacademy.vending.controller.CustomerOperationController;
+import pl.sdacademy.vending.model.TestMachines;
+import pl.sdacademy.vending.model.VendingMachine;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.*;
+
+public class VendingServerTest {
+
+    private VendingServer server;
+
+    @After
+    public void stopServer() throws IOException {
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    @Test
+    public void shouldAnswerPipelinedCommandsInOrder() throws IOException {
+        // given
+        VendingMachine machine = machine(2);
+        server = startServer(machine, 65536);
+
+        try (Socket client = connect()) {
+            // when
+            // wszystkie polecenia są wysyłane jednym zapisem, bez czekania na odpowiedzi
+            write(client, "STATUS\nBUY A1\nbuy a1\r\nBUY A1\nBUY Z9\nORDER 2x B1\nLIST\nDANCE\n");
+            BufferedReader responses = reader(client);
+
+            // then
+            assertEquals("OK rows=2 cols=1 products=4 emptyTrays=0", responses.readLine());
+            assertEquals("OK Cola", responses.readLine());
+            assertEquals("OK Cola", responses.readLine());
+            assertEquals("SOLD_OUT A1", responses.readLine());
+            assertEquals("SOLD_OUT Z9", responses.readLine());
+            assertEquals("OK 2", responses.readLine());
+            assertEquals("OK A1;0;990;|B1;0;990;", responses.readLine());
+            assertEquals("ERR unknown command DANCE", responses.readLine());
+        }
+    }
+
+    @Test
+    public void shouldServeManyConnectionsAtOnce() throws Exception {
+        // given
+        int clientsCount = 300;
+        VendingMachine machine = machine(clientsCount);
+        server = startServer(machine, 65536);
+        List<Socket> clients = new ArrayList<>();
+
+        try {
+            // when
+            for (int client = 0; client < clientsCount; client++) {
+                clients.add(connect());
+            }
+            for (Socket client : clients) {
+                write(client, "BUY A1\nBUY B1\n");
+            }
+            int bought = 0;
+            for (Socket client : clients) {
+                BufferedReader responses = reader(client);
+                for (int response = 0; response < 2; response++) {
+                    if (responses.readLine().startsWith("OK ")) {
+                        bought++;
+                    }
+                }
+            }
+
+            // then
+            assertEquals(2 * clientsCount, bought);
+            assertEquals(0, machine.productsCount());
+        } finally {
+            for (Socket client : clients) {
+                client.close();
+            }
+        }
+    }
+
+    @Test
+    public void shouldStopReadingCommandsWhenClientDoesNotReadResponses() throws Exception {
+        // given
+        // klient wysyła bardzo dużo poleceń LIST, ale przez pewien czas nie odbiera odpowiedzi
+        int commandsCount = 50_000;
+        int maxPendingOutput = 4096;
+        server = startServer(machine(1), maxPendingOutput);
+
+        try (Socket client = connect()) {
+            // when
+            CompletableFuture<Void> sending = CompletableFuture.runAsync(() -> {
+                StringBuilder commands = new StringBuilder();
+                for (int command = 0; command < commandsCount; command++) {
+                    commands.append("LIST\n");
+                }
+                try {
+                    write(client, commands.toString());
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            Thread.sleep(300);
+            long pendingWhileClientWasNotReading = server.highestPendingOutputBytes();
+            BufferedReader responses = reader(client);
+            int responsesCount = 0;
+            while (responsesCount < commandsCount && responses.readLine() != null) {
+                responsesCount++;
+            }
+            sending.get();
+
+            // then
+            // serwer może przekroczyć limit najwyżej o jedną odpowiedź
+            assertFalse(sending.isCompletedExceptionally());
+            assertTrue("Pending " + pendingWhileClientWasNotReading + " bytes",
+                    pendingWhileClientWasNotReading < maxPendingOutput + 100);
+            assertEquals(commandsCount, responsesCount);
+        }
+    }
+
+    private VendingServer startServer(VendingMachine machine, int maxPendingOutput) throws IOException {
+        CommandProcessor processor = new CommandProcessor(new CustomerOperationController(machine));
+        return VendingServer.start(processor, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 2,
+                maxPendingOutput);
+    }
+
+    private Socket connect() throws IOException {
+        return new Socket(InetAddress.getLoopbackAddress(), server.port());
+    }
+
+    private static void write(Socket client, String commands) throws IOException {
+        OutputStream output = client.getOutputStream();
+        output.write(commands.getBytes(StandardCharsets.UTF_8));
+        output.flush();
+    }
+
+    private static BufferedReader reader(Socket client) throws IOException {
+        return new BufferedReader(new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8));
+    }
+
+    private static VendingMachine machine(int productsPerTray) {
+        return TestMachines.machine(2, 1, productsPerTray);
+    }
+}
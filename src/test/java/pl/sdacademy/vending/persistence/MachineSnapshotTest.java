@@ -0,0 +1,195 @@
+package pl.sdacademy.vending.persistence;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import pl.sdacademy.vending.model.Product;
+import pl.sdacademy.vending.model.Tray;
+import pl.sdacademy.vending.model.TrayFactory;
+import pl.sdacademy.vending.model.VendingMachine;
+import pl.sdacademy.vending.util.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class MachineSnapshotTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void shouldRestoreFullSnapshot() throws IOException {
+        // given
+        Path file = snapshotFile();
+        VendingMachine machine = new VendingMachine(configuration(), fixedTrays());
+        new MachineSnapshotWriter(machine, file).saveFull();
+
+        // when
+        VendingMachine restored = new VendingMachine(configuration(), MachineSnapshot.restore(file));
+
+        // then
+        assertFalse(restored.trayDetailsAtPosition(0, 1).isPresent());
+        Tray a1 = restored.trayDetailsAtPosition(0, 0).get();
+        assertEquals("A1", a1.getSymbol());
+        assertEquals(320L, a1.getPrice());
+        assertEquals(3, a1.productsCount());
+        // tacka z różnymi produktami zachowuje ich kolejność
+        assertEquals("Cola", restored.buyProductWithSymbol("B1").get().getName());
+        assertEquals("Cola", restored.buyProductWithSymbol("B1").get().getName());
+        assertEquals("Water", restored.buyProductWithSymbol("B1").get().getName());
+        assertEquals("Cola", restored.buyProductWithSymbol("B1").get().getName());
+        assertFalse(restored.buyProductWithSymbol("B1").isPresent());
+    }
+
+    @Test
+    public void shouldWriteOnlyChangedTraysInIncrementalSnapshot() throws IOException {
+        // given
+        Path file = snapshotFile();
+        VendingMachine machine = new VendingMachine(configuration(), fixedTrays());
+        MachineSnapshotWriter writer = new MachineSnapshotWriter(machine, file);
+        writer.saveFull();
+        machine.buyProductWithSymbol("A1");
+        machine.buyProductWithSymbol("B1");
+
+        // when
+        int changedInFirstIncrement = writer.saveIncremental();
+        int changedInSecondIncrement = writer.saveIncremental();
+        machine.buyProductWithSymbol("A1");
+        int changedInThirdIncrement = writer.saveIncremental();
+        VendingMachine restored = new VendingMachine(configuration(), MachineSnapshot.restore(file));
+
+        // then
+        assertEquals(2, changedInFirstIncrement);
+        assertEquals(0, changedInSecondIncrement);
+        assertEquals(1, changedInThirdIncrement);
+        assertEquals(1, restored.trayDetailsAtPosition(0, 0).get().productsCount());
+        assertEquals(3, restored.trayDetailsAtPosition(1, 0).get().productsCount());
+        assertEquals("Cola", restored.buyProductWithSymbol("B1").get().getName());
+        assertEquals("Water", restored.buyProductWithSymbol("B1").get().getName());
+    }
+
+    @Test
+    public void shouldIgnoreTornIncrementalSegment() throws IOException {
+        // given
+        Path file = snapshotFile();
+        VendingMachine machine = new VendingMachine(configuration(), fixedTrays());
+        new MachineSnapshotWriter(machine, file).saveFull();
+        Files.write(file, new byte[]{0x56, 0x4D, 0x53, 0x4E, 0, 2, 1}, StandardOpenOption.APPEND);
+
+        // when
+        MachineSnapshot snapshot = MachineSnapshot.restore(file);
+
+        // then
+        assertEquals(3, snapshot.createTray(0, 0).productsCount());
+    }
+
+    @Test
+    public void shouldAppendAfterTornSegmentIsCutOff() throws IOException {
+        // given
+        Path file = snapshotFile();
+        VendingMachine machine = new VendingMachine(configuration(), fixedTrays());
+        new MachineSnapshotWriter(machine, file).saveFull();
+        long fullSnapshotLength = Files.size(file);
+        Files.write(file, new byte[]{0x56, 0x4D, 0x53, 0x4E, 0, 2, 1}, StandardOpenOption.APPEND);
+        MachineSnapshot snapshot = MachineSnapshot.restore(file);
+        VendingMachine restored = new VendingMachine(configuration(), snapshot);
+        MachineSnapshotWriter writer = MachineSnapshotWriter.resume(restored, snapshot, file);
+        restored.buyProductWithSymbol("A1");
+
+        // when
+        int changed = writer.saveIncremental();
+        MachineSnapshot resumed = MachineSnapshot.restore(file);
+
+        // then
+        assertEquals(fullSnapshotLength, snapshot.validLength());
+        assertEquals(1, changed);
+        assertEquals(2, resumed.createTray(0, 0).productsCount());
+        assertEquals(Files.size(file), resumed.validLength());
+    }
+
+    @Test(expected = IOException.class)
+    public void shouldRejectFileWhichIsNotSnapshot() throws IOException {
+        // given
+        Path file = snapshotFile();
+        Files.write(file, "not a snapshot".getBytes());
+
+        // when
+        MachineSnapshot.restore(file);
+    }
+
+    @Test
+    public void shouldSnapshotOnlyTraysOfSparseMachine() throws IOException {
+        // given
+        // 10 milionów miejsc i tylko trzy tacki
+        Path file = snapshotFile();
+        VendingMachine machine = new VendingMachine(sparseConfiguration(), sparseTrays());
+        MachineSnapshotWriter writer = new MachineSnapshotWriter(machine, file);
+        writer.saveFull();
+        long fullSnapshotSize = Files.size(file);
+        machine.buyProductWithSymbol("H2000");
+
+        // when
+        int changed = writer.saveIncremental();
+        VendingMachine restored = new VendingMachine(sparseConfiguration(), MachineSnapshot.restore(file));
+
+        // then
+        assertTrue(fullSnapshotSize < 1024);
+        assertEquals(1, changed);
+        assertEquals(3, restored.positionsCount());
+        assertEquals(2, restored.trayDetailsAtPosition(0, 0).get().productsCount());
+        assertEquals(2, restored.trayDetailsAtPosition(7, 3).get().productsCount());
+        assertEquals(1, restored.trayDetailsAtPosition(7, 1999).get().productsCount());
+    }
+
+    private Path snapshotFile() {
+        return temporaryFolder.getRoot().toPath().resolve("machine.snapshot");
+    }
+
+    private TrayFactory fixedTrays() {
+        // A1 - 3 identyczne produkty, A2 - brak tacki, B1 - różne produkty, B2 - pusta tacka
+        return (row, col) -> {
+            String symbol = "" + (char) ('A' + row) + (col + 1);
+            if (row == 0 && col == 1) {
+                return null;
+            }
+            Tray.Builder builder = Tray.builder(symbol).price(320L);
+            if (row == 0) {
+                builder.products(new Product("Product " + symbol), 3);
+            } else if (col == 0) {
+                builder.products(new Product("Cola"), 2).product(new Product("Water")).product(new Product("Cola"));
+            }
+            return builder.build();
+        };
+    }
+
+    private TrayFactory sparseTrays() {
+        // tacki A1, H4 i H2000 po 2 produkty
+        return (row, col) -> (row == 0 && col == 0) || (row == 7 && (col == 3 || col == 1999))
+                ? Tray.builder("" + (char) ('A' + row) + (col + 1)).products(new Product("Cola"), 2).build()
+                : null;
+    }
+
+    private Configuration sparseConfiguration() {
+        Configuration mockedConfig = mock(Configuration.class);
+        when(mockedConfig.getProperty(eq("machine.size.rows"), anyLong())).thenReturn(5000L);
+        when(mockedConfig.getProperty(eq("machine.size.cols"), anyLong())).thenReturn(2000L);
+        when(mockedConfig.getProperty(eq("machine.grid"), anyString())).thenReturn("SPARSE");
+        return mockedConfig;
+    }
+
+    private Configuration configuration() {
+        Configuration mockedConfig = mock(Configuration.class);
+        when(mockedConfig.getProperty(eq("machine.size.rows"), anyLong())).thenReturn(2L);
+        when(mockedConfig.getProperty(eq("machine.size.cols"), anyLong())).thenReturn(2L);
+        return mockedConfig;
+    }
+}
@@ -0,0 +1,196 @@
+package pl.sdacademy.vending.persistence;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import pl.sdacademy.vending.model.Product;
+import pl.sdacademy.vending.model.Tray;
+import pl.sdacademy.vending.model.TrayFactory;
+import pl.sdacademy.vending.model.VendingMachine;
+import pl.sdacademy.vending.util.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class MappedInventoryStoreTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void shouldRestoreStockAfterReopeningStore() throws IOException {
+        // given
+        Path file = temporaryFolder.getRoot().toPath().resolve("inventory.bin");
+        try (MappedInventoryStore store = MappedInventoryStore.open(file, 2, 3, fixedTrays())) {
+            VendingMachine machine = new VendingMachine(configuration(2L, 3L), store);
+            machine.buyProductWithSymbol("A1");
+            machine.buyProductWithSymbol("B3");
+        }
+
+        // when
+        // przy ponownym otwarciu fabryka zapasowa nie może zostać użyta - wszystkie sloty są już zapisane w pliku
+        TrayFactory failingFactory = (row, col) -> {
+            throw new AssertionError("Trays should be read from file");
+        };
+        try (MappedInventoryStore store = MappedInventoryStore.open(file, 2, 3, failingFactory)) {
+            VendingMachine machine = new VendingMachine(configuration(2L, 3L), store);
+
+            // then
+            Tray a1 = machine.trayDetailsAtPosition(0, 0).get();
+            assertEquals("A1", a1.getSymbol());
+            assertEquals(150L, a1.getPrice());
+            assertEquals(4, a1.productsCount());
+            assertEquals(Optional.of("Product A1"), a1.firstProductName());
+            assertFalse(machine.trayDetailsAtPosition(0, 1).isPresent());
+            assertEquals(5, machine.trayDetailsAtPosition(1, 0).get().productsCount());
+            assertEquals(0, machine.trayDetailsAtPosition(1, 2).get().productsCount());
+            assertFalse(machine.buyProductWithSymbol("B3").isPresent());
+        }
+    }
+
+    @Test
+    public void shouldDecrementStockInPlace() throws IOException {
+        // given
+        Path file = temporaryFolder.getRoot().toPath().resolve("inventory.bin");
+        try (MappedInventoryStore store = MappedInventoryStore.open(file, 2, 3, fixedTrays())) {
+            VendingMachine machine = new VendingMachine(configuration(2L, 3L), store);
+
+            // when
+            Optional<Product> product = machine.buyProductWithSymbol("B1");
+
+            // then
+            assertEquals("Product B1", product.get().getName());
+            assertEquals(4, machine.trayDetailsAtPosition(1, 0).get().productsCount());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void shouldRejectStoreCreatedForDifferentMachineSize() throws IOException {
+        // given
+        Path file = temporaryFolder.getRoot().toPath().resolve("inventory.bin");
+        MappedInventoryStore.open(file, 2, 3, fixedTrays()).close();
+
+        // when
+        MappedInventoryStore.open(file, 3, 3, fixedTrays());
+    }
+
+    @Test
+    public void shouldRejectTrayWithDifferentProducts() throws IOException {
+        // given
+        Path file = temporaryFolder.getRoot().toPath().resolve("inventory.bin");
+        TrayFactory mixedTrays = (row, col) -> Tray.builder("A1")
+                .products(new Product("Cola"), 2)
+                .product(new Product("Water"))
+                .build();
+        boolean rejected = false;
+
+        // when
+        try (MappedInventoryStore store = MappedInventoryStore.open(file, 1, 1, mixedTrays)) {
+            store.createTray(0, 0);
+        } catch (IllegalArgumentException e) {
+            rejected = true;
+        }
+
+        // then
+        assertTrue(rejected);
+        // odrzucony slot pozostaje niezapisany - przy kolejnym otwarciu tacka jest tworzona od nowa
+        try (MappedInventoryStore store = MappedInventoryStore.open(file, 1, 1, fixedTrays())) {
+            assertEquals(5, store.createTray(0, 0).productsCount());
+        }
+    }
+
+    @Test
+    public void shouldKeepSlotsOfStoreMappedInSegments() throws IOException {
+        // given
+        // sloty 2x3 automatu mapowane fragmentami po 4 sloty - tacki B1..B3 leżą w dwóch różnych fragmentach
+        Path file = temporaryFolder.getRoot().toPath().resolve("inventory.bin");
+        try (MappedInventoryStore store = MappedInventoryStore.open(file, 2, 3, fixedTrays(), 4)) {
+            VendingMachine machine = new VendingMachine(configuration(2L, 3L), store);
+            machine.buyProductWithSymbol("B1");
+            machine.buyProductWithSymbol("B2");
+        }
+
+        // when
+        // układ pliku nie zależy od podziału na fragmenty
+        try (MappedInventoryStore store = MappedInventoryStore.open(file, 2, 3, fixedTrays())) {
+            VendingMachine machine = new VendingMachine(configuration(2L, 3L), store);
+
+            // then
+            assertEquals(5, machine.trayDetailsAtPosition(0, 0).get().productsCount());
+            assertEquals(4, machine.trayDetailsAtPosition(1, 0).get().productsCount());
+            assertEquals(4, machine.trayDetailsAtPosition(1, 1).get().productsCount());
+            assertEquals(1, machine.trayDetailsAtPosition(1, 2).get().productsCount());
+        }
+    }
+
+    @Test
+    public void shouldNotWriteSlotsOfPositionsWithoutTray() throws IOException {
+        // given
+        // automat 100x100 z tackami tylko w rogach - sloty wszystkich pozycji zajmują 157 stron po 4 KB
+        Path file = temporaryFolder.getRoot().toPath().resolve("inventory.bin");
+        TrayFactory cornerTrays = (row, col) -> row == col && (row == 0 || row == 99)
+                ? Tray.builder("T" + row).products(new Product("Cola"), 5).build()
+                : null;
+
+        // when
+        try (MappedInventoryStore store = MappedInventoryStore.open(file, 100, 100, cornerTrays)) {
+            for (int row = 0; row < 100; row++) {
+                for (int col = 0; col < 100; col++) {
+                    store.createTray(row, col);
+                }
+            }
+            store.createTray(99, 99).getFirstProduct();
+        }
+
+        // then
+        // zapisane są tylko strony nagłówka i mapy pozycji (3 strony) oraz dwie strony ze slotami tacek
+        byte[] content = Files.readAllBytes(file);
+        int writtenPages = 0;
+        for (int page = 0; page < content.length; page += 4096) {
+            for (int index = page; index < Math.min(page + 4096, content.length); index++) {
+                if (content[index] != 0) {
+                    writtenPages++;
+                    break;
+                }
+            }
+        }
+        assertEquals(5, writtenPages);
+        TrayFactory failingFactory = (row, col) -> {
+            throw new AssertionError("Trays should be read from file");
+        };
+        try (MappedInventoryStore store = MappedInventoryStore.open(file, 100, 100, failingFactory)) {
+            assertNull(store.createTray(50, 50));
+            assertEquals(4, store.createTray(99, 99).productsCount());
+        }
+    }
+
+    private TrayFactory fixedTrays() {
+        // tacka A2 nie istnieje, B3 posiada tylko jeden produkt, a pozostałe tacki po 5 produktów
+        return (row, col) -> {
+            String symbol = "" + (char) ('A' + row) + (col + 1);
+            if (row == 0 && col == 1) {
+                return null;
+            }
+            int count = row == 1 && col == 2 ? 1 : 5;
+            return Tray.builder(symbol)
+                    .price(150L)
+                    .products(new Product("Product " + symbol), count)
+                    .build();
+        };
+    }
+
+    private Configuration configuration(Long rows, Long cols) {
+        Configuration mockedConfig = mock(Configuration.class);
+        when(mockedConfig.getProperty(eq("machine.size.rows"), anyLong())).thenReturn(rows);
+        when(mockedConfig.getProperty(eq("machine.size.cols"), anyLong())).thenReturn(cols);
+        return mockedConfig;
+    }
+}
@@ -0,0 +1,341 @@
+package pl.sdacademy.vending.persistence;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import pl.sdacademy.vending.events.OverflowPolicy;
+import pl.sdacademy.vending.events.PurchaseEventBus;
+import pl.sdacademy.vending.model.Order;
+import pl.sdacademy.vending.model.Product;
+import pl.sdacademy.vending.model.Tray;
+import pl.sdacademy.vending.model.TrayFactory;
+import pl.sdacademy.vending.model.VendingMachine;
+import pl.sdacademy.vending.util.Configuration;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class PurchaseJournalTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void shouldReplayPurchasesOnTopOfInitialCheckpoint() throws IOException {
+        // given
+        Path file = journalFile();
+        VendingMachine machine = new VendingMachine(configuration(), fixedTrays(10));
+        // dziennik rejestruje się w automacie jako słuchacz zakupów - w teście używamy go tylko przez automat
+        PurchaseJournal journal = PurchaseJournal.open(file, machine, 1, 16, true, 0);
+        try {
+            machine.buyProductWithSymbol("A1");
+            machine.buyProductWithSymbol("A1");
+            machine.buyProductWithSymbol("B2");
+        } finally {
+            journal.close();
+        }
+
+        // when
+        InventoryState replayed = JournalReplay.replay(file);
+
+        // then
+        assertEquals(8, replayed.stock("A1"));
+        assertEquals(9, replayed.stock("B2"));
+        assertEquals(10, replayed.stock("A2"));
+    }
+
+    @Test
+    public void shouldRecordEveryConcurrentPurchase() throws Exception {
+        // given
+        Path file = journalFile();
+        VendingMachine machine = new VendingMachine(configuration(), fixedTrays(5_000));
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        PurchaseJournal journal = PurchaseJournal.open(file, machine, 2, 64, true, 1_000);
+        try {
+            // when
+            List<Future<?>> buyers = new ArrayList<>();
+            for (int buyer = 0; buyer < 8; buyer++) {
+                String symbol = buyer % 2 == 0 ? "A1" : "B2";
+                buyers.add(executor.submit(() -> {
+                    for (int i = 0; i < 500; i++) {
+                        machine.buyProductWithSymbol(symbol);
+                    }
+                }));
+            }
+            for (Future<?> buyer : buyers) {
+                buyer.get();
+            }
+        } finally {
+            executor.shutdown();
+            journal.close();
+        }
+
+        // then
+        InventoryState replayed = JournalReplay.replay(file);
+        assertEquals(3_000, replayed.stock("A1"));
+        assertEquals(3_000, replayed.stock("B2"));
+    }
+
+    @Test
+    public void shouldContinueJournalAfterRestartAndIgnoreTornRecord() throws IOException {
+        // given
+        Path file = journalFile();
+        VendingMachine machine = new VendingMachine(configuration(), fixedTrays(10));
+        try (PurchaseJournal journal = PurchaseJournal.open(file, machine, 1, 16, true, 0)) {
+            machine.buyProductWithSymbol("A1");
+            journal.checkpoint();
+            machine.buyProductWithSymbol("A1");
+        }
+        // symulujemy awarię w trakcie zapisu - na końcu pliku zostaje niedokończony wpis
+        Files.write(file, new byte[]{0, 0, 0, 50, 1, 2}, StandardOpenOption.APPEND);
+
+        // when
+        VendingMachine restoredMachine = new VendingMachine(configuration(), JournalReplay.replay(file));
+        PurchaseJournal restoredJournal = PurchaseJournal.open(file, restoredMachine, 1, 16, true, 0);
+        try {
+            restoredMachine.buyProductWithSymbol("A1");
+        } finally {
+            restoredJournal.close();
+        }
+
+        // then
+        assertEquals(7, restoredMachine.trayDetailsAtPosition(0, 0).get().productsCount());
+        assertEquals(7, JournalReplay.replay(file).stock("A1"));
+    }
+
+    @Test
+    public void shouldKeepEveryProductOfMixedTray() throws IOException {
+        // given
+        Path file = journalFile();
+        VendingMachine machine = new VendingMachine(configuration(), (row, col) -> Tray
+                .builder("" + (char) ('A' + row) + (col + 1))
+                .products(new Product("Cola"), 2)
+                .product(new Product("Water"))
+                .product(new Product("Juice"))
+                .build());
+        PurchaseJournal journal = PurchaseJournal.open(file, machine, 1, 16, true, 0);
+        try {
+            machine.buyProductWithSymbol("A1");
+        } finally {
+            journal.close();
+        }
+
+        // when
+        VendingMachine restored = new VendingMachine(configuration(), JournalReplay.replay(file));
+
+        // then
+        assertEquals(3, JournalReplay.replay(file).stock("A1"));
+        assertEquals("Cola", restored.buyProductWithSymbol("A1").get().getName());
+        assertEquals("Water", restored.buyProductWithSymbol("A1").get().getName());
+        assertEquals("Juice", restored.buyProductWithSymbol("A1").get().getName());
+        assertFalse(restored.buyProductWithSymbol("A1").isPresent());
+        assertEquals(4, restored.trayDetailsAtPosition(1, 1).get().productsCount());
+    }
+
+    @Test
+    public void shouldReplayRestocksInOrderWithPurchases() throws IOException {
+        // given
+        Path file = journalFile();
+        VendingMachine machine = new VendingMachine(configuration(), fixedTrays(1));
+        PurchaseJournal journal = PurchaseJournal.open(file, machine, 1, 16, true, 0);
+        try {
+            machine.buyProductWithSymbol("A1");
+            machine.restockTray("A1", new Product("Product A1"), 5);
+            machine.buyProductWithSymbol("A1");
+            // produkt niepasujący do tacki nie jest dokładany - zapowiedziane uzupełnienie jest wycofywane
+            machine.restockTray("B2", new Product("Other"), 3);
+        } finally {
+            journal.close();
+        }
+
+        // when
+        InventoryState replayed = JournalReplay.replay(file);
+
+        // then
+        assertEquals(4, replayed.stock("A1"));
+        assertEquals(1, replayed.stock("B2"));
+        VendingMachine restored = new VendingMachine(configuration(), replayed);
+        assertEquals(4, restored.trayDetailsAtPosition(0, 0).get().productsCount());
+        assertEquals(1, restored.restockTray("B2", new Product("Product B2"), 1));
+    }
+
+    @Test
+    public void shouldReplayRestocksDeliveredThroughEventBus() throws IOException {
+        // given
+        Path file = journalFile();
+        VendingMachine machine = new VendingMachine(configuration(), fixedTrays(1));
+        PurchaseJournal journal = PurchaseJournal.open(file, machine, 1, 16, true, 0);
+        machine.removePurchaseListener(journal);
+        PurchaseEventBus bus = PurchaseEventBus.builder()
+                .overflowPolicy(OverflowPolicy.BLOCK)
+                .listener("journal", journal)
+                .build();
+        machine.addPurchaseListener(bus.listener("machine-0"));
+        try {
+            machine.buyProductWithSymbol("A1");
+            machine.restockTray("A1", new Product("Product A1"), 5);
+            machine.buyProductWithSymbol("A1");
+            machine.restockTray("B2", new Product("Other"), 3);
+        } finally {
+            bus.close();
+            journal.close();
+        }
+
+        // when
+        InventoryState replayed = JournalReplay.replay(file);
+
+        // then
+        assertEquals(4, replayed.stock("A1"));
+        assertEquals(1, replayed.stock("B2"));
+        assertEquals(5, bus.publishedCount());
+    }
+
+    @Test(expected = IOException.class)
+    public void shouldRejectJournalWithPurchaseFromEmptyTray() throws IOException {
+        // given
+        Path file = journalFile();
+        VendingMachine machine = new VendingMachine(configuration(), fixedTrays(1));
+        PurchaseJournal.open(file, machine, 1, 16, true, 0).close();
+        appendPurchaseRecord(file, "A1");
+        appendPurchaseRecord(file, "A1");
+
+        // when
+        JournalReplay.replay(file);
+    }
+
+    @Test
+    public void shouldCheckpointOnlyTraysOfSparseMachine() throws IOException {
+        // given
+        // 10 milionów miejsc i tylko dwie tacki
+        Path file = journalFile();
+        Configuration configuration = configuration();
+        when(configuration.getProperty(eq("machine.size.rows"), anyLong())).thenReturn(5000L);
+        when(configuration.getProperty(eq("machine.size.cols"), anyLong())).thenReturn(2000L);
+        when(configuration.getProperty(eq("machine.grid"), anyString())).thenReturn("SPARSE");
+        VendingMachine machine = new VendingMachine(configuration, (row, col) -> row == 7 && (col == 3 || col == 1999)
+                ? Tray.builder("H" + (col + 1)).products(new Product("Cola"), 4).build()
+                : null);
+        PurchaseJournal journal = PurchaseJournal.open(file, machine, 1, 16, true, 0);
+        try {
+            machine.buyProductWithSymbol("H2000");
+        } finally {
+            journal.close();
+        }
+
+        // when
+        InventoryState replayed = JournalReplay.replay(file);
+
+        // then
+        assertTrue(Files.size(file) < 1024);
+        assertEquals(4, replayed.stock("H4"));
+        assertEquals(3, replayed.stock("H2000"));
+        assertEquals("Cola", replayed.createTray(7, 1999).firstProductName().get());
+        assertNull(replayed.createTray(4999, 1999));
+    }
+
+    @Test
+    public void shouldRecordWholeOrderWithOneDurableWrite() throws IOException {
+        // given
+        // paczka jest zapisywana dopiero po 300 ms - zapis każdej sztuki osobno trwałby ponad 3 sekundy
+        Path file = journalFile();
+        VendingMachine machine = new VendingMachine(configuration(), fixedTrays(10));
+        PurchaseJournal journal = PurchaseJournal.open(file, machine, 300, 512, true, 0);
+        long startTime;
+        long duration;
+        try {
+            // when
+            startTime = System.nanoTime();
+            machine.buyProducts(Order.parse("6x A1, 4x B2"));
+            duration = System.nanoTime() - startTime;
+        } finally {
+            journal.close();
+        }
+        InventoryState replayed = JournalReplay.replay(file);
+
+        // then
+        assertTrue("Order took " + duration + " ns", duration < TimeUnit.MILLISECONDS.toNanos(1500));
+        assertEquals(4, replayed.stock("A1"));
+        assertEquals(6, replayed.stock("B2"));
+    }
+
+    @Test
+    public void shouldReportFailedWriteWithoutFailingSale() throws IOException {
+        // given
+        Path file = journalFile();
+        VendingMachine machine = new VendingMachine(configuration(), fixedTrays(1));
+        PurchaseJournal journal = PurchaseJournal.open(file, machine, 1, 16, true, 0);
+        // sztuka dołożona z pominięciem automatu - dziennik o niej nie wie, więc nie zdoła zapisać jej zakupu
+        machine.trayDetailsAtPosition(0, 0).get().restock(new Product("Product A1"), 1);
+        Optional<Product> first;
+        Optional<Product> second;
+        try {
+            // when
+            first = machine.buyProductWithSymbol("A1");
+            second = machine.buyProductWithSymbol("A1");
+        } finally {
+            journal.close();
+        }
+
+        // then
+        assertTrue(first.isPresent());
+        assertTrue(second.isPresent());
+        assertTrue(journal.writeFailure().isPresent());
+        assertEquals(1, journal.nonDurableEvents());
+    }
+
+    private void appendPurchaseRecord(Path file, String symbol) throws IOException {
+        ByteArrayOutputStream payloadBytes = new ByteArrayOutputStream();
+        DataOutputStream payload = new DataOutputStream(payloadBytes);
+        payload.writeByte(PurchaseJournal.PURCHASE_RECORD);
+        payload.writeUTF(symbol);
+        CRC32 crc = new CRC32();
+        crc.update(payloadBytes.toByteArray());
+        ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+        DataOutputStream record = new DataOutputStream(recordBytes);
+        record.writeInt(payloadBytes.size());
+        record.writeInt((int) crc.getValue());
+        record.write(payloadBytes.toByteArray());
+        Files.write(file, recordBytes.toByteArray(), StandardOpenOption.APPEND);
+    }
+
+    private Path journalFile() {
+        return temporaryFolder.getRoot().toPath().resolve("purchases.journal");
+    }
+
+    private TrayFactory fixedTrays(int stock) {
+        // automat 2x2 - wszystkie tacki mają tę samą ilość produktów
+        return (row, col) -> {
+            String symbol = "" + (char) ('A' + row) + (col + 1);
+            return Tray.builder(symbol)
+                    .price(250L)
+                    .products(new Product("Product " + symbol), stock)
+                    .build();
+        };
+    }
+
+    private Configuration configuration() {
+        Configuration mockedConfig = mock(Configuration.class);
+        when(mockedConfig.getProperty(eq("machine.size.rows"), anyLong())).thenReturn(2L);
+        when(mockedConfig.getProperty(eq("machine.size.cols"), anyLong())).thenReturn(2L);
+        return mockedConfig;
+    }
+}
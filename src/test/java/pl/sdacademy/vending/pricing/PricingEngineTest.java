@@ -0,0 +1,150 @@
+package pl.sdacademy.vending.pricing;
+
+import org.junit.Test;
+import pl.sdacademy.vending.model.Product;
+import pl.sdacademy.vending.model.PurchaseListener;
+import pl.sdacademy.vending.model.Tray;
+import pl.sdacademy.vending.model.VendingMachine;
+import pl.sdacademy.vending.restock.DepletionTracker;
+import pl.sdacademy.vending.util.Configuration;
+import pl.sdacademy.vending.util.ConfigurationSnapshot;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class PricingEngineTest {
+    private static final long MINUTE = Duration.ofMinutes(1).toMillis();
+
+    private final AtomicLong currentTime = new AtomicLong(1_000_000);
+    private final DepletionTracker tracker = new DepletionTracker(Duration.ofHours(1), currentTime::get);
+
+    @Test
+    public void shouldRaisePriceOfTraysInDemandAndKeepVersionWhenNothingChanges() {
+        // given
+        VendingMachine machine = machine();
+        machine.addPurchaseListener(tracker.listener("machine-1"));
+        PricingEngine engine = PricingEngine.builder(tracker)
+                .machine("machine-1", machine)
+                .rule(PricingRules.demand(30, 20))
+                .rule(PricingRules.roundedTo(10))
+                .clock(clockAt("12:00"))
+                .build();
+        // A1 sprzedaje się co minutę, B1 wcale
+        for (int minute = 0; minute < 60; minute++) {
+            machine.buyProductWithSymbol("A1");
+            currentTime.addAndGet(MINUTE);
+        }
+
+        // when
+        int changedMachines = engine.reprice();
+        long version = machine.priceTable().version();
+        int changedAgain = engine.reprice();
+
+        // then
+        assertEquals(1, changedMachines);
+        assertEquals(1, version);
+        // 255 + 20% = 306, zaokrąglone do 310
+        assertEquals(310L, machine.priceOf("A1"));
+        // B1 zachowuje cenę podstawową, jedynie zaokrągloną
+        assertEquals(260L, machine.priceOf("B1"));
+        assertEquals(-1L, machine.priceOf("C1"));
+        assertEquals(0, changedAgain);
+        assertEquals(version, machine.priceTable().version());
+    }
+
+    @Test
+    public void shouldChangePriceOnlyWithinConfiguredHoursAndReportItToListeners() {
+        // given
+        Properties properties = new Properties();
+        properties.setProperty("pricing.happyhour.start", "22:00");
+        properties.setProperty("pricing.happyhour.end", "02:00");
+        properties.setProperty("pricing.happyhour.change.percent", "-40");
+        Configuration configuration = ConfigurationSnapshot.of(properties);
+        VendingMachine machine = machine();
+        List<Long> purchasePrices = new ArrayList<>();
+        machine.addPurchaseListener(new PurchaseListener() {
+            @Override
+            public void productPurchased(Tray tray, Product product) {
+                fail("Listener should be notified with price");
+            }
+
+            @Override
+            public void productPurchased(Tray tray, Product product, long price) {
+                purchasePrices.add(price);
+            }
+        });
+
+        // when
+        PricingEngine.builder(tracker, configuration).machine("machine-1", machine).clock(clockAt("21:59")).build()
+                .reprice();
+        long priceBefore = machine.priceOf("A1");
+        PricingEngine.builder(tracker, configuration).machine("machine-1", machine).clock(clockAt("01:30")).build()
+                .reprice();
+        machine.buyProductWithSymbol("A1");
+
+        // then
+        assertEquals(255L, priceBefore);
+        assertEquals(1, machine.priceTable().version());
+        assertEquals(153L, machine.priceOf("A1"));
+        assertEquals(Collections.singletonList(153L), purchasePrices);
+    }
+
+    @Test
+    public void shouldRepriceInBackgroundUntilClosed() throws InterruptedException {
+        // given
+        VendingMachine machine = machine();
+        PricingEngine engine = PricingEngine.builder(tracker)
+                .machine("machine-1", () -> machine)
+                .rule((price, unitsPerHour, time) -> price + 1)
+                .interval(Duration.ofMillis(10))
+                .build();
+
+        // when
+        engine.start();
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (machine.priceTable().version() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        engine.close();
+
+        // then
+        assertEquals(256L, machine.priceOf("A1"));
+        assertEquals(1, machine.priceTable().version());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldNotBuildEngineWithoutMachines() {
+        PricingEngine.builder(tracker).build();
+    }
+
+    private VendingMachine machine() {
+        Configuration configuration = mock(Configuration.class);
+        when(configuration.getProperty(eq("machine.size.rows"), anyLong())).thenReturn(3L);
+        when(configuration.getProperty(eq("machine.size.cols"), anyLong())).thenReturn(1L);
+        return new VendingMachine(configuration, (row, col) -> row == 2 ? null : Tray
+                .builder("" + (char) ('A' + row) + (col + 1))
+                .price(255L)
+                .products(new Product("Cola"), 100)
+                .build());
+    }
+
+    private Clock clockAt(String time) {
+        Instant instant = LocalTime.parse(time).atDate(LocalDate.of(2024, 1, 1)).toInstant(ZoneOffset.UTC);
+        return Clock.fixed(instant, ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,126 @@
+package pl.sdacademy.vending.restock;
+
+import org.junit.Test;
+import pl.sdacademy.vending.fleet.Fleet;
+import pl.sdacademy.vending.model.Product;
+import pl.sdacademy.vending.model.Tray;
+import pl.sdacademy.vending.model.VendingMachine;
+import pl.sdacademy.vending.util.Configuration;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class RestockPlannerTest {
+    private static final long MINUTE = Duration.ofMinutes(1).toMillis();
+
+    private final AtomicLong currentTime = new AtomicLong(1_000_000);
+    private final DepletionTracker tracker = new DepletionTracker(Duration.ofHours(1), currentTime::get);
+
+    @Test
+    public void shouldEstimateDepletionRateAndForgetOldPurchases() {
+        // given
+        for (int minute = 0; minute < 10 * 60; minute++) {
+            tracker.record("machine-1", "A1", "Cola");
+            currentTime.addAndGet(MINUTE);
+        }
+
+        // when
+        double steadyRate = tracker.unitsPerHour("machine-1", "A1");
+        currentTime.addAndGet(Duration.ofHours(5).toMillis());
+        double rateAfterPause = tracker.unitsPerHour("machine-1", "A1");
+
+        // then
+        assertEquals(60, steadyRate, 1);
+        assertEquals(steadyRate * Math.exp(-5), rateAfterPause, 0.01);
+        assertEquals(0, tracker.unitsPerHour("machine-1", "B1"), 0);
+        assertEquals("Cola", tracker.lastProductName("machine-1", "A1"));
+    }
+
+    @Test
+    public void shouldPlanTraysThatDepleteBeforeNextVisit() {
+        // given
+        VendingMachine busyMachine = machine(5, 8);
+        VendingMachine quietMachine = machine(8, 8);
+        busyMachine.addPurchaseListener(tracker.listener("busy"));
+        quietMachine.addPurchaseListener(tracker.listener("quiet"));
+        // A1 w ruchliwym automacie sprzedaje 1 sztukę na godzinę - 2 pozostałe sztuki wyprzeda przed kolejną wizytą;
+        // B1 i C1 nie sprzedają się wcale
+        for (int hour = 0; hour < 3; hour++) {
+            busyMachine.buyProductWithSymbol("A1");
+            currentTime.addAndGet(60 * MINUTE);
+        }
+        // C1 w cichym automacie zostaje opróżniona
+        for (int unit = 0; unit < 8; unit++) {
+            quietMachine.buyProductWithSymbol("C1");
+        }
+        RestockPlanner planner = RestockPlanner.builder(tracker)
+                .horizon(Duration.ofHours(24))
+                .targetUnits(10)
+                .build();
+
+        // when
+        RestockPlan plan = planner.plan(Arrays.asList("busy", "quiet"),
+                Arrays.asList(busyMachine, quietMachine));
+
+        // then
+        assertEquals(6, plan.scannedTrays());
+        assertEquals(2, plan.visits().size());
+        // cichy automat ma pustą tackę, więc jest pilniejszy
+        assertEquals("quiet [C1+10 Cola]", plan.visits().get(0).toString());
+        assertEquals("busy [A1+8 Cola]", plan.visits().get(1).toString());
+        assertEquals(18, plan.totalUnits());
+    }
+
+    @Test
+    public void shouldPlanWholeFleetInParallel() {
+        // given
+        Fleet fleet = new Fleet(2);
+        List<String> expectedVisits = new ArrayList<>();
+        for (int machine = 0; machine < 100; machine++) {
+            String machineId = String.format("machine-%03d", machine);
+            // co trzeci automat ma pustą tackę B1
+            fleet.addMachine(machineId, machine(5, machine % 3 == 0 ? 0 : 5));
+            if (machine % 3 == 0) {
+                tracker.record(machineId, "B1", "Cola");
+                expectedVisits.add(machineId);
+            }
+        }
+        RestockPlanner planner = RestockPlanner.builder(tracker).machinesPerTask(4).build();
+
+        // when
+        RestockPlan plan = planner.plan(fleet);
+        fleet.close();
+
+        // then
+        assertEquals(300, plan.scannedTrays());
+        List<String> visitedMachines = new ArrayList<>();
+        for (RestockPlan.MachineVisit visit : plan.visits()) {
+            visitedMachines.add(visit.machineId());
+            assertEquals(10, visit.totalUnits());
+        }
+        assertEquals(expectedVisits, visitedMachines);
+    }
+
+    /**
+     * Automat z trzema tackami Coli w jednej kolumnie: A1, B1 i C1.
+     */
+    private static VendingMachine machine(int unitsInA1AndC1, int unitsInB1) {
+        Configuration configuration = mock(Configuration.class);
+        when(configuration.getProperty(eq("machine.size.rows"), anyLong())).thenReturn(3L);
+        when(configuration.getProperty(eq("machine.size.cols"), anyLong())).thenReturn(1L);
+        return new VendingMachine(configuration, (row, col) -> {
+            Tray.Builder tray = Tray.builder("" + (char) ('A' + row) + (col + 1));
+            int units = row == 1 ? unitsInB1 : unitsInA1AndC1;
+            return units == 0 ? tray.build() : tray.products(new Product("Cola"), units).build();
+        });
+    }
+}
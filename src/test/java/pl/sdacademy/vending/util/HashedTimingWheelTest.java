@@ -0,0 +1,96 @@
+package pl.sdacademy.vending.util;
+
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class HashedTimingWheelTest {
+    private static final long TICK = 100;
+
+    private final AtomicLong currentTime = new AtomicLong(5_000);
+    private final HashedTimingWheel wheel = HashedTimingWheel.builder()
+            .tick(Duration.ofMillis(TICK))
+            .wheelSize(64)
+            .clock(currentTime::get)
+            .build();
+
+    @Test
+    public void shouldExpireEachTimeoutWithinOneTickAfterItsDeadline() {
+        // given
+        // terminy rozrzucone na kilkadziesiąt obrotów koła
+        int timeoutsCount = 200_000;
+        RecordingTimeout[] timeouts = new RecordingTimeout[timeoutsCount];
+        SplittableRandom random = new SplittableRandom(3);
+        for (int index = 0; index < timeoutsCount; index++) {
+            timeouts[index] = new RecordingTimeout();
+            wheel.schedule(timeouts[index], random.nextLong(TICK * 64 * 40));
+        }
+        // co dziesiąte zadanie jest anulowane
+        for (int index = 0; index < timeoutsCount; index += 10) {
+            assertTrue(wheel.cancel(timeouts[index]));
+        }
+
+        // when
+        int expiredCount = 0;
+        long end = currentTime.get() + TICK * 64 * 41;
+        while (currentTime.get() < end) {
+            currentTime.addAndGet(TICK / 4);
+            expiredCount += wheel.advance();
+        }
+
+        // then
+        assertEquals(timeoutsCount - timeoutsCount / 10, expiredCount);
+        assertEquals(0, wheel.pendingCount());
+        for (int index = 0; index < timeoutsCount; index++) {
+            RecordingTimeout timeout = timeouts[index];
+            if (index % 10 == 0) {
+                assertEquals(-1, timeout.expiredAt);
+            } else {
+                assertTrue(timeout.expiredAt >= timeout.deadline());
+                assertTrue(timeout.expiredAt <= timeout.deadline() + TICK + TICK / 4);
+            }
+        }
+        assertFalse(wheel.cancel(timeouts[1]));
+    }
+
+    @Test
+    public void shouldAdvanceInBackground() throws InterruptedException {
+        // given
+        CountDownLatch expired = new CountDownLatch(1);
+        try (HashedTimingWheel realTimeWheel = HashedTimingWheel.builder().tick(Duration.ofMillis(10)).build()) {
+            realTimeWheel.start();
+
+            // when
+            realTimeWheel.schedule(new HashedTimingWheel.Timeout() {
+                @Override
+                protected void expired() {
+                    expired.countDown();
+                }
+            }, 30);
+
+            // then
+            assertTrue(expired.await(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldRequirePowerOfTwoWheelSize() {
+        HashedTimingWheel.builder().wheelSize(100).build();
+    }
+
+    private class RecordingTimeout extends HashedTimingWheel.Timeout {
+        private long expiredAt = -1;
+
+        @Override
+        protected void expired() {
+            assertEquals(-1, expiredAt);
+            expiredAt = currentTime.get();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package pl.sdacademy.vending.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void shouldKeepSmallValuesExact() {
+        // given
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        // when
+        for (int value = 1; value <= 100; value++) {
+            histogram.record(value);
+        }
+
+        // then
+        assertEquals(100, histogram.count());
+        assertEquals(50, histogram.valueAtPercentile(50));
+        assertEquals(99, histogram.valueAtPercentile(99));
+        assertEquals(100, histogram.valueAtPercentile(100));
+        assertEquals(50.5, histogram.mean(), 0.001);
+    }
+
+    @Test
+    public void shouldKeepRelativeErrorOfLargeValuesBelowPrecision() {
+        // given
+        // dla 8 bitów dokładności błąd względny nie może przekroczyć 1/128
+        long[] values = {1_000L, 12_345L, 999_999L, 123_456_789L, 3_000_000_000L, Long.MAX_VALUE / 3};
+
+        for (long value : values) {
+            LatencyHistogram histogram = new LatencyHistogram();
+            histogram.record(value);
+            // wartość poniżej maksimum nie jest przycinana do maksimum, więc widać granicę przedziału
+            histogram.record(Long.MAX_VALUE);
+
+            // when
+            long reportedValue = histogram.valueAtPercentile(50);
+
+            // then
+            assertTrue("Value " + value + " reported as " + reportedValue,
+                    reportedValue >= value && reportedValue - value <= value / 128);
+        }
+    }
+
+    @Test
+    public void shouldAddHistogramsAndReportMax() {
+        // given
+        LatencyHistogram first = new LatencyHistogram();
+        LatencyHistogram second = new LatencyHistogram();
+        for (int value = 0; value < 900; value++) {
+            first.record(10);
+        }
+        for (int value = 0; value < 100; value++) {
+            second.record(1_000_003);
+        }
+
+        // when
+        first.add(second);
+
+        // then
+        assertEquals(1000, first.count());
+        assertEquals(10, first.valueAtPercentile(90));
+        assertEquals(1_000_003, first.valueAtPercentile(99.9));
+        assertEquals(1_000_003, first.max());
+    }
+}
@@ -0,0 +1,117 @@
+package pl.sdacademy.vending.util;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ReloadableConfigurationTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void shouldParseTypedValuesOnce() {
+        // given
+        Properties properties = new Properties();
+        properties.setProperty("rows", " 12 ");
+        properties.setProperty("enabled", "Yes");
+        properties.setProperty("window", "15m");
+        properties.setProperty("timeout", "PT0.5S");
+        properties.setProperty("price", "2,50");
+        properties.setProperty("name", "machine");
+
+        // when
+        ConfigurationSnapshot snapshot = ConfigurationSnapshot.of(properties);
+
+        // then
+        assertEquals((Long) 12L, snapshot.getProperty("rows", 6L));
+        assertSame(snapshot.getProperty("rows", 6L), snapshot.getProperty("rows", 6L));
+        assertEquals(12, snapshot.getInt("rows", 6));
+        assertTrue(snapshot.getBoolean("enabled", false));
+        assertEquals(Duration.ofMinutes(15), snapshot.getDuration("window", Duration.ZERO));
+        assertEquals(Duration.ofMillis(500), snapshot.getDuration("timeout", Duration.ZERO));
+        assertEquals(250, snapshot.getMoney("price", 0));
+        assertEquals(1200, snapshot.getMoney("rows", 0));
+        assertEquals(7, snapshot.getInt("missing", 7));
+        assertEquals("machine", snapshot.getProperty("name", ""));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectValueOfWrongType() {
+        // given
+        Properties properties = new Properties();
+        properties.setProperty("rows", "many");
+        ConfigurationSnapshot snapshot = ConfigurationSnapshot.of(properties);
+
+        // when
+        snapshot.getProperty("rows", 6L);
+    }
+
+    @Test
+    public void shouldSwapSnapshotAndNotifyListenersOnReload() throws Exception {
+        // given
+        Path file = temporaryFolder.newFile("vending.properties").toPath();
+        write(file, "machine.size.rows=8\n");
+        Properties defaults = new Properties();
+        defaults.setProperty("machine.size.rows", "6");
+        defaults.setProperty("machine.size.cols", "4");
+        ReloadableConfiguration configuration = ReloadableConfiguration.load(file, ConfigurationSnapshot.of(defaults));
+        List<String> changes = new ArrayList<>();
+        configuration.addListener((previous, current) -> changes.add(
+                previous.getProperty("machine.size.rows", 0L) + "->" + current.getProperty("machine.size.rows", 0L)));
+        ConfigurationSnapshot initial = configuration.snapshot();
+
+        // when
+        boolean unchangedReload = configuration.reload();
+        write(file, "machine.size.rows=10\n");
+        boolean changedReload = configuration.reload();
+        Files.delete(file);
+        boolean failedReload = configuration.reload();
+
+        // then
+        assertTrue(unchangedReload);
+        assertTrue(changedReload);
+        assertFalse(failedReload);
+        assertEquals(Collections.singletonList("8->10"), changes);
+        assertEquals((Long) 10L, configuration.getProperty("machine.size.rows", 6L));
+        assertEquals((Long) 4L, configuration.getProperty("machine.size.cols", 6L));
+        assertEquals(initial.version() + 1, configuration.snapshot().version());
+        assertEquals((Long) 8L, initial.getProperty("machine.size.rows", 6L));
+    }
+
+    @Test
+    public void shouldReloadWhenWatchedFileChanges() throws Exception {
+        // given
+        Path file = temporaryFolder.newFile("vending.properties").toPath();
+        write(file, "load.duration.seconds=5\n");
+        CountDownLatch reloaded = new CountDownLatch(1);
+        try (ReloadableConfiguration configuration = ReloadableConfiguration.watch(file,
+                ConfigurationSnapshot.empty())) {
+            configuration.addListener((previous, current) -> reloaded.countDown());
+
+            // when
+            write(file, "load.duration.seconds=30\n");
+
+            // then
+            assertTrue(reloaded.await(10, TimeUnit.SECONDS));
+            assertEquals(30, configuration.getInt("load.duration.seconds", 0));
+        }
+    }
+
+    private static void write(Path file, String content) throws Exception {
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+}
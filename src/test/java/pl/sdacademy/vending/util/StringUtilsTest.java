@@ -5,6 +5,8 @@ import junitparams.Parameters;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.lang.management.ManagementFactory;
+
 import static org.junit.Assert.*;
 
 @RunWith(JUnitParamsRunner.class)
@@ -82,4 +84,73 @@ public class StringUtilsTest {
                 new Object[] {0L, "0,00"}
         };
     }
-}
\ No newline at end of file
+
+    @Test
+    @Parameters(method = "parametersForShouldPropertyFormatNumberToCash")
+    public void shouldFormatMoneyIntoCharArray(Long money, String expectedFormatOfMoney) {
+        // given
+        char[] target = new char[StringUtils.MAX_MONEY_LENGTH + 2];
+
+        // when
+        int end = StringUtils.formatMoney(money, target, 2);
+
+        // then
+        assertEquals(expectedFormatOfMoney, new String(target, 2, end - 2));
+    }
+
+    @Test
+    public void shouldFormatNegativeAndExtremeMoney() {
+        assertEquals("-1,23", StringUtils.formatMoney(-123L));
+        assertEquals("-0,05", StringUtils.formatMoney(-5L));
+        assertEquals("92 233 720 368 547 758,07", StringUtils.formatMoney(Long.MAX_VALUE));
+        assertEquals("-92 233 720 368 547 758,08", StringUtils.formatMoney(Long.MIN_VALUE));
+    }
+
+    @Test
+    public void shouldAppendAdjustedAndMultipliedText() {
+        // given
+        StringBuilder target = new StringBuilder();
+
+        // when
+        StringUtils.multiplyText("-", 3, target);
+        StringUtils.adjustText("Ala", 8, target);
+        StringUtils.formatMoney(123456L, target);
+        StringUtils.adjustText("Ala ma kota", 8, target);
+
+        // then
+        assertEquals("---   Ala  1 234,56Ala ma k", target.toString());
+    }
+
+    @Test
+    public void shouldNotAllocateWhenFormattingIntoBuffers() {
+        // given
+        // metody są najpierw wywoływane wielokrotnie, aby zostały skompilowane, a bufor wątku utworzony
+        char[] target = new char[64];
+        StringBuilder appendTarget = new StringBuilder(64);
+        formatIntoBuffers(target, appendTarget, 100_000);
+        com.sun.management.ThreadMXBean threadBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        // when
+        long allocatedBefore = threadBean.getThreadAllocatedBytes(threadId);
+        formatIntoBuffers(target, appendTarget, 100_000);
+        long allocated = threadBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        // then
+        // nawet jeden obiekt na wywołanie oznaczałby megabajty - dopuszczamy jedynie drobne alokacje samego pomiaru
+        assertTrue("Allocated " + allocated + " bytes", allocated < 1024);
+    }
+
+    private void formatIntoBuffers(char[] target, StringBuilder appendTarget, int times) {
+        for (int count = 0; count < times; count++) {
+            int offset = StringUtils.formatMoney(count * 1001L, target, 0);
+            offset = StringUtils.adjustText("Product A1", 12, target, offset);
+            StringUtils.multiplyText("-", 12, target, offset);
+            appendTarget.setLength(0);
+            StringUtils.formatMoney(count * 1001L, appendTarget);
+            StringUtils.adjustText("Product A1", 12, appendTarget);
+            StringUtils.multiplyText("-", 2, appendTarget);
+        }
+    }
+}